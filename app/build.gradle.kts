@@ -29,6 +29,22 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        // Robolectric: JVM tests against the real SQLite schema
+        unitTests.isIncludeAndroidResources = true
+        // Benchmarks are skipped unless asked for: ./gradlew testDebugUnitTest -Pbenchmarks
+        unitTests.all {
+            it.systemProperty("moviediary.benchmarks", project.hasProperty("benchmarks"))
+            // A screen querying DatabaseManager on the main thread fails the test (MainThreadGuard)
+            it.systemProperty("moviediary.mainThreadDb", "throw")
+            // Scale benchmarks: catalog sizes (-PbenchmarkScales=10000,100000) and JSON-lines results
+            it.systemProperty("moviediary.benchmarks.scales",
+                project.findProperty("benchmarkScales") ?: "10000,100000,1000000")
+            it.systemProperty("moviediary.benchmarks.out",
+                layout.buildDirectory.file("benchmarks/results.jsonl").get().asFile.path)
+            if (project.hasProperty("benchmarks")) it.maxHeapSize = "2g"
+        }
+    }
 }
 
 dependencies {
@@ -37,6 +53,8 @@ dependencies {
     implementation(libs.activity)
     implementation(libs.constraintlayout)
     testImplementation(libs.junit)
+    testImplementation(libs.robolectric)
+    testImplementation(libs.test.core)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 
@@ -46,5 +64,11 @@ dependencies {
     implementation("androidx.cardview:cardview:1.0.0")
     // For loading images from URLs
     implementation("com.github.bumptech.glide:glide:4.16.0")
+    // Poster preloading for the home grid (RecyclerView itself is declared above)
+    implementation("com.github.bumptech.glide:recyclerview-integration:4.16.0") {
+        isTransitive = false
+    }
+    // Generates the AppGlideModule registry for poster/MovieDiaryGlideModule
+    annotationProcessor("com.github.bumptech.glide:compiler:4.16.0")
     implementation("com.google.android.material:material:1.11.0")
 }
\ No newline at end of file
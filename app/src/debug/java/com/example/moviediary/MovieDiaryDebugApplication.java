@@ -0,0 +1,44 @@
+package com.example.moviediary;
+
+import android.app.Application;
+import android.os.StrictMode;
+
+import com.example.moviediary.database.DbMetrics;
+import com.example.moviediary.database.MainThreadGuard;
+
+/**
+ * Application of debug builds only (src/debug): makes disk and database work on the main
+ * thread visible as soon as it is written.
+ *
+ * - StrictMode: disk reads / writes and network on the main thread are logged and flash the
+ *   screen; leaked cursors and closeables are logged
+ * - DbMetrics records every DatabaseManager call (DebugStatsActivity, dumpsys, systrace)
+ * - MainThreadGuard logs database calls made on the main thread
+ *
+ * Known main-thread disk access opts out where it happens (MovieRepository.readHomeSnapshot).
+ */
+public class MovieDiaryDebugApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites()
+                .detectNetwork()
+                .penaltyLog()
+                .penaltyFlashScreen()
+                .build());
+        StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder()
+                .detectLeakedSqlLiteObjects()
+                .detectLeakedClosableObjects()
+                .penaltyLog()
+                .build());
+
+        DbMetrics.getInstance().setEnabled(true);
+        // Unit tests start in THROW mode (build.gradle.kts): keep it
+        MainThreadGuard guard = MainThreadGuard.getInstance();
+        if (guard.getMode() == MainThreadGuard.Mode.OFF) guard.setMode(MainThreadGuard.Mode.LOG);
+    }
+}
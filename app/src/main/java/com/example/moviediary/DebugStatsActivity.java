@@ -0,0 +1,78 @@
+package com.example.moviediary;
+
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.example.moviediary.database.DbMetrics;
+import com.example.moviediary.database.MainThreadGuard;
+import com.example.moviediary.database.MovieCache;
+import com.example.moviediary.poster.PosterStats;
+import com.example.moviediary.poster.PosterStore;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
+/**
+ * Debug builds only (menu entry hidden otherwise): database call latencies (DbMetrics),
+ * main-thread database calls (MainThreadGuard), poster loads and caches.
+ *
+ * The same text is dumped while the screen is open:
+ * adb shell dumpsys activity com.example.moviediary/.DebugStatsActivity
+ */
+public class DebugStatsActivity extends AppCompatActivity {
+
+    private TextView tvReport;
+    private Button btnRecording;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_debug_stats);
+
+        tvReport = findViewById(R.id.tv_report);
+        btnRecording = findViewById(R.id.btn_recording);
+        Button btnRefresh = findViewById(R.id.btn_refresh);
+        Button btnReset = findViewById(R.id.btn_reset);
+
+        btnRefresh.setOnClickListener(v -> showReport());
+        btnReset.setOnClickListener(v -> {
+            DbMetrics.getInstance().reset();
+            MainThreadGuard.getInstance().clear();
+            PosterStats.getInstance().reset();
+            showReport();
+        });
+        btnRecording.setOnClickListener(v -> {
+            DbMetrics metrics = DbMetrics.getInstance();
+            metrics.setEnabled(!metrics.isEnabled());
+            showReport();
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showReport();
+    }
+
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.println(report());
+    }
+
+    private void showReport() {
+        tvReport.setText(report());
+        btnRecording.setText(DbMetrics.getInstance().isEnabled() ? "Stop recording" : "Start recording");
+    }
+
+    private String report() {
+        return DbMetrics.getInstance().report()
+                + "\n" + MainThreadGuard.getInstance().report()
+                + "\n" + PosterStats.getInstance()
+                + "\n" + MovieCache.getInstance()
+                + "\n" + PosterStore.getInstance(this) + "\n";
+    }
+}
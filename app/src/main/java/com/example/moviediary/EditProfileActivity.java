@@ -8,7 +8,7 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.example.moviediary.database.DatabaseManager;
+import com.example.moviediary.repository.MovieRepository;
 
 import java.util.ArrayList;
 
@@ -17,7 +17,7 @@ public class EditProfileActivity extends AppCompatActivity {
     private EditText etUsername, etEmail;
     private CheckBox cbAction, cbDrama, cbComedy, cbCrime, cbRomance, cbSciFi, cbAdventure;
 
-    private DatabaseManager dbManager;
+    private MovieRepository repository;
     private SessionManager sessionManager;
     private int userId;
 
@@ -34,8 +34,7 @@ public class EditProfileActivity extends AppCompatActivity {
         sessionManager = new SessionManager(this);
         userId = sessionManager.getUserId();
 
-        dbManager = new DatabaseManager(this);
-        dbManager.open();
+        repository = new MovieRepository(this);
 
         etUsername = findViewById(R.id.etUsername);
         etEmail = findViewById(R.id.etEmail);
@@ -55,8 +54,7 @@ public class EditProfileActivity extends AppCompatActivity {
         etEmail.setText(sessionManager.getEmail());
 
         // Prefill checkboxes from DB preferences string
-        String prefs = dbManager.getUserPreferences(userId); // we'll add this method
-        applyPrefsToCheckboxes(prefs);
+        repository.getUserPreferences(userId, this::applyPrefsToCheckboxes);
 
         btnSave.setOnClickListener(v -> saveProfile());
     }
@@ -71,24 +69,19 @@ public class EditProfileActivity extends AppCompatActivity {
             return;
         }
 
-        if (dbManager.isUsernameExistsForOtherUser(newUsername, userId)) {
-            Toast.makeText(this, "Username already used", Toast.LENGTH_SHORT).show();
-            return;
-        }
-
-        if (dbManager.isEmailExistsForOtherUser(newEmail, userId)) {
-            Toast.makeText(this, "Email already used", Toast.LENGTH_SHORT).show();
-            return;
-        }
-
-        boolean ok = dbManager.updateUserProfile(userId, newUsername, newEmail, prefs);
-        if (ok) {
-            sessionManager.updateSession(newUsername, newEmail);
-            Toast.makeText(this, "Profile updated!", Toast.LENGTH_SHORT).show();
-            finish();
-        } else {
-            Toast.makeText(this, "Update failed", Toast.LENGTH_SHORT).show();
-        }
+        repository.updateProfile(userId, newUsername, newEmail, prefs, result -> {
+            if (result == MovieRepository.AccountResult.USERNAME_TAKEN) {
+                Toast.makeText(this, "Username already used", Toast.LENGTH_SHORT).show();
+            } else if (result == MovieRepository.AccountResult.EMAIL_TAKEN) {
+                Toast.makeText(this, "Email already used", Toast.LENGTH_SHORT).show();
+            } else if (result == MovieRepository.AccountResult.SUCCESS) {
+                sessionManager.updateSession(newUsername, newEmail);
+                Toast.makeText(this, "Profile updated!", Toast.LENGTH_SHORT).show();
+                finish();
+            } else {
+                Toast.makeText(this, "Update failed", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     private String buildPrefsString() {
@@ -128,6 +121,6 @@ public class EditProfileActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (dbManager != null) dbManager.close();
+        if (repository != null) repository.close();
     }
 }
@@ -1,29 +1,72 @@
 package com.example.moviediary;
 
 import android.content.Intent;
-import android.database.Cursor;
+import android.content.pm.ApplicationInfo;
 import android.os.Bundle;
+import android.os.CancellationSignal;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.Toast;
 
 import androidx.activity.OnBackPressedCallback;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.SearchView;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.bumptech.glide.util.FixedPreloadSizeProvider;
 import com.example.moviediary.adapter.MovieAdapter;
-import com.example.moviediary.database.DatabaseManager;
+import com.example.moviediary.database.ChangeBus;
+import com.example.moviediary.database.MovieCache;
+import com.example.moviediary.model.MoviePage;
+import com.example.moviediary.model.MovieRow;
+import com.example.moviediary.poster.PosterDownloader;
+import com.example.moviediary.poster.Posters;
+import com.example.moviediary.repository.MovieRepository;
+import com.example.moviediary.repository.SearchPipeline;
+
+import java.util.List;
 
 public class HomeActivity extends AppCompatActivity {
 
+    // 2 columns show ~3 rows per screen: one page covers several screens of flinging
+    private static final int GRID_COLUMNS = 2;
+    private static final int PAGE_SIZE = 24;
+    // Load the next page when fewer than this many cards are left below the screen
+    private static final int PREFETCH_DISTANCE = 8;
+    // Fetch and decode the posters of the next rows (about a screen) ahead of the scroll
+    private static final int PRELOAD_CARDS = GRID_COLUMNS * 3;
+    // Search while typing once the user paused this long
+    private static final long SEARCH_DEBOUNCE_MS = SearchPipeline.DEFAULT_DEBOUNCE_MS;
+
     private RecyclerView recyclerView;
+    private GridLayoutManager layoutManager;
     private MovieAdapter adapter;
 
-    private DatabaseManager dbManager;
+    private MovieRepository repository;
+    private PosterDownloader posterDownloader;
+    private Posters.Size posterSize;
+    private SearchPipeline searchPipeline;
     private SessionManager sessionManager;
 
+    // Only the latest list request may reach the adapter (search vs. reload races)
+    private int listRequestId = 0;
+    // Page read of the latest list request, cancelled when another list replaces it
+    private CancellationSignal pageSignal;
+
+    // Paging state of the list currently shown
+    private String activeQuery = null; // null = home list
+    private MoviePage.Key nextKey = null;
+    private boolean loadingPage = false;
+
+    // User the list was loaded for (-1 = logged out), and whether a change made it stale
+    private int shownUserId = -1;
+    private boolean reloadPending = false;
+
     private SearchView searchView;
 
     @Override
@@ -37,11 +80,22 @@ public class HomeActivity extends AppCompatActivity {
             getSupportActionBar().setTitle("MovieDiary");
         }
 
-        dbManager = new DatabaseManager(this);
-        dbManager.open();
-
+        repository = new MovieRepository(this);
         setupRecyclerView();
-        loadMovies();
+        // First, before anything that could reach DatabaseManager: the first frame must not
+        // wait for the database to open (or migrate)
+        boolean fromSnapshot = showHomeSnapshot();
+
+        posterDownloader = PosterDownloader.getInstance(this);
+        searchPipeline = new SearchPipeline(repository, PAGE_SIZE, SEARCH_DEBOUNCE_MS, this::showSearchResults);
+        repository.observeChanges(this::onDataChanged);
+
+        if (fromSnapshot) {
+            // Reconcile the grid drawn from the snapshot with the database, in place
+            refreshLoadedRows();
+        } else {
+            loadMovies();
+        }
 
         setupBackPressBehavior();
     }
@@ -66,7 +120,24 @@ public class HomeActivity extends AppCompatActivity {
     protected void onResume() {
         super.onResume();
         invalidateOptionsMenu(); // refresh menu visibility
-        loadMovies();            // refresh list (personalization + watched/wishlist UI)
+
+        // Diary changes made on other screens already show on their cards (onDataChanged), but they
+        // also re-rank the user's genres: the loaded rows are reloaded in their new order, as for
+        // another user (login / logout) or a catalog / profile change.
+        // The first onResume after onCreate finds the list loading already and reloads nothing.
+        if (reloadPending || currentUserId() != shownUserId) {
+            refreshLoadedRows();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // The next cold start draws the grid as it is now
+        // (not an order a diary change made stale)
+        if (activeQuery == null && !loadingPage && !reloadPending && adapter.getItemCount() > 0) {
+            repository.saveHomeSnapshot(shownUserId, adapter.getCurrentList());
+        }
     }
 
     @Override
@@ -79,6 +150,11 @@ public class HomeActivity extends AppCompatActivity {
         if (profile != null) profile.setVisible(loggedIn);
         if (logout != null) logout.setVisible(loggedIn);
 
+        MenuItem debugStats = menu.findItem(R.id.action_debug_stats);
+        if (debugStats != null) {
+            debugStats.setVisible((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0);
+        }
+
         return super.onPrepareOptionsMenu(menu);
     }
 
@@ -96,6 +172,11 @@ public class HomeActivity extends AppCompatActivity {
             return true;
         }
 
+        if (id == R.id.action_debug_stats) {
+            open(DebugStatsActivity.class);
+            return true;
+        }
+
         if (id == R.id.action_logout) {
             sessionManager.logoutUser();
             Toast.makeText(this, "Logged out successfully", Toast.LENGTH_SHORT).show();
@@ -111,8 +192,29 @@ public class HomeActivity extends AppCompatActivity {
 
     private void setupRecyclerView() {
         recyclerView = findViewById(R.id.recycler_view);
-        recyclerView.setLayoutManager(new GridLayoutManager(this, 2));
+        layoutManager = new GridLayoutManager(this, GRID_COLUMNS);
+        recyclerView.setLayoutManager(layoutManager);
         recyclerView.setHasFixedSize(true);
+
+        posterSize = Posters.cardSize(this, GRID_COLUMNS);
+        adapter = new MovieAdapter(MovieCache.getInstance(), posterSize);
+        recyclerView.setAdapter(adapter);
+
+        RequestManager glide = Glide.with(this);
+        recyclerView.addOnScrollListener(new RecyclerViewPreloader<MovieRow>(glide, adapter.preloadModelProvider(glide),
+                new FixedPreloadSizeProvider<>(posterSize.width, posterSize.height), PRELOAD_CARDS));
+
+        // Load pages on demand while scrolling down
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                if (dy <= 0) return;
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
     }
 
     private void setupSearchView() {
@@ -123,16 +225,17 @@ public class HomeActivity extends AppCompatActivity {
         searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String query) {
-                performSearch(query);
+                searchPipeline.submitNow(query);
                 return true;
             }
 
             @Override
             public boolean onQueryTextChange(String newText) {
                 if (newText == null || newText.trim().isEmpty()) {
-                    loadMovies();
+                    if (activeQuery != null) loadMovies();
+                    else searchPipeline.cancel();
                 } else {
-                    performSearch(newText.trim());
+                    searchPipeline.submit(newText);
                 }
                 return true;
             }
@@ -144,43 +247,139 @@ public class HomeActivity extends AppCompatActivity {
         });
     }
 
-    private void performSearch(String query) {
-        Cursor cursor = dbManager.searchMovies(query);
-
-        // Safety: if user searches before adapter is initialized
-        if (adapter == null) {
-            adapter = new MovieAdapter(cursor);
-            recyclerView.setAdapter(adapter);
-        } else {
-            adapter.swapCursor(cursor);
-        }
-
-        if (cursor == null || cursor.getCount() == 0) {
+    // Latest search of the pipeline: replaces the list, next pages continue from its key
+    private void showSearchResults(String query, MoviePage page, boolean submitted) {
+        newListRequest(); // drop list loads still in flight
+        activeQuery = query;
+        loadingPage = false;
+        nextKey = page.getNext();
+        adapter.setRows(page.getRows());
+        recyclerView.scrollToPosition(0);
+
+        // Typing updates the grid silently; the search button also reports the count
+        if (!submitted) return;
+        if (page.getRows().isEmpty()) {
             Toast.makeText(this, "No movies found for: " + query, Toast.LENGTH_SHORT).show();
         } else {
-            Toast.makeText(this, "Found " + cursor.getCount() + " movies", Toast.LENGTH_SHORT).show();
+            String count = page.getRows().size() + (page.getNext() == null ? "" : "+");
+            Toast.makeText(this, "Found " + count + " movies", Toast.LENGTH_SHORT).show();
         }
     }
 
     private void loadMovies() {
-        Cursor cursor;
+        searchPipeline.cancel();
+        activeQuery = null;
+        loadFirstPage(PAGE_SIZE, true);
+    }
 
-        if (sessionManager.isLoggedIn()) {
-            int userId = sessionManager.getUserId();
-            String prefs = dbManager.getUserPreferences(userId); // ex: "Comedy,Drama,Sci-Fi"
-            cursor = dbManager.getMoviesForHomePersonalized(userId, prefs);
-        } else {
-            cursor = dbManager.getAllMovies();
+    private void onDataChanged(ChangeBus.Change change) {
+        switch (change.getType()) {
+            case DIARY_ROW:
+                if (change.getUserId() != shownUserId) break;
+                if (loadingPage) {
+                    // The page in flight may predate the change
+                    reloadPending = true;
+                } else if (activeQuery == null) {
+                    // (search results carry no diary badges, nor a diary-dependent order)
+                    adapter.updateDiaryState(change.getMovieId(), change.getStatus(), change.getRating());
+                    // The row moved the user's genre ranks (GenreAffinity): the grid order and
+                    // nextKey are stale until the loaded rows are reloaded
+                    reloadPending = true;
+                }
+                break;
+            case PROFILE:
+                // Preferences decide the order of the grid
+                if (change.getUserId() == shownUserId) reloadPending = true;
+                break;
+            case CATALOG:
+                // Cached searches miss the new movies
+                searchPipeline.clearRecent();
+                reloadPending = true;
+                break;
         }
+    }
+
+    // Draws the home grid saved at the last onStop() of this user; false when there is none
+    private boolean showHomeSnapshot() {
+        List<MovieRow> rows = repository.readHomeSnapshot(currentUserId());
+        if (rows == null || rows.isEmpty()) return false;
+        adapter.setRows(rows);
+        return true;
+    }
+
+    // Reload the rows already loaded in one query, keep the scroll position
+    // and let the diff rebind only the cards that changed
+    private void refreshLoadedRows() {
+        loadFirstPage(Math.max(PAGE_SIZE, adapter.getItemCount()), false);
+    }
 
-        if (adapter == null) {
-            adapter = new MovieAdapter(cursor);
-            recyclerView.setAdapter(adapter);
+    private void loadFirstPage(int limit, boolean newList) {
+        int requestId = newListRequest();
+        nextKey = null;
+        loadingPage = true;
+        shownUserId = currentUserId();
+        reloadPending = false;
+        // Keep this user's posters on the device (no-op when already done for them)
+        posterDownloader.fill(shownUserId, posterSize, Posters.thumbSize(this));
+
+        requestPage(null, limit, page -> {
+            if (requestId != listRequestId) return;
+            loadingPage = false;
+            if (page == null) {
+                // Failed: keep what is shown, try again on the next onResume
+                reloadPending = true;
+                return;
+            }
+            nextKey = page.getNext();
+            adapter.setRows(page.getRows());
+            if (newList) recyclerView.scrollToPosition(0);
+        });
+    }
+
+    private void loadNextPage() {
+        if (loadingPage) return;
+        if (reloadPending) {
+            // nextKey was read against the old ranks: continuing from it skips or repeats rows
+            refreshLoadedRows();
+            return;
+        }
+        if (nextKey == null) return;
+
+        int requestId = listRequestId;
+        loadingPage = true;
+
+        requestPage(nextKey, PAGE_SIZE, page -> {
+            if (requestId != listRequestId) return;
+            loadingPage = false;
+            // Failed: nextKey is kept, the next scroll asks again
+            if (page == null) return;
+            nextKey = page.getNext();
+            adapter.appendRows(page.getRows());
+        });
+    }
+
+    // Results of the previous list request are dropped, its page read cancelled if still queued
+    private int newListRequest() {
+        if (pageSignal != null) {
+            pageSignal.cancel();
+            pageSignal = null;
+        }
+        return ++listRequestId;
+    }
+
+    private void requestPage(MoviePage.Key after, int limit, MovieRepository.Callback<MoviePage> callback) {
+        if (pageSignal == null) pageSignal = new CancellationSignal();
+        if (activeQuery == null) {
+            repository.getHomePage(currentUserId(), after, limit, pageSignal, callback);
         } else {
-            adapter.swapCursor(cursor);
+            repository.searchPage(activeQuery, after, limit, pageSignal, callback);
         }
     }
 
+    private int currentUserId() {
+        return sessionManager.isLoggedIn() ? sessionManager.getUserId() : -1;
+    }
+
     private void setupBackPressBehavior() {
         getOnBackPressedDispatcher().addCallback(this, new OnBackPressedCallback(true) {
             @Override
@@ -202,6 +401,7 @@ public class HomeActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (dbManager != null) dbManager.close();
+        if (searchPipeline != null) searchPipeline.cancel();
+        if (repository != null) repository.close();
     }
 }
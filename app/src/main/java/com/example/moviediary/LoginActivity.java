@@ -10,14 +10,14 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.example.moviediary.database.DatabaseManager;
 import com.example.moviediary.model.User;
+import com.example.moviediary.repository.MovieRepository;
 
 public class LoginActivity extends AppCompatActivity {
     private EditText etEmail, etPassword;
     private Button btnLogin;
     private TextView tvRegister;
-    private DatabaseManager dbManager;
+    private MovieRepository repository;
     private SessionManager sessionManager;
 
     @Override
@@ -30,9 +30,8 @@ public class LoginActivity extends AppCompatActivity {
             getSupportActionBar().hide();
         }
 
-        // Initialize database manager
-        dbManager = new DatabaseManager(this);
-        dbManager.open();
+        // Initialize repository (database work runs off the UI thread)
+        repository = new MovieRepository(this);
 
         // Initialize views
         etEmail = findViewById(R.id.et_email);
@@ -70,8 +69,13 @@ public class LoginActivity extends AppCompatActivity {
             return;
         }
 
-        // Check user credentials
-        User user = dbManager.getUser(email, password);
+        // Check user credentials (password hashing runs off the UI thread)
+        btnLogin.setEnabled(false);
+        repository.login(email, password, this::onLoginResult);
+    }
+
+    private void onLoginResult(User user) {
+        btnLogin.setEnabled(true);
         if (user != null) {
             // Login successful - SAVE SESSION
             sessionManager.createLoginSession(user.getId(), user.getUsername(), user.getEmail());
@@ -97,8 +101,6 @@ public class LoginActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (dbManager != null) {
-            dbManager.close();
-        }
+        if (repository != null) repository.close();
     }
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 package com.example.moviediary;
 
-import android.database.Cursor;
+import android.content.Intent;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
@@ -14,13 +14,15 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 
 import com.bumptech.glide.Glide;
-import com.example.moviediary.database.DatabaseHelper;
-import com.example.moviediary.database.DatabaseManager;
-import com.example.moviediary.model.Movie;
+import com.example.moviediary.model.DiaryEntry;
+import com.example.moviediary.model.MovieRow;
+import com.example.moviediary.repository.MovieRepository;
+
+import java.util.List;
 
 public class MovieDetailsActivity extends AppCompatActivity {
 
-    private DatabaseManager dbManager;
+    private MovieRepository repository;
     private SessionManager sessionManager;
 
     private int userId;
@@ -31,6 +33,7 @@ public class MovieDetailsActivity extends AppCompatActivity {
     private Button btnWishlist, btnWatched;
     private LinearLayout ratingSection;
     private RatingBar ratingBar;
+    private LinearLayout relatedSection, relatedList;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -52,8 +55,7 @@ public class MovieDetailsActivity extends AppCompatActivity {
             return;
         }
 
-        dbManager = new DatabaseManager(this);
-        dbManager.open();
+        repository = new MovieRepository(this);
 
         ImageView imgPoster = findViewById(R.id.imgPoster);
         TextView tvTitle = findViewById(R.id.tvTitle);
@@ -65,29 +67,35 @@ public class MovieDetailsActivity extends AppCompatActivity {
         btnWatched = findViewById(R.id.btnWatched);
         ratingSection = findViewById(R.id.ratingSection);
         ratingBar = findViewById(R.id.ratingBar);
+        relatedSection = findViewById(R.id.relatedSection);
+        relatedList = findViewById(R.id.relatedList);
 
         // Load movie
-        Movie movie = dbManager.getMovieById(movieId);
-        if (movie == null) {
-            Toast.makeText(this, "Movie not found", Toast.LENGTH_SHORT).show();
-            finish();
-            return;
-        }
+        repository.getMovie(movieId, movie -> {
+            if (movie == null) {
+                Toast.makeText(this, "Movie not found", Toast.LENGTH_SHORT).show();
+                finish();
+                return;
+            }
 
-        tvTitle.setText(movie.getTitle());
-        tvGenre.setText(movie.getGenre());
-        tvYear.setText(String.valueOf(movie.getReleaseYear()));
-        tvDescription.setText(movie.getDescription());
+            tvTitle.setText(movie.getTitle());
+            tvGenre.setText(movie.getGenre());
+            tvYear.setText(String.valueOf(movie.getReleaseYear()));
+            tvDescription.setText(movie.getDescription());
 
-        Glide.with(this)
-                .load(movie.getPosterUrl())
-                .placeholder(R.drawable.ic_movie_placeholder)
-                .error(R.drawable.ic_movie_placeholder)
-                .into(imgPoster);
+            Glide.with(this)
+                    .load(movie.getPosterUrl())
+                    .placeholder(R.drawable.ic_movie_placeholder)
+                    .error(R.drawable.ic_movie_placeholder)
+                    .into(imgPoster);
+        });
 
         // Load existing status/rating from DB
         loadDiaryStateAndUpdateUI();
 
+        // "Also watched" by people who watched this one
+        repository.getRelatedMovies(movieId, this::showRelatedMovies);
+
         // Wishlist button: toggle add/remove wishlist
         btnWishlist.setOnClickListener(v -> {
             if (userId == -1) {
@@ -97,16 +105,11 @@ public class MovieDetailsActivity extends AppCompatActivity {
 
             if ("WISHLIST".equals(currentStatus)) {
                 // remove from diary
-                dbManager.removeFromDiary(userId, movieId);
-                currentStatus = null;
-                ratingBar.setRating(0);
+                repository.removeFromDiary(userId, movieId, ok -> loadDiaryStateAndUpdateUI());
             } else {
                 // set wishlist (rating must be 0)
-                currentStatus = "WISHLIST";
-                dbManager.upsertDiary(userId, movieId, currentStatus, 0);
-                ratingBar.setRating(0);
+                repository.upsertDiary(userId, movieId, "WISHLIST", 0, ok -> loadDiaryStateAndUpdateUI());
             }
-            loadDiaryStateAndUpdateUI();
         });
 
         // Watched button: toggle add/remove watched
@@ -118,16 +121,12 @@ public class MovieDetailsActivity extends AppCompatActivity {
 
             if ("WATCHED".equals(currentStatus)) {
                 // remove from diary
-                dbManager.removeFromDiary(userId, movieId);
-                currentStatus = null;
-                ratingBar.setRating(0);
+                repository.removeFromDiary(userId, movieId, ok -> loadDiaryStateAndUpdateUI());
             } else {
                 // set watched (keep rating current)
-                currentStatus = "WATCHED";
                 int rating = (int) ratingBar.getRating();
-                dbManager.upsertDiary(userId, movieId, currentStatus, rating);
+                repository.upsertDiary(userId, movieId, "WATCHED", rating, ok -> loadDiaryStateAndUpdateUI());
             }
-            loadDiaryStateAndUpdateUI();
         });
 
         // Auto-save rating ONLY when watched
@@ -136,8 +135,9 @@ public class MovieDetailsActivity extends AppCompatActivity {
             if (userId == -1) return;
 
             if ("WATCHED".equals(currentStatus)) {
-                dbManager.upsertDiary(userId, movieId, "WATCHED", (int) rating);
-                Toast.makeText(this, "Rating updated", Toast.LENGTH_SHORT).show();
+                repository.upsertDiary(userId, movieId, "WATCHED", (int) rating, ok ->
+                        Toast.makeText(this, Boolean.TRUE.equals(ok) ? "Rating updated" : "Rating not saved",
+                                Toast.LENGTH_SHORT).show());
             } else {
                 // Not watched -> reset rating and hide section
                 rb.setRating(0);
@@ -146,20 +146,17 @@ public class MovieDetailsActivity extends AppCompatActivity {
     }
 
     private void loadDiaryStateAndUpdateUI() {
-        // default
-        currentStatus = null;
-        int savedRating = 0;
-
-        if (userId != -1) {
-            Cursor c = dbManager.getDiaryRow(userId, movieId);
-            if (c != null && c.moveToFirst()) {
-                currentStatus = c.getString(c.getColumnIndexOrThrow(DatabaseHelper.COLUMN_STATUS));
-                savedRating = c.getInt(c.getColumnIndexOrThrow(DatabaseHelper.COLUMN_RATING));
-                c.close();
-            } else {
-                if (c != null) c.close();
-            }
+        if (userId == -1) {
+            applyDiaryState(null);
+        } else {
+            repository.getDiaryEntry(userId, movieId, this::applyDiaryState);
         }
+    }
+
+    private void applyDiaryState(DiaryEntry entry) {
+        // default
+        currentStatus = entry == null ? null : entry.getStatus();
+        int savedRating = entry == null ? 0 : entry.getRating();
 
         // Update buttons UI (selected color + text)
         updateButtonsUI();
@@ -174,6 +171,25 @@ public class MovieDetailsActivity extends AppCompatActivity {
         }
     }
 
+    private void showRelatedMovies(List<MovieRow> related) {
+        relatedList.removeAllViews();
+        if (related == null || related.isEmpty()) {
+            relatedSection.setVisibility(View.GONE);
+            return;
+        }
+        for (MovieRow row : related) {
+            TextView item = (TextView) getLayoutInflater().inflate(R.layout.item_related_movie, relatedList, false);
+            item.setText(row.getTitle());
+            item.setOnClickListener(v -> {
+                Intent intent = new Intent(this, MovieDetailsActivity.class);
+                intent.putExtra("movie_id", row.getId());
+                startActivity(intent);
+            });
+            relatedList.addView(item);
+        }
+        relatedSection.setVisibility(View.VISIBLE);
+    }
+
     private void updateButtonsUI() {
         // reset styles
         setButtonSelected(btnWishlist, false);
@@ -210,6 +226,6 @@ public class MovieDetailsActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (dbManager != null) dbManager.close();
+        if (repository != null) repository.close();
     }
 }
@@ -1,7 +1,6 @@
 package com.example.moviediary;
 
 import android.content.Intent;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.widget.Toast;
 
@@ -10,11 +9,12 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.moviediary.adapter.DiaryAdapter;
-import com.example.moviediary.database.DatabaseManager;
+import com.example.moviediary.database.ChangeBus;
+import com.example.moviediary.repository.MovieRepository;
 
 public class MyDiaryActivity extends AppCompatActivity {
 
-    private DatabaseManager dbManager;
+    private MovieRepository repository;
     private SessionManager sessionManager;
 
     private int userId;
@@ -22,6 +22,9 @@ public class MyDiaryActivity extends AppCompatActivity {
     private DiaryAdapter wishlistAdapter;
     private DiaryAdapter watchedAdapter;
 
+    // A diary write happened since the lists were loaded
+    private boolean stale = false;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -42,8 +45,7 @@ public class MyDiaryActivity extends AppCompatActivity {
             return;
         }
 
-        dbManager = new DatabaseManager(this);
-        dbManager.open();
+        repository = new MovieRepository(this);
 
         RecyclerView rvWishlist = findViewById(R.id.rvWishlist);
         RecyclerView rvWatched = findViewById(R.id.rvWatched);
@@ -51,7 +53,7 @@ public class MyDiaryActivity extends AppCompatActivity {
         rvWishlist.setLayoutManager(new LinearLayoutManager(this));
         rvWatched.setLayoutManager(new LinearLayoutManager(this));
 
-        wishlistAdapter = new DiaryAdapter(null, false, new DiaryAdapter.Listener() {
+        wishlistAdapter = new DiaryAdapter(false, new DiaryAdapter.Listener() {
             @Override
             public void onOpenDetails(int movieId) {
                 openDetails(movieId);
@@ -59,13 +61,11 @@ public class MyDiaryActivity extends AppCompatActivity {
 
             @Override
             public void onRemove(int movieId) {
-                boolean ok = dbManager.removeFromDiary(userId, movieId);
-                if (ok) Toast.makeText(MyDiaryActivity.this, "Removed", Toast.LENGTH_SHORT).show();
-                refresh();
+                removeFromDiary(movieId);
             }
         });
 
-        watchedAdapter = new DiaryAdapter(null, true, new DiaryAdapter.Listener() {
+        watchedAdapter = new DiaryAdapter(true, new DiaryAdapter.Listener() {
             @Override
             public void onOpenDetails(int movieId) {
                 openDetails(movieId);
@@ -73,15 +73,16 @@ public class MyDiaryActivity extends AppCompatActivity {
 
             @Override
             public void onRemove(int movieId) {
-                boolean ok = dbManager.removeFromDiary(userId, movieId);
-                if (ok) Toast.makeText(MyDiaryActivity.this, "Removed", Toast.LENGTH_SHORT).show();
-                refresh();
+                removeFromDiary(movieId);
             }
         });
 
         rvWishlist.setAdapter(wishlistAdapter);
         rvWatched.setAdapter(watchedAdapter);
 
+        repository.observeChanges(change -> {
+            if (change.getType() == ChangeBus.Type.DIARY_ROW && change.getUserId() == userId) stale = true;
+        });
         refresh();
     }
 
@@ -91,17 +92,29 @@ public class MyDiaryActivity extends AppCompatActivity {
         startActivity(i);
     }
 
+    private void removeFromDiary(int movieId) {
+        repository.removeFromDiary(userId, movieId, ok -> {
+            if (Boolean.TRUE.equals(ok)) Toast.makeText(this, "Removed", Toast.LENGTH_SHORT).show();
+            refresh();
+        });
+    }
+
     private void refresh() {
-        Cursor w1 = dbManager.getUserWishlistWithRating(userId);
-        Cursor w2 = dbManager.getUserWatchedWithRating(userId);
-        wishlistAdapter.swapCursor(w1);
-        watchedAdapter.swapCursor(w2);
+        stale = false;
+        // (null: the read failed, keep the lists as they are)
+        repository.getWishlist(userId, rows -> {
+            if (rows != null) wishlistAdapter.submitList(rows);
+        });
+        repository.getWatched(userId, rows -> {
+            if (rows != null) watchedAdapter.submitList(rows);
+        });
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        if (dbManager != null && userId != -1) refresh();
+        // Back from details: reload only if the diary changed there
+        if (repository != null && stale) refresh();
     }
 
     @Override
@@ -113,6 +126,6 @@ public class MyDiaryActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (dbManager != null) dbManager.close();
+        if (repository != null) repository.close();
     }
 }
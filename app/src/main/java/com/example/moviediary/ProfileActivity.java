@@ -9,14 +9,18 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.example.moviediary.database.DatabaseManager;
+import com.example.moviediary.database.ChangeBus;
+import com.example.moviediary.repository.MovieRepository;
 
 public class ProfileActivity extends AppCompatActivity {
 
     private TextView tvUsername, tvEmail, tvPreferences;
     private Button btnBackHome, btnEditProfile, btnLogout;
     private SessionManager sessionManager;
-    private DatabaseManager dbManager;
+    private MovieRepository repository;
+
+    // Set by a PROFILE change: the shown data is out of date
+    private boolean profileChanged = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -47,10 +51,14 @@ public class ProfileActivity extends AppCompatActivity {
         btnLogout = findViewById(R.id.btn_logout);
 
         // DB
-        dbManager = new DatabaseManager(this);
-        dbManager.open();
+        repository = new MovieRepository(this);
 
-        // Load initial data
+        // Load initial data, again only after a profile change (EditProfileActivity)
+        repository.observeChanges(change -> {
+            if (change.getType() == ChangeBus.Type.PROFILE && change.getUserId() == sessionManager.getUserId()) {
+                profileChanged = true;
+            }
+        });
         loadUserData();
 
         // Back home
@@ -70,12 +78,14 @@ public class ProfileActivity extends AppCompatActivity {
     protected void onResume() {
         super.onResume();
         // refresh UI after editing profile
-        if (sessionManager != null && sessionManager.isLoggedIn()) {
+        if (profileChanged && sessionManager.isLoggedIn()) {
             loadUserData();
         }
     }
 
     private void loadUserData() {
+        profileChanged = false;
+
         // from session
         String username = sessionManager.getUsername();
         String email = sessionManager.getEmail();
@@ -85,14 +95,14 @@ public class ProfileActivity extends AppCompatActivity {
         tvEmail.setText(email != null ? email : "");
 
         // preferences from DB
-        String prefs = dbManager.getUserPreferences(userId);
-
-        if (prefs == null || prefs.trim().isEmpty()) {
-            tvPreferences.setText("No preferences set yet");
-        } else {
-            // Show nicely (replace commas with ", ")
-            tvPreferences.setText(prefs.replace(",", ", "));
-        }
+        repository.getUserPreferences(userId, prefs -> {
+            if (prefs == null || prefs.trim().isEmpty()) {
+                tvPreferences.setText("No preferences set yet");
+            } else {
+                // Show nicely (replace commas with ", ")
+                tvPreferences.setText(prefs.replace(",", ", "));
+            }
+        });
     }
 
     private void goBackToHome() {
@@ -115,8 +125,6 @@ public class ProfileActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (dbManager != null) {
-            dbManager.close();
-        }
+        if (repository != null) repository.close();
     }
 }
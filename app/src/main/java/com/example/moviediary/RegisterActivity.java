@@ -10,13 +10,13 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.example.moviediary.database.DatabaseManager;
 import com.example.moviediary.model.User;
+import com.example.moviediary.repository.MovieRepository;
 
 public class RegisterActivity extends AppCompatActivity {
     private EditText etUsername, etEmail, etPassword;
     private Button btnRegister;
-    private DatabaseManager dbManager;
+    private MovieRepository repository;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -28,9 +28,8 @@ public class RegisterActivity extends AppCompatActivity {
             getSupportActionBar().hide();
         }
 
-        // Initialize database manager
-        dbManager = new DatabaseManager(this);
-        dbManager.open();
+        // Initialize repository (database work runs off the UI thread)
+        repository = new MovieRepository(this);
 
         // Initialize views
         etUsername = findViewById(R.id.et_username);
@@ -78,23 +77,19 @@ public class RegisterActivity extends AppCompatActivity {
             return;
         }
 
-        // Check if username already exists
-        if (dbManager.isUsernameExists(username)) {
-            Toast.makeText(this, "Username already exists", Toast.LENGTH_SHORT).show();
-            return;
-        }
-
-        // Check if email already exists
-        if (dbManager.isEmailExists(email)) {
-            Toast.makeText(this, "Email already exists", Toast.LENGTH_SHORT).show();
-            return;
-        }
+        // Uniqueness checks + insert run off the UI thread
+        btnRegister.setEnabled(false);
+        repository.register(new User(username, email, password), this::onRegisterResult);
+    }
 
-        // Create new user
-        User user = new User(username, email, password);
-        boolean success = dbManager.addUser(user);
+    private void onRegisterResult(MovieRepository.AccountResult result) {
+        btnRegister.setEnabled(true);
 
-        if (success) {
+        if (result == MovieRepository.AccountResult.USERNAME_TAKEN) {
+            Toast.makeText(this, "Username already exists", Toast.LENGTH_SHORT).show();
+        } else if (result == MovieRepository.AccountResult.EMAIL_TAKEN) {
+            Toast.makeText(this, "Email already exists", Toast.LENGTH_SHORT).show();
+        } else if (result == MovieRepository.AccountResult.SUCCESS) {
             Toast.makeText(this, "Registration successful!", Toast.LENGTH_SHORT).show();
 
             // Go back to login activity
@@ -116,8 +111,6 @@ public class RegisterActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (dbManager != null) {
-            dbManager.close();
-        }
+        if (repository != null) repository.close();
     }
 }
\ No newline at end of file
@@ -1,6 +1,5 @@
 package com.example.moviediary.adapter;
 
-import android.database.Cursor;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,27 +10,59 @@ import android.widget.RatingBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.example.moviediary.R;
-import com.example.moviediary.database.DatabaseHelper;
+import com.example.moviediary.model.MovieRow;
+import com.example.moviediary.poster.Posters;
 
-public class DiaryAdapter extends RecyclerView.Adapter<DiaryAdapter.ViewHolder> {
+import java.util.Objects;
+
+/**
+ * Wishlist / watched list. submitList() with a new snapshot: removed or re-rated movies
+ * are animated individually, a rating change only rebinds the rating bar.
+ * Like MovieAdapter: per-holder listeners, unchanged views skipped, so rebinding the row a
+ * holder shows allocates nothing; another movie costs its year text and poster request.
+ * A poster that failed to load is requested again on the next bind (PosterRetry).
+ */
+public class DiaryAdapter extends ListAdapter<MovieRow, DiaryAdapter.ViewHolder> {
 
     public interface Listener {
         void onOpenDetails(int movieId);
         void onRemove(int movieId);
     }
 
-    private static final String COL_USER_RATING_ALIAS = "user_rating";
+    // Change payload: only the user rating differs (rebind in place, no change animation)
+    private static final Object PAYLOAD_RATING = new Object();
+
+    private static final DiffUtil.ItemCallback<MovieRow> DIFF = new DiffUtil.ItemCallback<MovieRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull MovieRow oldRow, @NonNull MovieRow newRow) {
+            return oldRow.getId() == newRow.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MovieRow oldRow, @NonNull MovieRow newRow) {
+            return oldRow.equals(newRow);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull MovieRow oldRow, @NonNull MovieRow newRow) {
+            return oldRow.sameMovieAs(newRow) ? PAYLOAD_RATING : null;
+        }
+    };
 
-    private Cursor cursor;
     private final boolean showRating; // true for watched list
     private final Listener listener;
 
-    public DiaryAdapter(Cursor cursor, boolean showRating, Listener listener) {
-        this.cursor = cursor;
+    // Size posters are decoded at (item_diary_movie.xml), known once the first holder exists
+    private Posters.Size thumbSize;
+
+    public DiaryAdapter(boolean showRating, Listener listener) {
+        super(DIFF);
         this.showRating = showRating;
         this.listener = listener;
     }
@@ -41,57 +72,56 @@ public class DiaryAdapter extends RecyclerView.Adapter<DiaryAdapter.ViewHolder>
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View v = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_diary_movie, parent, false);
-        return new ViewHolder(v);
+        ViewHolder h = new ViewHolder(v);
+
+        // One listener per holder, reads the row bound last
+        h.itemView.setOnClickListener(view -> {
+            if (h.bound != null) listener.onOpenDetails(h.bound.getId());
+        });
+        h.btnRemove.setOnClickListener(view -> {
+            if (h.bound != null) listener.onRemove(h.bound.getId());
+        });
+        return h;
     }
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder h, int position) {
-        if (cursor == null || !cursor.moveToPosition(position)) return;
-
-        int movieId = cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_ID));
-        String title = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_TITLE));
-        String genre = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_GENRE));
-        int year = cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_RELEASE_YEAR));
-        String posterUrl = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_POSTER_URL));
-
-        int rating = getIntSafely(cursor, COL_USER_RATING_ALIAS, 0);
-
-        h.tvTitle.setText(title);
-        h.tvGenre.setText(genre);
-        h.tvYear.setText(String.valueOf(year));
-
-        Glide.with(h.itemView.getContext())
-                .load(posterUrl)
-                .placeholder(R.drawable.ic_movie_placeholder)
-                .error(R.drawable.ic_movie_placeholder)
-                .into(h.imgPoster);
-
-        if (showRating) {
-            h.ratingContainer.setVisibility(View.VISIBLE);
-            h.ratingBarSmall.setRating(rating);
-        } else {
-            h.ratingContainer.setVisibility(View.GONE);
+        MovieRow row = getItem(position);
+        MovieRow old = h.bound;
+        h.bound = row;
+
+        if (old == null || !old.sameMovieAs(row)) {
+            h.tvTitle.setText(row.getTitle());
+            h.tvGenre.setText(row.getGenre());
+            h.tvYear.setText(String.valueOf(row.getReleaseYear()));
+
+            if (old == null || h.poster.failed || !Objects.equals(old.getPosterUrl(), row.getPosterUrl())) {
+                loadPoster(h, row);
+            }
+        } else if (h.poster.failed) {
+            loadPoster(h, row);
         }
 
-        h.itemView.setOnClickListener(v -> listener.onOpenDetails(movieId));
-        h.btnRemove.setOnClickListener(v -> listener.onRemove(movieId));
-    }
-
-    @Override
-    public int getItemCount() {
-        return cursor == null ? 0 : cursor.getCount();
+        if (old == null || old.getUserRating() != row.getUserRating()) {
+            if (showRating) {
+                h.ratingContainer.setVisibility(View.VISIBLE);
+                h.ratingBarSmall.setRating(row.getUserRating());
+            } else {
+                h.ratingContainer.setVisibility(View.GONE);
+            }
+        }
     }
 
-    public void swapCursor(Cursor newCursor) {
-        if (cursor != null) cursor.close();
-        cursor = newCursor;
-        notifyDataSetChanged();
+    private void loadPoster(ViewHolder h, MovieRow row) {
+        h.poster.failed = false;
+        Posters.display(Glide.with(h.itemView.getContext()), row.getPosterUrl(), thumbSize(h))
+                .addListener(h.poster)
+                .into(h.imgPoster);
     }
 
-    private int getIntSafely(Cursor c, String columnName, int defaultValue) {
-        int idx = c.getColumnIndex(columnName);
-        if (idx == -1 || c.isNull(idx)) return defaultValue;
-        return c.getInt(idx);
+    private Posters.Size thumbSize(ViewHolder h) {
+        if (thumbSize == null) thumbSize = Posters.thumbSize(h.itemView.getContext());
+        return thumbSize;
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
@@ -103,6 +133,11 @@ public class DiaryAdapter extends RecyclerView.Adapter<DiaryAdapter.ViewHolder>
         final RatingBar ratingBarSmall;
         final Button btnRemove;
 
+        // Row currently shown, compared with the next one to skip unchanged views
+        MovieRow bound;
+        // Whether its poster failed to load (then requested again on the next bind)
+        final PosterRetry poster = new PosterRetry();
+
         ViewHolder(@NonNull View itemView) {
             super(itemView);
             imgPoster = itemView.findViewById(R.id.imgPoster);
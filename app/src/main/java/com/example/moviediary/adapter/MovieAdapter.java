@@ -1,7 +1,6 @@
 package com.example.moviediary.adapter;
 
 import android.content.Intent;
-import android.database.Cursor;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,25 +9,85 @@ import android.widget.RatingBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
 import com.example.moviediary.MovieDetailsActivity;
 import com.example.moviediary.R;
-import com.example.moviediary.database.DatabaseHelper;
+import com.example.moviediary.database.MovieCache;
+import com.example.moviediary.model.MovieRow;
+import com.example.moviediary.poster.Posters;
 
-public class MovieAdapter extends RecyclerView.Adapter<MovieAdapter.MovieViewHolder> {
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 
-    private static final String COL_USER_STATUS_ALIAS = "user_status";
-    private static final String COL_USER_RATING_ALIAS = "user_rating";
+/**
+ * Movie grid. Rows arrive page by page (see HomeActivity): setRows() for the first page,
+ * appendRows() for the next ones.
+ *
+ * Each call submits a new immutable snapshot; ListAdapter diffs it against the shown one on
+ * a background thread and only rebinds what changed.
+ *
+ * Rows are already flat MovieRow objects, each holder has one click listener that reads the
+ * row bound to it, and a holder only writes the views whose values differ from the row it
+ * showed before (a diary-state change does not reload the poster, unless the last load of it
+ * failed: see PosterRetry). Rebinding a holder to the
+ * row it already shows (refreshed snapshot, scrolling back) allocates nothing. Binding another
+ * movie does: the year text, a poster request when the URL differs, and the Movie put in
+ * MovieCache, so tapping the card opens its details without a query.
+ *
+ * Posters are decoded at posterSize; preloadModelProvider() lets a RecyclerViewPreloader
+ * fetch the posters of the next cards with the same request, so they bind from memory.
+ */
+public class MovieAdapter extends ListAdapter<MovieRow, MovieAdapter.MovieViewHolder> {
 
     private static final String STATUS_WATCHED = "WATCHED";
     private static final String STATUS_WISHLIST = "WISHLIST";
 
-    private Cursor cursor;
+    // Change payload: only user_status / user_rating differ (rebind in place, no change animation)
+    private static final Object PAYLOAD_DIARY_STATE = new Object();
 
-    public MovieAdapter(Cursor cursor) {
-        this.cursor = cursor;
+    private static final DiffUtil.ItemCallback<MovieRow> DIFF = new DiffUtil.ItemCallback<MovieRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull MovieRow oldRow, @NonNull MovieRow newRow) {
+            return oldRow.getId() == newRow.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MovieRow oldRow, @NonNull MovieRow newRow) {
+            return oldRow.equals(newRow);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull MovieRow oldRow, @NonNull MovieRow newRow) {
+            return oldRow.sameMovieAs(newRow) ? PAYLOAD_DIARY_STATE : null;
+        }
+    };
+
+    // Last submitted snapshot (the displayed one may still be diffing)
+    private List<MovieRow> latest = Collections.emptyList();
+
+    // Bound movies are cached for MovieDetailsActivity (null: no warming)
+    private final MovieCache movieCache;
+
+    // Size posters are decoded at (null: size of the ImageView once laid out, no preloading)
+    private final Posters.Size posterSize;
+
+    public MovieAdapter() {
+        this(MovieCache.getInstance(), null);
+    }
+
+    public MovieAdapter(MovieCache movieCache, Posters.Size posterSize) {
+        super(DIFF);
+        this.movieCache = movieCache;
+        this.posterSize = posterSize;
     }
 
     @NonNull
@@ -36,35 +95,65 @@ public class MovieAdapter extends RecyclerView.Adapter<MovieAdapter.MovieViewHol
     public MovieViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.movie_card, parent, false);
-        return new MovieViewHolder(view);
+        MovieViewHolder holder = new MovieViewHolder(view);
+
+        // Click → Movie Details (one listener per holder, reads the row bound last)
+        view.setOnClickListener(v -> {
+            if (holder.bound == null) return;
+            Intent i = new Intent(v.getContext(), MovieDetailsActivity.class);
+            i.putExtra("movie_id", holder.bound.getId());
+            v.getContext().startActivity(i);
+        });
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull MovieViewHolder holder, int position) {
-        if (cursor == null || !cursor.moveToPosition(position)) return;
-
-        // Basic movie data
-        int movieId = cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_ID));
-        String title = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_TITLE));
-        String posterUrl = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_POSTER_URL));
-        String description = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_DESCRIPTION));
-        String genre = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_GENRE));
-        int releaseYear = cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_RELEASE_YEAR));
-
-        holder.movieTitle.setText(title);
-        holder.movieDescription.setText(description);
-        holder.movieGenre.setText(genre);
-        holder.movieYear.setText(String.valueOf(releaseYear));
-
-        Glide.with(holder.itemView.getContext())
-                .load(posterUrl)
-                .placeholder(R.drawable.ic_movie_placeholder)
-                .error(R.drawable.ic_movie_placeholder)
-                .into(holder.movieImage);
-
-        // User-specific state (only present when using the personalized home query)
-        String userStatus = getStringSafely(cursor, COL_USER_STATUS_ALIAS, null);
-        int userRating = getIntSafely(cursor, COL_USER_RATING_ALIAS, 0);
+        MovieRow row = getItem(position);
+        MovieRow old = holder.bound;
+        holder.bound = row;
+
+        if (old == null || !old.sameMovieAs(row)) {
+            bindMovie(holder, old, row);
+            if (movieCache != null) movieCache.warm(row);
+        } else if (holder.poster.failed) {
+            loadPoster(holder, row);
+        }
+        if (old == null || !old.sameDiaryStateAs(row)) {
+            bindDiaryState(holder, row);
+        }
+    }
+
+    private void bindMovie(MovieViewHolder holder, MovieRow old, MovieRow row) {
+        holder.movieTitle.setText(row.getTitle());
+        holder.movieDescription.setText(row.getDescription());
+        holder.movieGenre.setText(row.getGenre());
+        holder.movieYear.setText(String.valueOf(row.getReleaseYear()));
+
+        if (old == null || holder.poster.failed || !Objects.equals(old.getPosterUrl(), row.getPosterUrl())) {
+            loadPoster(holder, row);
+        }
+    }
+
+    private void loadPoster(MovieViewHolder holder, MovieRow row) {
+        holder.poster.failed = false;
+        RequestManager glide = Glide.with(holder.itemView.getContext());
+        if (posterSize != null) {
+            Posters.display(glide, row.getPosterUrl(), posterSize)
+                    .addListener(holder.poster)
+                    .into(holder.movieImage);
+        } else {
+            glide.load(row.getPosterUrl())
+                    .placeholder(R.drawable.ic_movie_placeholder)
+                    .error(R.drawable.ic_movie_placeholder)
+                    .addListener(holder.poster)
+                    .into(holder.movieImage);
+        }
+    }
+
+    // User-specific state: watched alpha + rating, wishlist icon
+    private void bindDiaryState(MovieViewHolder holder, MovieRow row) {
+        String userStatus = row.getUserStatus();
 
         // Reset recycled views
         holder.itemView.setAlpha(1f);
@@ -76,40 +165,71 @@ public class MovieAdapter extends RecyclerView.Adapter<MovieAdapter.MovieViewHol
         if (STATUS_WATCHED.equals(userStatus)) {
             holder.itemView.setAlpha(0.6f);
             holder.ratingBar.setVisibility(View.VISIBLE);
-            holder.ratingBar.setRating(userRating);
+            holder.ratingBar.setRating(row.getUserRating());
         } else if (STATUS_WISHLIST.equals(userStatus)) {
             holder.imgWishlist.setVisibility(View.VISIBLE);
         }
-
-        // Click → Movie Details
-        holder.itemView.setOnClickListener(v -> {
-            Intent i = new Intent(holder.itemView.getContext(), MovieDetailsActivity.class);
-            i.putExtra("movie_id", movieId);
-            holder.itemView.getContext().startActivity(i);
-        });
     }
 
-    @Override
-    public int getItemCount() {
-        return cursor == null ? 0 : cursor.getCount();
+    /**
+     * Replaces the list (first page, or the refreshed loaded range).
+     */
+    public void setRows(List<MovieRow> rows) {
+        latest = Collections.unmodifiableList(new ArrayList<>(rows));
+        submitList(latest);
     }
 
-    public void swapCursor(Cursor newCursor) {
-        if (cursor != null) cursor.close();
-        cursor = newCursor;
-        notifyDataSetChanged();
+    /**
+     * Adds the next page at the end of the list.
+     */
+    public void appendRows(List<MovieRow> page) {
+        List<MovieRow> next = new ArrayList<>(latest.size() + page.size());
+        next.addAll(latest);
+        next.addAll(page);
+        latest = Collections.unmodifiableList(next);
+        submitList(latest);
     }
 
-    private String getStringSafely(Cursor c, String columnName, String defaultValue) {
-        int idx = c.getColumnIndex(columnName);
-        if (idx == -1 || c.isNull(idx)) return defaultValue;
-        return c.getString(idx);
+    /**
+     * Shows a diary change without reloading: the card of movieId (if loaded) gets the new
+     * status (null = not in the diary) and rating, the diff rebinds only that card.
+     */
+    public void updateDiaryState(int movieId, String status, int rating) {
+        for (int i = 0; i < latest.size(); i++) {
+            MovieRow row = latest.get(i);
+            if (row.getId() != movieId) continue;
+
+            MovieRow updated = new MovieRow(row.getId(), row.getTitle(), row.getPosterUrl(), row.getDescription(),
+                    row.getGenre(), row.getReleaseYear(), status, status == null ? 0 : rating);
+            if (updated.sameDiaryStateAs(row)) return;
+
+            List<MovieRow> next = new ArrayList<>(latest);
+            next.set(i, updated);
+            latest = Collections.unmodifiableList(next);
+            submitList(latest);
+            return;
+        }
     }
 
-    private int getIntSafely(Cursor c, String columnName, int defaultValue) {
-        int idx = c.getColumnIndex(columnName);
-        if (idx == -1 || c.isNull(idx)) return defaultValue;
-        return c.getInt(idx);
+    /**
+     * Posters to preload for the grid, the same requests the cards make (requires a posterSize).
+     */
+    public ListPreloader.PreloadModelProvider<MovieRow> preloadModelProvider(RequestManager glide) {
+        if (posterSize == null) throw new IllegalStateException("No poster size to preload at");
+        return new ListPreloader.PreloadModelProvider<MovieRow>() {
+            @NonNull
+            @Override
+            public List<MovieRow> getPreloadItems(int position) {
+                List<MovieRow> rows = getCurrentList();
+                if (position < 0 || position >= rows.size()) return Collections.emptyList();
+                return Collections.singletonList(rows.get(position));
+            }
+
+            @Override
+            public RequestBuilder<?> getPreloadRequestBuilder(@NonNull MovieRow row) {
+                return Posters.request(glide, row.getPosterUrl(), posterSize);
+            }
+        };
     }
 
     public static class MovieViewHolder extends RecyclerView.ViewHolder {
@@ -123,6 +243,11 @@ public class MovieAdapter extends RecyclerView.Adapter<MovieAdapter.MovieViewHol
         final TextView movieDescription;
         final TextView movieYear;
 
+        // Row currently shown, compared with the next one to skip unchanged views
+        MovieRow bound;
+        // Whether its poster failed to load (then requested again on the next bind)
+        final PosterRetry poster = new PosterRetry();
+
         public MovieViewHolder(@NonNull View itemView) {
             super(itemView);
 
@@ -0,0 +1,38 @@
+package com.example.moviediary.adapter;
+
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+
+/**
+ * Whether the last poster request of one holder failed (offline, server error). Holders skip
+ * the request when the URL they bind is the one they already show; a failed poster is requested
+ * again instead, on the next bind. One per holder, added to each of its requests (no allocation
+ * per bind); Glide calls it on the main thread.
+ */
+final class PosterRetry implements RequestListener<Drawable> {
+
+    // The error placeholder is showing, a new request may succeed
+    boolean failed;
+
+    @Override
+    public boolean onLoadFailed(@Nullable GlideException e, @Nullable Object model,
+                                @NonNull Target<Drawable> target, boolean isFirstResource) {
+        // No URL at all: asking again would fail the same way
+        failed = model != null;
+        return false;
+    }
+
+    @Override
+    public boolean onResourceReady(@NonNull Drawable resource, @NonNull Object model, Target<Drawable> target,
+                                   @NonNull DataSource dataSource, boolean isFirstResource) {
+        failed = false;
+        return false;
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.moviediary.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.moviediary.model.Movie;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams a movie catalog (CSV or JSON lines) into the movies table.
+ *
+ * - a reader thread cuts the input into chunks of lines, never holding the whole file
+ * - a small pool parses the chunks
+ * - the calling thread is the only writer: it takes the parsed chunks in input order and
+ *   inserts them with precompiled statements, committing every BATCH_ROWS rows
+ *
+ * Genres are linked by GenreLinker like every other insert, movies_fts follows through its
+ * triggers. A failed import keeps the batches already committed. Call it off the main thread
+ * (DatabaseManager.importCatalog).
+ *
+ * CSV: one movie per line, a header naming the columns (title, poster_url, description,
+ * release_year, genre; only title is required), fields with commas or quotes in "..." with "" for a quote.
+ * JSON lines: one object per line with the same keys.
+ */
+public class CatalogImporter {
+
+    public enum Format {
+        CSV,
+        JSON_LINES
+    }
+
+    public interface ProgressListener {
+        /**
+         * Called on the importing thread after each committed batch and once at the end.
+         */
+        void onProgress(Progress progress);
+    }
+
+    /**
+     * Rows imported / skipped (no title, bad year, bad JSON) so far and the time it took.
+     */
+    public static class Progress {
+        private final long imported;
+        private final long skipped;
+        private final long elapsedNanos;
+
+        Progress(long imported, long skipped, long elapsedNanos) {
+            this.imported = imported;
+            this.skipped = skipped;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : imported * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d imported, %d skipped, %.0f rows/s",
+                    imported, skipped, getRowsPerSecond());
+        }
+    }
+
+    // Lines handed to a parser at once
+    private static final int CHUNK_LINES = 1_000;
+    // Rows per transaction: large enough to amortize the commit, small enough to keep the WAL in check
+    static final int BATCH_ROWS = 10_000;
+
+    private static final int PARSER_THREADS =
+            Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 1));
+    // Parsed chunks waiting for the writer; bounds memory when the writer is the bottleneck
+    private static final int QUEUE_CHUNKS = PARSER_THREADS * 2;
+
+    // End of input marker in the chunk queue
+    private static final Future<Chunk> END = new FutureTask<>(() -> null);
+
+    private static final String[] COLUMNS = {
+            DatabaseHelper.COLUMN_TITLE,
+            DatabaseHelper.COLUMN_POSTER_URL,
+            DatabaseHelper.COLUMN_DESCRIPTION,
+            DatabaseHelper.COLUMN_RELEASE_YEAR,
+            DatabaseHelper.COLUMN_GENRE
+    };
+    private static final int TITLE = 0;
+    private static final int POSTER_URL = 1;
+    private static final int DESCRIPTION = 2;
+    private static final int RELEASE_YEAR = 3;
+    private static final int GENRE = 4;
+
+    private final SQLiteDatabase db;
+
+    CatalogImporter(SQLiteDatabase db) {
+        this.db = db;
+    }
+
+    Progress run(Reader input, Format format, ProgressListener listener) throws IOException {
+        long start = System.nanoTime();
+        BlockingQueue<Future<Chunk>> parsed = new ArrayBlockingQueue<>(QUEUE_CHUNKS);
+        ExecutorService parsers = Executors.newFixedThreadPool(PARSER_THREADS, r -> {
+            Thread t = new Thread(r, "catalog-parse");
+            t.setDaemon(true);
+            return t;
+        });
+
+        long imported = 0;
+        long skipped = 0;
+        int inBatch = 0;
+
+        SQLiteStatement insertMovie = db.compileStatement(DatabaseHelper.SQL_INSERT_MOVIE);
+        GenreLinker genres = new GenreLinker(db);
+
+        // Set when the writer stops: the reader submits nothing more to the (shut down) parsers
+        AtomicBoolean stopped = new AtomicBoolean();
+        Thread reader = new Thread(() -> readChunks(input, format, parsers, parsed, stopped), "catalog-read");
+        reader.setDaemon(true);
+        reader.start();
+
+        db.beginTransaction();
+        try {
+            while (true) {
+                Future<Chunk> next = parsed.take();
+                if (next == END) break;
+
+                Chunk chunk = get(next);
+                skipped += chunk.skipped;
+                for (Movie movie : chunk.movies) {
+                    long movieId = insert(insertMovie, movie);
+                    genres.link(movieId, movie.getGenre());
+                    imported++;
+
+                    if (++inBatch == BATCH_ROWS) {
+                        db.setTransactionSuccessful();
+                        db.endTransaction();
+                        inBatch = 0;
+                        if (listener != null) {
+                            listener.onProgress(new Progress(imported, skipped, System.nanoTime() - start));
+                        }
+                        db.beginTransaction();
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Catalog import interrupted", e);
+        } finally {
+            db.endTransaction();
+            stopped.set(true);
+            reader.interrupt();
+            parsers.shutdownNow();
+            insertMovie.close();
+            genres.close();
+            // (a reader blocked in readLine() only sees stopped once the line arrives)
+            join(reader);
+        }
+
+        Progress done = new Progress(imported, skipped, System.nanoTime() - start);
+        if (listener != null) listener.onProgress(done);
+        return done;
+    }
+
+    // =======================
+    // Writer
+    // =======================
+
+    private static long insert(SQLiteStatement insertMovie, Movie movie) {
+        bindNullable(insertMovie, 1, movie.getTitle());
+        bindNullable(insertMovie, 2, movie.getPosterUrl());
+        bindNullable(insertMovie, 3, movie.getDescription());
+        insertMovie.bindLong(4, movie.getReleaseYear());
+        bindNullable(insertMovie, 5, movie.getGenre());
+        return insertMovie.executeInsert();
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) statement.bindNull(index);
+        else statement.bindString(index, value);
+    }
+
+    private static Chunk get(Future<Chunk> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("Catalog import failed", cause);
+        }
+    }
+
+    // =======================
+    // Reader + parsers
+    // =======================
+
+    private static void readChunks(Reader input, Format format, ExecutorService parsers,
+                                   BlockingQueue<Future<Chunk>> parsed, AtomicBoolean stopped) {
+        try {
+            try {
+                BufferedReader lines = input instanceof BufferedReader
+                        ? (BufferedReader) input : new BufferedReader(input, 64 * 1024);
+
+                int[] columns = format == Format.CSV ? csvHeader(lines.readLine()) : null;
+
+                List<String> chunk = new ArrayList<>(CHUNK_LINES);
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    if (stopped.get()) return;
+                    if (line.trim().isEmpty()) continue;
+                    chunk.add(line);
+                    if (chunk.size() == CHUNK_LINES) {
+                        parsed.put(submit(parsers, chunk, format, columns));
+                        chunk = new ArrayList<>(CHUNK_LINES);
+                    }
+                }
+                if (!chunk.isEmpty() && !stopped.get()) {
+                    parsed.put(submit(parsers, chunk, format, columns));
+                }
+            } catch (IOException e) {
+                parsed.put(failed(e));
+            }
+            parsed.put(END);
+        } catch (InterruptedException | RejectedExecutionException ignored) {
+            // Writer gave up (the parsers may be shut down between the check and the submit)
+        }
+    }
+
+    // Waits for the reader to exit, keeping the caller's interrupt status
+    private static void join(Thread reader) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                reader.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private static Future<Chunk> submit(ExecutorService parsers, List<String> lines, Format format, int[] columns) {
+        return parsers.submit(() -> parse(lines, format, columns));
+    }
+
+    private static Future<Chunk> failed(IOException e) {
+        FutureTask<Chunk> task = new FutureTask<>(() -> {
+            throw e;
+        });
+        task.run();
+        return task;
+    }
+
+    // Column positions of COLUMNS in the CSV, -1 when absent
+    private static int[] csvHeader(String header) throws IOException {
+        if (header == null) throw new IOException("Empty catalog");
+
+        List<String> names = splitCsv(header);
+        int[] columns = new int[COLUMNS.length];
+        for (int c = 0; c < COLUMNS.length; c++) {
+            columns[c] = -1;
+            for (int i = 0; i < names.size(); i++) {
+                if (COLUMNS[c].equalsIgnoreCase(names.get(i).trim())) columns[c] = i;
+            }
+        }
+        if (columns[TITLE] == -1) throw new IOException("CSV header has no title column: " + header);
+        return columns;
+    }
+
+    private static Chunk parse(List<String> lines, Format format, int[] columns) {
+        Chunk chunk = new Chunk(lines.size());
+        for (String line : lines) {
+            Movie movie = format == Format.CSV ? parseCsv(line, columns) : parseJson(line);
+            if (movie == null || movie.getTitle() == null || movie.getTitle().trim().isEmpty()) {
+                chunk.skipped++;
+            } else {
+                chunk.movies.add(movie);
+            }
+        }
+        return chunk;
+    }
+
+    private static Movie parseCsv(String line, int[] columns) {
+        List<String> fields = splitCsv(line);
+        try {
+            String year = field(fields, columns[RELEASE_YEAR]);
+            return new Movie(
+                    field(fields, columns[TITLE]),
+                    field(fields, columns[POSTER_URL]),
+                    field(fields, columns[DESCRIPTION]),
+                    year == null || year.isEmpty() ? 0 : Integer.parseInt(year.trim()),
+                    field(fields, columns[GENRE]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index == -1 || index >= fields.size() ? null : fields.get(index);
+    }
+
+    private static Movie parseJson(String line) {
+        try {
+            JSONObject o = new JSONObject(line);
+            return new Movie(
+                    string(o, COLUMNS[TITLE]),
+                    string(o, COLUMNS[POSTER_URL]),
+                    string(o, COLUMNS[DESCRIPTION]),
+                    o.isNull(COLUMNS[RELEASE_YEAR]) ? 0 : o.getInt(COLUMNS[RELEASE_YEAR]),
+                    string(o, COLUMNS[GENRE]));
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    // null for a missing key or a JSON null (optString would give "null")
+    private static String string(JSONObject o, String key) {
+        return o.isNull(key) ? null : o.optString(key);
+    }
+
+    /**
+     * One CSV record: fields separated by commas, "quoted, fields" with "" for a quote.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static class Chunk {
+        final List<Movie> movies;
+        int skipped;
+
+        Chunk(int lines) {
+            movies = new ArrayList<>(lines);
+        }
+    }
+}
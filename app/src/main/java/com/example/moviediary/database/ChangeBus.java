@@ -0,0 +1,110 @@
+package com.example.moviediary.database;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Typed notifications of the writes DatabaseManager makes, so a screen can update the
+ * rows a write touched, or skip its reload in onResume when nothing it shows changed.
+ *
+ * Process-wide. Listeners are called on the writing thread, right after the write
+ * succeeded: keep them short (MovieRepository.observeChanges hands them to the main thread).
+ */
+public final class ChangeBus {
+
+    public enum Type {
+        // One (user, movie) diary row added, changed or removed
+        DIARY_ROW,
+        // Username, email or preferences of a user
+        PROFILE,
+        // Movies added or changed
+        CATALOG
+    }
+
+    public interface Listener {
+        void onChange(Change change);
+    }
+
+    public static final class Change {
+        private final Type type;
+        private final int userId;
+        private final int movieId;
+        private final String status;
+        private final int rating;
+
+        private Change(Type type, int userId, int movieId, String status, int rating) {
+            this.type = type;
+            this.userId = userId;
+            this.movieId = movieId;
+            this.status = status;
+            this.rating = rating;
+        }
+
+        /**
+         * New state of a diary row; status null when the row was removed.
+         */
+        static Change diaryRow(int userId, int movieId, String status, int rating) {
+            return new Change(Type.DIARY_ROW, userId, movieId, status, rating);
+        }
+
+        static Change profile(int userId) {
+            return new Change(Type.PROFILE, userId, -1, null, 0);
+        }
+
+        static Change catalog() {
+            return new Change(Type.CATALOG, -1, -1, null, 0);
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        // -1 for CATALOG
+        public int getUserId() {
+            return userId;
+        }
+
+        // DIARY_ROW only, -1 otherwise
+        public int getMovieId() {
+            return movieId;
+        }
+
+        // DIARY_ROW only: "WISHLIST", "WATCHED" or null (removed)
+        public String getStatus() {
+            return status;
+        }
+
+        public int getRating() {
+            return rating;
+        }
+
+        @Override
+        public String toString() {
+            return "Change[" + type + ", user=" + userId + ", movie=" + movieId + ", " + status + ", " + rating + "]";
+        }
+    }
+
+    private static final ChangeBus INSTANCE = new ChangeBus();
+
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public static ChangeBus getInstance() {
+        return INSTANCE;
+    }
+
+    private ChangeBus() {
+    }
+
+    public void subscribe(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    void publish(Change change) {
+        for (Listener listener : listeners) {
+            listener.onChange(change);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.moviediary.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * "People who watched this also watched": movie x movie counts over the WATCHED rows of
+ * user_movies (movie_cooccurrence), read by DatabaseManager.getRelatedMovies.
+ *
+ * A pair counts for a user when both movies are WATCHED and became WATCHED at most WINDOW
+ * watches apart (watch_history keeps each user's watch order). Up to WINDOW watched titles,
+ * that is every pair of the diary. Beyond, a row entering or leaving WATCHED touches at
+ * most 2 x WINDOW pairs however long the diary is, instead of one per watched title.
+ *
+ * Maintained by DatabaseManager.upsertDiary / removeFromDiary, in the transaction of the
+ * diary write. Rows written around DatabaseManager need rebuild().
+ */
+final class CoOccurrence {
+
+    // Watches apart that still make a pair: the per-write bound
+    static final int WINDOW = 100;
+    // Neighbours kept per movie by DatabaseManager's related-movies cache
+    static final int TOP_K = 20;
+
+    private static final String HISTORY = DatabaseHelper.TABLE_WATCH_HISTORY;
+    private static final String PAIRS = DatabaseHelper.TABLE_MOVIE_COOCCURRENCE;
+
+    // Watch number of a movie in a user's history, 0 when it is not WATCHED
+    static final String SQL_WATCH_SEQ =
+            "SELECT COALESCE((SELECT " + DatabaseHelper.COLUMN_SEQ + " FROM " + HISTORY + " " +
+                    "WHERE " + DatabaseHelper.COLUMN_USER_ID + " = ? AND " + DatabaseHelper.COLUMN_MOVIE_ID + " = ?), 0)";
+
+    static final String SQL_NEXT_SEQ =
+            "SELECT COALESCE(MAX(" + DatabaseHelper.COLUMN_SEQ + "), 0) + 1 FROM " + HISTORY + " " +
+                    "WHERE " + DatabaseHelper.COLUMN_USER_ID + " = ?";
+
+    static final String SQL_ADD_WATCH =
+            "INSERT INTO " + HISTORY + " (" + DatabaseHelper.COLUMN_USER_ID + ", " + DatabaseHelper.COLUMN_SEQ + ", " +
+                    DatabaseHelper.COLUMN_MOVIE_ID + ") VALUES (?, ?, ?)";
+
+    static final String SQL_REMOVE_WATCH =
+            "DELETE FROM " + HISTORY + " " +
+                    "WHERE " + DatabaseHelper.COLUMN_USER_ID + " = ? AND " + DatabaseHelper.COLUMN_MOVIE_ID + " = ?";
+
+    // The pair statements below take ?1 movie, ?2 user, ?3 / ?4 first / last watch number of
+    // the window (the movie itself is never in it), ?5 the change of count.
+    private static final String WINDOW_MOVIES =
+            "SELECT " + DatabaseHelper.COLUMN_MOVIE_ID + " FROM " + HISTORY + " " +
+                    "WHERE " + DatabaseHelper.COLUMN_USER_ID + " = ?2 AND " + DatabaseHelper.COLUMN_SEQ + " BETWEEN ?3 AND ?4";
+
+    // Missing pairs of the window, both ways, at 0
+    static final String SQL_ADD_PAIRS =
+            "INSERT OR IGNORE INTO " + PAIRS + " (" + DatabaseHelper.COLUMN_MOVIE_ID + ", " + DatabaseHelper.COLUMN_OTHER_ID + ") " +
+                    "SELECT ?1, " + DatabaseHelper.COLUMN_MOVIE_ID + " FROM (" + WINDOW_MOVIES + ") " +
+                    "UNION ALL " +
+                    "SELECT " + DatabaseHelper.COLUMN_MOVIE_ID + ", ?1 FROM (" + WINDOW_MOVIES + ")";
+
+    static final String SQL_COUNT_PAIRS =
+            "UPDATE " + PAIRS + " SET " + DatabaseHelper.COLUMN_PAIR_COUNT + " = " + DatabaseHelper.COLUMN_PAIR_COUNT + " + ?5 " +
+                    "WHERE " + DatabaseHelper.COLUMN_MOVIE_ID + " = ?1 AND " + DatabaseHelper.COLUMN_OTHER_ID + " IN (" + WINDOW_MOVIES + ")";
+
+    static final String SQL_COUNT_REVERSE_PAIRS =
+            "UPDATE " + PAIRS + " SET " + DatabaseHelper.COLUMN_PAIR_COUNT + " = " + DatabaseHelper.COLUMN_PAIR_COUNT + " + ?5 " +
+                    "WHERE " + DatabaseHelper.COLUMN_MOVIE_ID + " IN (" + WINDOW_MOVIES + ") AND " + DatabaseHelper.COLUMN_OTHER_ID + " = ?1";
+
+    // Pairs nobody shares any more (the table stays sparse)
+    static final String SQL_PRUNE_PAIRS =
+            "DELETE FROM " + PAIRS + " " +
+                    "WHERE " + DatabaseHelper.COLUMN_MOVIE_ID + " = ?1 AND " + DatabaseHelper.COLUMN_OTHER_ID + " IN (" + WINDOW_MOVIES + ") " +
+                    "AND " + DatabaseHelper.COLUMN_PAIR_COUNT + " <= 0";
+
+    static final String SQL_PRUNE_REVERSE_PAIRS =
+            "DELETE FROM " + PAIRS + " " +
+                    "WHERE " + DatabaseHelper.COLUMN_MOVIE_ID + " IN (" + WINDOW_MOVIES + ") " +
+                    "AND " + DatabaseHelper.COLUMN_OTHER_ID + " = ?1 AND " + DatabaseHelper.COLUMN_PAIR_COUNT + " <= 0";
+
+    // Every count again from watch_history (rebuild, tests)
+    static final String SQL_RECOUNT_PAIRS =
+            "INSERT INTO " + PAIRS + " (" + DatabaseHelper.COLUMN_MOVIE_ID + ", " + DatabaseHelper.COLUMN_OTHER_ID + ", " +
+                    DatabaseHelper.COLUMN_PAIR_COUNT + ") " +
+                    "SELECT a." + DatabaseHelper.COLUMN_MOVIE_ID + ", b." + DatabaseHelper.COLUMN_MOVIE_ID + ", COUNT(*) " +
+                    "FROM " + HISTORY + " a JOIN " + HISTORY + " b " +
+                    "ON b." + DatabaseHelper.COLUMN_USER_ID + " = a." + DatabaseHelper.COLUMN_USER_ID + " " +
+                    "AND b." + DatabaseHelper.COLUMN_SEQ + " BETWEEN a." + DatabaseHelper.COLUMN_SEQ + " - " + WINDOW + " " +
+                    "AND a." + DatabaseHelper.COLUMN_SEQ + " + " + WINDOW + " " +
+                    "AND b." + DatabaseHelper.COLUMN_SEQ + " != a." + DatabaseHelper.COLUMN_SEQ + " " +
+                    "GROUP BY a." + DatabaseHelper.COLUMN_MOVIE_ID + ", b." + DatabaseHelper.COLUMN_MOVIE_ID;
+
+    private CoOccurrence() {
+    }
+
+    /**
+     * watch_history again from user_movies (a user's WATCHED rows in insertion order), then
+     * every count: migration to v10, and rows written without DatabaseManager (bulk test data).
+     * Run it inside a transaction.
+     */
+    static void rebuild(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + HISTORY);
+
+        SQLiteStatement add = db.compileStatement(SQL_ADD_WATCH);
+        Cursor watched = db.rawQuery("SELECT " + DatabaseHelper.COLUMN_USER_ID + ", " + DatabaseHelper.COLUMN_MOVIE_ID + " " +
+                        "FROM " + DatabaseHelper.TABLE_USER_MOVIES + " " +
+                        "WHERE " + DatabaseHelper.COLUMN_STATUS + " = ? " +
+                        "ORDER BY " + DatabaseHelper.COLUMN_USER_ID + ", " + DatabaseHelper.COLUMN_ID,
+                new String[]{DatabaseHelper.STATUS_WATCHED});
+        try {
+            long userId = -1;
+            long seq = 0;
+            while (watched.moveToNext()) {
+                if (watched.getLong(0) != userId) {
+                    userId = watched.getLong(0);
+                    seq = 0;
+                }
+                add.bindLong(1, userId);
+                add.bindLong(2, ++seq);
+                add.bindLong(3, watched.getLong(1));
+                add.executeInsert();
+            }
+        } finally {
+            watched.close();
+            add.close();
+        }
+        recount(db);
+    }
+
+    /**
+     * Every count again from the current watch_history.
+     */
+    static void recount(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + PAIRS);
+        db.execSQL(SQL_RECOUNT_PAIRS);
+    }
+}
@@ -2,19 +2,28 @@ package com.example.moviediary.database;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
 
 /**
  * SQLite DB for MovieDiary.
  * - users: authentication + preferences
  * - movies: catalog
  * - user_movies: diary (one row per (user_id, movie_id))
+ * - movies_fts: full-text index over movies (title, genre, description)
+ * - genres / movie_genres: normalized copy of movies.genre (one row per movie and genre)
+ * - user_genre_affinity: per-user genre scores and ranks of the home order (see GenreAffinity)
+ * - watch_history / movie_cooccurrence: watch order and "also watched" counts (see CoOccurrence)
  */
 public class DatabaseHelper extends SQLiteOpenHelper {
 
-    private static final String DATABASE_NAME = "MovieDiary.db";
-    private static final int DATABASE_VERSION = 3;
+    private static final String TAG = "DatabaseHelper";
+
+    static final String DATABASE_NAME = "MovieDiary.db";
+    // Version reached by the last step of DatabaseMigrations
+    static final int DATABASE_VERSION = DatabaseMigrations.LATEST_VERSION;
 
     // =======================
     // TABLE NAMES
@@ -22,6 +31,12 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String TABLE_USERS = "users";
     public static final String TABLE_MOVIES = "movies";
     public static final String TABLE_USER_MOVIES = "user_movies";
+    public static final String TABLE_MOVIES_FTS = "movies_fts";
+    public static final String TABLE_GENRES = "genres";
+    public static final String TABLE_MOVIE_GENRES = "movie_genres";
+    public static final String TABLE_USER_GENRE_AFFINITY = "user_genre_affinity";
+    public static final String TABLE_WATCH_HISTORY = "watch_history";
+    public static final String TABLE_MOVIE_COOCCURRENCE = "movie_cooccurrence";
 
     // =======================
     // COMMON COLUMNS
@@ -36,6 +51,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String COLUMN_PASSWORD_HASH = "password_hash";
     public static final String COLUMN_SALT = "salt";
     public static final String COLUMN_PREFERENCES = "preferences"; // CSV: "Action,Drama,Sci-Fi"
+    public static final String COLUMN_HASH_ITERATIONS = "hash_iterations"; // PBKDF2 cost, 0 = legacy SHA-256
 
     // =======================
     // MOVIES COLUMNS
@@ -56,6 +72,32 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String COLUMN_STATUS = "status";
     public static final String COLUMN_RATING = "rating"; // 0..5
 
+    // =======================
+    // MOVIES_FTS COLUMNS
+    // =======================
+    // FTS4 rowid alias, always equal to movies.id
+    public static final String COLUMN_DOCID = "docid";
+
+    // =======================
+    // GENRES / MOVIE_GENRES COLUMNS
+    // =======================
+    public static final String COLUMN_NAME = "name";
+    public static final String COLUMN_GENRE_ID = "genre_id";
+
+    // =======================
+    // USER_GENRE_AFFINITY COLUMNS
+    // =======================
+    public static final String COLUMN_PREFERENCE = "preference"; // from the profile preferences
+    public static final String COLUMN_HISTORY = "history";       // from the diary rows
+    public static final String COLUMN_AFFINITY_RANK = "affinity_rank"; // 1 = best genre of the user
+
+    // =======================
+    // WATCH_HISTORY / MOVIE_COOCCURRENCE COLUMNS
+    // =======================
+    public static final String COLUMN_SEQ = "seq";               // watch order within one user, from 1
+    public static final String COLUMN_OTHER_ID = "other_id";     // the other movie of the pair
+    public static final String COLUMN_PAIR_COUNT = "pair_count"; // users who watched both
+
     // Optional: status values (useful to avoid typos)
     public static final String STATUS_WISHLIST = "WISHLIST";
     public static final String STATUS_WATCHED = "WATCHED";
@@ -63,6 +105,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     // =======================
     // CREATE TABLES
     // =======================
+    // Added by v8 (ALTER TABLE): last in CREATE_USERS_TABLE, where ADD COLUMN puts it
+    private static final String HASH_ITERATIONS_DEFINITION =
+            COLUMN_HASH_ITERATIONS + " INTEGER NOT NULL DEFAULT 0";
+
     private static final String CREATE_USERS_TABLE =
             "CREATE TABLE " + TABLE_USERS + " (" +
                     COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
@@ -70,7 +116,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     COLUMN_EMAIL + " TEXT UNIQUE NOT NULL, " +
                     COLUMN_PASSWORD_HASH + " TEXT NOT NULL, " +
                     COLUMN_SALT + " TEXT NOT NULL, " +
-                    COLUMN_PREFERENCES + " TEXT" +
+                    COLUMN_PREFERENCES + " TEXT, " +
+                    HASH_ITERATIONS_DEFINITION +
                     ")";
 
     private static final String CREATE_MOVIES_TABLE =
@@ -83,6 +130,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     COLUMN_GENRE + " TEXT" +
                     ")";
 
+    // Diary rows go away with their user or movie (v7)
     private static final String CREATE_USER_MOVIES_TABLE =
             "CREATE TABLE " + TABLE_USER_MOVIES + " (" +
                     COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
@@ -91,12 +139,135 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     COLUMN_STATUS + " TEXT NOT NULL DEFAULT '" + STATUS_WISHLIST + "', " +
                     COLUMN_RATING + " INTEGER DEFAULT 0, " +
                     "UNIQUE(" + COLUMN_USER_ID + ", " + COLUMN_MOVIE_ID + "), " +
-                    "FOREIGN KEY(" + COLUMN_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + "), " +
-                    "FOREIGN KEY(" + COLUMN_MOVIE_ID + ") REFERENCES " + TABLE_MOVIES + "(" + COLUMN_ID + ")" +
+                    "FOREIGN KEY(" + COLUMN_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ") ON DELETE CASCADE, " +
+                    "FOREIGN KEY(" + COLUMN_MOVIE_ID + ") REFERENCES " + TABLE_MOVIES + "(" + COLUMN_ID + ") ON DELETE CASCADE" +
+                    ")";
+
+    // Secondary indexes (see DatabaseManagerQueryPlanTest for the queries they serve)
+    private static final String[] CREATE_INDEXES = {
+            // Diary lists: WHERE user_id=? AND status=?, joined on movie_id, reading rating
+            "CREATE INDEX IF NOT EXISTS idx_user_movies_user_status ON " + TABLE_USER_MOVIES +
+                    "(" + COLUMN_USER_ID + ", " + COLUMN_STATUS + ", " + COLUMN_MOVIE_ID + ", " + COLUMN_RATING + ")",
+            // Home LEFT JOIN: ON movie_id AND user_id=?, reading status + rating
+            "CREATE INDEX IF NOT EXISTS idx_user_movies_user_movie ON " + TABLE_USER_MOVIES +
+                    "(" + COLUMN_USER_ID + ", " + COLUMN_MOVIE_ID + ", " + COLUMN_STATUS + ", " + COLUMN_RATING + ")",
+            // Every catalog list is ORDER BY title
+            "CREATE INDEX IF NOT EXISTS idx_movies_title ON " + TABLE_MOVIES + "(" + COLUMN_TITLE + ")"
+    };
+
+    private static final String CREATE_GENRES_TABLE =
+            "CREATE TABLE " + TABLE_GENRES + " (" +
+                    COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    COLUMN_NAME + " TEXT UNIQUE NOT NULL COLLATE NOCASE" +
                     ")";
 
+    // title is the movie's, copied so that the movies of a genre can be read in title order (v11)
+    private static final String CREATE_MOVIE_GENRES_TABLE =
+            "CREATE TABLE " + TABLE_MOVIE_GENRES + " (" +
+                    COLUMN_MOVIE_ID + " INTEGER NOT NULL, " +
+                    COLUMN_GENRE_ID + " INTEGER NOT NULL, " +
+                    COLUMN_TITLE + " TEXT NOT NULL, " +
+                    "PRIMARY KEY(" + COLUMN_MOVIE_ID + ", " + COLUMN_GENRE_ID + "), " +
+                    "FOREIGN KEY(" + COLUMN_MOVIE_ID + ") REFERENCES " + TABLE_MOVIES + "(" + COLUMN_ID + ") ON DELETE CASCADE, " +
+                    "FOREIGN KEY(" + COLUMN_GENRE_ID + ") REFERENCES " + TABLE_GENRES + "(" + COLUMN_ID + ")" +
+                    ") WITHOUT ROWID";
+
+    // Genre -> movies lookups, in title order (the primary key only covers movie -> genres)
+    private static final String CREATE_MOVIE_GENRES_INDEX =
+            "CREATE INDEX idx_movie_genres_genre ON " + TABLE_MOVIE_GENRES +
+                    "(" + COLUMN_GENRE_ID + ", " + COLUMN_TITLE + ", " + COLUMN_MOVIE_ID + ")";
+
+    private static final String CREATE_MOVIE_GENRES_TITLE_TRIGGER =
+            "CREATE TRIGGER movie_genres_title_after_update AFTER UPDATE OF " + COLUMN_TITLE + " ON " + TABLE_MOVIES + " BEGIN " +
+                    "UPDATE " + TABLE_MOVIE_GENRES + " SET " + COLUMN_TITLE + " = new." + COLUMN_TITLE + " " +
+                    "WHERE " + COLUMN_MOVIE_ID + " = new." + COLUMN_ID + "; " +
+                    "END";
+
+    // One row per genre the user prefers or has in the diary (v9)
+    private static final String CREATE_USER_GENRE_AFFINITY_TABLE =
+            "CREATE TABLE " + TABLE_USER_GENRE_AFFINITY + " (" +
+                    COLUMN_USER_ID + " INTEGER NOT NULL, " +
+                    COLUMN_GENRE_ID + " INTEGER NOT NULL, " +
+                    COLUMN_PREFERENCE + " REAL NOT NULL DEFAULT 0, " +
+                    COLUMN_HISTORY + " REAL NOT NULL DEFAULT 0, " +
+                    COLUMN_AFFINITY_RANK + " INTEGER NOT NULL DEFAULT " + GenreAffinity.UNRANKED + ", " +
+                    "PRIMARY KEY(" + COLUMN_USER_ID + ", " + COLUMN_GENRE_ID + "), " +
+                    "FOREIGN KEY(" + COLUMN_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ") ON DELETE CASCADE, " +
+                    "FOREIGN KEY(" + COLUMN_GENRE_ID + ") REFERENCES " + TABLE_GENRES + "(" + COLUMN_ID + ")" +
+                    ") WITHOUT ROWID";
+
+    // Ranked genres of a user, best first (home query). UNIQUE holds anyway (it contains the
+    // key) but tells SQLite each entry is one genre: the home query then reads every genre's
+    // movies in index order instead of sorting them (v11)
+    private static final String CREATE_USER_GENRE_AFFINITY_INDEX =
+            "CREATE UNIQUE INDEX idx_user_genre_affinity_rank ON " + TABLE_USER_GENRE_AFFINITY +
+                    "(" + COLUMN_USER_ID + ", " + COLUMN_AFFINITY_RANK + ", " + COLUMN_GENRE_ID + ")";
+
+    // WATCHED rows of each user in the order they became WATCHED (v10)
+    private static final String CREATE_WATCH_HISTORY_TABLE =
+            "CREATE TABLE " + TABLE_WATCH_HISTORY + " (" +
+                    COLUMN_USER_ID + " INTEGER NOT NULL, " +
+                    COLUMN_SEQ + " INTEGER NOT NULL, " +
+                    COLUMN_MOVIE_ID + " INTEGER NOT NULL, " +
+                    "PRIMARY KEY(" + COLUMN_USER_ID + ", " + COLUMN_SEQ + "), " +
+                    "UNIQUE(" + COLUMN_USER_ID + ", " + COLUMN_MOVIE_ID + "), " +
+                    "FOREIGN KEY(" + COLUMN_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ") ON DELETE CASCADE, " +
+                    "FOREIGN KEY(" + COLUMN_MOVIE_ID + ") REFERENCES " + TABLE_MOVIES + "(" + COLUMN_ID + ") ON DELETE CASCADE" +
+                    ") WITHOUT ROWID";
+
+    // Both (a, b) and (b, a) are stored: the neighbours of a movie are one range of the key (v10)
+    private static final String CREATE_MOVIE_COOCCURRENCE_TABLE =
+            "CREATE TABLE " + TABLE_MOVIE_COOCCURRENCE + " (" +
+                    COLUMN_MOVIE_ID + " INTEGER NOT NULL, " +
+                    COLUMN_OTHER_ID + " INTEGER NOT NULL, " +
+                    COLUMN_PAIR_COUNT + " INTEGER NOT NULL DEFAULT 0, " +
+                    "PRIMARY KEY(" + COLUMN_MOVIE_ID + ", " + COLUMN_OTHER_ID + "), " +
+                    "FOREIGN KEY(" + COLUMN_MOVIE_ID + ") REFERENCES " + TABLE_MOVIES + "(" + COLUMN_ID + ") ON DELETE CASCADE, " +
+                    "FOREIGN KEY(" + COLUMN_OTHER_ID + ") REFERENCES " + TABLE_MOVIES + "(" + COLUMN_ID + ") ON DELETE CASCADE" +
+                    ") WITHOUT ROWID";
+
+    // Neighbours of a movie, most shared first (getRelatedMovies)
+    private static final String CREATE_MOVIE_COOCCURRENCE_INDEX =
+            "CREATE INDEX idx_movie_cooccurrence_count ON " + TABLE_MOVIE_COOCCURRENCE +
+                    "(" + COLUMN_MOVIE_ID + ", " + COLUMN_PAIR_COUNT + ", " + COLUMN_OTHER_ID + ")";
+
+    // External-content FTS4 table: the text lives only in "movies",
+    // the index is kept in sync by the triggers below.
+    private static final String CREATE_MOVIES_FTS_TABLE =
+            "CREATE VIRTUAL TABLE " + TABLE_MOVIES_FTS + " USING fts4(" +
+                    "content=\"" + TABLE_MOVIES + "\", " +
+                    COLUMN_TITLE + ", " +
+                    COLUMN_GENRE + ", " +
+                    COLUMN_DESCRIPTION +
+                    ")";
+
+    private static final String FTS_COLUMNS =
+            COLUMN_TITLE + ", " + COLUMN_GENRE + ", " + COLUMN_DESCRIPTION;
+
+    private static final String[] CREATE_MOVIES_FTS_TRIGGERS = {
+            "CREATE TRIGGER movies_fts_before_update BEFORE UPDATE ON " + TABLE_MOVIES + " BEGIN " +
+                    "DELETE FROM " + TABLE_MOVIES_FTS + " WHERE " + COLUMN_DOCID + " = old." + COLUMN_ID + "; " +
+                    "END",
+            "CREATE TRIGGER movies_fts_before_delete BEFORE DELETE ON " + TABLE_MOVIES + " BEGIN " +
+                    "DELETE FROM " + TABLE_MOVIES_FTS + " WHERE " + COLUMN_DOCID + " = old." + COLUMN_ID + "; " +
+                    "END",
+            "CREATE TRIGGER movies_fts_after_update AFTER UPDATE ON " + TABLE_MOVIES + " BEGIN " +
+                    "INSERT INTO " + TABLE_MOVIES_FTS + "(" + COLUMN_DOCID + ", " + FTS_COLUMNS + ") " +
+                    "VALUES (new." + COLUMN_ID + ", new." + COLUMN_TITLE + ", new." + COLUMN_GENRE + ", new." + COLUMN_DESCRIPTION + "); " +
+                    "END",
+            "CREATE TRIGGER movies_fts_after_insert AFTER INSERT ON " + TABLE_MOVIES + " BEGIN " +
+                    "INSERT INTO " + TABLE_MOVIES_FTS + "(" + COLUMN_DOCID + ", " + FTS_COLUMNS + ") " +
+                    "VALUES (new." + COLUMN_ID + ", new." + COLUMN_TITLE + ", new." + COLUMN_GENRE + ", new." + COLUMN_DESCRIPTION + "); " +
+                    "END"
+    };
+
+    // Page cache of the primary (write) connection, in KiB (negative = size, not pages)
+    private static final int CACHE_SIZE_KIB = 8 * 1024;
+
     public DatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        // WAL: readers get their own pooled connections and never wait for a writer
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
@@ -104,6 +275,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         super.onConfigure(db);
         // Enforce foreign keys (helps keep DB consistent)
         db.setForeignKeyConstraintsEnabled(true);
+
+        // With WAL, NORMAL only syncs at checkpoints and is still crash-safe
+        db.execSQL("PRAGMA synchronous = NORMAL");
+        db.execSQL("PRAGMA cache_size = -" + CACHE_SIZE_KIB);
     }
 
     @Override
@@ -111,19 +286,104 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.execSQL(CREATE_USERS_TABLE);
         db.execSQL(CREATE_MOVIES_TABLE);
         db.execSQL(CREATE_USER_MOVIES_TABLE);
+        createMoviesFts(db);
+        createGenreTables(db);
+        createIndexes(db);
+        createGenreAffinityTable(db);
+        createCoOccurrenceTables(db);
 
         insertSampleMovies(db);
     }
 
+    /**
+     * Applies the steps of DatabaseMigrations one version at a time, keeping every row.
+     * Only schemas older than the first known one (no migration history) are recreated.
+     */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Simple strategy for this project: recreate tables
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USER_MOVIES);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_MOVIES);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
-        onCreate(db);
+        if (oldVersion < DatabaseMigrations.OLDEST_VERSION) {
+            // (the FTS triggers are dropped together with "movies")
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_MOVIE_COOCCURRENCE);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_WATCH_HISTORY);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_USER_GENRE_AFFINITY);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_MOVIE_GENRES);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_GENRES);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_MOVIES_FTS);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_USER_MOVIES);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_MOVIES);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
+            onCreate(db);
+            return;
+        }
+
+        DatabaseMigrations.upgrade(db, oldVersion, newVersion, (from, to, nanos) ->
+                Log.i(TAG, "Migrated v" + from + " -> v" + to + " in " + nanos / 1_000_000 + " ms"));
+    }
+
+    private static void createIndexes(SQLiteDatabase db) {
+        for (String index : CREATE_INDEXES) {
+            db.execSQL(index);
+        }
     }
 
+    // =======================
+    // FULL-TEXT SEARCH
+    // =======================
+    private static void createMoviesFts(SQLiteDatabase db) {
+        db.execSQL(CREATE_MOVIES_FTS_TABLE);
+        for (String trigger : CREATE_MOVIES_FTS_TRIGGERS) {
+            db.execSQL(trigger);
+        }
+    }
+
+    // =======================
+    // GENRES
+    // =======================
+    private static void createGenreTables(SQLiteDatabase db) {
+        db.execSQL(CREATE_GENRES_TABLE);
+        db.execSQL(CREATE_MOVIE_GENRES_TABLE);
+        db.execSQL(CREATE_MOVIE_GENRES_INDEX);
+        db.execSQL(CREATE_MOVIE_GENRES_TITLE_TRIGGER);
+    }
+
+    private static void createGenreAffinityTable(SQLiteDatabase db) {
+        db.execSQL(CREATE_USER_GENRE_AFFINITY_TABLE);
+        db.execSQL(CREATE_USER_GENRE_AFFINITY_INDEX);
+    }
+
+    private static void createCoOccurrenceTables(SQLiteDatabase db) {
+        db.execSQL(CREATE_WATCH_HISTORY_TABLE);
+        db.execSQL(CREATE_MOVIE_COOCCURRENCE_TABLE);
+        db.execSQL(CREATE_MOVIE_COOCCURRENCE_INDEX);
+    }
+
+    // Links the movies already in the table (genres added after them, see DatabaseMigrations)
+    static void backfillMovieGenres(SQLiteDatabase db) {
+        Cursor c = db.query(TABLE_MOVIES, new String[]{COLUMN_ID, COLUMN_GENRE},
+                null, null, null, null, null);
+        try (GenreLinker genres = new GenreLinker(db)) {
+            while (c.moveToNext()) {
+                genres.link(c.getLong(0), c.getString(1));
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    static final String SQL_INSERT_MOVIE =
+            "INSERT INTO " + TABLE_MOVIES + " (" + COLUMN_TITLE + ", " + COLUMN_POSTER_URL + ", " +
+                    COLUMN_DESCRIPTION + ", " + COLUMN_RELEASE_YEAR + ", " + COLUMN_GENRE + ") VALUES (?, ?, ?, ?, ?)";
+
+    static final String SQL_INSERT_GENRE =
+            "INSERT OR IGNORE INTO " + TABLE_GENRES + "(" + COLUMN_NAME + ") VALUES (?)";
+
+    // Args: movie (already inserted), genre name
+    static final String SQL_LINK_MOVIE_GENRE =
+            "INSERT OR IGNORE INTO " + TABLE_MOVIE_GENRES + "(" + COLUMN_MOVIE_ID + ", " + COLUMN_GENRE_ID + ", " + COLUMN_TITLE + ") " +
+                    "SELECT m." + COLUMN_ID + ", g." + COLUMN_ID + ", m." + COLUMN_TITLE + " " +
+                    "FROM " + TABLE_MOVIES + " m, " + TABLE_GENRES + " g " +
+                    "WHERE m." + COLUMN_ID + " = ? AND g." + COLUMN_NAME + " = ?";
+
     // =======================
     // SAMPLE DATA
     // =======================
@@ -139,14 +399,17 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 {"The Matrix", "https://image.tmdb.org/t/p/w500/f89U3ADr1oiB1s9GkdPOEpXUk5H.jpg", "A computer hacker learns from mysterious rebels about the true nature of his reality and his role in the war against its controllers.", "1999", "Action, Sci-Fi"}
         };
 
-        for (String[] movie : sampleMovies) {
-            ContentValues values = new ContentValues();
-            values.put(COLUMN_TITLE, movie[0]);
-            values.put(COLUMN_POSTER_URL, movie[1]);
-            values.put(COLUMN_DESCRIPTION, movie[2]);
-            values.put(COLUMN_RELEASE_YEAR, Integer.parseInt(movie[3]));
-            values.put(COLUMN_GENRE, movie[4]);
-            db.insert(TABLE_MOVIES, null, values);
+        try (GenreLinker genres = new GenreLinker(db)) {
+            for (String[] movie : sampleMovies) {
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_TITLE, movie[0]);
+                values.put(COLUMN_POSTER_URL, movie[1]);
+                values.put(COLUMN_DESCRIPTION, movie[2]);
+                values.put(COLUMN_RELEASE_YEAR, Integer.parseInt(movie[3]));
+                values.put(COLUMN_GENRE, movie[4]);
+                long movieId = db.insert(TABLE_MOVIES, null, values);
+                genres.link(movieId, movie[4]);
+            }
         }
     }
 }
@@ -3,34 +3,308 @@ package com.example.moviediary.database;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MergeCursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.CancellationSignal;
+import android.util.LruCache;
 
+import com.example.moviediary.model.DiaryEntry;
 import com.example.moviediary.model.Movie;
+import com.example.moviediary.model.MoviePage;
+import com.example.moviediary.model.MovieRow;
 import com.example.moviediary.model.User;
 import com.example.moviediary.security.PasswordUtils;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
 public class DatabaseManager {
 
     // Aliases used in JOIN queries
     public static final String ALIAS_USER_STATUS = "user_status";
     public static final String ALIAS_USER_RATING = "user_rating";
+    public static final String ALIAS_SORT_RANK = "sort_rank";
 
     // Status values (keep consistent everywhere)
     public static final String STATUS_WISHLIST = DatabaseHelper.STATUS_WISHLIST; // "WISHLIST"
     public static final String STATUS_WATCHED = DatabaseHelper.STATUS_WATCHED;   // "WATCHED"
 
+    // =======================
+    // SQL
+    // Kept as constants so DatabaseManagerQueryPlanTest can EXPLAIN exactly what runs here.
+    // =======================
+
+    static final String SQL_USER_BY_EMAIL =
+            "SELECT * FROM " + DatabaseHelper.TABLE_USERS + " " +
+                    "WHERE " + DatabaseHelper.COLUMN_EMAIL + "=?";
+
+    // Existence checks answer a single 0/1 (simpleQueryForLong, no Cursor)
+    static final String SQL_EMAIL_EXISTS =
+            existsSql(DatabaseHelper.COLUMN_EMAIL + "=?");
+
+    static final String SQL_USERNAME_EXISTS =
+            existsSql(DatabaseHelper.COLUMN_USERNAME + "=?");
+
+    static final String SQL_EMAIL_EXISTS_FOR_OTHER_USER =
+            existsSql(DatabaseHelper.COLUMN_EMAIL + "=? AND " + DatabaseHelper.COLUMN_ID + "!=?");
+
+    static final String SQL_USERNAME_EXISTS_FOR_OTHER_USER =
+            existsSql(DatabaseHelper.COLUMN_USERNAME + "=? AND " + DatabaseHelper.COLUMN_ID + "!=?");
+
+    static final String SQL_USER_HASH_ITERATIONS =
+            "SELECT " + DatabaseHelper.COLUMN_HASH_ITERATIONS + " FROM " + DatabaseHelper.TABLE_USERS + " " +
+                    "WHERE " + DatabaseHelper.COLUMN_ID + "=?";
+
+    static final String SQL_USER_PREFERENCES =
+            "SELECT " + DatabaseHelper.COLUMN_PREFERENCES + " FROM " + DatabaseHelper.TABLE_USERS + " " +
+                    "WHERE " + DatabaseHelper.COLUMN_ID + "=?";
+
+    static final String SQL_ALL_MOVIES =
+            "SELECT * FROM " + DatabaseHelper.TABLE_MOVIES + " " +
+                    "ORDER BY " + DatabaseHelper.COLUMN_TITLE + " ASC";
+
+    static final String SQL_MOVIE_BY_ID =
+            "SELECT * FROM " + DatabaseHelper.TABLE_MOVIES + " " +
+                    "WHERE " + DatabaseHelper.COLUMN_ID + "=?";
+
+    static final String SQL_MOVIES_BY_GENRE =
+            "SELECT m.* FROM " + DatabaseHelper.TABLE_GENRES + " g " +
+                    "JOIN " + DatabaseHelper.TABLE_MOVIE_GENRES + " mg " +
+                    "ON mg." + DatabaseHelper.COLUMN_GENRE_ID + " = g." + DatabaseHelper.COLUMN_ID + " " +
+                    "JOIN " + DatabaseHelper.TABLE_MOVIES + " m " +
+                    "ON m." + DatabaseHelper.COLUMN_ID + " = mg." + DatabaseHelper.COLUMN_MOVIE_ID + " " +
+                    "WHERE g." + DatabaseHelper.COLUMN_NAME + " = ? " +
+                    "ORDER BY m." + DatabaseHelper.COLUMN_TITLE + " ASC";
+
+    static final String SQL_SEARCH_MOVIES =
+            "SELECT m.* FROM " + DatabaseHelper.TABLE_MOVIES + " m " +
+                    "WHERE m." + DatabaseHelper.COLUMN_ID + " IN (" +
+                    "SELECT " + DatabaseHelper.COLUMN_DOCID + " FROM " + DatabaseHelper.TABLE_MOVIES_FTS + " " +
+                    "WHERE " + DatabaseHelper.TABLE_MOVIES_FTS + " MATCH ?) " +
+                    "ORDER BY m." + DatabaseHelper.COLUMN_TITLE + " ASC";
+
+    // WHERE clause of the single diary row (user_id, movie_id)
+    static final String WHERE_DIARY_ROW =
+            DatabaseHelper.COLUMN_USER_ID + "=? AND " + DatabaseHelper.COLUMN_MOVIE_ID + "=?";
+
+    static final String SQL_DIARY_ROW =
+            "SELECT * FROM " + DatabaseHelper.TABLE_USER_MOVIES + " WHERE " + WHERE_DIARY_ROW;
+
+    static final String SQL_UPSERT_DIARY =
+            "INSERT OR REPLACE INTO " + DatabaseHelper.TABLE_USER_MOVIES + " (" +
+                    DatabaseHelper.COLUMN_USER_ID + ", " + DatabaseHelper.COLUMN_MOVIE_ID + ", " +
+                    DatabaseHelper.COLUMN_STATUS + ", " + DatabaseHelper.COLUMN_RATING + ") VALUES (?, ?, ?, ?)";
+
+    static final String SQL_DELETE_DIARY_ROW =
+            "DELETE FROM " + DatabaseHelper.TABLE_USER_MOVIES + " WHERE " + WHERE_DIARY_ROW;
+
+    // Whole diary of a user for DiaryIndex (covered by idx_user_movies_user_status)
+    static final String SQL_DIARY_STATES =
+            "SELECT " + DatabaseHelper.COLUMN_MOVIE_ID + ", " + DatabaseHelper.COLUMN_STATUS + ", " +
+                    DatabaseHelper.COLUMN_RATING + " FROM " + DatabaseHelper.TABLE_USER_MOVIES + " " +
+                    "WHERE " + DatabaseHelper.COLUMN_USER_ID + "=?";
+
+    // Posters of a user's diary, for PosterDownloader
+    static final String SQL_DIARY_POSTER_URLS =
+            "SELECT m." + DatabaseHelper.COLUMN_POSTER_URL + " FROM " + DatabaseHelper.TABLE_USER_MOVIES + " um " +
+                    "JOIN " + DatabaseHelper.TABLE_MOVIES + " m " +
+                    "ON m." + DatabaseHelper.COLUMN_ID + " = um." + DatabaseHelper.COLUMN_MOVIE_ID + " " +
+                    "WHERE um." + DatabaseHelper.COLUMN_USER_ID + "=? " +
+                    "AND m." + DatabaseHelper.COLUMN_POSTER_URL + " IS NOT NULL";
+
+    static final String SQL_USER_MOVIES_BY_STATUS =
+            "SELECT m.* FROM " + DatabaseHelper.TABLE_MOVIES + " m " +
+                    "JOIN " + DatabaseHelper.TABLE_USER_MOVIES + " um " +
+                    "ON m." + DatabaseHelper.COLUMN_ID + " = um." + DatabaseHelper.COLUMN_MOVIE_ID + " " +
+                    "WHERE um." + DatabaseHelper.COLUMN_USER_ID + "=? " +
+                    "AND um." + DatabaseHelper.COLUMN_STATUS + "=? " +
+                    "ORDER BY m." + DatabaseHelper.COLUMN_TITLE + " ASC";
+
+    static final String SQL_USER_MOVIES_BY_STATUS_WITH_RATING =
+            "SELECT m.*, " +
+                    "um." + DatabaseHelper.COLUMN_STATUS + " AS " + ALIAS_USER_STATUS + ", " +
+                    "um." + DatabaseHelper.COLUMN_RATING + " AS " + ALIAS_USER_RATING + " " +
+                    "FROM " + DatabaseHelper.TABLE_MOVIES + " m " +
+                    "JOIN " + DatabaseHelper.TABLE_USER_MOVIES + " um " +
+                    "ON m." + DatabaseHelper.COLUMN_ID + " = um." + DatabaseHelper.COLUMN_MOVIE_ID + " " +
+                    "WHERE um." + DatabaseHelper.COLUMN_USER_ID + "=? " +
+                    "AND um." + DatabaseHelper.COLUMN_STATUS + "=? " +
+                    "ORDER BY m." + DatabaseHelper.COLUMN_TITLE + " ASC";
+
+    static final String SQL_MOVIES_FOR_HOME =
+            "SELECT m.*, " +
+                    "um." + DatabaseHelper.COLUMN_STATUS + " AS " + ALIAS_USER_STATUS + ", " +
+                    "um." + DatabaseHelper.COLUMN_RATING + " AS " + ALIAS_USER_RATING + " " +
+                    "FROM " + DatabaseHelper.TABLE_MOVIES + " m " +
+                    "LEFT JOIN " + DatabaseHelper.TABLE_USER_MOVIES + " um " +
+                    "ON m." + DatabaseHelper.COLUMN_ID + " = um." + DatabaseHelper.COLUMN_MOVIE_ID +
+                    " AND um." + DatabaseHelper.COLUMN_USER_ID + " = ? " +
+                    "ORDER BY m." + DatabaseHelper.COLUMN_TITLE + " ASC";
+
+    // Keyset predicate on (title, id): the "title >= ?" part lets SQLite seek idx_movies_title
+    private static final String WHERE_AFTER_TITLE_ID =
+            "m." + DatabaseHelper.COLUMN_TITLE + " >= ? AND (m." + DatabaseHelper.COLUMN_TITLE + " > ? OR m." + DatabaseHelper.COLUMN_ID + " > ?)";
+
+    private static final String ORDER_BY_TITLE_ID =
+            "ORDER BY m." + DatabaseHelper.COLUMN_TITLE + " ASC, m." + DatabaseHelper.COLUMN_ID + " ASC ";
+
+    // Same within one genre, on idx_movie_genres_genre
+    private static final String WHERE_GENRE_AFTER_TITLE_ID =
+            "mg." + DatabaseHelper.COLUMN_TITLE + " >= ? AND (mg." + DatabaseHelper.COLUMN_TITLE + " > ? OR mg." + DatabaseHelper.COLUMN_MOVIE_ID + " > ?) ";
+
+    // Movies of the user's ranked genres (GenreAffinity), each under the rank of its best genre: the ranked
+    // genres in rank order (idx_user_genre_affinity_rank), the movies of each in title order
+    // (idx_movie_genres_genre), minus those a better-ranked genre already had. Arg: user.
+    private static final String FROM_RANKED_MOVIES =
+            "FROM " + DatabaseHelper.TABLE_USER_GENRE_AFFINITY + " a " +
+                    "JOIN " + DatabaseHelper.TABLE_MOVIE_GENRES + " mg " +
+                    "ON mg." + DatabaseHelper.COLUMN_GENRE_ID + " = a." + DatabaseHelper.COLUMN_GENRE_ID + " " +
+                    "JOIN " + DatabaseHelper.TABLE_MOVIES + " m ON m." + DatabaseHelper.COLUMN_ID + " = mg." + DatabaseHelper.COLUMN_MOVIE_ID + " ";
+
+    private static final String WHERE_RANKED_MOVIE =
+            "a." + DatabaseHelper.COLUMN_USER_ID + " = ? " +
+                    "AND a." + DatabaseHelper.COLUMN_AFFINITY_RANK + " < " + GenreAffinity.UNRANKED + " " +
+                    "AND NOT EXISTS (SELECT 1 FROM " + DatabaseHelper.TABLE_MOVIE_GENRES + " og " +
+                    "JOIN " + DatabaseHelper.TABLE_USER_GENRE_AFFINITY + " oa " +
+                    "ON oa." + DatabaseHelper.COLUMN_USER_ID + " = a." + DatabaseHelper.COLUMN_USER_ID + " AND oa." + DatabaseHelper.COLUMN_GENRE_ID + " = og." + DatabaseHelper.COLUMN_GENRE_ID + " " +
+                    "WHERE og." + DatabaseHelper.COLUMN_MOVIE_ID + " = mg." + DatabaseHelper.COLUMN_MOVIE_ID + " " +
+                    "AND oa." + DatabaseHelper.COLUMN_AFFINITY_RANK + " < a." + DatabaseHelper.COLUMN_AFFINITY_RANK + ") ";
+
+    // Ranks are unique per user: genre_id changes nothing, but with it the unique rank index gives the order
+    private static final String ORDER_BY_RANK_TITLE_ID =
+            "ORDER BY a." + DatabaseHelper.COLUMN_AFFINITY_RANK + " ASC, a." + DatabaseHelper.COLUMN_GENRE_ID + " ASC, " +
+                    "mg." + DatabaseHelper.COLUMN_TITLE + " ASC, mg." + DatabaseHelper.COLUMN_MOVIE_ID + " ASC ";
+
+    // Movies in none of the user's ranked genres (arg: user): two primary-key lookups per movie
+    private static final String WHERE_UNRANKED_MOVIE =
+            "NOT EXISTS (SELECT 1 FROM " + DatabaseHelper.TABLE_MOVIE_GENRES + " mg " +
+                    "JOIN " + DatabaseHelper.TABLE_USER_GENRE_AFFINITY + " a " +
+                    "ON a." + DatabaseHelper.COLUMN_USER_ID + " = ? AND a." + DatabaseHelper.COLUMN_GENRE_ID + " = mg." + DatabaseHelper.COLUMN_GENRE_ID + " " +
+                    "WHERE mg." + DatabaseHelper.COLUMN_MOVIE_ID + " = m." + DatabaseHelper.COLUMN_ID + " " +
+                    "AND a." + DatabaseHelper.COLUMN_AFFINITY_RANK + " < " + GenreAffinity.UNRANKED + ") ";
+
+    // getMoviesForHomePersonalized() reads these two one after the other. Args: user.
+    static final String SQL_MOVIES_FOR_HOME_RANKED =
+            "SELECT m.*, " +
+                    "um." + DatabaseHelper.COLUMN_STATUS + " AS " + ALIAS_USER_STATUS + ", " +
+                    "um." + DatabaseHelper.COLUMN_RATING + " AS " + ALIAS_USER_RATING + " " +
+                    FROM_RANKED_MOVIES +
+                    "LEFT JOIN " + DatabaseHelper.TABLE_USER_MOVIES + " um " +
+                    "ON um." + DatabaseHelper.COLUMN_MOVIE_ID + " = m." + DatabaseHelper.COLUMN_ID +
+                    " AND um." + DatabaseHelper.COLUMN_USER_ID + " = a." + DatabaseHelper.COLUMN_USER_ID + " " +
+                    "WHERE " + WHERE_RANKED_MOVIE +
+                    ORDER_BY_RANK_TITLE_ID;
+
+    // Args: user, user.
+    static final String SQL_MOVIES_FOR_HOME_UNRANKED =
+            "SELECT m.*, " +
+                    "um." + DatabaseHelper.COLUMN_STATUS + " AS " + ALIAS_USER_STATUS + ", " +
+                    "um." + DatabaseHelper.COLUMN_RATING + " AS " + ALIAS_USER_RATING + " " +
+                    "FROM " + DatabaseHelper.TABLE_MOVIES + " m " +
+                    "LEFT JOIN " + DatabaseHelper.TABLE_USER_MOVIES + " um " +
+                    "ON m." + DatabaseHelper.COLUMN_ID + " = um." + DatabaseHelper.COLUMN_MOVIE_ID +
+                    " AND um." + DatabaseHelper.COLUMN_USER_ID + " = ? " +
+                    "WHERE " + WHERE_UNRANKED_MOVIE +
+                    ORDER_BY_TITLE_ID;
+
+    // Does the user have a ranked genre at all (else the home grid is in title order)
+    static final String SQL_HAS_RANKED_GENRES =
+            "SELECT EXISTS(SELECT 1 FROM " + DatabaseHelper.TABLE_USER_GENRE_AFFINITY + " " +
+                    "WHERE " + DatabaseHelper.COLUMN_USER_ID + " = ? " +
+                    "AND " + DatabaseHelper.COLUMN_AFFINITY_RANK + " < " + GenreAffinity.UNRANKED + ")";
+
+    // Top neighbours of a movie (CoOccurrence), most shared first: read in order from idx_movie_cooccurrence_count
+    static final String SQL_RELATED_MOVIES =
+            "SELECT m.* FROM " + DatabaseHelper.TABLE_MOVIE_COOCCURRENCE + " c " +
+                    "JOIN " + DatabaseHelper.TABLE_MOVIES + " m ON m." + DatabaseHelper.COLUMN_ID + " = c." + DatabaseHelper.COLUMN_OTHER_ID + " " +
+                    "WHERE c." + DatabaseHelper.COLUMN_MOVIE_ID + " = ? " +
+                    "ORDER BY c." + DatabaseHelper.COLUMN_PAIR_COUNT + " DESC, c." + DatabaseHelper.COLUMN_OTHER_ID + " DESC " +
+                    "LIMIT " + CoOccurrence.TOP_K;
+
+    // Movies whose related list is kept (a details screen each)
+    static final int RELATED_CACHE_ENTRIES = 64;
+
+    private static DatabaseManager instance;
+
     private final DatabaseHelper dbHelper;
     private SQLiteDatabase database;
 
-    public DatabaseManager(Context context) {
+    // Compiled once, reused by the hot writes and existence checks (see statement())
+    private final Map<String, SQLiteStatement> statements = new HashMap<>();
+
+    private final MovieCache movieCache = MovieCache.getInstance();
+    // Top CoOccurrence.TOP_K related movies by movie id; dropped whenever a watched set changes
+    private final LruCache<Integer, List<MovieRow>> relatedCache = new LruCache<>(RELATED_CACHE_ENTRIES);
+    // Latency / rows / thread of every public call below (begin() ... finally end())
+    private final DbMetrics metrics = DbMetrics.getInstance();
+    // Every successful write is announced here
+    private final ChangeBus changes = ChangeBus.getInstance();
+
+    // Diary state of the user browsing the grid; loads and diary writes hold diaryLock
+    private final Object diaryLock = new Object();
+    private volatile DiaryIndex diaryIndex;
+
+    /**
+     * Process-wide, already opened instance. Activities borrow it and never close it:
+     * the connection pool lives as long as the app process.
+     */
+    public static DatabaseManager getInstance(Context context) {
+        // Checked before the lock: a screen would also wait here for another thread's open (migrations)
+        MainThreadGuard.getInstance().check(DbMetrics.Op.OPEN);
+        synchronized (DatabaseManager.class) {
+            if (instance == null) {
+                instance = new DatabaseManager(context.getApplicationContext());
+                instance.open();
+            }
+            return instance;
+        }
+    }
+
+    // Only for tests: whether getInstance() has opened the process-wide database
+    public static synchronized boolean hasInstance() {
+        return instance != null;
+    }
+
+    // Only for tests: closes the process-wide database, the next getInstance() opens it again
+    public static synchronized void resetInstance() {
+        if (instance == null) return;
+        instance.close();
+        instance = null;
+    }
+
+    // Use getInstance(); tests may build their own instance on a fresh context
+    DatabaseManager(Context context) {
         dbHelper = new DatabaseHelper(context);
     }
 
     public void open() {
-        database = dbHelper.getWritableDatabase();
+        long start = metrics.begin(DbMetrics.Op.OPEN);
+        try {
+            database = dbHelper.getWritableDatabase();
+            // Nothing cached can predate the file just opened (tests open fresh databases)
+            movieCache.invalidateAll();
+            relatedCache.evictAll();
+        } finally {
+            metrics.end(DbMetrics.Op.OPEN, start, 0);
+        }
     }
 
+    // Only for tests / process teardown: closes the pool shared by every screen
     public void close() {
+        synchronized (statements) {
+            for (SQLiteStatement statement : statements.values()) {
+                statement.close();
+            }
+            statements.clear();
+        }
         dbHelper.close();
     }
 
@@ -38,38 +312,55 @@ public class DatabaseManager {
     // USER OPERATIONS
     // =======================
 
+    /**
+     * Registration: hashes the password at the calibrated cost (slow, call it off the main thread).
+     */
     public boolean addUser(User user) {
         String salt = PasswordUtils.generateSalt();
-        String hash = PasswordUtils.hashPassword(user.getPassword(), salt);
+        int iterations = PasswordUtils.calibratedIterations();
+        String hash = PasswordUtils.hashPassword(user.getPassword(), salt, iterations);
 
         ContentValues values = new ContentValues();
         values.put(DatabaseHelper.COLUMN_USERNAME, user.getUsername());
         values.put(DatabaseHelper.COLUMN_EMAIL, user.getEmail());
         values.put(DatabaseHelper.COLUMN_PASSWORD_HASH, hash);
         values.put(DatabaseHelper.COLUMN_SALT, salt);
+        values.put(DatabaseHelper.COLUMN_HASH_ITERATIONS, iterations);
         values.put(DatabaseHelper.COLUMN_PREFERENCES, user.getPreferences());
 
-        return database.insert(DatabaseHelper.TABLE_USERS, null, values) != -1;
+        long start = metrics.begin(DbMetrics.Op.ADD_USER);
+        boolean added = false;
+        try {
+            database.beginTransaction();
+            try {
+                long userId = database.insert(DatabaseHelper.TABLE_USERS, null, values);
+                added = userId != -1;
+                if (added) GenreAffinity.setPreferences(database, userId, user.getPreferences());
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+            return added;
+        } finally {
+            metrics.end(DbMetrics.Op.ADD_USER, start, added ? 1 : 0);
+        }
     }
 
     /**
-     * Login: find user by email, verify hashed password.
+     * Login: find user by email, verify hashed password. Read-only: the caller upgrades an
+     * outdated hash with rehashPassword() on the write path.
      */
     public User getUser(String email, String password) {
-        Cursor cursor = database.query(
-                DatabaseHelper.TABLE_USERS,
-                null,
-                DatabaseHelper.COLUMN_EMAIL + "=?",
-                new String[]{email},
-                null, null, null
-        );
-
+        long start = metrics.begin(DbMetrics.Op.GET_USER);
+        Cursor cursor = null;
         try {
+            cursor = database.rawQuery(SQL_USER_BY_EMAIL, new String[]{email});
             if (cursor != null && cursor.moveToFirst()) {
                 String salt = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_SALT));
                 String hash = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_PASSWORD_HASH));
+                int iterations = cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_HASH_ITERATIONS));
 
-                if (PasswordUtils.verifyPassword(password, salt, hash)) {
+                if (PasswordUtils.verifyPassword(password, salt, hash, iterations)) {
                     User user = new User();
                     user.setId(cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_ID)));
                     user.setUsername(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_USERNAME)));
@@ -80,38 +371,45 @@ public class DatabaseManager {
             }
             return null;
         } finally {
+            metrics.end(DbMetrics.Op.GET_USER, start, cursor);
             closeQuietly(cursor);
         }
     }
 
-    public boolean isEmailExists(String email) {
-        Cursor cursor = database.query(
-                DatabaseHelper.TABLE_USERS,
-                new String[]{DatabaseHelper.COLUMN_ID},
-                DatabaseHelper.COLUMN_EMAIL + "=?",
-                new String[]{email},
-                null, null, null
-        );
+    /**
+     * After a successful login: replaces a hash that needsRehash() with a new salt at the current
+     * cost (slow, call it off the main thread). False when the stored hash was good enough.
+     * A failed update keeps the old (still valid) hash.
+     */
+    public boolean rehashPassword(int userId, String password) {
+        long start = metrics.begin(DbMetrics.Op.REHASH_PASSWORD);
+        boolean rehashed = false;
         try {
-            return cursor != null && cursor.getCount() > 0;
+            int stored = (int) queryLong(SQL_USER_HASH_ITERATIONS, userId);
+            if (!PasswordUtils.needsRehash(stored)) return false;
+
+            String salt = PasswordUtils.generateSalt();
+            int iterations = PasswordUtils.calibratedIterations();
+
+            ContentValues values = new ContentValues();
+            values.put(DatabaseHelper.COLUMN_PASSWORD_HASH, PasswordUtils.hashPassword(password, salt, iterations));
+            values.put(DatabaseHelper.COLUMN_SALT, salt);
+            values.put(DatabaseHelper.COLUMN_HASH_ITERATIONS, iterations);
+
+            rehashed = database.update(DatabaseHelper.TABLE_USERS, values,
+                    DatabaseHelper.COLUMN_ID + "=?", new String[]{String.valueOf(userId)}) > 0;
+            return rehashed;
         } finally {
-            closeQuietly(cursor);
+            metrics.end(DbMetrics.Op.REHASH_PASSWORD, start, rehashed ? 1 : 0);
         }
     }
 
+    public boolean isEmailExists(String email) {
+        return exists(DbMetrics.Op.EMAIL_EXISTS, SQL_EMAIL_EXISTS, email);
+    }
+
     public boolean isUsernameExists(String username) {
-        Cursor cursor = database.query(
-                DatabaseHelper.TABLE_USERS,
-                new String[]{DatabaseHelper.COLUMN_ID},
-                DatabaseHelper.COLUMN_USERNAME + "=?",
-                new String[]{username},
-                null, null, null
-        );
-        try {
-            return cursor != null && cursor.getCount() > 0;
-        } finally {
-            closeQuietly(cursor);
-        }
+        return exists(DbMetrics.Op.USERNAME_EXISTS, SQL_USERNAME_EXISTS, username);
     }
 
     // =======================
@@ -119,38 +417,28 @@ public class DatabaseManager {
     // =======================
 
     public Cursor getAllMovies() {
-        return database.query(
-                DatabaseHelper.TABLE_MOVIES,
-                null,
-                null,
-                null,
-                null,
-                null,
-                DatabaseHelper.COLUMN_TITLE + " ASC"
-        );
+        return query(DbMetrics.Op.ALL_MOVIES, SQL_ALL_MOVIES, null);
     }
 
+    /**
+     * Movies tagged with exactly this genre (case-insensitive), through the movie_genres index.
+     */
     public Cursor getMoviesByGenre(String genre) {
-        return database.query(
-                DatabaseHelper.TABLE_MOVIES,
-                null,
-                DatabaseHelper.COLUMN_GENRE + " LIKE ?",
-                new String[]{"%" + genre + "%"},
-                null, null,
-                DatabaseHelper.COLUMN_TITLE + " ASC"
-        );
+        return query(DbMetrics.Op.MOVIES_BY_GENRE, SQL_MOVIES_BY_GENRE, new String[]{genre == null ? "" : genre.trim()});
     }
 
+    /**
+     * Served from MovieCache when the movie was bound or loaded recently, else queried and cached.
+     */
     public Movie getMovieById(int movieId) {
-        Cursor cursor = database.query(
-                DatabaseHelper.TABLE_MOVIES,
-                null,
-                DatabaseHelper.COLUMN_ID + "=?",
-                new String[]{String.valueOf(movieId)},
-                null, null, null
-        );
-
+        long start = metrics.begin(DbMetrics.Op.MOVIE_BY_ID);
+        Movie result = null;
+        Cursor cursor = null;
         try {
+            result = movieCache.get(movieId);
+            if (result != null) return result;
+
+            cursor = database.rawQuery(SQL_MOVIE_BY_ID, new String[]{String.valueOf(movieId)});
             if (cursor != null && cursor.moveToFirst()) {
                 Movie movie = new Movie();
                 movie.setId(cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_ID)));
@@ -159,28 +447,54 @@ public class DatabaseManager {
                 movie.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_DESCRIPTION)));
                 movie.setReleaseYear(cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_RELEASE_YEAR)));
                 movie.setGenre(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_GENRE)));
-                return movie;
+                movieCache.put(movie);
+                result = movie;
             }
-            return null;
+            return result;
         } finally {
+            metrics.end(DbMetrics.Op.MOVIE_BY_ID, start, result == null ? 0 : 1);
             closeQuietly(cursor);
         }
     }
 
+    /**
+     * Full-text search on title, genre and description.
+     * Every word of the query is matched as a prefix ("inter stel" finds "Interstellar").
+     * Returns the same columns as getAllMovies().
+     */
     public Cursor searchMovies(String query) {
-        String like = likeQuery(query);
+        String match = ftsPrefixQuery(query);
+        if (match.isEmpty()) {
+            return getAllMovies();
+        }
+        return query(DbMetrics.Op.SEARCH_MOVIES, SQL_SEARCH_MOVIES, new String[]{match});
+    }
+
+    /**
+     * Bulk-loads a catalog file (see CatalogImporter for the formats). Blocks until done:
+     * call it on a background thread. listener may be null.
+     */
+    public CatalogImporter.Progress importCatalog(Reader input, CatalogImporter.Format format,
+                                                  CatalogImporter.ProgressListener listener) throws IOException {
+        long start = metrics.begin(DbMetrics.Op.IMPORT_CATALOG);
+        CatalogImporter.Progress progress = null;
+        try {
+            long genresBefore = DatabaseUtils.queryNumEntries(database, DatabaseHelper.TABLE_GENRES);
+            progress = new CatalogImporter(database).run(input, format, listener);
 
-        return database.query(
-                DatabaseHelper.TABLE_MOVIES,
-                null,
-                DatabaseHelper.COLUMN_TITLE + " LIKE ? OR " +
-                        DatabaseHelper.COLUMN_GENRE + " LIKE ? OR " +
-                        DatabaseHelper.COLUMN_DESCRIPTION + " LIKE ?",
-                new String[]{like, like, like},
-                null,
-                null,
-                DatabaseHelper.COLUMN_TITLE + " ASC"
-        );
+            // Committed: what derives from the catalog follows it. A failed import stops before
+            // (its exception is the one thrown); the batches it committed show on the next import.
+            if (DatabaseUtils.queryNumEntries(database, DatabaseHelper.TABLE_GENRES) != genresBefore) {
+                // Preferences may name genres that only exist now
+                refreshPreferences();
+            }
+            movieCache.invalidateAll();
+            relatedCache.evictAll();
+            changes.publish(ChangeBus.Change.catalog());
+            return progress;
+        } finally {
+            metrics.end(DbMetrics.Op.IMPORT_CATALOG, start, progress == null ? 0 : (int) Math.min(progress.getImported(), Integer.MAX_VALUE));
+        }
     }
 
     // =======================
@@ -190,30 +504,70 @@ public class DatabaseManager {
     // rating: 0..5
     // =======================
 
+    // Called on every rating-bar tick: precompiled, nothing rebuilt per call
     public boolean upsertDiary(int userId, int movieId, String status, int rating) {
-        ContentValues values = new ContentValues();
-        values.put(DatabaseHelper.COLUMN_USER_ID, userId);
-        values.put(DatabaseHelper.COLUMN_MOVIE_ID, movieId);
-        values.put(DatabaseHelper.COLUMN_STATUS, status);
-        values.put(DatabaseHelper.COLUMN_RATING, rating);
-
-        long result = database.insertWithOnConflict(
-                DatabaseHelper.TABLE_USER_MOVIES,
-                null,
-                values,
-                SQLiteDatabase.CONFLICT_REPLACE
-        );
-        return result != -1;
+        long start = metrics.begin(DbMetrics.Op.UPSERT_DIARY);
+        boolean ok = false;
+        try {
+            SQLiteStatement statement = statement(SQL_UPSERT_DIARY);
+            boolean watchedChanged = false;
+            synchronized (diaryLock) {
+                // The row and the genre scores it feeds change together
+                database.beginTransaction();
+                try {
+                    execute(GenreAffinity.SQL_ADD_MOVIE_GENRES, userId, movieId);
+                    execute(GenreAffinity.SQL_APPLY_DIARY_ROW, -1, userId, movieId, userId, movieId);
+                    synchronized (statement) {
+                        statement.bindLong(1, userId);
+                        statement.bindLong(2, movieId);
+                        statement.bindString(3, status);
+                        statement.bindLong(4, rating);
+                        ok = statement.executeInsert() != -1;
+                    }
+                    if (ok) {
+                        execute(GenreAffinity.SQL_APPLY_DIARY_ROW, 1, userId, movieId, userId, movieId);
+                        execute(GenreAffinity.SQL_RERANK_USER, userId);
+                        watchedChanged = updateCoOccurrence(userId, movieId, STATUS_WATCHED.equals(status));
+                        database.setTransactionSuccessful();
+                    }
+                } finally {
+                    database.endTransaction();
+                }
+                if (watchedChanged) relatedCache.evictAll();
+                DiaryIndex index = diaryIndex;
+                if (ok && index != null && index.getUserId() == userId) index.put(movieId, status, rating);
+                if (ok) changes.publish(ChangeBus.Change.diaryRow(userId, movieId, status, rating));
+                return ok;
+            }
+        } finally {
+            metrics.end(DbMetrics.Op.UPSERT_DIARY, start, ok ? 1 : 0);
+        }
     }
 
     public Cursor getDiaryRow(int userId, int movieId) {
-        return database.query(
-                DatabaseHelper.TABLE_USER_MOVIES,
-                null,
-                DatabaseHelper.COLUMN_USER_ID + "=? AND " + DatabaseHelper.COLUMN_MOVIE_ID + "=?",
-                new String[]{String.valueOf(userId), String.valueOf(movieId)},
-                null, null, null
-        );
+        return query(DbMetrics.Op.DIARY_ROW, SQL_DIARY_ROW, new String[]{String.valueOf(userId), String.valueOf(movieId)});
+    }
+
+    /**
+     * Status + rating of one movie in the user's diary, or null if it is not in the diary.
+     */
+    public DiaryEntry getDiaryEntry(int userId, int movieId) {
+        long start = metrics.begin(DbMetrics.Op.DIARY_ENTRY);
+        DiaryEntry entry = null;
+        Cursor cursor = null;
+        try {
+            cursor = database.rawQuery(SQL_DIARY_ROW, new String[]{String.valueOf(userId), String.valueOf(movieId)});
+            if (cursor != null && cursor.moveToFirst()) {
+                entry = new DiaryEntry(
+                        cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_STATUS)),
+                        cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_RATING))
+                );
+            }
+            return entry;
+        } finally {
+            metrics.end(DbMetrics.Op.DIARY_ENTRY, start, entry == null ? 0 : 1);
+            closeQuietly(cursor);
+        }
     }
 
     public Cursor getUserWatchlist(int userId) {
@@ -222,98 +576,380 @@ public class DatabaseManager {
     }
 
     public Cursor getUserWatched(int userId) {
-        String q = "SELECT m.* FROM " + DatabaseHelper.TABLE_MOVIES + " m " +
-                "JOIN " + DatabaseHelper.TABLE_USER_MOVIES + " um " +
-                "ON m." + DatabaseHelper.COLUMN_ID + " = um." + DatabaseHelper.COLUMN_MOVIE_ID + " " +
-                "WHERE um." + DatabaseHelper.COLUMN_USER_ID + "=? " +
-                "AND um." + DatabaseHelper.COLUMN_STATUS + "=? " +
-                "ORDER BY m." + DatabaseHelper.COLUMN_TITLE + " ASC";
-        return database.rawQuery(q, new String[]{String.valueOf(userId), STATUS_WATCHED});
+        return query(DbMetrics.Op.USER_WATCHED, SQL_USER_MOVIES_BY_STATUS, new String[]{String.valueOf(userId), STATUS_WATCHED});
     }
 
     public boolean removeFromDiary(int userId, int movieId) {
-        int rows = database.delete(
-                DatabaseHelper.TABLE_USER_MOVIES,
-                DatabaseHelper.COLUMN_USER_ID + "=? AND " + DatabaseHelper.COLUMN_MOVIE_ID + "=?",
-                new String[]{String.valueOf(userId), String.valueOf(movieId)}
-        );
-        return rows > 0;
+        long start = metrics.begin(DbMetrics.Op.REMOVE_FROM_DIARY);
+        boolean removed = false;
+        try {
+            SQLiteStatement statement = statement(SQL_DELETE_DIARY_ROW);
+            boolean watchedChanged = false;
+            synchronized (diaryLock) {
+                database.beginTransaction();
+                try {
+                    execute(GenreAffinity.SQL_APPLY_DIARY_ROW, -1, userId, movieId, userId, movieId);
+                    synchronized (statement) {
+                        statement.bindLong(1, userId);
+                        statement.bindLong(2, movieId);
+                        removed = statement.executeUpdateDelete() > 0;
+                    }
+                    if (removed) {
+                        execute(GenreAffinity.SQL_RERANK_USER, userId);
+                        watchedChanged = updateCoOccurrence(userId, movieId, false);
+                    }
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
+                if (watchedChanged) relatedCache.evictAll();
+                DiaryIndex index = diaryIndex;
+                if (index != null && index.getUserId() == userId) index.remove(movieId);
+                if (removed) changes.publish(ChangeBus.Change.diaryRow(userId, movieId, null, 0));
+                return removed;
+            }
+        } finally {
+            metrics.end(DbMetrics.Op.REMOVE_FROM_DIARY, start, removed ? 1 : 0);
+        }
+    }
+
+    /**
+     * In-memory diary state of userId, read from user_movies on the first call for that user
+     * (one indexed query) and kept up to date by upsertDiary / removeFromDiary afterwards.
+     * Only the last user asked for is kept.
+     */
+    public DiaryIndex getDiaryIndex(int userId) {
+        DiaryIndex index = diaryIndex;
+        if (index != null && index.getUserId() == userId) return index;
+
+        // Only the load is recorded: the in-memory hits above are the point of the index
+        long start = metrics.begin(DbMetrics.Op.DIARY_INDEX);
+        int rows = 0;
+        try {
+            synchronized (diaryLock) {
+                index = diaryIndex;
+                if (index != null && index.getUserId() == userId) return index;
+
+                Cursor cursor = database.rawQuery(SQL_DIARY_STATES, new String[]{String.valueOf(userId)});
+                try {
+                    index = new DiaryIndex(userId, cursor.getCount());
+                    while (cursor.moveToNext()) {
+                        index.put(cursor.getInt(0), cursor.getString(1), cursor.getInt(2));
+                        rows++;
+                    }
+                } finally {
+                    closeQuietly(cursor);
+                }
+                diaryIndex = index;
+                return index;
+            }
+        } finally {
+            metrics.end(DbMetrics.Op.DIARY_INDEX, start, rows);
+        }
+    }
+
+    /**
+     * Poster urls of every movie in the diary of userId (both statuses), unordered.
+     */
+    public List<String> getDiaryPosterUrls(int userId) {
+        long start = metrics.begin(DbMetrics.Op.DIARY_POSTER_URLS);
+        List<String> urls = null;
+        Cursor cursor = null;
+        try {
+            cursor = database.rawQuery(SQL_DIARY_POSTER_URLS, new String[]{String.valueOf(userId)});
+            urls = new ArrayList<>(Math.max(cursor.getCount(), 0));
+            while (cursor.moveToNext()) urls.add(cursor.getString(0));
+            return urls;
+        } finally {
+            metrics.end(DbMetrics.Op.DIARY_POSTER_URLS, start, urls == null ? 0 : urls.size());
+            closeQuietly(cursor);
+        }
     }
 
     public Cursor getUserWishlistWithRating(int userId) {
-        String q = "SELECT m.*, um." + DatabaseHelper.COLUMN_RATING + " AS " + ALIAS_USER_RATING + " " +
-                "FROM " + DatabaseHelper.TABLE_MOVIES + " m " +
-                "JOIN " + DatabaseHelper.TABLE_USER_MOVIES + " um " +
-                "ON m." + DatabaseHelper.COLUMN_ID + " = um." + DatabaseHelper.COLUMN_MOVIE_ID + " " +
-                "WHERE um." + DatabaseHelper.COLUMN_USER_ID + "=? " +
-                "AND um." + DatabaseHelper.COLUMN_STATUS + "=? " +
-                "ORDER BY m." + DatabaseHelper.COLUMN_TITLE + " ASC";
-        return database.rawQuery(q, new String[]{String.valueOf(userId), STATUS_WISHLIST});
+        return query(DbMetrics.Op.USER_WISHLIST_WITH_RATING, SQL_USER_MOVIES_BY_STATUS_WITH_RATING,
+                new String[]{String.valueOf(userId), STATUS_WISHLIST});
     }
 
     public Cursor getUserWatchedWithRating(int userId) {
-        String q = "SELECT m.*, um." + DatabaseHelper.COLUMN_RATING + " AS " + ALIAS_USER_RATING + " " +
-                "FROM " + DatabaseHelper.TABLE_MOVIES + " m " +
-                "JOIN " + DatabaseHelper.TABLE_USER_MOVIES + " um " +
-                "ON m." + DatabaseHelper.COLUMN_ID + " = um." + DatabaseHelper.COLUMN_MOVIE_ID + " " +
-                "WHERE um." + DatabaseHelper.COLUMN_USER_ID + "=? " +
-                "AND um." + DatabaseHelper.COLUMN_STATUS + "=? " +
-                "ORDER BY m." + DatabaseHelper.COLUMN_TITLE + " ASC";
-        return database.rawQuery(q, new String[]{String.valueOf(userId), STATUS_WATCHED});
+        return query(DbMetrics.Op.USER_WATCHED_WITH_RATING, SQL_USER_MOVIES_BY_STATUS_WITH_RATING,
+                new String[]{String.valueOf(userId), STATUS_WATCHED});
     }
 
-    public Cursor getMoviesForHome(int userId) {
-        String query =
-                "SELECT m.*, " +
-                        "um." + DatabaseHelper.COLUMN_STATUS + " AS " + ALIAS_USER_STATUS + ", " +
-                        "um." + DatabaseHelper.COLUMN_RATING + " AS " + ALIAS_USER_RATING + " " +
-                        "FROM " + DatabaseHelper.TABLE_MOVIES + " m " +
-                        "LEFT JOIN " + DatabaseHelper.TABLE_USER_MOVIES + " um " +
-                        "ON m." + DatabaseHelper.COLUMN_ID + " = um." + DatabaseHelper.COLUMN_MOVIE_ID +
-                        " AND um." + DatabaseHelper.COLUMN_USER_ID + " = ? " +
-                        "ORDER BY m." + DatabaseHelper.COLUMN_TITLE + " ASC";
-
-        return database.rawQuery(query, new String[]{String.valueOf(userId)});
-    }
-
-    public Cursor getMoviesForHomePersonalized(int userId, String preferencesCsv) {
-        if (preferencesCsv == null || preferencesCsv.trim().isEmpty()) {
-            return getMoviesForHome(userId);
-        }
-
-        String[] prefList = preferencesCsv.trim().split(",");
-        StringBuilder orderCase = new StringBuilder("CASE ");
-
-        int weight = 1;
-        for (String p : prefList) {
-            String genre = p.trim();
-            if (!genre.isEmpty()) {
-                orderCase.append("WHEN m.")
-                        .append(DatabaseHelper.COLUMN_GENRE)
-                        .append(" LIKE '%")
-                        .append(genre.replace("'", "''"))
-                        .append("%' THEN ")
-                        .append(weight)
-                        .append(" ");
-                weight++;
+    /**
+     * Diary list of one status (WISHLIST / WATCHED) as immutable rows, sorted by title.
+     */
+    public List<MovieRow> getUserDiary(int userId, String status) {
+        long start = metrics.begin(DbMetrics.Op.USER_DIARY);
+        List<MovieRow> rows = null;
+        Cursor cursor = null;
+        try {
+            cursor = database.rawQuery(SQL_USER_MOVIES_BY_STATUS_WITH_RATING,
+                    new String[]{String.valueOf(userId), status});
+            rows = readRows(cursor, null);
+            return rows;
+        } finally {
+            metrics.end(DbMetrics.Op.USER_DIARY, start, rows == null ? 0 : rows.size());
+            closeQuietly(cursor);
+        }
+    }
+
+    // =======================
+    // RELATED MOVIES ("also watched", see CoOccurrence)
+    // =======================
+
+    /**
+     * Up to CoOccurrence.TOP_K movies most often watched together with movieId, most shared
+     * first (no diary state). Cached per movie until a watched set or the catalog changes;
+     * the returned list is shared and unmodifiable.
+     */
+    public List<MovieRow> getRelatedMovies(int movieId) {
+        long start = metrics.begin(DbMetrics.Op.RELATED_MOVIES);
+        List<MovieRow> rows = relatedCache.get(movieId);
+        try {
+            if (rows != null) return rows;
+            // Under diaryLock: no write can commit between this read and the put
+            synchronized (diaryLock) {
+                rows = relatedCache.get(movieId);
+                if (rows == null) {
+                    Cursor cursor = database.rawQuery(SQL_RELATED_MOVIES, new String[]{String.valueOf(movieId)});
+                    try {
+                        rows = Collections.unmodifiableList(readRows(cursor, null));
+                    } finally {
+                        closeQuietly(cursor);
+                    }
+                    relatedCache.put(movieId, rows);
+                }
+                return rows;
             }
+        } finally {
+            metrics.end(DbMetrics.Op.RELATED_MOVIES, start, rows == null ? 0 : rows.size());
+        }
+    }
+
+    public Cursor getMoviesForHome(int userId) {
+        return query(DbMetrics.Op.MOVIES_FOR_HOME, SQL_MOVIES_FOR_HOME, new String[]{String.valueOf(userId)});
+    }
+
+    /**
+     * Home list where movies of the user's best genres come first, best genre first (a movie
+     * takes the rank of its best genre, see GenreAffinity), then by title.
+     */
+    public Cursor getMoviesForHomePersonalized(int userId) {
+        String user = String.valueOf(userId);
+        long start = metrics.begin(DbMetrics.Op.MOVIES_FOR_HOME_PERSONALIZED);
+        Cursor cursor = null;
+        try {
+            // Both halves are read in index order: concatenated, not sorted together
+            cursor = new MergeCursor(new Cursor[]{
+                    database.rawQuery(SQL_MOVIES_FOR_HOME_RANKED, new String[]{user}),
+                    database.rawQuery(SQL_MOVIES_FOR_HOME_UNRANKED, new String[]{user, user})});
+            return cursor;
+        } finally {
+            metrics.end(DbMetrics.Op.MOVIES_FOR_HOME_PERSONALIZED, start, cursor);
+        }
+    }
+
+    // =======================
+    // PAGED LISTS (keyset pagination, never OFFSET)
+    // =======================
+
+    /**
+     * One page of the home grid, in the same order as getMoviesForHomePersonalized()
+     * (or getAllMovies() when userId is -1). Pass the previous page's getNext() as "after",
+     * null for the first page. Each page is a seek on an index, not a skip over earlier rows.
+     */
+    public MoviePage getMoviesForHomePage(int userId, MoviePage.Key after, int limit) {
+        long start = metrics.begin(DbMetrics.Op.HOME_PAGE);
+        MoviePage page = null;
+        try {
+            page = readHomePage(userId, after, limit);
+            return page;
+        } finally {
+            metrics.end(DbMetrics.Op.HOME_PAGE, start, page == null ? 0 : page.getRows().size());
+        }
+    }
+
+    private MoviePage readHomePage(int userId, MoviePage.Key after, int limit) {
+        // Badges come from the in-memory index: the queries only read movies
+        DiaryIndex diary = userId == -1 ? null : getDiaryIndex(userId);
+        if (userId == -1 || !hasRankedGenres(userId)) {
+            Cursor cursor = after == null
+                    ? database.rawQuery(sqlHomePage(false, limit), null)
+                    : database.rawQuery(sqlHomePage(true, limit),
+                    new String[]{after.getTitle(), after.getTitle(), String.valueOf(after.getId())});
+            return readPage(cursor, limit, diary);
+        }
+
+        String user = String.valueOf(userId);
+        if (after != null && after.getRank() >= GenreAffinity.UNRANKED) {
+            return readPage(database.rawQuery(sqlHomeUnrankedPage(true, limit),
+                    new String[]{user, after.getTitle(), after.getTitle(), String.valueOf(after.getId())}), limit, diary);
+        }
+
+        // Movies of the ranked genres first: the rest of the key's genre, then the genres ranked after it...
+        List<MovieRow> rows = new ArrayList<>(limit);
+        if (after != null) {
+            MoviePage genre = readPage(database.rawQuery(sqlHomeRankedPage(true, limit), new String[]{user,
+                    String.valueOf(after.getRank()), after.getTitle(), after.getTitle(), String.valueOf(after.getId())}),
+                    limit, diary);
+            if (genre.getNext() != null) return genre;
+            rows.addAll(genre.getRows());
+        }
+        int remaining = limit - rows.size();
+        MoviePage ranked = readPage(database.rawQuery(sqlHomeRankedPage(false, remaining),
+                new String[]{user, String.valueOf(after == null ? 0 : after.getRank())}), remaining, diary);
+        rows.addAll(ranked.getRows());
+        if (ranked.getNext() != null) return new MoviePage(rows, ranked.getNext());
+
+        // ...then, on the page where they run out, the others by title
+        remaining = limit - rows.size();
+        MoviePage unranked = readPage(database.rawQuery(sqlHomeUnrankedPage(false, remaining), new String[]{user}),
+                remaining, diary);
+        rows.addAll(unranked.getRows());
+        return new MoviePage(rows, unranked.getNext());
+    }
+
+    private boolean hasRankedGenres(int userId) {
+        SQLiteStatement statement = statement(SQL_HAS_RANKED_GENRES);
+        synchronized (statement) {
+            statement.bindLong(1, userId);
+            return statement.simpleQueryForLong() != 0;
+        }
+    }
+
+    /**
+     * One page of searchMovies() results (title order), same paging contract as getMoviesForHomePage().
+     */
+    public MoviePage searchMoviesPage(String query, MoviePage.Key after, int limit) {
+        return searchMoviesPage(query, after, limit, null);
+    }
+
+    /**
+     * Same, but the query can be aborted through signal (a newer search superseded it);
+     * it then throws OperationCanceledException.
+     */
+    public MoviePage searchMoviesPage(String query, MoviePage.Key after, int limit, CancellationSignal signal) {
+        String match = ftsPrefixQuery(query);
+        if (match.isEmpty()) {
+            return getMoviesForHomePage(-1, after, limit);
+        }
+
+        long start = metrics.begin(DbMetrics.Op.SEARCH_PAGE);
+        MoviePage page = null;
+        try {
+            Cursor cursor = after == null
+                    ? database.rawQuery(sqlSearchPage(false, limit), new String[]{match}, signal)
+                    : database.rawQuery(sqlSearchPage(true, limit),
+                    new String[]{match, after.getTitle(), after.getTitle(), String.valueOf(after.getId())}, signal);
+            page = readPage(cursor, limit, null);
+            return page;
+        } finally {
+            // A cancelled search is recorded too, with no rows
+            metrics.end(DbMetrics.Op.SEARCH_PAGE, start, page == null ? 0 : page.getRows().size());
+        }
+    }
+
+    // Home grid without ranked genres: the title index, nothing else
+    static String sqlHomePage(boolean hasKey, int limit) {
+        return "SELECT m.*, 0 AS " + ALIAS_SORT_RANK + " FROM " + DatabaseHelper.TABLE_MOVIES + " m " +
+                (hasKey ? "WHERE " + WHERE_AFTER_TITLE_ID + " " : "") +
+                ORDER_BY_TITLE_ID +
+                "LIMIT " + limit;
+    }
+
+    // Movies of the user's ranked genres, by (rank, title, id), in index order. With hasKey the rest of
+    // the genre ranked ? after (title, id), else the genres ranked after ? (0 for all of them).
+    static String sqlHomeRankedPage(boolean hasKey, int limit) {
+        return "SELECT m.*, a." + DatabaseHelper.COLUMN_AFFINITY_RANK + " AS " + ALIAS_SORT_RANK + " " +
+                FROM_RANKED_MOVIES +
+                "WHERE " + WHERE_RANKED_MOVIE +
+                (hasKey ? "AND a." + DatabaseHelper.COLUMN_AFFINITY_RANK + " = ? AND " + WHERE_GENRE_AFTER_TITLE_ID
+                        : "AND a." + DatabaseHelper.COLUMN_AFFINITY_RANK + " > ? ") +
+                ORDER_BY_RANK_TITLE_ID +
+                "LIMIT " + limit;
+    }
+
+    // The other movies, by title: walks the title index, two primary-key lookups per movie
+    static String sqlHomeUnrankedPage(boolean hasKey, int limit) {
+        return "SELECT m.*, " + GenreAffinity.UNRANKED + " AS " + ALIAS_SORT_RANK + " " +
+                "FROM " + DatabaseHelper.TABLE_MOVIES + " m " +
+                "WHERE " + WHERE_UNRANKED_MOVIE +
+                (hasKey ? "AND " + WHERE_AFTER_TITLE_ID + " " : "") +
+                ORDER_BY_TITLE_ID +
+                "LIMIT " + limit;
+    }
+
+    static String sqlSearchPage(boolean hasKey, int limit) {
+        return "SELECT m.* FROM " + DatabaseHelper.TABLE_MOVIES + " m " +
+                "WHERE m." + DatabaseHelper.COLUMN_ID + " IN (" +
+                "SELECT " + DatabaseHelper.COLUMN_DOCID + " FROM " + DatabaseHelper.TABLE_MOVIES_FTS + " " +
+                "WHERE " + DatabaseHelper.TABLE_MOVIES_FTS + " MATCH ?) " +
+                (hasKey ? "AND " + WHERE_AFTER_TITLE_ID + " " : "") +
+                ORDER_BY_TITLE_ID +
+                "LIMIT " + limit;
+    }
+
+    /**
+     * Reads a page cursor into rows and closes it, with the diary state of diary (may be null).
+     * A full page means there may be more rows: the next key is the last row.
+     */
+    private MoviePage readPage(Cursor cursor, int limit, DiaryIndex diary) {
+        List<MovieRow> rows;
+        int lastRank = 0;
+        try {
+            rows = readRows(cursor, diary);
+            int rank = cursor.getColumnIndex(ALIAS_SORT_RANK);
+            if (rank != -1 && cursor.moveToLast()) lastRank = cursor.getInt(rank);
+        } finally {
+            closeQuietly(cursor);
         }
 
-        orderCase.append("ELSE 999 END, m.")
-                .append(DatabaseHelper.COLUMN_TITLE)
-                .append(" ASC");
+        MoviePage.Key next = null;
+        if (rows.size() == limit) {
+            MovieRow last = rows.get(rows.size() - 1);
+            next = new MoviePage.Key(lastRank, last.getTitle(), last.getId());
+        }
+        return new MoviePage(rows, next);
+    }
 
-        String query =
-                "SELECT m.*, " +
-                        "um." + DatabaseHelper.COLUMN_STATUS + " AS " + ALIAS_USER_STATUS + ", " +
-                        "um." + DatabaseHelper.COLUMN_RATING + " AS " + ALIAS_USER_RATING + " " +
-                        "FROM " + DatabaseHelper.TABLE_MOVIES + " m " +
-                        "LEFT JOIN " + DatabaseHelper.TABLE_USER_MOVIES + " um " +
-                        "ON m." + DatabaseHelper.COLUMN_ID + " = um." + DatabaseHelper.COLUMN_MOVIE_ID +
-                        " AND um." + DatabaseHelper.COLUMN_USER_ID + " = ? " +
-                        "ORDER BY " + orderCase;
+    // Reads every row of a movie cursor (column indexes resolved once); the caller closes it.
+    // The diary state comes from the user_status / user_rating columns, or from diary if given.
+    private static List<MovieRow> readRows(Cursor cursor, DiaryIndex diary) {
+        List<MovieRow> rows = new ArrayList<>(Math.max(cursor.getCount(), 0));
+        int id = cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_ID);
+        int title = cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_TITLE);
+        int poster = cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_POSTER_URL);
+        int description = cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_DESCRIPTION);
+        int genre = cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_GENRE);
+        int year = cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_RELEASE_YEAR);
+        // Optional columns: not on the search query
+        int status = cursor.getColumnIndex(ALIAS_USER_STATUS);
+        int rating = cursor.getColumnIndex(ALIAS_USER_RATING);
 
-        return database.rawQuery(query, new String[]{String.valueOf(userId)});
+        while (cursor.moveToNext()) {
+            int movieId = cursor.getInt(id);
+            String userStatus;
+            int userRating;
+            if (diary != null) {
+                userStatus = diary.getStatus(movieId);
+                userRating = diary.getRating(movieId);
+            } else {
+                userStatus = status == -1 || cursor.isNull(status) ? null : cursor.getString(status);
+                userRating = rating == -1 || cursor.isNull(rating) ? 0 : cursor.getInt(rating);
+            }
+            rows.add(new MovieRow(
+                    movieId,
+                    cursor.getString(title),
+                    cursor.getString(poster),
+                    cursor.getString(description),
+                    cursor.getString(genre),
+                    cursor.getInt(year),
+                    userStatus,
+                    userRating
+            ));
+        }
+        return rows;
     }
 
     // =======================
@@ -321,21 +957,17 @@ public class DatabaseManager {
     // =======================
 
     public String getUserPreferences(int userId) {
-        Cursor cursor = database.query(
-                DatabaseHelper.TABLE_USERS,
-                new String[]{DatabaseHelper.COLUMN_PREFERENCES},
-                DatabaseHelper.COLUMN_ID + "=?",
-                new String[]{String.valueOf(userId)},
-                null, null, null
-        );
-
+        long start = metrics.begin(DbMetrics.Op.USER_PREFERENCES);
+        Cursor cursor = null;
         try {
+            cursor = database.rawQuery(SQL_USER_PREFERENCES, new String[]{String.valueOf(userId)});
             if (cursor != null && cursor.moveToFirst()) {
                 String prefs = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_PREFERENCES));
                 return prefs == null ? "" : prefs;
             }
             return "";
         } finally {
+            metrics.end(DbMetrics.Op.USER_PREFERENCES, start, cursor);
             closeQuietly(cursor);
         }
     }
@@ -346,53 +978,178 @@ public class DatabaseManager {
         values.put(DatabaseHelper.COLUMN_EMAIL, newEmail);
         values.put(DatabaseHelper.COLUMN_PREFERENCES, newPreferences);
 
-        int rows = database.update(
-                DatabaseHelper.TABLE_USERS,
-                values,
-                DatabaseHelper.COLUMN_ID + "=?",
-                new String[]{String.valueOf(userId)}
-        );
+        long start = metrics.begin(DbMetrics.Op.UPDATE_USER_PROFILE);
+        int rows = 0;
+        try {
+            database.beginTransaction();
+            try {
+                rows = database.update(
+                        DatabaseHelper.TABLE_USERS,
+                        values,
+                        DatabaseHelper.COLUMN_ID + "=?",
+                        new String[]{String.valueOf(userId)}
+                );
+                if (rows > 0) GenreAffinity.setPreferences(database, userId, newPreferences);
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+        } finally {
+            metrics.end(DbMetrics.Op.UPDATE_USER_PROFILE, start, rows);
+        }
+        if (rows > 0) changes.publish(ChangeBus.Change.profile(userId));
         return rows > 0;
     }
 
     public boolean isEmailExistsForOtherUser(String email, int userId) {
-        Cursor cursor = database.query(
-                DatabaseHelper.TABLE_USERS,
-                new String[]{DatabaseHelper.COLUMN_ID},
-                DatabaseHelper.COLUMN_EMAIL + "=? AND " + DatabaseHelper.COLUMN_ID + "!=?",
-                new String[]{email, String.valueOf(userId)},
-                null, null, null
-        );
+        return exists(DbMetrics.Op.EMAIL_EXISTS_FOR_OTHER_USER, SQL_EMAIL_EXISTS_FOR_OTHER_USER,
+                email, String.valueOf(userId));
+    }
 
+    public boolean isUsernameExistsForOtherUser(String username, int userId) {
+        return exists(DbMetrics.Op.USERNAME_EXISTS_FOR_OTHER_USER, SQL_USERNAME_EXISTS_FOR_OTHER_USER,
+                username, String.valueOf(userId));
+    }
+
+    // =======================
+    // Helpers
+    // =======================
+
+    private boolean exists(DbMetrics.Op op, String sql, String... args) {
+        long start = metrics.begin(op);
+        boolean found = false;
         try {
-            return cursor != null && cursor.getCount() > 0;
+            SQLiteStatement statement = statement(sql);
+            synchronized (statement) {
+                statement.bindAllArgsAsStrings(args);
+                found = statement.simpleQueryForLong() != 0;
+                return found;
+            }
         } finally {
-            closeQuietly(cursor);
+            metrics.end(op, start, found ? 1 : 0);
         }
     }
 
-    public boolean isUsernameExistsForOtherUser(String username, int userId) {
-        Cursor cursor = database.query(
-                DatabaseHelper.TABLE_USERS,
-                new String[]{DatabaseHelper.COLUMN_ID},
-                DatabaseHelper.COLUMN_USERNAME + "=? AND " + DatabaseHelper.COLUMN_ID + "!=?",
-                new String[]{username, String.valueOf(userId)},
-                null, null, null
-        );
+    // Cached statement with integer arguments, for the multi-statement writes (under diaryLock)
+    private void execute(String sql, long... args) {
+        SQLiteStatement statement = statement(sql);
+        synchronized (statement) {
+            for (int i = 0; i < args.length; i++) statement.bindLong(i + 1, args[i]);
+            statement.executeUpdateDelete();
+        }
+    }
+
+    private long queryLong(String sql, long... args) {
+        SQLiteStatement statement = statement(sql);
+        synchronized (statement) {
+            for (int i = 0; i < args.length; i++) statement.bindLong(i + 1, args[i]);
+            return statement.simpleQueryForLong();
+        }
+    }
+
+    /**
+     * Moves movieId in or out of userId's watch history and the co-occurrence counts of the
+     * WINDOW watches around it (see CoOccurrence). Nothing to do when it stays on the same
+     * side, e.g. a re-rating. Runs inside the diary write's transaction, under diaryLock;
+     * true when the counts changed (the related-movies cache is then stale once committed).
+     */
+    private boolean updateCoOccurrence(int userId, int movieId, boolean watched) {
+        long seq = queryLong(CoOccurrence.SQL_WATCH_SEQ, userId, movieId);
+        if (watched == (seq > 0)) return false;
+
+        long lo;
+        long hi;
+        long delta;
+        if (watched) {
+            seq = queryLong(CoOccurrence.SQL_NEXT_SEQ, userId);
+            lo = seq - CoOccurrence.WINDOW;
+            hi = seq - 1;
+            delta = 1;
+            execute(CoOccurrence.SQL_ADD_WATCH, userId, seq, movieId);
+            execute(CoOccurrence.SQL_ADD_PAIRS, movieId, userId, lo, hi);
+        } else {
+            // Out of the log first: the window never holds the movie itself
+            execute(CoOccurrence.SQL_REMOVE_WATCH, userId, movieId);
+            lo = seq - CoOccurrence.WINDOW;
+            hi = seq + CoOccurrence.WINDOW;
+            delta = -1;
+        }
+        execute(CoOccurrence.SQL_COUNT_PAIRS, movieId, userId, lo, hi, delta);
+        execute(CoOccurrence.SQL_COUNT_REVERSE_PAIRS, movieId, userId, lo, hi, delta);
+        if (!watched) {
+            execute(CoOccurrence.SQL_PRUNE_PAIRS, movieId, userId, lo, hi);
+            execute(CoOccurrence.SQL_PRUNE_REVERSE_PAIRS, movieId, userId, lo, hi);
+        }
+        return true;
+    }
 
+    private void refreshPreferences() {
+        database.beginTransaction();
         try {
-            return cursor != null && cursor.getCount() > 0;
+            GenreAffinity.refreshPreferences(database);
+            database.setTransactionSuccessful();
         } finally {
-            closeQuietly(cursor);
+            database.endTransaction();
         }
     }
 
-    // =======================
-    // Helpers
-    // =======================
+    // Cursor-returning calls: recorded as they return (their rows counted when recording)
+    private Cursor query(DbMetrics.Op op, String sql, String[] args) {
+        long start = metrics.begin(op);
+        Cursor cursor = null;
+        try {
+            cursor = database.rawQuery(sql, args);
+            return cursor;
+        } finally {
+            metrics.end(op, start, cursor);
+        }
+    }
 
-    private String likeQuery(String q) {
-        return "%" + (q == null ? "" : q.trim()) + "%";
+    /**
+     * Compiled statement for sql, created on first use and kept until close().
+     * A statement holds its bindings, so callers bind and execute it while synchronized on it.
+     */
+    private SQLiteStatement statement(String sql) {
+        synchronized (statements) {
+            SQLiteStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = database.compileStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+    }
+
+    private static String existsSql(String whereUsers) {
+        return "SELECT EXISTS(SELECT 1 FROM " + DatabaseHelper.TABLE_USERS + " WHERE " + whereUsers + ")";
+    }
+
+    /**
+     * Turns user input into an FTS MATCH expression: "Dark kni" -> "dark* kni*".
+     * Only letters/digits are kept, so quotes, '-' or operators typed by the user
+     * can never break the MATCH syntax. Returns "" when nothing is searchable.
+     */
+    static String ftsPrefixQuery(String q) {
+        StringBuilder match = new StringBuilder();
+        for (String token : searchTokens(q)) {
+            if (match.length() > 0) match.append(' ');
+            match.append(token).append('*');
+        }
+        return match.toString();
+    }
+
+    /**
+     * Lower-cased words of a search query (or of a movie field), split like the FTS tokenizer.
+     * Each query token matches a movie when it is the prefix of one of the movie's tokens.
+     */
+    public static List<String> searchTokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
     }
 
     private void closeQuietly(Cursor c) {
@@ -0,0 +1,209 @@
+package com.example.moviediary.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Schema history of MovieDiary.db, one step per version, applied in order by
+ * DatabaseHelper.onUpgrade. Steps change the schema in place (CREATE / ALTER TABLE) or,
+ * when SQLite cannot alter a table (constraints, foreign keys), copy it into a new table
+ * and swap the two. No step drops user data.
+ *
+ * A step describes the change of its version and is never edited afterwards: a later
+ * schema change is a new step, plus the same change in DatabaseHelper.onCreate. Steps run
+ * SQL written out here, not DatabaseHelper's, which only describes the latest schema.
+ * Derived tables are filled after the last step (REBUILDS).
+ */
+final class DatabaseMigrations {
+
+    /**
+     * First version with a known schema (users, movies, user_movies). Older files are recreated.
+     */
+    static final int OLDEST_VERSION = 3;
+
+    interface StepListener {
+        void onStep(int fromVersion, int toVersion, long nanos);
+    }
+
+    private interface Step {
+        void apply(SQLiteDatabase db);
+    }
+
+    // =======================
+    // Schema of each step (frozen: never change it, DatabaseHelper follows the latest schema)
+    // =======================
+
+    private static final String[] V4_MOVIES_FTS = {
+            "CREATE VIRTUAL TABLE movies_fts USING fts4(content=\"movies\", title, genre, description)",
+            "CREATE TRIGGER movies_fts_before_update BEFORE UPDATE ON movies BEGIN " +
+                    "DELETE FROM movies_fts WHERE docid = old.id; END",
+            "CREATE TRIGGER movies_fts_before_delete BEFORE DELETE ON movies BEGIN " +
+                    "DELETE FROM movies_fts WHERE docid = old.id; END",
+            "CREATE TRIGGER movies_fts_after_update AFTER UPDATE ON movies BEGIN " +
+                    "INSERT INTO movies_fts(docid, title, genre, description) " +
+                    "VALUES (new.id, new.title, new.genre, new.description); END",
+            "CREATE TRIGGER movies_fts_after_insert AFTER INSERT ON movies BEGIN " +
+                    "INSERT INTO movies_fts(docid, title, genre, description) " +
+                    "VALUES (new.id, new.title, new.genre, new.description); END",
+            // Index the rows that already exist
+            "INSERT INTO movies_fts(movies_fts) VALUES('rebuild')"
+    };
+
+    private static final String[] V5_GENRES = {
+            "CREATE TABLE genres (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT UNIQUE NOT NULL COLLATE NOCASE)",
+            "CREATE TABLE movie_genres (movie_id INTEGER NOT NULL, genre_id INTEGER NOT NULL, " +
+                    "PRIMARY KEY(movie_id, genre_id), " +
+                    "FOREIGN KEY(movie_id) REFERENCES movies(id) ON DELETE CASCADE, " +
+                    "FOREIGN KEY(genre_id) REFERENCES genres(id)) WITHOUT ROWID",
+            "CREATE INDEX idx_movie_genres_genre ON movie_genres(genre_id, movie_id)"
+    };
+
+    private static final String[] V6_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_user_movies_user_status ON user_movies(user_id, status, movie_id, rating)",
+            "CREATE INDEX IF NOT EXISTS idx_user_movies_user_movie ON user_movies(user_id, movie_id, status, rating)",
+            "CREATE INDEX IF NOT EXISTS idx_movies_title ON movies(title)"
+    };
+
+    private static final String V7_USER_MOVIES =
+            "CREATE TABLE user_movies_new (id INTEGER PRIMARY KEY AUTOINCREMENT, user_id INTEGER NOT NULL, " +
+                    "movie_id INTEGER NOT NULL, status TEXT NOT NULL DEFAULT 'WISHLIST', rating INTEGER DEFAULT 0, " +
+                    "UNIQUE(user_id, movie_id), " +
+                    "FOREIGN KEY(user_id) REFERENCES users(id) ON DELETE CASCADE, " +
+                    "FOREIGN KEY(movie_id) REFERENCES movies(id) ON DELETE CASCADE)";
+
+    private static final String[] V9_GENRE_AFFINITY = {
+            "CREATE TABLE user_genre_affinity (user_id INTEGER NOT NULL, genre_id INTEGER NOT NULL, " +
+                    "preference REAL NOT NULL DEFAULT 0, history REAL NOT NULL DEFAULT 0, " +
+                    "affinity_rank INTEGER NOT NULL DEFAULT 999, " +
+                    "PRIMARY KEY(user_id, genre_id), " +
+                    "FOREIGN KEY(user_id) REFERENCES users(id) ON DELETE CASCADE, " +
+                    "FOREIGN KEY(genre_id) REFERENCES genres(id)) WITHOUT ROWID",
+            "CREATE INDEX idx_user_genre_affinity_rank ON user_genre_affinity(user_id, affinity_rank, genre_id)"
+    };
+
+    private static final String[] V10_COOCCURRENCE = {
+            "CREATE TABLE watch_history (user_id INTEGER NOT NULL, seq INTEGER NOT NULL, movie_id INTEGER NOT NULL, " +
+                    "PRIMARY KEY(user_id, seq), UNIQUE(user_id, movie_id), " +
+                    "FOREIGN KEY(user_id) REFERENCES users(id) ON DELETE CASCADE, " +
+                    "FOREIGN KEY(movie_id) REFERENCES movies(id) ON DELETE CASCADE) WITHOUT ROWID",
+            "CREATE TABLE movie_cooccurrence (movie_id INTEGER NOT NULL, other_id INTEGER NOT NULL, " +
+                    "pair_count INTEGER NOT NULL DEFAULT 0, " +
+                    "PRIMARY KEY(movie_id, other_id), " +
+                    "FOREIGN KEY(movie_id) REFERENCES movies(id) ON DELETE CASCADE, " +
+                    "FOREIGN KEY(other_id) REFERENCES movies(id) ON DELETE CASCADE) WITHOUT ROWID",
+            "CREATE INDEX idx_movie_cooccurrence_count ON movie_cooccurrence(movie_id, pair_count, other_id)"
+    };
+
+    private static final String[] V11_HOME_ORDER = {
+            "CREATE TABLE movie_genres_new (movie_id INTEGER NOT NULL, genre_id INTEGER NOT NULL, title TEXT NOT NULL, " +
+                    "PRIMARY KEY(movie_id, genre_id), " +
+                    "FOREIGN KEY(movie_id) REFERENCES movies(id) ON DELETE CASCADE, " +
+                    "FOREIGN KEY(genre_id) REFERENCES genres(id)) WITHOUT ROWID",
+            "INSERT INTO movie_genres_new (movie_id, genre_id, title) " +
+                    "SELECT mg.movie_id, mg.genre_id, m.title FROM movie_genres mg JOIN movies m ON m.id = mg.movie_id",
+            "DROP TABLE movie_genres",
+            "ALTER TABLE movie_genres_new RENAME TO movie_genres",
+            "CREATE INDEX idx_movie_genres_genre ON movie_genres(genre_id, title, movie_id)",
+            "CREATE TRIGGER movie_genres_title_after_update AFTER UPDATE OF title ON movies BEGIN " +
+                    "UPDATE movie_genres SET title = new.title WHERE movie_id = new.id; END",
+            "DROP INDEX idx_user_genre_affinity_rank",
+            "CREATE UNIQUE INDEX idx_user_genre_affinity_rank ON user_genre_affinity(user_id, affinity_rank, genre_id)"
+    };
+
+    // STEPS[i] upgrades version OLDEST_VERSION + i to OLDEST_VERSION + i + 1
+    private static final Step[] STEPS = {
+            // v4: FTS4 index over movies, filled from the existing rows
+            db -> execute(db, V4_MOVIES_FTS),
+            // v5: normalized genres (linked from the CSV column by the rebuild, see REBUILDS)
+            db -> execute(db, V5_GENRES),
+            // v6: secondary indexes on user_movies and movies.title
+            db -> execute(db, V6_INDEXES),
+            // v7: user_movies foreign keys cascade on delete (copy-and-swap, then its indexes again)
+            db -> {
+                copyAndSwap(db, "user_movies", V7_USER_MOVIES, "id, user_id, movie_id, status, rating");
+                execute(db, V6_INDEXES);
+            },
+            // v8: per-user PBKDF2 iteration count, 0 (legacy SHA-256) for existing accounts
+            db -> db.execSQL("ALTER TABLE users ADD COLUMN hash_iterations INTEGER NOT NULL DEFAULT 0"),
+            // v9: per-user genre affinity (computed by the rebuild)
+            db -> execute(db, V9_GENRE_AFFINITY),
+            // v10: watch order and co-occurrence counts (computed by the rebuild)
+            db -> execute(db, V10_COOCCURRENCE),
+            // v11: movie_genres carries the title (copy-and-swap, the rows are copied with their title)
+            // and idx_user_genre_affinity_rank is unique, so the home grid reads in index order
+            db -> execute(db, V11_HOME_ORDER)
+    };
+
+    static final int LATEST_VERSION = OLDEST_VERSION + STEPS.length;
+
+    /**
+     * Tables derived from the rows the steps keep, filled once the schema is migrated.
+     * Unlike the steps they run the current code (GenreLinker, GenreAffinity, CoOccurrence),
+     * which only has to know the latest schema. Run in this order, each when an upgrade crosses
+     * its REBUILD_VERSIONS entry.
+     */
+    private static final int[] REBUILD_VERSIONS = {5, 9, 10};
+    private static final Step[] REBUILDS = {
+            // movie_genres from movies.genre
+            DatabaseHelper::backfillMovieGenres,
+            // user_genre_affinity from the diaries and preferences (reads movie_genres)
+            GenreAffinity::rebuild,
+            // watch_history and movie_cooccurrence from the WATCHED rows
+            CoOccurrence::rebuild
+    };
+
+    private DatabaseMigrations() {
+    }
+
+    /**
+     * Runs the steps from version from to version to, each in its own transaction
+     * (nested in the upgrade transaction of SQLiteOpenHelper, so a failed step rolls back
+     * the whole upgrade and the file stays at its old version), then the rebuilds of the
+     * versions crossed, in one more transaction.
+     */
+    static void upgrade(SQLiteDatabase db, int from, int to, StepListener listener) {
+        if (from < OLDEST_VERSION || to > LATEST_VERSION) {
+            throw new IllegalArgumentException("No migration path from v" + from + " to v" + to);
+        }
+
+        for (int version = from; version < to; version++) {
+            long start = System.nanoTime();
+            db.beginTransaction();
+            try {
+                STEPS[version - OLDEST_VERSION].apply(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            if (listener != null) listener.onStep(version, version + 1, System.nanoTime() - start);
+        }
+
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < REBUILDS.length; i++) {
+                if (from < REBUILD_VERSIONS[i] && REBUILD_VERSIONS[i] <= to) REBUILDS[i].apply(db);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static void execute(SQLiteDatabase db, String[] statements) {
+        for (String sql : statements) {
+            db.execSQL(sql);
+        }
+    }
+
+    /**
+     * Rebuilds table with a new definition: createNew creates "table_new", the listed columns
+     * are copied over, the old table is dropped and the new one renamed. Indexes and triggers
+     * of the old table are gone afterwards, the caller creates them again.
+     */
+    static void copyAndSwap(SQLiteDatabase db, String table, String createNew, String columns) {
+        String newTable = table + "_new";
+        db.execSQL(createNew);
+        db.execSQL("INSERT INTO " + newTable + " (" + columns + ") SELECT " + columns + " FROM " + table);
+        db.execSQL("DROP TABLE " + table);
+        db.execSQL("ALTER TABLE " + newTable + " RENAME TO " + table);
+    }
+}
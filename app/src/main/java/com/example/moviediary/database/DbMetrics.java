@@ -0,0 +1,261 @@
+package com.example.moviediary.database;
+
+import android.database.Cursor;
+import android.os.Build;
+import android.os.Looper;
+import android.os.Trace;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency, row counts and calling thread of every public DatabaseManager call, each call also
+ * being an android.os.Trace section ("DB.getMovieById" ...) for systrace / Perfetto.
+ *
+ * Recording is off by default (on in debug builds, see MovieDiaryDebugApplication); the trace
+ * sections do not depend on it, they are emitted whenever a trace is being captured (API 29+,
+ * Trace.isEnabled()). When off, MainThreadGuard too and no trace running, begin() is two
+ * volatile reads and a trace check, end() one comparison: no clock, no allocation. When on, a
+ * call costs two clock reads and a few atomic adds; nothing is allocated either. begin() / end()
+ * are also where MainThreadGuard checks the calling thread.
+ *
+ * Calls made inside another call (getMoviesForHomePage loading the diary index) are recorded
+ * on their own as well. Process-wide and thread-safe.
+ */
+public final class DbMetrics {
+
+    /**
+     * Instrumented DatabaseManager operations.
+     */
+    public enum Op {
+        OPEN("open"),
+        ADD_USER("addUser"),
+        GET_USER("getUser"),
+        REHASH_PASSWORD("rehashPassword"),
+        EMAIL_EXISTS("isEmailExists"),
+        USERNAME_EXISTS("isUsernameExists"),
+        EMAIL_EXISTS_FOR_OTHER_USER("isEmailExistsForOtherUser"),
+        USERNAME_EXISTS_FOR_OTHER_USER("isUsernameExistsForOtherUser"),
+        USER_PREFERENCES("getUserPreferences"),
+        UPDATE_USER_PROFILE("updateUserProfile"),
+        ALL_MOVIES("getAllMovies"),
+        MOVIES_BY_GENRE("getMoviesByGenre"),
+        MOVIE_BY_ID("getMovieById"),
+        SEARCH_MOVIES("searchMovies"),
+        IMPORT_CATALOG("importCatalog"),
+        MOVIES_FOR_HOME("getMoviesForHome"),
+        MOVIES_FOR_HOME_PERSONALIZED("getMoviesForHomePersonalized"),
+        HOME_PAGE("getMoviesForHomePage"),
+        SEARCH_PAGE("searchMoviesPage"),
+        UPSERT_DIARY("upsertDiary"),
+        REMOVE_FROM_DIARY("removeFromDiary"),
+        DIARY_ROW("getDiaryRow"),
+        DIARY_ENTRY("getDiaryEntry"),
+        DIARY_INDEX("getDiaryIndex"),
+        DIARY_POSTER_URLS("getDiaryPosterUrls"),
+        USER_DIARY("getUserDiary"),
+        RELATED_MOVIES("getRelatedMovies"),
+        USER_WATCHED("getUserWatched"),
+        USER_WISHLIST_WITH_RATING("getUserWishlistWithRating"),
+        USER_WATCHED_WITH_RATING("getUserWatchedWithRating");
+
+        private final String method;
+        private final String section;
+
+        Op(String method) {
+            this.method = method;
+            this.section = "DB." + method;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+    }
+
+    // Latency buckets: bucket i counts calls of [2^i, 2^(i+1)) microseconds, the last one the rest
+    static final int BUCKETS = 24;
+
+    private static final DbMetrics INSTANCE = new DbMetrics();
+
+    // begin() result of a call that is traced only (no clock read, nothing recorded)
+    private static final long TRACED = -1;
+
+    private volatile boolean enabled;
+
+    private final OpStats[] stats = new OpStats[Op.values().length];
+    private final MainThreadGuard guard = MainThreadGuard.getInstance();
+
+    public static DbMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    DbMetrics() {
+        for (Op op : Op.values()) stats[op.ordinal()] = new OpStats();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // =======================
+    // Recording (DatabaseManager)
+    // =======================
+
+    /**
+     * Starts a call of op: its start time, TRACED when only a trace section was begun, or 0 when
+     * there is nothing to do (end() then does nothing either). Must be paired with end() in a
+     * finally block, on the same thread.
+     */
+    long begin(Op op) {
+        if (!enabled && guard.getMode() == MainThreadGuard.Mode.OFF) {
+            if (!tracing()) return 0;
+            Trace.beginSection(op.section);
+            return TRACED;
+        }
+        guard.check(op);
+        Trace.beginSection(op.section);
+        // 0 is reserved for "off"
+        return Math.max(1, System.nanoTime());
+    }
+
+    void end(Op op, long start, int rows) {
+        if (start == 0) return;
+        if (start == TRACED) {
+            Trace.endSection();
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        Trace.endSection();
+        boolean onMainThread = Looper.getMainLooper().isCurrentThread();
+        if (enabled) stats[op.ordinal()].record(nanos, rows, onMainThread);
+        guard.record(op, nanos, onMainThread);
+    }
+
+    /**
+     * end() for a call returning a Cursor: counting its rows runs the query, which is then
+     * part of the recorded latency (the caller would run it on first access anyway).
+     */
+    void end(Op op, long start, Cursor cursor) {
+        if (start == 0) return;
+        end(op, start, cursor == null || !enabled ? 0 : cursor.getCount());
+    }
+
+    // A trace is being captured (before API 29 there is no cheap check: sections only while recording)
+    private static boolean tracing() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && Trace.isEnabled();
+    }
+
+    // =======================
+    // Reading (debug screen, dumps, tests)
+    // =======================
+
+    public long calls(Op op) {
+        return stats[op.ordinal()].calls.get();
+    }
+
+    public long mainThreadCalls(Op op) {
+        return stats[op.ordinal()].mainThread.get();
+    }
+
+    public long rows(Op op) {
+        return stats[op.ordinal()].rows.get();
+    }
+
+    public double meanMillis(Op op) {
+        OpStats s = stats[op.ordinal()];
+        long calls = s.calls.get();
+        return calls == 0 ? 0 : s.totalNanos.get() / (calls * 1_000_000.0);
+    }
+
+    public double maxMillis(Op op) {
+        return stats[op.ordinal()].maxNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Upper bound of the latency under which a fraction q (0..1) of the calls fell, in
+     * milliseconds, from the histogram (a power of two in microseconds); 0 without calls.
+     */
+    public double percentileMillis(Op op, double q) {
+        OpStats s = stats[op.ordinal()];
+        long calls = s.calls.get();
+        if (calls == 0) return 0;
+
+        long rank = (long) Math.ceil(q * calls);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += s.histogram.get(i);
+            if (seen >= rank && seen > 0) {
+                // Never above the slowest call measured
+                return Math.min((1L << (i + 1)) / 1000.0, maxMillis(op));
+            }
+        }
+        return maxMillis(op);
+    }
+
+    public void reset() {
+        for (OpStats s : stats) s.reset();
+    }
+
+    /**
+     * Text table of the operations called so far: calls, calls from the main thread,
+     * latency (mean, percentiles, max) and rows returned or changed.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "DbMetrics (%s)%n", enabled ? "recording" : "off"));
+        sb.append(String.format(Locale.ROOT, "%-30s %7s %6s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "calls", "main", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms", "rows"));
+        for (Op op : Op.values()) {
+            long calls = calls(op);
+            if (calls == 0) continue;
+            sb.append(String.format(Locale.ROOT, "%-30s %7d %6d %9.2f %9.2f %9.2f %9.2f %9.2f %9d%n",
+                    op.method, calls, mainThreadCalls(op), meanMillis(op),
+                    percentileMillis(op, 0.50), percentileMillis(op, 0.95), percentileMillis(op, 0.99),
+                    maxMillis(op), rows(op)));
+        }
+        return sb.toString();
+    }
+
+    private static final class OpStats {
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong mainThread = new AtomicLong();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos, int rowCount, boolean onMainThread) {
+            calls.incrementAndGet();
+            if (onMainThread) mainThread.incrementAndGet();
+            if (rowCount > 0) rows.addAndGet(rowCount);
+            totalNanos.addAndGet(nanos);
+
+            long max;
+            do {
+                max = maxNanos.get();
+            } while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+
+            histogram.incrementAndGet(bucket(nanos));
+        }
+
+        void reset() {
+            calls.set(0);
+            mainThread.set(0);
+            rows.set(0);
+            totalNanos.set(0);
+            maxNanos.set(0);
+            for (int i = 0; i < BUCKETS; i++) histogram.set(i, 0);
+        }
+    }
+
+    // Bucket of a latency: floor(log2(microseconds)), sub-microsecond calls in bucket 0
+    static int bucket(long nanos) {
+        long micros = Math.max(1, nanos / 1000);
+        return Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+    }
+}
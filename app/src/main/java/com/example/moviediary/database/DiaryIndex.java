@@ -0,0 +1,148 @@
+package com.example.moviediary.database;
+
+import java.util.Arrays;
+
+/**
+ * Diary state (status + rating) of every movie of one user, in memory.
+ *
+ * Lets the home grid query only the movies table: each row gets its badge from here in O(1)
+ * instead of from a LEFT JOIN of user_movies. DatabaseManager loads it once per user (at
+ * login, or on the first page after a restart) and writes upsertDiary / removeFromDiary
+ * through to it.
+ *
+ * A primitive open-addressing map movie id -> packed state: no boxing, a few bytes per
+ * diary row. Thread-safe.
+ */
+public final class DiaryIndex {
+
+    public static final String STATUS_WISHLIST = DatabaseHelper.STATUS_WISHLIST;
+    public static final String STATUS_WATCHED = DatabaseHelper.STATUS_WATCHED;
+
+    // Packed state: bits 0-2 rating (0..5), bits 3-4 status; 0 = free slot
+    private static final byte WISHLIST_BIT = 1 << 3;
+    private static final byte WATCHED_BIT = 1 << 4;
+    private static final int RATING_MASK = 0x7;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final int userId;
+
+    private int[] keys;
+    private byte[] states;
+    private int size;
+
+    DiaryIndex(int userId, int expectedSize) {
+        this.userId = userId;
+        int capacity = MIN_CAPACITY;
+        // Load factor <= 1/2
+        while (capacity < expectedSize * 2) capacity <<= 1;
+        keys = new int[capacity];
+        states = new byte[capacity];
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * "WISHLIST", "WATCHED" or null when the movie is not in the diary.
+     */
+    public synchronized String getStatus(int movieId) {
+        byte state = states[slot(movieId)];
+        if ((state & WATCHED_BIT) != 0) return STATUS_WATCHED;
+        if ((state & WISHLIST_BIT) != 0) return STATUS_WISHLIST;
+        return null;
+    }
+
+    public synchronized int getRating(int movieId) {
+        return states[slot(movieId)] & RATING_MASK;
+    }
+
+    synchronized void put(int movieId, String status, int rating) {
+        byte state = (byte) ((STATUS_WATCHED.equals(status) ? WATCHED_BIT : WISHLIST_BIT)
+                | (Math.max(0, Math.min(5, rating)) & RATING_MASK));
+
+        int slot = slot(movieId);
+        if (states[slot] == 0) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = slot(movieId);
+            }
+            keys[slot] = movieId;
+            size++;
+        }
+        states[slot] = state;
+    }
+
+    synchronized void remove(int movieId) {
+        int slot = slot(movieId);
+        if (states[slot] == 0) return;
+
+        states[slot] = 0;
+        size--;
+
+        // Backward-shift the entries after the hole, so lookups never need tombstones
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int i = (slot + 1) & mask; states[i] != 0; i = (i + 1) & mask) {
+            int home = hash(keys[i]) & mask;
+            // Move the entry if its home slot is not between the hole and i (cyclically)
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                states[hole] = states[i];
+                states[i] = 0;
+                hole = i;
+            }
+        }
+    }
+
+    // Slot holding movieId, or the free slot where it would go
+    private int slot(int movieId) {
+        int mask = keys.length - 1;
+        int i = hash(movieId) & mask;
+        while (states[i] != 0 && keys[i] != movieId) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        byte[] oldStates = states;
+        keys = new int[oldKeys.length * 2];
+        states = new byte[oldStates.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStates[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                states[slot] = oldStates[i];
+            }
+        }
+    }
+
+    // Ids are sequential: spread them so runs of ids do not cluster
+    private static int hash(int movieId) {
+        int h = movieId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DiaryIndex[user=" + userId + ", " + size + " movies, capacity=" + keys.length + "]";
+    }
+
+    // For tests: slots in use
+    synchronized int[] movieIds() {
+        int[] ids = new int[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (states[i] != 0) ids[n++] = keys[i];
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+}
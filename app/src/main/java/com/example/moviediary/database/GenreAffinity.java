@@ -0,0 +1,178 @@
+package com.example.moviediary.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Per-user genre scores behind the personalized home order (user_genre_affinity).
+ *
+ * score = preference + history, per (user, genre):
+ * - preference: PREFERENCE_WEIGHT for the first genre of the profile preferences, down to
+ *   PREFERENCE_WEIGHT / n for the last of n
+ * - history: sum over the user's diary rows of movies in that genre, rating - 3 for a rated
+ *   WATCHED row (a 1-star film counts against its genres), NEUTRAL_INTEREST otherwise
+ *
+ * Genres with a positive score are ranked 1, 2, ... (ties: lower genre id first), the others
+ * get UNRANKED. A movie sorts by the best rank of its genres, so the home query joins the few
+ * ranked rows of one user instead of evaluating preferences per movie.
+ *
+ * Maintained where the inputs change: each diary write moves history by the old and new
+ * contribution of that row (DatabaseManager.upsertDiary / removeFromDiary), the profile
+ * rewrites preference (addUser / updateUserProfile). Both then re-rank the user's rows.
+ */
+final class GenreAffinity {
+
+    // Rank of genres (and movies) the user shows no interest in: sorted after every ranked one
+    static final int UNRANKED = 999;
+
+    static final double PREFERENCE_WEIGHT = 3.0;
+    // Contribution of a wishlisted or watched but unrated movie
+    static final double NEUTRAL_INTEREST = 0.5;
+
+    private static final String TABLE = DatabaseHelper.TABLE_USER_GENRE_AFFINITY;
+
+    // Every genre of the movie gets a row for the user, score 0 until something is added. Args: user, movie.
+    static final String SQL_ADD_MOVIE_GENRES =
+            "INSERT OR IGNORE INTO " + TABLE + " (" + DatabaseHelper.COLUMN_USER_ID + ", " + DatabaseHelper.COLUMN_GENRE_ID + ") " +
+                    "SELECT ?, " + DatabaseHelper.COLUMN_GENRE_ID + " FROM " + DatabaseHelper.TABLE_MOVIE_GENRES + " " +
+                    "WHERE " + DatabaseHelper.COLUMN_MOVIE_ID + " = ?";
+
+    // Adds sign (1 / -1) x the current contribution of diary row (user, movie) to the movie's genres;
+    // no row, nothing added. Args: sign, user, movie, user, movie.
+    static final String SQL_APPLY_DIARY_ROW =
+            "UPDATE " + TABLE + " SET " + DatabaseHelper.COLUMN_HISTORY + " = " + DatabaseHelper.COLUMN_HISTORY + " + ? * " +
+                    "COALESCE((SELECT " + contribution("") + " FROM " + DatabaseHelper.TABLE_USER_MOVIES + " " +
+                    "WHERE " + DatabaseManager.WHERE_DIARY_ROW + "), 0) " +
+                    "WHERE " + DatabaseHelper.COLUMN_USER_ID + " = ? AND " + DatabaseHelper.COLUMN_GENRE_ID + " IN (" +
+                    "SELECT " + DatabaseHelper.COLUMN_GENRE_ID + " FROM " + DatabaseHelper.TABLE_MOVIE_GENRES + " " +
+                    "WHERE " + DatabaseHelper.COLUMN_MOVIE_ID + " = ?)";
+
+    // Ranks of one user from the scores: a few dozen genres, so the correlated count stays small
+    static final String SQL_RERANK_USER =
+            "UPDATE " + TABLE + " SET " + DatabaseHelper.COLUMN_AFFINITY_RANK + " = " +
+                    "CASE WHEN " + score(TABLE) + " > 0 THEN 1 + (" +
+                    "SELECT COUNT(*) FROM " + TABLE + " o " +
+                    "WHERE o." + DatabaseHelper.COLUMN_USER_ID + " = " + TABLE + "." + DatabaseHelper.COLUMN_USER_ID + " " +
+                    "AND (" + score("o") + " > " + score(TABLE) + " OR (" + score("o") + " = " + score(TABLE) + " " +
+                    "AND o." + DatabaseHelper.COLUMN_GENRE_ID + " < " + TABLE + "." + DatabaseHelper.COLUMN_GENRE_ID + "))) " +
+                    "ELSE " + UNRANKED + " END " +
+                    "WHERE " + DatabaseHelper.COLUMN_USER_ID + " = ?";
+
+    static final String SQL_CLEAR_PREFERENCES =
+            "UPDATE " + TABLE + " SET " + DatabaseHelper.COLUMN_PREFERENCE + " = 0 " +
+                    "WHERE " + DatabaseHelper.COLUMN_USER_ID + " = ?";
+
+    // Preference weight ?1 for user ?2 and the genre named ?3 (unknown name: nothing inserted)
+    static final String SQL_SET_PREFERENCE =
+            "INSERT OR REPLACE INTO " + TABLE + " (" + DatabaseHelper.COLUMN_USER_ID + ", " + DatabaseHelper.COLUMN_GENRE_ID + ", " +
+                    DatabaseHelper.COLUMN_PREFERENCE + ", " + DatabaseHelper.COLUMN_HISTORY + ") " +
+                    "SELECT ?2, g." + DatabaseHelper.COLUMN_ID + ", ?1, " +
+                    "COALESCE((SELECT a." + DatabaseHelper.COLUMN_HISTORY + " FROM " + TABLE + " a " +
+                    "WHERE a." + DatabaseHelper.COLUMN_USER_ID + " = ?2 AND a." + DatabaseHelper.COLUMN_GENRE_ID + " = g." + DatabaseHelper.COLUMN_ID + "), 0) " +
+                    "FROM " + DatabaseHelper.TABLE_GENRES + " g WHERE g." + DatabaseHelper.COLUMN_NAME + " = ?3";
+
+    // History of every user at once, from the whole diary (migration, bulk loads)
+    static final String SQL_REBUILD_HISTORY =
+            "INSERT INTO " + TABLE + " (" + DatabaseHelper.COLUMN_USER_ID + ", " + DatabaseHelper.COLUMN_GENRE_ID + ", " +
+                    DatabaseHelper.COLUMN_HISTORY + ") " +
+                    "SELECT um." + DatabaseHelper.COLUMN_USER_ID + ", mg." + DatabaseHelper.COLUMN_GENRE_ID + ", " +
+                    "TOTAL(" + contribution("um.") + ") " +
+                    "FROM " + DatabaseHelper.TABLE_USER_MOVIES + " um " +
+                    "JOIN " + DatabaseHelper.TABLE_MOVIE_GENRES + " mg " +
+                    "ON mg." + DatabaseHelper.COLUMN_MOVIE_ID + " = um." + DatabaseHelper.COLUMN_MOVIE_ID + " " +
+                    "GROUP BY um." + DatabaseHelper.COLUMN_USER_ID + ", mg." + DatabaseHelper.COLUMN_GENRE_ID;
+
+    private GenreAffinity() {
+    }
+
+    // Contribution of one user_movies row (columns prefixed by prefix: "" or "um.") to each genre of its movie
+    private static String contribution(String prefix) {
+        return "CASE WHEN " + prefix + DatabaseHelper.COLUMN_STATUS + " = '" + DatabaseHelper.STATUS_WATCHED + "' " +
+                "AND " + prefix + DatabaseHelper.COLUMN_RATING + " > 0 " +
+                "THEN " + prefix + DatabaseHelper.COLUMN_RATING + " - 3 ELSE " + NEUTRAL_INTEREST + " END";
+    }
+
+    private static String score(String table) {
+        return table + "." + DatabaseHelper.COLUMN_PREFERENCE + " + " + table + "." + DatabaseHelper.COLUMN_HISTORY;
+    }
+
+    /**
+     * Replaces the preference part of userId's scores with preferencesCsv ("Sci-Fi,Drama")
+     * and re-ranks the user. Unknown genres are skipped; run it inside the caller's transaction.
+     */
+    static void setPreferences(SQLiteDatabase db, long userId, String preferencesCsv) {
+        SQLiteStatement clear = db.compileStatement(SQL_CLEAR_PREFERENCES);
+        SQLiteStatement set = db.compileStatement(SQL_SET_PREFERENCE);
+        try {
+            clear.bindLong(1, userId);
+            clear.executeUpdateDelete();
+
+            // genres.name is NOCASE: "drama" repeats "Drama"
+            Map<String, String> names = new LinkedHashMap<>();
+            if (preferencesCsv != null) {
+                for (String n : preferencesCsv.split(",")) {
+                    String name = n.trim();
+                    if (!name.isEmpty()) names.putIfAbsent(name.toLowerCase(Locale.ROOT), name);
+                }
+            }
+            int remaining = names.size();
+            for (String name : names.values()) {
+                set.bindDouble(1, PREFERENCE_WEIGHT * remaining-- / names.size());
+                set.bindLong(2, userId);
+                set.bindString(3, name);
+                set.executeInsert();
+            }
+        } finally {
+            clear.close();
+            set.close();
+        }
+        rerank(db, userId);
+    }
+
+    static void rerank(SQLiteDatabase db, long userId) {
+        db.execSQL(SQL_RERANK_USER, new Object[]{userId});
+    }
+
+    /**
+     * Recomputes the whole table from user_movies and the profiles: migration to v9, and rows
+     * written without DatabaseManager (bulk test data). Run it inside a transaction.
+     */
+    static void rebuild(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TABLE);
+        db.execSQL(SQL_REBUILD_HISTORY);
+
+        Cursor users = db.query(DatabaseHelper.TABLE_USERS,
+                new String[]{DatabaseHelper.COLUMN_ID, DatabaseHelper.COLUMN_PREFERENCES},
+                null, null, null, null, null);
+        try {
+            while (users.moveToNext()) {
+                setPreferences(db, users.getLong(0), users.getString(1));
+            }
+        } finally {
+            users.close();
+        }
+    }
+
+    /**
+     * Preferences again for every user (and ranks), history kept: after a catalog import
+     * created genres that profiles named before they existed.
+     */
+    static void refreshPreferences(SQLiteDatabase db) {
+        Cursor users = db.query(DatabaseHelper.TABLE_USERS,
+                new String[]{DatabaseHelper.COLUMN_ID, DatabaseHelper.COLUMN_PREFERENCES},
+                DatabaseHelper.COLUMN_PREFERENCES + " IS NOT NULL AND " + DatabaseHelper.COLUMN_PREFERENCES + " != ''",
+                null, null, null, null);
+        try {
+            while (users.moveToNext()) {
+                setPreferences(db, users.getLong(0), users.getString(1));
+            }
+        } finally {
+            users.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.moviediary.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.Closeable;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Fills movie_genres from the genre CSV of a movie ("Sci-Fi, Action"), creating missing genres.
+ * Must be used for every inserted movie. Statements are compiled once: use one linker for a
+ * whole batch of inserts, on the thread that writes them, then close() it.
+ */
+final class GenreLinker implements Closeable {
+
+    private final SQLiteStatement insertGenre;
+    private final SQLiteStatement linkGenre;
+    // Genres already inserted through this linker
+    private final Set<String> knownGenres = new HashSet<>();
+
+    GenreLinker(SQLiteDatabase db) {
+        insertGenre = db.compileStatement(DatabaseHelper.SQL_INSERT_GENRE);
+        linkGenre = db.compileStatement(DatabaseHelper.SQL_LINK_MOVIE_GENRE);
+    }
+
+    void link(long movieId, String genreCsv) {
+        if (genreCsv == null) return;
+
+        for (String g : genreCsv.split(",")) {
+            String name = g.trim();
+            if (name.isEmpty()) continue;
+
+            if (knownGenres.add(name)) {
+                insertGenre.bindString(1, name);
+                insertGenre.executeInsert();
+            }
+            linkGenre.bindLong(1, movieId);
+            linkGenre.bindString(2, name);
+            linkGenre.executeInsert();
+        }
+    }
+
+    @Override
+    public void close() {
+        insertGenre.close();
+        linkGenre.close();
+    }
+}
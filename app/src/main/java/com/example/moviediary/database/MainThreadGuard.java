@@ -0,0 +1,241 @@
+package com.example.moviediary.database;
+
+import android.app.Activity;
+import android.os.Looper;
+import android.util.Log;
+import android.view.View;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Catches DatabaseManager calls made on the main thread, opening the database included
+ * (MovieRepository is the way to the database from there). In the app every main-thread call
+ * is a violation, blamed on the first activity, view or adapter of the app on the stack, else
+ * on the first app class outside this package. Under Robolectric the tests themselves run on
+ * the main looper and call DatabaseManager directly: there (JUnit on the stack) only the calls
+ * made by a screen are violations.
+ *
+ * - OFF (release builds): nothing checked, DbMetrics.begin() does not even get here
+ * - LOG (debug builds, see MovieDiaryDebugApplication): logs the call with its duration and
+ *   call site, keeps the last MAX_RECENT for the debug screen
+ * - THROW (unit tests, set by build.gradle.kts): IllegalStateException before the query runs
+ *
+ * Screens still allowed to do it while they are being migrated are listed in ALLOWED_SCREENS
+ * (class names); the list is meant to shrink to nothing.
+ */
+public final class MainThreadGuard {
+
+    private static final String TAG = "MainThreadGuard";
+
+    public enum Mode {
+        OFF,
+        LOG,
+        THROW
+    }
+
+    // Initial mode of a process: "log" or "throw" (the test JVM sets it)
+    public static final String PROPERTY = "moviediary.mainThreadDb";
+
+    // Migration-period exceptions: screens that may still query on the main thread
+    static final Set<String> ALLOWED_SCREENS = Collections.emptySet();
+
+    static final int MAX_RECENT = 32;
+
+    private static final String APP_PACKAGE = "com.example.moviediary.";
+    private static final String DATABASE_PACKAGE = APP_PACKAGE + "database.";
+    // On the stack of every unit test, never in the app
+    private static final String TEST_RUNNER_PACKAGE = "org.junit.";
+
+    private static final MainThreadGuard INSTANCE = new MainThreadGuard(modeFromProperty());
+
+    /**
+     * One main-thread call: which operation, how long it took and where it came from.
+     */
+    public static final class Violation {
+        private final DbMetrics.Op op;
+        private final String screen;
+        private final long nanos;
+        private final Throwable callSite;
+
+        Violation(DbMetrics.Op op, String screen, long nanos, Throwable callSite) {
+            this.op = op;
+            this.screen = screen;
+            this.nanos = nanos;
+            this.callSite = callSite;
+        }
+
+        public DbMetrics.Op getOp() {
+            return op;
+        }
+
+        // Activity / view / adapter class that made the call, or the app class outside the database
+        // package that did (or the thread name, when no app class is on the stack)
+        public String getScreen() {
+            return screen;
+        }
+
+        public double getMillis() {
+            return nanos / 1_000_000.0;
+        }
+
+        public Throwable getCallSite() {
+            return callSite;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s from %s, %.2f ms", op.getMethod(), screen, getMillis());
+        }
+    }
+
+    private volatile Mode mode;
+    private volatile Set<String> allowed;
+    private final ArrayDeque<Violation> recent = new ArrayDeque<>();
+    // Class name -> is it an activity / view / adapter (looked up once per class)
+    private final Map<String, Boolean> screenClasses = new ConcurrentHashMap<>();
+
+    public static MainThreadGuard getInstance() {
+        return INSTANCE;
+    }
+
+    MainThreadGuard(Mode mode) {
+        this.mode = mode;
+        this.allowed = ALLOWED_SCREENS;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Replaces the allowed screens (class names), ALLOWED_SCREENS by default.
+     */
+    public void setAllowedScreens(Set<String> classNames) {
+        allowed = Collections.unmodifiableSet(new HashSet<>(classNames));
+    }
+
+    // =======================
+    // Checks (DbMetrics.begin / end)
+    // =======================
+
+    /**
+     * THROW mode: fails a violating call before it runs.
+     */
+    void check(DbMetrics.Op op) {
+        if (mode != Mode.THROW || !Looper.getMainLooper().isCurrentThread()) return;
+        String screen = violatingCaller(Thread.currentThread().getStackTrace());
+        if (screen != null) {
+            throw new IllegalStateException("DatabaseManager." + op.getMethod() + " called on the main thread from "
+                    + screen + ": go through MovieRepository");
+        }
+    }
+
+    /**
+     * LOG mode: records a violating call once it is done (onMainThread: the caller checked).
+     */
+    void record(DbMetrics.Op op, long nanos, boolean onMainThread) {
+        if (mode != Mode.LOG || !onMainThread) return;
+        Throwable callSite = new Throwable("Main-thread database call");
+        String screen = violatingCaller(callSite.getStackTrace());
+        if (screen == null) return;
+
+        Violation violation = new Violation(op, screen, nanos, callSite);
+        synchronized (recent) {
+            if (recent.size() == MAX_RECENT) recent.removeFirst();
+            recent.addLast(violation);
+        }
+        Log.w(TAG, violation.toString(), callSite);
+    }
+
+    // =======================
+    // Reading (debug screen, tests)
+    // =======================
+
+    /**
+     * Last violations recorded in LOG mode, oldest first.
+     */
+    public List<Violation> recent() {
+        synchronized (recent) {
+            return new ArrayList<>(recent);
+        }
+    }
+
+    public void clear() {
+        synchronized (recent) {
+            recent.clear();
+        }
+    }
+
+    public String report() {
+        List<Violation> violations = recent();
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                "MainThreadGuard (%s): %d main-thread calls%n", mode, violations.size()));
+        for (Violation v : violations) sb.append("  ").append(v).append('\n');
+        return sb.toString();
+    }
+
+    // =======================
+    // Stack inspection
+    // =======================
+
+    // Class to blame for a main-thread call (see the class comment), null when it is allowed.
+    // Package-private for MainThreadGuardTest
+    String violatingCaller(StackTraceElement[] stack) {
+        String caller = null;
+        boolean unitTest = false;
+        for (StackTraceElement frame : stack) {
+            String name = frame.getClassName();
+            if (name.startsWith(TEST_RUNNER_PACKAGE)) unitTest = true;
+            if (!name.startsWith(APP_PACKAGE)) continue;
+            // Listeners and lambdas of a screen belong to it: HomeActivity$3 -> HomeActivity
+            int nested = name.indexOf('$');
+            String outer = nested == -1 ? name : name.substring(0, nested);
+            if (isScreen(name) || isScreen(outer)) {
+                return allowed.contains(outer) ? null : outer;
+            }
+            if (caller == null && !name.startsWith(DATABASE_PACKAGE)) caller = outer;
+        }
+        if (unitTest) return null;
+        if (caller == null) caller = Thread.currentThread().getName();
+        return allowed.contains(caller) ? null : caller;
+    }
+
+    private boolean isScreen(String className) {
+        Boolean screen = screenClasses.get(className);
+        if (screen == null) {
+            screen = false;
+            try {
+                Class<?> type = Class.forName(className, false, MainThreadGuard.class.getClassLoader());
+                screen = Activity.class.isAssignableFrom(type) || View.class.isAssignableFrom(type)
+                        || RecyclerView.Adapter.class.isAssignableFrom(type)
+                        || RecyclerView.ViewHolder.class.isAssignableFrom(type);
+            } catch (ClassNotFoundException | LinkageError e) {
+                // not a class we can load: not a screen
+            }
+            screenClasses.put(className, screen);
+        }
+        return screen;
+    }
+
+    private static Mode modeFromProperty() {
+        String value = System.getProperty(PROPERTY, "");
+        for (Mode m : Mode.values()) {
+            if (m.name().equalsIgnoreCase(value)) return m;
+        }
+        return Mode.OFF;
+    }
+}
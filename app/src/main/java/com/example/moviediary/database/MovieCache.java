@@ -0,0 +1,78 @@
+package com.example.moviediary.database;
+
+import android.util.LruCache;
+
+import com.example.moviediary.model.Movie;
+import com.example.moviediary.model.MovieRow;
+
+import java.util.Locale;
+
+/**
+ * Process-wide LRU of catalog movies by id, in front of DatabaseManager.getMovieById.
+ *
+ * Warmed by MovieAdapter with the rows it binds, so opening the details of a card
+ * just shown is a memory lookup. Every change to a movies row must go through
+ * invalidate() / invalidateAll() (DatabaseManager does).
+ *
+ * Thread-safe. Cached Movie objects are shared: read them, never call their setters.
+ */
+public final class MovieCache {
+
+    // A few screens of the grid; a Movie is a handful of short strings
+    static final int MAX_ENTRIES = 256;
+
+    private static final MovieCache INSTANCE = new MovieCache(MAX_ENTRIES);
+
+    private final LruCache<Integer, Movie> movies;
+
+    public static MovieCache getInstance() {
+        return INSTANCE;
+    }
+
+    MovieCache(int maxEntries) {
+        movies = new LruCache<>(maxEntries);
+    }
+
+    /**
+     * Cached movie or null (counted as a hit / miss).
+     */
+    public Movie get(int movieId) {
+        return movies.get(movieId);
+    }
+
+    public void put(Movie movie) {
+        movies.put(movie.getId(), movie);
+    }
+
+    /**
+     * Caches the catalog part of a row the grid has just bound (its diary state is not kept).
+     */
+    public void warm(MovieRow row) {
+        Movie movie = new Movie(row.getTitle(), row.getPosterUrl(), row.getDescription(),
+                row.getReleaseYear(), row.getGenre());
+        movie.setId(row.getId());
+        put(movie);
+    }
+
+    public void invalidate(int movieId) {
+        movies.remove(movieId);
+    }
+
+    public void invalidateAll() {
+        movies.evictAll();
+    }
+
+    public int hitCount() {
+        return movies.hitCount();
+    }
+
+    public int missCount() {
+        return movies.missCount();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "MovieCache[%d/%d, hits=%d, misses=%d]",
+                movies.size(), movies.maxSize(), hitCount(), missCount());
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.moviediary.model;
+
+/**
+ * One user_movies row as seen by the UI: status ("WISHLIST" / "WATCHED") and rating (0..5).
+ */
+public class DiaryEntry {
+    private final String status;
+    private final int rating;
+
+    public DiaryEntry(String status, int rating) {
+        this.status = status;
+        this.rating = rating;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public int getRating() {
+        return rating;
+    }
+}
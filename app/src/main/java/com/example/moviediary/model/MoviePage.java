@@ -0,0 +1,54 @@
+package com.example.moviediary.model;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated movie list, plus the key to fetch the next one.
+ */
+public class MoviePage {
+
+    /**
+     * Position after the last row of a page: (rank, title, id) in list order.
+     * rank is the preference rank on the personalized home, 0 everywhere else.
+     */
+    public static class Key {
+        private final int rank;
+        private final String title;
+        private final int id;
+
+        public Key(int rank, String title, int id) {
+            this.rank = rank;
+            this.title = title;
+            this.id = id;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public int getId() {
+            return id;
+        }
+    }
+
+    private final List<MovieRow> rows;
+    private final Key next;
+
+    public MoviePage(List<MovieRow> rows, Key next) {
+        this.rows = rows;
+        this.next = next;
+    }
+
+    public List<MovieRow> getRows() {
+        return rows;
+    }
+
+    // null when this was the last page
+    public Key getNext() {
+        return next;
+    }
+}
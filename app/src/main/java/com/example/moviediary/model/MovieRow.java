@@ -0,0 +1,94 @@
+package com.example.moviediary.model;
+
+import java.util.Objects;
+
+/**
+ * One card of the movie grid: catalog columns + the user's diary state.
+ * Immutable, built once off the UI thread from a query page.
+ */
+public class MovieRow {
+    private final int id;
+    private final String title;
+    private final String posterUrl;
+    private final String description;
+    private final String genre;
+    private final int releaseYear;
+    private final String userStatus; // "WISHLIST", "WATCHED" or null
+    private final int userRating;    // 0..5
+
+    public MovieRow(int id, String title, String posterUrl, String description, String genre,
+                    int releaseYear, String userStatus, int userRating) {
+        this.id = id;
+        this.title = title;
+        this.posterUrl = posterUrl;
+        this.description = description;
+        this.genre = genre;
+        this.releaseYear = releaseYear;
+        this.userStatus = userStatus;
+        this.userRating = userRating;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getPosterUrl() {
+        return posterUrl;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getGenre() {
+        return genre;
+    }
+
+    public int getReleaseYear() {
+        return releaseYear;
+    }
+
+    public String getUserStatus() {
+        return userStatus;
+    }
+
+    public int getUserRating() {
+        return userRating;
+    }
+
+    /**
+     * Same catalog data (everything except the user's status/rating).
+     */
+    public boolean sameMovieAs(MovieRow other) {
+        return id == other.id
+                && releaseYear == other.releaseYear
+                && Objects.equals(title, other.title)
+                && Objects.equals(posterUrl, other.posterUrl)
+                && Objects.equals(description, other.description)
+                && Objects.equals(genre, other.genre);
+    }
+
+    /**
+     * Same user status and rating.
+     */
+    public boolean sameDiaryStateAs(MovieRow other) {
+        return userRating == other.userRating && Objects.equals(userStatus, other.userStatus);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MovieRow)) return false;
+        MovieRow other = (MovieRow) o;
+        return sameMovieAs(other) && sameDiaryStateAs(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, title, posterUrl, description, genre, releaseYear, userStatus, userRating);
+    }
+}
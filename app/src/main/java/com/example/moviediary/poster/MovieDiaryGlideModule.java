@@ -0,0 +1,81 @@
+package com.example.moviediary.poster;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.Registry;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.module.AppGlideModule;
+import com.bumptech.glide.request.RequestOptions;
+
+import java.io.InputStream;
+
+/**
+ * Glide caches sized from the heap the device gives the app (ActivityManager memory class)
+ * rather than from the screen: a poster card is small, so a share of the heap holds several
+ * screens of the grid on any device, and low-RAM devices give back the most.
+ *
+ * Poster urls are read from PosterStore first when it has them (offline posters).
+ */
+@GlideModule
+public final class MovieDiaryGlideModule extends AppGlideModule {
+
+    static final long MB = 1024 * 1024;
+
+    // Decoded posters: 1/8 of the heap (1/16 on low-RAM devices)
+    static final int MEMORY_CACHE_DIVISOR = 8;
+    static final int LOW_RAM_MEMORY_CACHE_DIVISOR = 16;
+    // Bitmaps kept for reuse by the next decodes: half the memory cache
+    static final int BITMAP_POOL_DIVISOR = 2;
+    // Downloaded and cropped posters on disk: 2 MB per MB of heap, within [32 MB, 256 MB]
+    static final long DISK_CACHE_PER_HEAP_MB = 2 * MB;
+    static final long MIN_DISK_CACHE = 32 * MB;
+    static final long MAX_DISK_CACHE = 256 * MB;
+
+    static final String DISK_CACHE_DIR = "posters";
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClassMb = am.getMemoryClass();
+        boolean lowRam = am.isLowRamDevice();
+
+        long memoryCache = memoryCacheBytes(memoryClassMb, lowRam);
+        builder.setMemoryCache(new LruResourceCache(memoryCache));
+        builder.setBitmapPool(new LruBitmapPool(memoryCache / BITMAP_POOL_DIVISOR));
+        builder.setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_DIR, diskCacheBytes(memoryClassMb)));
+
+        // Keep the cropped poster too (ALL), so a cold start decodes it without cropping again.
+        // Posters are opaque: 16-bit pixels halve every bitmap where memory is tight
+        builder.setDefaultRequestOptions(new RequestOptions()
+                .diskCacheStrategy(DiskCacheStrategy.ALL)
+                .format(lowRam ? DecodeFormat.PREFER_RGB_565 : DecodeFormat.PREFER_ARGB_8888));
+    }
+
+    @Override
+    public void registerComponents(@NonNull Context context, @NonNull Glide glide, @NonNull Registry registry) {
+        registry.prepend(String.class, InputStream.class, new PosterStoreLoader.Factory(context));
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+
+    static long memoryCacheBytes(int memoryClassMb, boolean lowRam) {
+        return memoryClassMb * MB / (lowRam ? LOW_RAM_MEMORY_CACHE_DIVISOR : MEMORY_CACHE_DIVISOR);
+    }
+
+    static long diskCacheBytes(int memoryClassMb) {
+        return Math.max(MIN_DISK_CACHE, Math.min(MAX_DISK_CACHE, memoryClassMb * DISK_CACHE_PER_HEAP_MB));
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.moviediary.poster;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import com.example.moviediary.database.ChangeBus;
+import com.example.moviediary.database.DatabaseManager;
+import com.example.moviediary.model.Movie;
+import com.example.moviediary.model.MoviePage;
+import com.example.moviediary.model.MovieRow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Fills PosterStore in the background, so posters show without the network.
+ *
+ * A pass downloads the posters the store is missing: the user's diary first (card and
+ * thumbnail tiers, these are the movies they come back to), then the first CATALOG_POSTERS
+ * movies of their home grid (card tier). It stops early when offline, or before it would
+ * evict the posters it just fetched. One pass per user and catalog version: fill() again is
+ * a no-op until the user or the catalog changes. A movie added to the diary later is fetched
+ * on its own.
+ *
+ * All work runs on one low-priority thread, which is also where the database is first
+ * opened (and migrated): screens may create the downloader in onCreate.
+ */
+public final class PosterDownloader {
+
+    private static final String TAG = "PosterDownloader";
+
+    static final int CONNECT_TIMEOUT_MS = 10_000;
+    static final int READ_TIMEOUT_MS = 15_000;
+    // Home grid posters fetched per pass, after the diary's
+    static final int CATALOG_POSTERS = 300;
+    // Consecutive failures after which a pass assumes there is no network and stops
+    static final int MAX_FAILURES = 3;
+    private static final int PAGE_SIZE = 50;
+    private static final int NONE = Integer.MIN_VALUE;
+
+    private static PosterDownloader instance;
+
+    // Called on the executor only (opening the database never happens on the caller's thread)
+    private final Supplier<DatabaseManager> db;
+    private final PosterStore store;
+    private final Executor executor;
+    private final int catalogPosters;
+    private final ChangeBus.Listener changeListener = this::onChange;
+
+    // Tiers to fetch, from the last fill() (null until then)
+    private volatile Posters.Size cardSize;
+    private volatile Posters.Size thumbSize;
+
+    // Executor thread only: user of the last complete pass, and whether the catalog changed since
+    private int filledUserId = NONE;
+    private volatile boolean catalogChanged;
+
+    public static synchronized PosterDownloader getInstance(Context context) {
+        if (instance == null) {
+            Context app = context.getApplicationContext();
+            instance = new PosterDownloader(() -> DatabaseManager.getInstance(app), PosterStore.getInstance(app),
+                    newExecutor(), CATALOG_POSTERS);
+        }
+        return instance;
+    }
+
+    PosterDownloader(Supplier<DatabaseManager> db, PosterStore store, Executor executor, int catalogPosters) {
+        this.db = db;
+        this.store = store;
+        this.executor = executor;
+        this.catalogPosters = catalogPosters;
+        ChangeBus.getInstance().subscribe(changeListener);
+    }
+
+    // For tests: stop following the database (the process-wide instance never does)
+    void close() {
+        ChangeBus.getInstance().unsubscribe(changeListener);
+    }
+
+    /**
+     * Queues a pass for userId (-1: logged out, home grid only) at these poster sizes.
+     */
+    public void fill(int userId, Posters.Size cardSize, Posters.Size thumbSize) {
+        this.cardSize = cardSize;
+        this.thumbSize = thumbSize;
+        executor.execute(() -> {
+            if (userId == filledUserId && !catalogChanged) return;
+            catalogChanged = false;
+            if (runPass(userId)) filledUserId = userId;
+        });
+    }
+
+    // Called on the writing thread: only queue work
+    private void onChange(ChangeBus.Change change) {
+        switch (change.getType()) {
+            case DIARY_ROW:
+                if (change.getStatus() == null || cardSize == null) break;
+                int movieId = change.getMovieId();
+                executor.execute(() -> {
+                    Movie movie = db.get().getMovieById(movieId);
+                    if (movie == null) return;
+                    try {
+                        fetchTiers(movie.getPosterUrl(), true);
+                    } catch (IOException e) {
+                        Log.w(TAG, "Poster of movie " + movieId + " not stored", e);
+                    }
+                });
+                break;
+            case CATALOG:
+                catalogChanged = true;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * One pass for userId. Returns false when it stopped early (offline), so the next fill() retries.
+     */
+    boolean runPass(int userId) {
+        // Past this, new posters would evict the ones fetched earlier in the pass
+        long byteBudget = store.getBudgetBytes() * 3 / 4;
+        long fetched = 0;
+        int failures = 0;
+
+        if (userId != -1) {
+            for (String url : db.get().getDiaryPosterUrls(userId)) {
+                try {
+                    fetched += fetchTiers(url, true);
+                    failures = 0;
+                } catch (IOException e) {
+                    if (++failures >= MAX_FAILURES) return stopped(e);
+                }
+                if (fetched >= byteBudget) return true;
+            }
+        }
+
+        int remaining = catalogPosters;
+        MoviePage.Key after = null;
+        while (remaining > 0) {
+            MoviePage page = db.get().getMoviesForHomePage(userId, after, Math.min(PAGE_SIZE, remaining));
+            for (MovieRow row : page.getRows()) {
+                try {
+                    fetched += fetchTiers(row.getPosterUrl(), false);
+                    failures = 0;
+                } catch (IOException e) {
+                    if (++failures >= MAX_FAILURES) return stopped(e);
+                }
+                if (fetched >= byteBudget) return true;
+            }
+            remaining -= page.getRows().size();
+            after = page.getNext();
+            if (after == null) break;
+        }
+        return true;
+    }
+
+    // Card tier of posterUrl, and the thumbnail tier when withThumb; bytes downloaded
+    private long fetchTiers(String posterUrl, boolean withThumb) throws IOException {
+        Posters.Size card = cardSize;
+        Posters.Size thumb = thumbSize;
+        if (posterUrl == null || card == null) return 0;
+
+        long bytes = fetch(Posters.sizedUrl(posterUrl, card.width));
+        if (withThumb && thumb != null) bytes += fetch(Posters.sizedUrl(posterUrl, thumb.width));
+        return bytes;
+    }
+
+    /**
+     * Downloads url into the store unless it is already there; bytes downloaded.
+     * Throws only when the server could not be reached or the transfer broke.
+     */
+    long fetch(String url) throws IOException {
+        if (store.contains(url)) return 0;
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        try {
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                // The server answered: no poster at this url, not a network failure
+                Log.w(TAG, "HTTP " + code + " for " + url);
+                return 0;
+            }
+            try (InputStream in = connection.getInputStream()) {
+                return store.put(url, in);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static boolean stopped(IOException last) {
+        Log.w(TAG, "Poster pass stopped after " + MAX_FAILURES + " failures", last);
+        return false;
+    }
+
+    private static Executor newExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "poster-download");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.moviediary.poster;
+
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Where the posters shown on screen came from, and how long they took.
+ *
+ * Each displayed poster (Posters.display) is counted once, by the Glide DataSource of its full
+ * request: MEMORY_CACHE is a hit with nothing to decode, RESOURCE_DISK_CACHE decodes the
+ * already-sized file, DATA_DISK_CACHE decodes and crops the downloaded file, REMOTE downloads
+ * first. Times run from the bind to the poster being ready, so for the disk sources they are
+ * the decode time. Preloads are not counted: their benefit shows up as memory hits.
+ *
+ * Process-wide and thread-safe.
+ */
+public final class PosterStats {
+
+    private static final DataSource[] SOURCES = DataSource.values();
+    // Index of failed loads in the counters, after the DataSources
+    private static final int FAILED = SOURCES.length;
+
+    private static final PosterStats INSTANCE = new PosterStats();
+
+    private final AtomicLongArray loads = new AtomicLongArray(SOURCES.length + 1);
+    private final AtomicLongArray nanos = new AtomicLongArray(SOURCES.length + 1);
+
+    public static PosterStats getInstance() {
+        return INSTANCE;
+    }
+
+    PosterStats() {
+    }
+
+    /**
+     * Listener for one poster request, timed from now.
+     */
+    public RequestListener<Drawable> startLoad() {
+        return new Timer(SystemClock.elapsedRealtimeNanos());
+    }
+
+    public long loads(DataSource source) {
+        return loads.get(source.ordinal());
+    }
+
+    public long failures() {
+        return loads.get(FAILED);
+    }
+
+    public long total() {
+        long total = 0;
+        for (int i = 0; i < loads.length(); i++) total += loads.get(i);
+        return total;
+    }
+
+    /**
+     * Share of posters served without a download (memory or disk cache), 0 before any load.
+     */
+    public double hitRate() {
+        long total = total();
+        if (total == 0) return 0;
+        long hits = loads(DataSource.MEMORY_CACHE) + loads(DataSource.RESOURCE_DISK_CACHE)
+                + loads(DataSource.DATA_DISK_CACHE) + loads(DataSource.LOCAL);
+        return (double) hits / total;
+    }
+
+    /**
+     * Share of posters already decoded in memory, 0 before any load.
+     */
+    public double memoryHitRate() {
+        long total = total();
+        return total == 0 ? 0 : (double) loads(DataSource.MEMORY_CACHE) / total;
+    }
+
+    /**
+     * Mean bind-to-ready time of the posters from source, in milliseconds (0 if none).
+     */
+    public double meanMillis(DataSource source) {
+        return meanMillis(source.ordinal());
+    }
+
+    public void reset() {
+        for (int i = 0; i < loads.length(); i++) {
+            loads.set(i, 0);
+            nanos.set(i, 0);
+        }
+    }
+
+    void record(DataSource source, long elapsedNanos) {
+        int i = source == null ? FAILED : source.ordinal();
+        loads.incrementAndGet(i);
+        nanos.addAndGet(i, elapsedNanos);
+    }
+
+    private double meanMillis(int i) {
+        long n = loads.get(i);
+        return n == 0 ? 0 : nanos.get(i) / (n * 1_000_000.0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                "PosterStats[%d loads, hit rate %.0f%%, memory %.0f%%",
+                total(), hitRate() * 100, memoryHitRate() * 100));
+        for (DataSource source : SOURCES) {
+            long n = loads(source);
+            if (n > 0) sb.append(String.format(Locale.ROOT, ", %s=%d (%.1f ms)", source, n, meanMillis(source)));
+        }
+        if (failures() > 0) sb.append(", failed=").append(failures());
+        return sb.append(']').toString();
+    }
+
+    private final class Timer implements RequestListener<Drawable> {
+        private final long startNanos;
+
+        Timer(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public boolean onLoadFailed(@Nullable GlideException e, @Nullable Object model,
+                                    @NonNull Target<Drawable> target, boolean isFirstResource) {
+            record(null, SystemClock.elapsedRealtimeNanos() - startNanos);
+            return false; // let Glide show the error drawable
+        }
+
+        @Override
+        public boolean onResourceReady(@NonNull Drawable resource, @NonNull Object model, Target<Drawable> target,
+                                       @NonNull DataSource dataSource, boolean isFirstResource) {
+            record(dataSource, SystemClock.elapsedRealtimeNanos() - startNanos);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.moviediary.poster;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Poster files kept on the device, so the grid shows posters without the network.
+ *
+ * A poster is stored under the SHA-256 of its url. The url names the size tier (TMDB
+ * /w92/, /w342/ ...: see Posters.sizedUrl), so each tier of a poster is its own file.
+ * PosterDownloader fills the store, and MovieDiaryGlideModule serves Glide's url loads
+ * from it before the network.
+ *
+ * Files are evicted least recently used first once they exceed the byte budget; their
+ * modification time keeps that order across restarts. Thread-safe.
+ */
+public final class PosterStore {
+
+    static final long MB = 1024 * 1024;
+    // About 1000 movies at card + thumbnail size
+    static final long DEFAULT_BUDGET_BYTES = 48 * MB;
+    // Larger downloads are not posters
+    static final long MAX_FILE_BYTES = 4 * MB;
+    // Last use is written to the file at most this often (a hit is then a map lookup)
+    static final long TOUCH_GRANULARITY_MS = 60 * 60 * 1000L;
+
+    static final String DIR = "posters";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static PosterStore instance;
+
+    private final File dir;
+    private final long budgetBytes;
+
+    // File name -> size, least recently used first
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    private boolean loaded;
+
+    public static synchronized PosterStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new PosterStore(new File(context.getApplicationContext().getFilesDir(), DIR),
+                    DEFAULT_BUDGET_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * Store in dir (created if needed). The directory is read on first use, not here:
+     * getInstance() is cheap on the main thread.
+     */
+    PosterStore(File dir, long budgetBytes) {
+        this.dir = dir;
+        this.budgetBytes = budgetBytes;
+    }
+
+    // Indexes the stored files, oldest use first, and deletes those of interrupted downloads;
+    // caller holds the lock
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+
+        File[] existing = dir.listFiles();
+        if (existing == null) {
+            //noinspection ResultOfMethodCallIgnored
+            dir.mkdirs();
+            return;
+        }
+
+        List<File> posters = new ArrayList<>(existing.length);
+        for (File f : existing) {
+            if (f.getName().endsWith(TEMP_SUFFIX)) {
+                //noinspection ResultOfMethodCallIgnored
+                f.delete();
+            } else {
+                posters.add(f);
+            }
+        }
+        posters.sort((a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File f : posters) {
+            files.put(f.getName(), f.length());
+            totalBytes += f.length();
+        }
+        evict();
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized long getTotalBytes() {
+        ensureLoaded();
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        ensureLoaded();
+        return files.size();
+    }
+
+    public synchronized boolean contains(String url) {
+        ensureLoaded();
+        return url != null && files.containsKey(key(url));
+    }
+
+    /**
+     * File of url, marked as just used, or null when it is not stored.
+     */
+    public File get(String url) {
+        if (url == null) return null;
+        String name = key(url);
+        synchronized (this) {
+            ensureLoaded();
+            if (files.get(name) == null) return null;
+        }
+        File file = new File(dir, name);
+        long now = System.currentTimeMillis();
+        if (now - file.lastModified() > TOUCH_GRANULARITY_MS) {
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(now);
+        }
+        return file;
+    }
+
+    /**
+     * Stores the poster of url read from in (not closed), replacing any stored one, and evicts
+     * the least recently used posters beyond the budget. Returns its size.
+     */
+    public long put(String url, InputStream in) throws IOException {
+        String name = key(url);
+        synchronized (this) {
+            ensureLoaded();
+        }
+        File temp = File.createTempFile(name, TEMP_SUFFIX, dir);
+        long size = 0;
+        try {
+            try (OutputStream out = new FileOutputStream(temp)) {
+                byte[] buffer = new byte[16 * 1024];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    size += n;
+                    if (size > MAX_FILE_BYTES) throw new IOException("Poster larger than " + MAX_FILE_BYTES + " bytes: " + url);
+                    out.write(buffer, 0, n);
+                }
+            }
+            if (size == 0) throw new IOException("Empty poster: " + url);
+
+            synchronized (this) {
+                // Readers see either the old or the new complete file, never a partial one
+                if (!temp.renameTo(new File(dir, name))) throw new IOException("Cannot store poster " + url);
+                Long old = files.put(name, size);
+                totalBytes += size - (old == null ? 0 : old);
+                evict();
+            }
+            return size;
+        } finally {
+            if (temp.exists()) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+    }
+
+    public synchronized void remove(String url) {
+        ensureLoaded();
+        String name = key(url);
+        Long size = files.remove(name);
+        if (size != null) {
+            totalBytes -= size;
+            //noinspection ResultOfMethodCallIgnored
+            new File(dir, name).delete();
+        }
+    }
+
+    // Drops the least recently used posters until the store fits the budget; caller holds the lock
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = files.entrySet().iterator();
+        while (totalBytes > budgetBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            totalBytes -= eldest.getValue();
+            //noinspection ResultOfMethodCallIgnored
+            new File(dir, eldest.getKey()).delete();
+            it.remove();
+        }
+    }
+
+    /**
+     * File name of url: hex SHA-256 of the url (which carries the size tier).
+     */
+    static String key(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Hashing error", e);
+        }
+    }
+
+    // For tests: stored file names, least recently used first
+    synchronized List<String> keys() {
+        ensureLoaded();
+        return new ArrayList<>(files.keySet());
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "PosterStore[%d posters, %.1f/%.1f MB]",
+                files.size(), totalBytes / (double) MB, budgetBytes / (double) MB);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.moviediary.poster;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.signature.ObjectKey;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Glide loader of poster urls that PosterStore has a file for, registered ahead of the
+ * network loaders: a stored poster is read from disk (DataSource.LOCAL), any other url
+ * falls through to the next loader. The url stays the cache key either way.
+ */
+final class PosterStoreLoader implements ModelLoader<String, InputStream> {
+
+    private final PosterStore store;
+
+    PosterStoreLoader(PosterStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public boolean handles(@NonNull String url) {
+        return store.contains(url);
+    }
+
+    @Override
+    public LoadData<InputStream> buildLoadData(@NonNull String url, int width, int height, @NonNull Options options) {
+        return new LoadData<>(new ObjectKey(url), new Fetcher(store, url));
+    }
+
+    // The store is created when Glide first needs the loader
+    static final class Factory implements ModelLoaderFactory<String, InputStream> {
+        private final Context context;
+
+        Factory(Context context) {
+            this.context = context.getApplicationContext();
+        }
+
+        @NonNull
+        @Override
+        public ModelLoader<String, InputStream> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new PosterStoreLoader(PosterStore.getInstance(context));
+        }
+
+        @Override
+        public void teardown() {
+        }
+    }
+
+    private static final class Fetcher implements DataFetcher<InputStream> {
+        private final PosterStore store;
+        private final String url;
+        private InputStream stream;
+
+        Fetcher(PosterStore store, String url) {
+            this.store = store;
+            this.url = url;
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super InputStream> callback) {
+            File file = store.get(url);
+            if (file == null) {
+                // Evicted since handles(): Glide moves on to the network loader
+                callback.onLoadFailed(new IOException("Poster no longer stored: " + url));
+                return;
+            }
+            try {
+                stream = new FileInputStream(file);
+                callback.onDataReady(stream);
+            } catch (IOException e) {
+                callback.onLoadFailed(e);
+            }
+        }
+
+        @Override
+        public void cleanup() {
+            if (stream == null) return;
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @NonNull
+        @Override
+        public Class<InputStream> getDataClass() {
+            return InputStream.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource() {
+            return DataSource.LOCAL;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.moviediary.poster;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.util.DisplayMetrics;
+
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.example.moviediary.R;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Poster requests, built the same way by the adapters and the grid preloader.
+ *
+ * A poster is decoded at the exact size of the view that shows it (override + centerCrop),
+ * from the smallest TMDB rendition that covers that width instead of the w500 file stored in
+ * the movies table. Preload and bind requests share model, size and transformation, so the
+ * bind of a preloaded card is a memory-cache hit.
+ */
+public final class Posters {
+
+    /**
+     * Pixel size a poster is decoded at.
+     */
+    public static final class Size {
+        public final int width;
+        public final int height;
+
+        public Size(int width, int height) {
+            this.width = Math.max(1, width);
+            this.height = Math.max(1, height);
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height;
+        }
+    }
+
+    // movie_card.xml: poster height; 2 x 8dp margin + 2 x 12dp padding + ~2 x 6dp CardView
+    // compat padding around it; activity_home.xml: 2 x 8dp RecyclerView padding
+    static final int CARD_HEIGHT_DP = 180;
+    static final int CARD_INSET_DP = 52;
+    static final int GRID_PADDING_DP = 16;
+
+    // item_diary_movie.xml
+    static final int THUMB_WIDTH_DP = 90;
+    static final int THUMB_HEIGHT_DP = 120;
+
+    // Low-res first pass: shown while the full poster downloads or decodes
+    static final float THUMBNAIL_MULTIPLIER = 0.25f;
+
+    // Widths TMDB serves a poster at (https://image.tmdb.org/t/p/w<width>/<file>)
+    private static final int[] TMDB_WIDTHS = {92, 154, 185, 342, 500, 780};
+    private static final Pattern TMDB_SIZE = Pattern.compile("image\\.tmdb\\.org/t/p/(w\\d+|original)/");
+
+    private Posters() {
+    }
+
+    /**
+     * Poster of a home grid card, for a grid of the given number of columns.
+     */
+    public static Size cardSize(Context context, int columns) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int gridWidth = metrics.widthPixels - dp(metrics, GRID_PADDING_DP);
+        return new Size(gridWidth / columns - dp(metrics, CARD_INSET_DP), dp(metrics, CARD_HEIGHT_DP));
+    }
+
+    /**
+     * Poster of a My Diary row.
+     */
+    public static Size thumbSize(Context context) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        return new Size(dp(metrics, THUMB_WIDTH_DP), dp(metrics, THUMB_HEIGHT_DP));
+    }
+
+    /**
+     * Poster decoded at size, as the preloader fetches it.
+     */
+    public static RequestBuilder<Drawable> request(RequestManager glide, String posterUrl, Size size) {
+        return glide.load(sizedUrl(posterUrl, size.width))
+                .override(size.width, size.height)
+                .centerCrop();
+    }
+
+    /**
+     * Poster for a view: request() plus placeholder, a low-res first pass from the smallest
+     * rendition, and PosterStats timing. Starts from the memory cache when preloaded.
+     */
+    public static RequestBuilder<Drawable> display(RequestManager glide, String posterUrl, Size size) {
+        int thumbWidth = Math.max(1, Math.round(size.width * THUMBNAIL_MULTIPLIER));
+        int thumbHeight = Math.max(1, Math.round(size.height * THUMBNAIL_MULTIPLIER));
+        RequestBuilder<Drawable> thumbnail = glide.load(sizedUrl(posterUrl, thumbWidth))
+                .override(thumbWidth, thumbHeight)
+                .centerCrop();
+
+        return request(glide, posterUrl, size)
+                .thumbnail(thumbnail)
+                .placeholder(R.drawable.ic_movie_placeholder)
+                .error(R.drawable.ic_movie_placeholder)
+                .listener(PosterStats.getInstance().startLoad());
+    }
+
+    /**
+     * The TMDB url of the smallest rendition at least widthPx wide (the largest one when none
+     * is); any other url unchanged.
+     */
+    public static String sizedUrl(String posterUrl, int widthPx) {
+        if (posterUrl == null) return null;
+        Matcher m = TMDB_SIZE.matcher(posterUrl);
+        if (!m.find()) return posterUrl;
+
+        int width = TMDB_WIDTHS[TMDB_WIDTHS.length - 1];
+        for (int w : TMDB_WIDTHS) {
+            if (w >= widthPx) {
+                width = w;
+                break;
+            }
+        }
+        return posterUrl.substring(0, m.start(1)) + "w" + width + posterUrl.substring(m.end(1));
+    }
+
+    private static int dp(DisplayMetrics metrics, int dp) {
+        return Math.round(dp * metrics.density);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.moviediary.repository;
+
+import com.example.moviediary.database.DatabaseManager;
+import com.example.moviediary.model.MovieRow;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The home grid as last shown, in a small binary file, so the next cold start can draw it
+ * before the database is even opened (HomeActivity then reconciles it with a fresh query).
+ *
+ * Layout (big-endian): magic, version, user id, row count, then per row: id, release year,
+ * diary status (0 none, 1 wishlist, 2 watched), rating, and title, poster url, genre,
+ * description as length-prefixed UTF-8 (length -1 for null).
+ *
+ * The file is replaced atomically (write + rename) and read through a memory map: one
+ * mapping, no read buffers, no database. A file of another user, another version or a
+ * damaged one reads as no snapshot.
+ */
+public final class HomeSnapshot {
+
+    static final String FILE_NAME = "home_feed.snapshot";
+    static final int MAGIC = 0x4D444853; // "MDHS"
+    static final int VERSION = 1;
+
+    // Two pages of the grid: more than a screen, a few tens of KB at most
+    public static final int MAX_ROWS = 48;
+
+    private static final byte NO_STATUS = 0;
+    private static final byte WISHLIST = 1;
+    private static final byte WATCHED = 2;
+
+    private HomeSnapshot() {
+    }
+
+    /**
+     * Rows saved for userId (-1: logged out), or null when there is no usable snapshot.
+     */
+    public static List<MovieRow> read(File file, int userId) {
+        if (!file.isFile()) return null;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (in.getInt() != MAGIC || in.getInt() != VERSION || in.getInt() != userId) return null;
+            int count = in.getInt();
+            if (count < 0 || count > MAX_ROWS) return null;
+
+            List<MovieRow> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int id = in.getInt();
+                int year = in.getInt();
+                byte status = in.get();
+                int rating = in.get();
+                String title = readString(in);
+                String posterUrl = readString(in);
+                String genre = readString(in);
+                String description = readString(in);
+                rows.add(new MovieRow(id, title, posterUrl, description, genre, year, status(status), rating));
+            }
+            return Collections.unmodifiableList(rows);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Saves the first MAX_ROWS rows for userId, replacing the previous snapshot.
+     */
+    public static void write(File file, int userId, List<MovieRow> rows) throws IOException {
+        int count = Math.min(rows.size(), MAX_ROWS);
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(userId);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                MovieRow row = rows.get(i);
+                out.writeInt(row.getId());
+                out.writeInt(row.getReleaseYear());
+                out.writeByte(statusCode(row.getUserStatus()));
+                out.writeByte(row.getUserRating());
+                writeString(out, row.getTitle());
+                writeString(out, row.getPosterUrl());
+                writeString(out, row.getGenre());
+                writeString(out, row.getDescription());
+            }
+        }
+        if (!temp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer in) {
+        int length = in.getInt();
+        if (length == -1) return null;
+        if (length < 0 || length > in.remaining()) throw new IllegalArgumentException("Bad string length " + length);
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte statusCode(String status) {
+        if (DatabaseManager.STATUS_WATCHED.equals(status)) return WATCHED;
+        if (DatabaseManager.STATUS_WISHLIST.equals(status)) return WISHLIST;
+        return NO_STATUS;
+    }
+
+    private static String status(byte code) {
+        switch (code) {
+            case WATCHED:
+                return DatabaseManager.STATUS_WATCHED;
+            case WISHLIST:
+                return DatabaseManager.STATUS_WISHLIST;
+            case NO_STATUS:
+                return null;
+            default:
+                throw new IllegalArgumentException("Bad status " + code);
+        }
+    }
+}
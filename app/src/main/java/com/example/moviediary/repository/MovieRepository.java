@@ -0,0 +1,379 @@
+package com.example.moviediary.repository;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+import android.os.StrictMode;
+import android.util.Log;
+
+import com.example.moviediary.database.ChangeBus;
+import com.example.moviediary.database.DatabaseManager;
+import com.example.moviediary.model.DiaryEntry;
+import com.example.moviediary.model.Movie;
+import com.example.moviediary.model.MoviePage;
+import com.example.moviediary.model.MovieRow;
+import com.example.moviediary.model.User;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs DatabaseManager calls off the main thread and delivers results on it.
+ *
+ * One instance per screen: create it in onCreate and close() it in onDestroy.
+ * close() removes queued work and drops (and closes) results of queries already
+ * running, so callbacks never touch a destroyed Activity.
+ *
+ * Reads share a small pool (WAL lets them run in parallel); writes go through a
+ * single thread so they are applied in the order they were made (rating-bar ticks).
+ * Reads that can be superseded (search and home pages) take a CancellationSignal: cancelling
+ * it takes a queued read out of the queue. The read queue is bounded too: when it is full the
+ * oldest queued read is dropped and answered with null, as a failed call.
+ */
+public class MovieRepository {
+
+    private static final String TAG = "MovieRepository";
+
+    public interface Callback<T> {
+        /**
+         * @param result what the call returned, or null when it failed (logged): every
+         *               callback handles null and re-enables whatever waits for it
+         */
+        void onResult(T result);
+    }
+
+    public enum AccountResult {
+        SUCCESS,
+        USERNAME_TAKEN,
+        EMAIL_TAKEN,
+        FAILED
+    }
+
+    private static final int READ_THREADS = 2;
+    // Reads waiting for a thread, all screens together (a fast scroll queues a page or two)
+    static final int READ_QUEUE = 32;
+
+    // Queue full: the oldest queued read makes room for the new one, its callback gets null
+    private static final RejectedExecutionHandler DISCARD_OLDEST_READ = (task, executor) -> {
+        if (executor.isShutdown()) return;
+        Runnable oldest = executor.getQueue().poll();
+        if (oldest instanceof ReadTask) ((ReadTask<?>) oldest).discard();
+        executor.execute(task);
+    };
+
+    private static final ThreadPoolExecutor READ_EXECUTOR = newExecutor("db-read", READ_THREADS,
+            new ArrayBlockingQueue<>(READ_QUEUE), DISCARD_OLDEST_READ);
+    private static final ThreadPoolExecutor WRITE_EXECUTOR = newExecutor("db-write", 1,
+            new LinkedBlockingQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+
+    private final Context appContext;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Queued reads of this screen, removed from the executor on close()
+    private final Set<Runnable> pendingReads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private volatile boolean closed;
+    // Subscriptions of this screen to ChangeBus, removed on close()
+    private final Set<ChangeBus.Listener> changeListeners = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    public MovieRepository(Context context) {
+        appContext = context.getApplicationContext();
+    }
+
+    /**
+     * Cancels pending reads of this screen, discards results still in flight and stops
+     * change notifications. Writes already requested are still applied, only their callback is dropped.
+     */
+    public void close() {
+        closed = true;
+        for (Runnable task : pendingReads) {
+            READ_EXECUTOR.remove(task);
+        }
+        pendingReads.clear();
+        for (ChangeBus.Listener listener : changeListeners) {
+            ChangeBus.getInstance().unsubscribe(listener);
+        }
+        changeListeners.clear();
+    }
+
+    /**
+     * Delivers every later database change (see ChangeBus) on the main thread until close().
+     * Changes made while the screen is in the background are delivered too: record them and
+     * act in onResume, or apply them right away when that is cheap.
+     */
+    public void observeChanges(Callback<ChangeBus.Change> callback) {
+        if (closed) return;
+
+        ChangeBus.Listener listener = change -> mainHandler.post(() -> deliver(change, callback));
+        changeListeners.add(listener);
+        ChangeBus.getInstance().subscribe(listener);
+    }
+
+    // =======================
+    // USERS
+    // =======================
+
+    /**
+     * Verifies the password on a read thread (PBKDF2, about PasswordUtils.TARGET_MILLIS).
+     * An outdated stored hash is then upgraded by a write, off the read threads.
+     */
+    public void login(String email, String password, Callback<User> callback) {
+        read(() -> {
+            User user = db().getUser(email, password);
+            if (user != null) {
+                write(() -> db().rehashPassword(user.getId(), password), null);
+                // The home grid reads the diary badges from memory from now on
+                db().getDiaryIndex(user.getId());
+            }
+            return user;
+        }, callback);
+    }
+
+    public void register(User user, Callback<AccountResult> callback) {
+        write(() -> {
+            if (db().isUsernameExists(user.getUsername())) return AccountResult.USERNAME_TAKEN;
+            if (db().isEmailExists(user.getEmail())) return AccountResult.EMAIL_TAKEN;
+            return db().addUser(user) ? AccountResult.SUCCESS : AccountResult.FAILED;
+        }, callback);
+    }
+
+    public void updateProfile(int userId, String username, String email, String preferences,
+                              Callback<AccountResult> callback) {
+        write(() -> {
+            if (db().isUsernameExistsForOtherUser(username, userId)) return AccountResult.USERNAME_TAKEN;
+            if (db().isEmailExistsForOtherUser(email, userId)) return AccountResult.EMAIL_TAKEN;
+            return db().updateUserProfile(userId, username, email, preferences)
+                    ? AccountResult.SUCCESS : AccountResult.FAILED;
+        }, callback);
+    }
+
+    public void getUserPreferences(int userId, Callback<String> callback) {
+        read(() -> db().getUserPreferences(userId), callback);
+    }
+
+    // =======================
+    // MOVIES
+    // =======================
+
+    /**
+     * One page of the home grid: personalized for a logged-in user, whole catalog when userId is -1.
+     * after = null for the first page, then the previous page's getNext().
+     */
+    public void getHomePage(int userId, MoviePage.Key after, int limit, Callback<MoviePage> callback) {
+        getHomePage(userId, after, limit, null, callback);
+    }
+
+    /**
+     * Home page that can be abandoned (the list was reloaded meanwhile): signal.cancel() takes
+     * it out of the read queue if it has not started, and the callback is never called.
+     */
+    public void getHomePage(int userId, MoviePage.Key after, int limit, CancellationSignal signal,
+                            Callback<MoviePage> callback) {
+        read(() -> {
+            if (signal != null) signal.throwIfCanceled();
+            return db().getMoviesForHomePage(userId, after, limit);
+        }, signal, result -> {
+            if (signal == null || !signal.isCanceled()) callback.onResult(result);
+        });
+    }
+
+    public void searchPage(String query, MoviePage.Key after, int limit, Callback<MoviePage> callback) {
+        searchPage(query, after, limit, null, callback);
+    }
+
+    /**
+     * Search page that can be abandoned: signal.cancel() takes it out of the read queue if it
+     * has not started, aborts the SQLite query if it is running, and the callback is never called.
+     */
+    public void searchPage(String query, MoviePage.Key after, int limit, CancellationSignal signal,
+                           Callback<MoviePage> callback) {
+        read(() -> {
+            if (signal != null) signal.throwIfCanceled();
+            return db().searchMoviesPage(query, after, limit, signal);
+        }, signal, result -> {
+            if (signal == null || !signal.isCanceled()) callback.onResult(result);
+        });
+    }
+
+    /**
+     * Home grid saved by saveHomeSnapshot() for userId, or null. Runs on the calling thread:
+     * it maps a file of a few KB and touches no database, so the main thread can draw the
+     * grid with it before the first frame.
+     */
+    public List<MovieRow> readHomeSnapshot(int userId) {
+        StrictMode.ThreadPolicy policy = StrictMode.allowThreadDiskReads();
+        try {
+            return HomeSnapshot.read(homeSnapshotFile(), userId);
+        } finally {
+            StrictMode.setThreadPolicy(policy);
+        }
+    }
+
+    /**
+     * Saves the grid as shown for the next cold start (in order with the diary writes).
+     */
+    public void saveHomeSnapshot(int userId, List<MovieRow> rows) {
+        List<MovieRow> snapshot = new ArrayList<>(rows.subList(0, Math.min(rows.size(), HomeSnapshot.MAX_ROWS)));
+        write(() -> {
+            HomeSnapshot.write(homeSnapshotFile(), userId, snapshot);
+            return null;
+        }, null);
+    }
+
+    public void getMovie(int movieId, Callback<Movie> callback) {
+        read(() -> db().getMovieById(movieId), callback);
+    }
+
+    // "Also watched": movies most often watched together with movieId
+    public void getRelatedMovies(int movieId, Callback<List<MovieRow>> callback) {
+        read(() -> db().getRelatedMovies(movieId), callback);
+    }
+
+    // =======================
+    // DIARY
+    // =======================
+
+    public void getDiaryEntry(int userId, int movieId, Callback<DiaryEntry> callback) {
+        read(() -> db().getDiaryEntry(userId, movieId), callback);
+    }
+
+    public void getWishlist(int userId, Callback<List<MovieRow>> callback) {
+        read(() -> db().getUserDiary(userId, DatabaseManager.STATUS_WISHLIST), callback);
+    }
+
+    public void getWatched(int userId, Callback<List<MovieRow>> callback) {
+        read(() -> db().getUserDiary(userId, DatabaseManager.STATUS_WATCHED), callback);
+    }
+
+    public void upsertDiary(int userId, int movieId, String status, int rating, Callback<Boolean> callback) {
+        write(() -> db().upsertDiary(userId, movieId, status, rating), callback);
+    }
+
+    public void removeFromDiary(int userId, int movieId, Callback<Boolean> callback) {
+        write(() -> db().removeFromDiary(userId, movieId), callback);
+    }
+
+    // =======================
+    // Helpers
+    // =======================
+
+    private File homeSnapshotFile() {
+        return new File(appContext.getFilesDir(), HomeSnapshot.FILE_NAME);
+    }
+
+    // Opening the database (and any migration) also happens on a worker thread
+    private DatabaseManager db() {
+        return DatabaseManager.getInstance(appContext);
+    }
+
+    // Package-private for MovieRepositoryTest
+    <T> void read(Callable<T> work, Callback<T> callback) {
+        read(work, null, callback);
+    }
+
+    <T> void read(Callable<T> work, CancellationSignal signal, Callback<T> callback) {
+        if (closed) return;
+        if (signal != null && signal.isCanceled()) return;
+
+        ReadTask<T> task = new ReadTask<>(work, signal, callback);
+        pendingReads.add(task);
+        if (signal != null) {
+            // Until the task starts (it then hands the signal to the SQLite query)
+            signal.setOnCancelListener(() -> {
+                if (READ_EXECUTOR.remove(task)) pendingReads.remove(task);
+            });
+        }
+        READ_EXECUTOR.execute(task);
+    }
+
+    <T> void write(Callable<T> work, Callback<T> callback) {
+        WRITE_EXECUTOR.execute(() -> call(work, callback));
+    }
+
+    private <T> void call(Callable<T> work, Callback<T> callback) {
+        T result;
+        try {
+            result = work.call();
+        } catch (OperationCanceledException e) {
+            return; // superseded, nobody waits for it
+        } catch (Exception e) {
+            // The screen may be waiting (button disabled, page loading): it still gets an answer
+            Log.e(TAG, "Database call failed", e);
+            result = null;
+        }
+        T delivered = result;
+        mainHandler.post(() -> deliver(delivered, callback));
+    }
+
+    private <T> void deliver(T result, Callback<T> callback) {
+        if (closed) {
+            // Screen is gone: nobody will close this cursor otherwise
+            if (result instanceof Closeable) {
+                try {
+                    ((Closeable) result).close();
+                } catch (IOException ignored) {
+                }
+            }
+            return;
+        }
+        if (callback != null) callback.onResult(result);
+    }
+
+    // A queued read of this screen
+    private final class ReadTask<T> implements Runnable {
+        final Callable<T> work;
+        final CancellationSignal signal;
+        final Callback<T> callback;
+
+        ReadTask(Callable<T> work, CancellationSignal signal, Callback<T> callback) {
+            this.work = work;
+            this.signal = signal;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            pendingReads.remove(this);
+            if (signal != null) signal.setOnCancelListener(null);
+            if (closed) return;
+            call(work, callback);
+        }
+
+        // Dropped from a full queue: answered like a failed call, the screen asks again
+        void discard() {
+            pendingReads.remove(this);
+            if (closed) return;
+            Log.w(TAG, "Read queue full, oldest read dropped");
+            mainHandler.post(() -> deliver(null, callback));
+        }
+    }
+
+    private static ThreadPoolExecutor newExecutor(String name, int threads, BlockingQueue<Runnable> queue,
+                                                  RejectedExecutionHandler rejected) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                30, TimeUnit.SECONDS, queue, factory, rejected);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
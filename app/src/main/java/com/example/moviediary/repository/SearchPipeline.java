@@ -0,0 +1,229 @@
+package com.example.moviediary.repository;
+
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.moviediary.database.DatabaseManager;
+import com.example.moviediary.model.MoviePage;
+import com.example.moviediary.model.MovieRow;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search-as-you-type for the home grid. Main thread only.
+ *
+ * - submit() waits for a pause in typing (debounce) before searching; submitNow() does not
+ * - a new query cancels the previous one, queued or running
+ * - the first page of recent queries is kept in a small LRU
+ * - a query that extends a cached one whose result was complete ("inter" → "interstellar")
+ *   is answered by filtering that result, without touching the database; only ASCII queries,
+ *   the FTS4 tokenizer folds no other case, so "é" would not match the "É" it finds in memory
+ *
+ * Only the result of the latest query reaches the Listener.
+ */
+public class SearchPipeline {
+
+    public static final long DEFAULT_DEBOUNCE_MS = 300;
+
+    private static final int RECENT_QUERIES = 16;
+
+    public interface Listener {
+        /**
+         * @param query     normalized query (lower-cased words separated by one space)
+         * @param submitted true when it came from submitNow() (search button), false while typing
+         */
+        void onResults(String query, MoviePage firstPage, boolean submitted);
+    }
+
+    private final MovieRepository repository;
+    private final int pageSize;
+    private final long debounceMs;
+    private final Listener listener;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable runPending = this::runPending;
+
+    // First page per normalized query, least recently used first
+    private final LinkedHashMap<String, MoviePage> recent =
+            new LinkedHashMap<String, MoviePage>(RECENT_QUERIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, MoviePage> eldest) {
+                    return size() > RECENT_QUERIES;
+                }
+            };
+
+    private String pendingQuery;
+    private CancellationSignal inFlight;
+    // Bumped by every search and cancel(); older results are dropped
+    private int generation;
+    // Bumped by clearRecent(); results read before it are shown but not cached
+    private int cacheGeneration;
+
+    public SearchPipeline(MovieRepository repository, int pageSize, long debounceMs, Listener listener) {
+        this.repository = repository;
+        this.pageSize = pageSize;
+        this.debounceMs = debounceMs;
+        this.listener = listener;
+    }
+
+    /**
+     * Searches once the user stopped typing for the debounce window.
+     */
+    public void submit(String query) {
+        handler.removeCallbacks(runPending);
+        pendingQuery = query;
+        handler.postDelayed(runPending, debounceMs);
+    }
+
+    /**
+     * Searches right away (search button).
+     */
+    public void submitNow(String query) {
+        handler.removeCallbacks(runPending);
+        pendingQuery = null;
+        search(query, true);
+    }
+
+    /**
+     * Drops the pending query and the running one (back to the home list, screen destroyed).
+     */
+    public void cancel() {
+        handler.removeCallbacks(runPending);
+        pendingQuery = null;
+        generation++;
+        cancelInFlight();
+    }
+
+    /**
+     * Forgets cached results (the catalog changed), including the one of a search still running.
+     */
+    public void clearRecent() {
+        recent.clear();
+        cacheGeneration++;
+    }
+
+    // =======================
+    // Helpers
+    // =======================
+
+    private void runPending() {
+        String query = pendingQuery;
+        pendingQuery = null;
+        if (query != null) search(query, false);
+    }
+
+    private void search(String rawQuery, boolean submitted) {
+        List<String> tokens = DatabaseManager.searchTokens(rawQuery);
+        if (tokens.isEmpty()) return;
+        String query = String.join(" ", tokens);
+
+        int requestId = ++generation;
+        int cacheId = cacheGeneration;
+        cancelInFlight();
+
+        MoviePage page = recent.get(query);
+        if (page == null && isAscii(query)) page = narrowCached(query, tokens);
+        if (page != null) {
+            listener.onResults(query, page, submitted);
+            return;
+        }
+
+        CancellationSignal signal = new CancellationSignal();
+        inFlight = signal;
+        repository.searchPage(query, null, pageSize, signal, result -> {
+            if (requestId != generation) return;
+            inFlight = null;
+            // Failed: the grid keeps what it shows, the next keystroke tries again
+            if (result == null) return;
+            if (cacheId == cacheGeneration) recent.put(query, result);
+            listener.onResults(query, result, submitted);
+        });
+    }
+
+    private void cancelInFlight() {
+        if (inFlight != null) {
+            inFlight.cancel();
+            inFlight = null;
+        }
+    }
+
+    // The longest complete cached result this query narrows down, filtered in memory
+    private MoviePage narrowCached(String query, List<String> tokens) {
+        String bestKey = null;
+        for (Map.Entry<String, MoviePage> e : recent.entrySet()) {
+            String key = e.getKey();
+            if (e.getValue().getNext() == null
+                    && query.startsWith(key)
+                    && (bestKey == null || key.length() > bestKey.length())) {
+                bestKey = key;
+            }
+        }
+        if (bestKey == null) return null;
+
+        MoviePage page = filter(recent.get(bestKey), tokens);
+        recent.put(query, page);
+        return page;
+    }
+
+    /**
+     * Rows of a complete page that match every query token, in the same order.
+     * "dark kn" matches whatever "dark" matched and also has a word starting with "kn".
+     */
+    static MoviePage filter(MoviePage page, List<String> tokens) {
+        List<MovieRow> rows = new ArrayList<>();
+        for (MovieRow row : page.getRows()) {
+            if (matches(row, tokens)) rows.add(row);
+        }
+        return new MoviePage(rows, null);
+    }
+
+    private static boolean matches(MovieRow row, List<String> tokens) {
+        List<String> words = new ArrayList<>();
+        ftsTokens(row.getTitle(), words);
+        ftsTokens(row.getGenre(), words);
+        ftsTokens(row.getDescription(), words);
+
+        for (String token : tokens) {
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(token)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Words of a movie field as the FTS4 "simple" tokenizer indexes them: split on ASCII
+     * characters other than letters and digits, ASCII letters lower-cased. Other characters
+     * belong to the word and keep their case ("Wall–E" is one word, "wall–e").
+     */
+    static void ftsTokens(String text, List<String> words) {
+        if (text == null) return;
+
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (c >= 0x80 || Character.isLetterOrDigit(c)) {
+                word.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+}
@@ -3,31 +3,150 @@ package com.example.moviediary.security;
 import android.util.Base64;
 
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Password hashing: PBKDF2-HMAC-SHA256 with a per-user salt and iteration count.
+ *
+ * The iteration count is stored next to the hash (users.hash_iterations) so the cost can grow
+ * without breaking old accounts: new hashes use calibratedIterations(), and a login that
+ * verifies a much cheaper hash re-hashes the password (needsRehash). Iterations = LEGACY_ITERATIONS
+ * marks the former single salted SHA-256.
+ *
+ * Hashing is slow on purpose (~TARGET_MILLIS): never call it on the main thread.
+ */
 public class PasswordUtils {
 
+    // users.hash_iterations of hashes made before PBKDF2 (one salted SHA-256)
+    public static final int LEGACY_ITERATIONS = 0;
+
+    // Latency budget of one hash on this device, used to calibrate the iteration count
+    public static final long TARGET_MILLIS = 150;
+    // Floor / ceiling of the calibrated count, whatever the device measures
+    public static final int MIN_ITERATIONS = 10_000;
+    public static final int MAX_ITERATIONS = 1_000_000;
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    // Iterations timed by calibrate(): long enough to measure, short enough for a login
+    private static final int PROBE_ITERATIONS = 5_000;
+
+    // Calibrated once per process (first registration or login)
+    private static volatile int calibratedIterations;
+
     public static String generateSalt() {
         byte[] salt = new byte[16];
         new SecureRandom().nextBytes(salt);
         return Base64.encodeToString(salt, Base64.NO_WRAP);
     }
 
-    public static String hashPassword(String password, String saltBase64) {
+    /**
+     * Iteration count that makes one hash take about TARGET_MILLIS here, measured on first use.
+     */
+    public static int calibratedIterations() {
+        int iterations = calibratedIterations;
+        if (iterations == 0) {
+            iterations = calibrate(TARGET_MILLIS);
+            calibratedIterations = iterations;
+        }
+        return iterations;
+    }
+
+    /**
+     * Times PROBE_ITERATIONS rounds and scales them to targetMillis, within MIN/MAX_ITERATIONS.
+     */
+    public static int calibrate(long targetMillis) {
+        byte[] salt = new byte[16];
+        byte[] password = "calibration".getBytes(StandardCharsets.UTF_8);
+        // First run warms up the Mac provider (and the JIT) and is not timed
+        pbkdf2(password, salt, PROBE_ITERATIONS);
+
+        long start = System.nanoTime();
+        pbkdf2(password, salt, PROBE_ITERATIONS);
+        long nanos = Math.max(1, System.nanoTime() - start);
+
+        long iterations = PROBE_ITERATIONS * (targetMillis * 1_000_000L) / nanos;
+        return (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, iterations));
+    }
+
+    public static String hashPassword(String password, String saltBase64, int iterations) {
+        return Base64.encodeToString(hash(password, saltBase64, iterations), Base64.NO_WRAP);
+    }
+
+    /**
+     * Compares in constant time, so the response time does not tell how much of the hash matched.
+     */
+    public static boolean verifyPassword(String inputPassword, String saltBase64, String expectedHash, int iterations) {
+        byte[] input = hash(inputPassword, saltBase64, iterations);
+        byte[] expected;
         try {
-            byte[] salt = Base64.decode(saltBase64, Base64.NO_WRAP);
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            digest.update(salt);
-            byte[] hashed = digest.digest(password.getBytes(StandardCharsets.UTF_8));
-            return Base64.encodeToString(hashed, Base64.NO_WRAP);
-        } catch (Exception e) {
+            expected = Base64.decode(expectedHash, Base64.NO_WRAP);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(input, expected);
+    }
+
+    /**
+     * True when a hash of this cost should be replaced after the next successful login: legacy,
+     * or under half the calibrated cost. The calibration is a timing and varies between runs;
+     * without the margin most logins would write a new hash.
+     */
+    public static boolean needsRehash(int iterations) {
+        return iterations == LEGACY_ITERATIONS || iterations < calibratedIterations() / 2;
+    }
+
+    // =======================
+    // Primitives
+    // =======================
+
+    private static byte[] hash(String password, String saltBase64, int iterations) {
+        byte[] salt = Base64.decode(saltBase64, Base64.NO_WRAP);
+        byte[] input = password.getBytes(StandardCharsets.UTF_8);
+        return iterations == LEGACY_ITERATIONS ? legacySha256(input, salt) : pbkdf2(input, salt, iterations);
+    }
+
+    /**
+     * PBKDF2 (RFC 8018) with HMAC-SHA256, one 32-byte block. Written out because the
+     * PBKDF2WithHmacSHA256 SecretKeyFactory only exists from API 26 (minSdk is 24).
+     */
+    static byte[] pbkdf2(byte[] password, byte[] salt, int iterations) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            // An empty password is not a valid HMAC key spec; HMAC pads the key with zeros anyway
+            mac.init(new SecretKeySpec(password.length == 0 ? new byte[1] : password, MAC_ALGORITHM));
+
+            // U1 = HMAC(password, salt || INT(1))
+            mac.update(salt);
+            mac.update(new byte[]{0, 0, 0, 1});
+            byte[] u = mac.doFinal();
+            byte[] result = u.clone();
+
+            // Ui = HMAC(password, Ui-1), result = U1 ^ U2 ^ ... ^ Uc
+            for (int i = 1; i < iterations; i++) {
+                mac.update(u);
+                mac.doFinal(u, 0);
+                for (int b = 0; b < result.length; b++) {
+                    result[b] ^= u[b];
+                }
+            }
+            return result;
+        } catch (GeneralSecurityException e) {
             throw new RuntimeException("Hashing error", e);
         }
     }
 
-    public static boolean verifyPassword(String inputPassword, String saltBase64, String expectedHash) {
-        String inputHash = hashPassword(inputPassword, saltBase64);
-        return inputHash.equals(expectedHash);
+    private static byte[] legacySha256(byte[] password, byte[] salt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            return digest.digest(password);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Hashing error", e);
+        }
     }
 }
@@ -0,0 +1,146 @@
+package com.example.moviediary;
+
+import org.junit.Assume;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Tiny timing helpers for the *Benchmark test classes. They are skipped in a normal test run;
+ * ./gradlew testDebugUnitTest -Pbenchmarks runs them and prints one "BENCH" line per measure.
+ * Measures taken with measure() are also appended, one JSON object per line, to
+ * app/build/benchmarks/results.jsonl for tracking over time.
+ *
+ * Numbers come from the JVM + Robolectric SQLite, so compare them with each other
+ * (before/after, setting A/B), not with a device.
+ */
+public final class Benchmarks {
+
+    public static final String PROPERTY = "moviediary.benchmarks";
+    // Catalog sizes of the scale benchmarks: -PbenchmarkScales=10000,100000
+    public static final String SCALES_PROPERTY = "moviediary.benchmarks.scales";
+    public static final String OUTPUT_PROPERTY = "moviediary.benchmarks.out";
+
+    // Identifies the measures of one run in the results file
+    private static final long RUN = System.currentTimeMillis();
+
+    public interface Op {
+        void run(int i) throws Exception;
+    }
+
+    private Benchmarks() {
+    }
+
+    public static void assumeEnabled() {
+        Assume.assumeTrue("Benchmarks run with -Pbenchmarks", Boolean.getBoolean(PROPERTY));
+    }
+
+    /**
+     * Average nanoseconds per call of op, measured after warmUp untimed calls.
+     */
+    public static double nanosPerOp(int warmUp, int iterations, Op op) throws Exception {
+        for (int i = 0; i < warmUp; i++) {
+            op.run(i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            op.run(i);
+        }
+        return (System.nanoTime() - start) / (double) iterations;
+    }
+
+    public static void report(String name, double nanosPerOp) {
+        System.out.printf(Locale.ROOT, "BENCH %-48s %10.2f us/op%n", name, nanosPerOp / 1_000.0);
+    }
+
+    /**
+     * Catalog sizes to run the scale benchmarks at (10k, 100k and 1M movies by default).
+     */
+    public static int[] scales() {
+        String value = System.getProperty(SCALES_PROPERTY, "10000,100000,1000000");
+        return Arrays.stream(value.split(",")).map(String::trim).filter(v -> !v.isEmpty())
+                .mapToInt(Integer::parseInt).toArray();
+    }
+
+    /**
+     * Latency of each call of op, after warmUp untimed calls. Stops after iterations calls
+     * or once budgetMillis have been spent, whichever comes first (at least one call).
+     */
+    public static Latencies measure(int warmUp, int iterations, long budgetMillis, Op op) throws Exception {
+        for (int i = 0; i < warmUp; i++) {
+            op.run(i);
+        }
+        long[] nanos = new long[iterations];
+        long deadline = System.nanoTime() + budgetMillis * 1_000_000;
+        int n = 0;
+        while (n < iterations && (n == 0 || System.nanoTime() < deadline)) {
+            long start = System.nanoTime();
+            op.run(warmUp + n);
+            nanos[n++] = System.nanoTime() - start;
+        }
+        return new Latencies(Arrays.copyOf(nanos, n));
+    }
+
+    /**
+     * Prints one BENCH line and appends one JSON line to the results file:
+     * {"run", "benchmark", "name", "rows", "iterations", "opsPerSecond", "meanUs", "p50Us", "p90Us", "p99Us", "maxUs"}
+     */
+    public static void report(String benchmark, String name, long rows, Latencies latencies) throws IOException {
+        System.out.printf(Locale.ROOT, "BENCH %-40s %8d rows %10.0f ops/s  p50 %9.1f  p99 %9.1f us%n",
+                name, rows, latencies.opsPerSecond(), latencies.percentileMicros(0.50),
+                latencies.percentileMicros(0.99));
+
+        String path = System.getProperty(OUTPUT_PROPERTY);
+        if (path == null || path.isEmpty()) return;
+        File file = new File(path);
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        try (Writer out = new FileWriter(file, true)) {
+            out.write(String.format(Locale.ROOT,
+                    "{\"run\":%d,\"benchmark\":\"%s\",\"name\":\"%s\",\"rows\":%d,\"iterations\":%d,"
+                            + "\"opsPerSecond\":%.2f,\"meanUs\":%.2f,\"p50Us\":%.2f,\"p90Us\":%.2f,"
+                            + "\"p99Us\":%.2f,\"maxUs\":%.2f}%n",
+                    RUN, benchmark, name, rows, latencies.count(), latencies.opsPerSecond(),
+                    latencies.meanMicros(), latencies.percentileMicros(0.50), latencies.percentileMicros(0.90),
+                    latencies.percentileMicros(0.99), latencies.percentileMicros(1.0)));
+        }
+    }
+
+    /**
+     * Per-call latencies of one measure, sorted.
+     */
+    public static final class Latencies {
+        private final long[] sorted;
+        private final long total;
+
+        Latencies(long[] nanos) {
+            sorted = nanos.clone();
+            Arrays.sort(sorted);
+            long sum = 0;
+            for (long n : sorted) sum += n;
+            total = sum;
+        }
+
+        public int count() {
+            return sorted.length;
+        }
+
+        public double opsPerSecond() {
+            return total == 0 ? 0 : sorted.length * 1e9 / total;
+        }
+
+        public double meanMicros() {
+            return total / (sorted.length * 1_000.0);
+        }
+
+        // Nearest rank: the latency under which a fraction q (0..1) of the calls fell
+        public double percentileMicros(double q) {
+            int rank = (int) Math.ceil(q * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)] / 1_000.0;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.moviediary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.moviediary.database.DatabaseManager;
+import com.example.moviediary.database.MainThreadGuard;
+import com.example.moviediary.model.MovieRow;
+import com.example.moviediary.repository.HomeSnapshot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cold start of the home grid: the saved snapshot is drawn without waiting for the database,
+ * and nothing the activity does on the main thread reaches DatabaseManager (MainThreadGuard
+ * in THROW mode fails the launch otherwise).
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class HomeActivityTest {
+
+    // HomeSnapshot.FILE_NAME, in the files directory (MovieRepository.homeSnapshotFile)
+    private static final String SNAPSHOT_FILE = "home_feed.snapshot";
+
+    private static final long TIMEOUT_MS = 5_000;
+
+    private static final List<MovieRow> ROWS = Arrays.asList(
+            new MovieRow(1, "Inception", null, "Dream heists.", "Sci-Fi, Action", 2010, null, 0),
+            new MovieRow(2, "Heat", null, "Los Angeles.", "Crime", 1995, null, 0));
+
+    private final MainThreadGuard guard = MainThreadGuard.getInstance();
+    private MainThreadGuard.Mode previousMode;
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        previousMode = guard.getMode();
+        guard.setMode(MainThreadGuard.Mode.THROW);
+        // Earlier tests may have opened the process-wide database
+        DatabaseManager.resetInstance();
+    }
+
+    @After
+    public void tearDown() {
+        guard.setMode(previousMode);
+        new File(context.getFilesDir(), SNAPSHOT_FILE).delete();
+    }
+
+    @Test
+    public void coldStart_drawsSnapshot_withoutOpeningTheDatabase() throws IOException {
+        // Logged out: the snapshot of user -1
+        HomeSnapshot.write(new File(context.getFilesDir(), SNAPSHOT_FILE), -1, ROWS);
+
+        // getInstance() opens under this lock: holding it keeps the worker threads from opening
+        // the database meanwhile, an open on the main (this) thread would still go through
+        synchronized (DatabaseManager.class) {
+            try (ActivityScenario<HomeActivity> scenario = ActivityScenario.launch(HomeActivity.class)) {
+                scenario.onActivity(activity -> {
+                    RecyclerView grid = activity.findViewById(R.id.recycler_view);
+                    assertEquals(ROWS.size(), grid.getAdapter().getItemCount());
+                });
+                assertFalse(DatabaseManager.hasInstance());
+            }
+        }
+    }
+
+    @Test
+    public void coldStart_withoutSnapshot_loadsTheGridOffTheMainThread() throws InterruptedException {
+        try (ActivityScenario<HomeActivity> scenario = ActivityScenario.launch(HomeActivity.class)) {
+            // The first page (sample movies of the new database) comes back from the read threads
+            long deadline = System.nanoTime() + TIMEOUT_MS * 1_000_000;
+            int[] rows = {0};
+            while (rows[0] == 0 && System.nanoTime() < deadline) {
+                shadowOf(Looper.getMainLooper()).idle();
+                scenario.onActivity(activity ->
+                        rows[0] = ((RecyclerView) activity.findViewById(R.id.recycler_view)).getAdapter().getItemCount());
+                Thread.sleep(10);
+            }
+            assertTrue(rows[0] > 0);
+            assertTrue(DatabaseManager.hasInstance());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.moviediary;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Looper;
+import android.widget.TextView;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.moviediary.database.DatabaseManager;
+import com.example.moviediary.database.MainThreadGuard;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * The details screen of a logged-in user loads the movie, its diary state and related movies
+ * through MovieRepository only: MainThreadGuard in THROW mode fails the launch otherwise.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class MovieDetailsActivityTest {
+
+    private static final long TIMEOUT_MS = 5_000;
+
+    private final MainThreadGuard guard = MainThreadGuard.getInstance();
+    private MainThreadGuard.Mode previousMode;
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        previousMode = guard.getMode();
+        guard.setMode(MainThreadGuard.Mode.THROW);
+        // Earlier tests may have opened the process-wide database: the first read opens a new one
+        DatabaseManager.resetInstance();
+        new SessionManager(context).createLoginSession(1, "alice", "alice@example.com");
+    }
+
+    @After
+    public void tearDown() {
+        guard.setMode(previousMode);
+    }
+
+    @Test
+    public void open_loadsTheMovieOffTheMainThread() throws InterruptedException {
+        // Movie 1 of the sample catalog
+        Intent intent = new Intent(context, MovieDetailsActivity.class).putExtra("movie_id", 1);
+        try (ActivityScenario<MovieDetailsActivity> scenario = ActivityScenario.launch(intent)) {
+            long deadline = System.nanoTime() + TIMEOUT_MS * 1_000_000;
+            String[] title = {""};
+            while (title[0].isEmpty() && System.nanoTime() < deadline) {
+                shadowOf(Looper.getMainLooper()).idle();
+                scenario.onActivity(activity ->
+                        title[0] = ((TextView) activity.findViewById(R.id.tvTitle)).getText().toString());
+                Thread.sleep(10);
+            }
+            assertEquals("Inception", title[0]);
+        }
+    }
+}
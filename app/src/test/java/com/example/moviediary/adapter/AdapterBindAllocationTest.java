@@ -0,0 +1,225 @@
+package com.example.moviediary.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.moviediary.R;
+import com.example.moviediary.model.MovieRow;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Rebinding a holder to a row it already shows (refreshed snapshot, notifyItemChanged,
+ * scrolling back and forth) must not allocate: no column lookups, no new listeners,
+ * no view writes. A recycled holder bound to other movies allocates only for the views and
+ * poster it rewrites, within NEW_ROW_BUDGET_BYTES a bind. Only a poster that failed to load
+ * is requested again for the same row.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class AdapterBindAllocationTest {
+
+    private static final int WARM_UP = 20_000;
+    private static final int REBINDS = 20_000;
+    // Recycled binds to other movies (each one builds a Glide request)
+    private static final int RECYCLED_BINDS = 2_000;
+    // Year text, poster request, MovieCache entry; a new listener or an inflation would not fit
+    private static final long NEW_ROW_BUDGET_BYTES = 16 * 1024;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Context context;
+    private FrameLayout parent;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(THREADS.isThreadAllocatedMemorySupported());
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        context = new ContextThemeWrapper(ApplicationProvider.getApplicationContext(), R.style.Theme_MovieDiary);
+        parent = new FrameLayout(context);
+    }
+
+    @Test
+    public void movieAdapter_steadyStateRebind_allocatesNothing() {
+        MovieAdapter adapter = new MovieAdapter();
+        // Same movie twice as distinct instances, like a refreshed page would deliver it
+        adapter.setRows(Arrays.asList(watched(1), watched(1)));
+        MovieAdapter.MovieViewHolder holder = adapter.onCreateViewHolder(parent, 0);
+
+        for (int i = 0; i < WARM_UP; i++) {
+            adapter.onBindViewHolder(holder, i & 1);
+        }
+
+        long before = allocatedBytes();
+        for (int i = 0; i < REBINDS; i++) {
+            adapter.onBindViewHolder(holder, i & 1);
+        }
+        long allocated = allocatedBytes() - before - measurementOverhead();
+
+        assertEquals("Bytes allocated by " + REBINDS + " rebinds", 0, allocated);
+    }
+
+    @Test
+    public void diaryAdapter_steadyStateRebind_allocatesNothing() {
+        DiaryAdapter adapter = new DiaryAdapter(true, new RecordingListener());
+        adapter.submitList(Arrays.asList(watched(1), watched(1)));
+        DiaryAdapter.ViewHolder holder = adapter.onCreateViewHolder(parent, 0);
+
+        for (int i = 0; i < WARM_UP; i++) {
+            adapter.onBindViewHolder(holder, i & 1);
+        }
+
+        long before = allocatedBytes();
+        for (int i = 0; i < REBINDS; i++) {
+            adapter.onBindViewHolder(holder, i & 1);
+        }
+        long allocated = allocatedBytes() - before - measurementOverhead();
+
+        assertEquals("Bytes allocated by " + REBINDS + " rebinds", 0, allocated);
+    }
+
+    @Test
+    public void movieAdapter_recycledHolder_bindsOtherMoviesWithinBudget() {
+        MovieAdapter adapter = new MovieAdapter();
+        adapter.setRows(Arrays.asList(watched(1), wishlisted(2), watched(3)));
+        MovieAdapter.MovieViewHolder holder = adapter.onCreateViewHolder(parent, 0);
+
+        for (int i = 0; i < WARM_UP / 10; i++) {
+            adapter.onBindViewHolder(holder, i % 3);
+        }
+
+        long before = allocatedBytes();
+        for (int i = 0; i < RECYCLED_BINDS; i++) {
+            adapter.onBindViewHolder(holder, i % 3);
+        }
+        long perBind = (allocatedBytes() - before - measurementOverhead()) / RECYCLED_BINDS;
+
+        assertTrue("Bytes per recycled bind: " + perBind, perBind <= NEW_ROW_BUDGET_BYTES);
+        // Watched, then wishlisted: the holder shows the second one, the rating bar reset
+        adapter.onBindViewHolder(holder, 0);
+        adapter.onBindViewHolder(holder, 1);
+        assertEquals("Movie 2", holder.movieTitle.getText().toString());
+        assertEquals("2002", holder.movieYear.getText().toString());
+        assertEquals(View.VISIBLE, holder.imgWishlist.getVisibility());
+        assertEquals(View.GONE, holder.ratingBar.getVisibility());
+    }
+
+    @Test
+    public void diaryAdapter_recycledHolder_bindsOtherMoviesWithinBudget() {
+        DiaryAdapter adapter = new DiaryAdapter(true, new RecordingListener());
+        adapter.submitList(Arrays.asList(watched(1), watched(2), watched(3)));
+        DiaryAdapter.ViewHolder holder = adapter.onCreateViewHolder(parent, 0);
+
+        for (int i = 0; i < WARM_UP / 10; i++) {
+            adapter.onBindViewHolder(holder, i % 3);
+        }
+
+        long before = allocatedBytes();
+        for (int i = 0; i < RECYCLED_BINDS; i++) {
+            adapter.onBindViewHolder(holder, i % 3);
+        }
+        long perBind = (allocatedBytes() - before - measurementOverhead()) / RECYCLED_BINDS;
+
+        assertTrue("Bytes per recycled bind: " + perBind, perBind <= NEW_ROW_BUDGET_BYTES);
+        adapter.onBindViewHolder(holder, 2);
+        assertEquals("Movie 3", holder.tvTitle.getText().toString());
+        assertEquals("2003", holder.tvYear.getText().toString());
+    }
+
+    @Test
+    public void failedPoster_isRequestedAgainOnRebind() {
+        MovieAdapter movies = new MovieAdapter();
+        movies.setRows(Arrays.asList(watched(1), watched(1)));
+        MovieAdapter.MovieViewHolder card = movies.onCreateViewHolder(parent, 0);
+        movies.onBindViewHolder(card, 0);
+        DiaryAdapter diary = new DiaryAdapter(true, new RecordingListener());
+        diary.submitList(Arrays.asList(watched(1), watched(1)));
+        DiaryAdapter.ViewHolder row = diary.onCreateViewHolder(parent, 0);
+        diary.onBindViewHolder(row, 0);
+
+        // Glide reports the first loads failed (offline): the same movie bound again asks again
+        card.poster.onLoadFailed(null, poster(1), null, true);
+        row.poster.onLoadFailed(null, poster(1), null, true);
+        movies.onBindViewHolder(card, 1);
+        diary.onBindViewHolder(row, 1);
+
+        assertFalse(card.poster.failed);
+        assertFalse(row.poster.failed);
+    }
+
+    @Test
+    public void diaryAdapter_listenersFollowTheBoundRow() {
+        RecordingListener listener = new RecordingListener();
+        DiaryAdapter adapter = new DiaryAdapter(false, listener);
+        adapter.submitList(Arrays.asList(watched(1), watched(2)));
+        DiaryAdapter.ViewHolder holder = adapter.onCreateViewHolder(parent, 0);
+
+        adapter.onBindViewHolder(holder, 0);
+        adapter.onBindViewHolder(holder, 1);
+        holder.btnRemove.performClick();
+        holder.itemView.performClick();
+
+        assertEquals(2, listener.removed);
+        assertEquals(2, listener.opened);
+    }
+
+    // =======================
+    // Helpers
+    // =======================
+
+    private static MovieRow watched(int id) {
+        return new MovieRow(id, "Movie " + id, poster(id), "Description " + id, "Drama", 2000 + id, "WATCHED", 4);
+    }
+
+    private static MovieRow wishlisted(int id) {
+        return new MovieRow(id, "Movie " + id, poster(id), "Description " + id, "Drama", 2000 + id, "WISHLIST", 0);
+    }
+
+    // Distinct per movie, so a bind to another movie makes a poster request
+    private static String poster(int id) {
+        return "https://posters.moviediary.test/" + id + ".jpg";
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // What two back-to-back reads of the counter allocate themselves
+    private static long measurementOverhead() {
+        long before = allocatedBytes();
+        return allocatedBytes() - before;
+    }
+
+    private static class RecordingListener implements DiaryAdapter.Listener {
+        int opened;
+        int removed;
+
+        @Override
+        public void onOpenDetails(int movieId) {
+            opened = movieId;
+        }
+
+        @Override
+        public void onRemove(int movieId) {
+            removed = movieId;
+        }
+    }
+}
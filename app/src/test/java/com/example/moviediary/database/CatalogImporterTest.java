@@ -0,0 +1,171 @@
+package com.example.moviediary.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class CatalogImporterTest {
+
+    private static final int SAMPLE_MOVIES = 8;
+    // Sci-Fi, Action, Crime, Drama, Adventure, Romance
+    private static final int SAMPLE_GENRES = 6;
+    private static final int SYNTHETIC_ROWS = 100_000;
+    // Generous for a CI JVM; the import itself is expected to take a few seconds
+    private static final long TIME_BUDGET_MS = 60_000;
+
+    private DatabaseManager manager;
+    private DatabaseHelper helper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        manager = new DatabaseManager(context);
+        manager.open();
+        helper = new DatabaseHelper(context);
+        db = helper.getReadableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        manager.close();
+    }
+
+    @Test
+    public void import100kRows_withinTimeBudget() throws IOException {
+        List<CatalogImporter.Progress> reports = new ArrayList<>();
+
+        CatalogImporter.Progress done = manager.importCatalog(
+                new SyntheticCsv(SYNTHETIC_ROWS), CatalogImporter.Format.CSV, reports::add);
+
+        assertEquals(SYNTHETIC_ROWS, done.getImported());
+        assertEquals(0, done.getSkipped());
+        assertTrue("Import took " + done.getElapsedNanos() / 1_000_000 + " ms",
+                done.getElapsedNanos() / 1_000_000 < TIME_BUDGET_MS);
+
+        // One report per committed batch, then the final one
+        assertEquals(SYNTHETIC_ROWS / CatalogImporter.BATCH_ROWS + 1, reports.size());
+
+        assertEquals(SAMPLE_MOVIES + SYNTHETIC_ROWS, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_MOVIES));
+        // Every synthetic movie has two genres, and movies_fts followed the inserts
+        assertEquals(2 * SYNTHETIC_ROWS, count(
+                "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_MOVIE_GENRES + " WHERE " + DatabaseHelper.COLUMN_MOVIE_ID + " > ?",
+                String.valueOf(SAMPLE_MOVIES)));
+        assertEquals(1, count(
+                "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_MOVIES_FTS + " WHERE " + DatabaseHelper.TABLE_MOVIES_FTS + " MATCH ?",
+                "title:099999"));
+    }
+
+    @Test
+    public void csv_quotedFieldsAndBadRows() throws IOException {
+        String csv = "genre,title,release_year,description\n" +
+                "\"Drama, Mystery\",Memento,2000,\"Short-term memory, \"\"tattoos\"\" and notes\"\n" +
+                "Drama,,2001,no title\n" +
+                "Drama,Bad Year,20x1,skipped\n" +
+                "\n" +
+                "Western,Unforgiven,1992,\n";
+
+        CatalogImporter.Progress done = manager.importCatalog(new StringReader(csv), CatalogImporter.Format.CSV, null);
+
+        assertEquals(2, done.getImported());
+        assertEquals(2, done.getSkipped());
+        assertEquals("Short-term memory, \"tattoos\" and notes", string(
+                "SELECT " + DatabaseHelper.COLUMN_DESCRIPTION + " FROM " + DatabaseHelper.TABLE_MOVIES +
+                        " WHERE " + DatabaseHelper.COLUMN_TITLE + " = ?", "Memento"));
+        // Drama already existed (sample data), Mystery and Western are new
+        assertEquals(SAMPLE_GENRES + 2, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_GENRES));
+        assertEquals(2, count(
+                "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_MOVIE_GENRES + " mg " +
+                        "JOIN " + DatabaseHelper.TABLE_MOVIES + " m ON m." + DatabaseHelper.COLUMN_ID + " = mg." + DatabaseHelper.COLUMN_MOVIE_ID +
+                        " WHERE m." + DatabaseHelper.COLUMN_TITLE + " = ?", "Memento"));
+    }
+
+    @Test
+    public void jsonLines_skipsMalformedLines() throws IOException {
+        String jsonLines = "{\"title\":\"Alien\",\"release_year\":1979,\"genre\":\"Horror, Sci-Fi\"}\n" +
+                "{not json}\n" +
+                "{\"title\":null,\"genre\":\"Horror\"}\n" +
+                "{\"title\":\"Heat\",\"release_year\":\"1995\",\"poster_url\":null}\n";
+
+        CatalogImporter.Progress done = manager.importCatalog(
+                new StringReader(jsonLines), CatalogImporter.Format.JSON_LINES, null);
+
+        assertEquals(2, done.getImported());
+        assertEquals(2, done.getSkipped());
+        assertEquals("1995", string(
+                "SELECT " + DatabaseHelper.COLUMN_RELEASE_YEAR + " FROM " + DatabaseHelper.TABLE_MOVIES +
+                        " WHERE " + DatabaseHelper.COLUMN_TITLE + " = ?", "Heat"));
+    }
+
+    // =======================
+    // Helpers
+    // =======================
+
+    private long count(String sql, String... args) {
+        return DatabaseUtils.longForQuery(db, sql, args);
+    }
+
+    private String string(String sql, String... args) {
+        return DatabaseUtils.stringForQuery(db, sql, args);
+    }
+
+    /**
+     * CSV catalog generated line by line while it is read: nothing is materialized.
+     */
+    private static class SyntheticCsv extends Reader {
+        private static final String[] GENRES = {"Drama", "Action", "Comedy", "Sci-Fi", "Horror", "Romance"};
+
+        private final int rows;
+        private int next = -1; // -1 = header
+        private String line = "";
+        private int pos;
+
+        SyntheticCsv(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(char[] buf, int off, int len) {
+            if (pos == line.length()) {
+                if (next >= rows) return -1;
+                line = next == -1
+                        ? "title,poster_url,description,release_year,genre\n"
+                        : String.format(Locale.ROOT,
+                        "Movie %06d,https://posters.test/%d.jpg,\"Synthetic plot %d, with a comma\",%d,\"%s, %s\"\n",
+                        next, next, next, 1950 + next % 70, GENRES[next % GENRES.length], GENRES[(next + 1) % GENRES.length]);
+                next++;
+                pos = 0;
+            }
+            int n = Math.min(len, line.length() - pos);
+            line.getChars(pos, pos + n, buf, off);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.moviediary.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.moviediary.model.User;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class ChangeBusTest {
+
+    private DatabaseManager manager;
+    private final List<ChangeBus.Change> changes = new ArrayList<>();
+    private final ChangeBus.Listener listener = changes::add;
+
+    @Before
+    public void setUp() {
+        manager = new DatabaseManager(ApplicationProvider.getApplicationContext());
+        manager.open();
+        ChangeBus.getInstance().subscribe(listener);
+    }
+
+    @After
+    public void tearDown() {
+        ChangeBus.getInstance().unsubscribe(listener);
+        manager.close();
+    }
+
+    @Test
+    public void everyWrite_publishesOneTypedChange() throws IOException {
+        manager.addUser(new User("alice", "alice@moviediary.test", "password"));
+        changes.clear();
+
+        manager.upsertDiary(1, 2, DatabaseManager.STATUS_WATCHED, 4);
+        manager.removeFromDiary(1, 2);
+        manager.updateUserProfile(1, "alice", "alice@moviediary.test", "Drama");
+        manager.importCatalog(new StringReader("title\nHeat\n"), CatalogImporter.Format.CSV, null);
+
+        assertEquals(4, changes.size());
+        assertChange(changes.get(0), ChangeBus.Type.DIARY_ROW, 1, 2);
+        assertEquals(DatabaseManager.STATUS_WATCHED, changes.get(0).getStatus());
+        assertEquals(4, changes.get(0).getRating());
+        assertChange(changes.get(1), ChangeBus.Type.DIARY_ROW, 1, 2);
+        assertNull(changes.get(1).getStatus());
+        assertChange(changes.get(2), ChangeBus.Type.PROFILE, 1, -1);
+        assertChange(changes.get(3), ChangeBus.Type.CATALOG, -1, -1);
+    }
+
+    @Test
+    public void writesThatChangeNothing_publishNothing() {
+        manager.removeFromDiary(1, 2);
+        manager.updateUserProfile(42, "nobody", "nobody@moviediary.test", "");
+
+        assertEquals(0, changes.size());
+    }
+
+    private static void assertChange(ChangeBus.Change change, ChangeBus.Type type, int userId, int movieId) {
+        assertEquals(type, change.getType());
+        assertEquals(userId, change.getUserId());
+        assertEquals(movieId, change.getMovieId());
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.moviediary.database;
+
+import static org.junit.Assert.assertTrue;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.moviediary.Benchmarks;
+import com.example.moviediary.model.User;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Random;
+
+/**
+ * Cost of keeping the co-occurrence counts (CoOccurrence) on a watch and an unwatch, for users
+ * with DIARY_SIZES watched titles in the same database: it should not grow with the diary.
+ * Also measures getRelatedMovies, cached and not.
+ * ./gradlew testDebugUnitTest -Pbenchmarks --tests '*CoOccurrenceScaleBenchmark'
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class CoOccurrenceScaleBenchmark {
+
+    private static final String NAME = "CoOccurrenceScaleBenchmark";
+
+    private static final int WARM_UP = 20;
+    private static final int ITERATIONS = 500;
+    private static final long BUDGET_MILLIS = 5_000;
+
+    private static final int[] DIARY_SIZES = {100, 1_000, 5_000};
+    // Sample movies (ids 1..8) stay out of every diary: they are the ones watched and unwatched
+    private static final int SAMPLE_MOVIES = 8;
+    private static final long SEED = 42;
+
+    private DatabaseManager manager;
+    private DatabaseHelper helper;
+    private SQLiteDatabase db;
+    private final int[] userIds = new int[DIARY_SIZES.length];
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+
+        manager = new DatabaseManager(ApplicationProvider.getApplicationContext());
+        manager.open();
+        for (int u = 0; u < DIARY_SIZES.length; u++) {
+            String email = "bench" + u + "@moviediary.test";
+            assertTrue(manager.addUser(new User("bench" + u, email, "password")));
+            userIds[u] = manager.getUser(email, "password").getId();
+        }
+
+        helper = new DatabaseHelper(ApplicationProvider.getApplicationContext());
+        db = helper.getWritableDatabase();
+        insertDiaries();
+    }
+
+    @After
+    public void tearDown() {
+        if (helper != null) helper.close();
+        if (manager != null) manager.close();
+    }
+
+    @Test
+    public void watchAndUnwatch_costStaysFlat() throws Exception {
+        double[] p50 = new double[DIARY_SIZES.length];
+        for (int u = 0; u < DIARY_SIZES.length; u++) {
+            int userId = userIds[u];
+            Benchmarks.Latencies latencies = Benchmarks.measure(WARM_UP, ITERATIONS, BUDGET_MILLIS, i -> {
+                int movieId = 1 + i % SAMPLE_MOVIES;
+                manager.upsertDiary(userId, movieId, DatabaseManager.STATUS_WATCHED, 4);
+                manager.removeFromDiary(userId, movieId);
+            });
+            Benchmarks.report(NAME, "upsertDiary+removeFromDiary watched", DIARY_SIZES[u], latencies);
+            p50[u] = latencies.percentileMicros(0.50);
+        }
+
+        // Bounded by the window, not the diary: 50x the titles, about the same cost
+        int last = DIARY_SIZES.length - 1;
+        assertTrue("p50 " + p50[0] + " us at " + DIARY_SIZES[0] + " titles, " + p50[last] + " us at "
+                + DIARY_SIZES[last], p50[last] < 3 * p50[0]);
+    }
+
+    @Test
+    public void relatedMovies() throws Exception {
+        Random ids = new Random(SEED);
+        long pairs = DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_MOVIE_COOCCURRENCE);
+        int movies = DIARY_SIZES[DIARY_SIZES.length - 1];
+        Benchmarks.report(NAME, "getRelatedMovies cached", pairs, Benchmarks.measure(WARM_UP, ITERATIONS, BUDGET_MILLIS,
+                i -> manager.getRelatedMovies(SAMPLE_MOVIES + 1 + i % 10)));
+        Benchmarks.report(NAME, "getRelatedMovies", pairs, Benchmarks.measure(WARM_UP, ITERATIONS, BUDGET_MILLIS, i -> {
+            // Each watched-set change drops the cache: every read goes to the index
+            manager.upsertDiary(userIds[0], 1 + i % SAMPLE_MOVIES, DatabaseManager.STATUS_WATCHED, 4);
+            manager.removeFromDiary(userIds[0], 1 + i % SAMPLE_MOVIES);
+            manager.getRelatedMovies(SAMPLE_MOVIES + 1 + ids.nextInt(movies));
+        }));
+    }
+
+    // Movies 9.. and the watched diaries, each user in its own shuffled order, then the counts
+    private void insertDiaries() {
+        int movies = DIARY_SIZES[DIARY_SIZES.length - 1];
+        Random random = new Random(SEED);
+        db.beginTransaction();
+        try {
+            SQLiteStatement movie = db.compileStatement("INSERT INTO movies (title) VALUES (?)");
+            SQLiteStatement diary = db.compileStatement(
+                    "INSERT INTO user_movies (user_id, movie_id, status, rating) VALUES (?, ?, ?, 4)");
+            try {
+                for (int i = 0; i < movies; i++) {
+                    movie.bindString(1, "Bench " + i);
+                    movie.executeInsert();
+                }
+                int[] order = new int[movies];
+                for (int i = 0; i < movies; i++) order[i] = SAMPLE_MOVIES + 1 + i;
+                for (int u = 0; u < DIARY_SIZES.length; u++) {
+                    for (int i = movies - 1; i > 0; i--) {
+                        int j = random.nextInt(i + 1);
+                        int swap = order[i];
+                        order[i] = order[j];
+                        order[j] = swap;
+                    }
+                    for (int i = 0; i < DIARY_SIZES[u]; i++) {
+                        diary.bindLong(1, userIds[u]);
+                        diary.bindLong(2, order[i]);
+                        diary.bindString(3, DatabaseManager.STATUS_WATCHED);
+                        diary.executeInsert();
+                    }
+                }
+            } finally {
+                movie.close();
+                diary.close();
+            }
+            CoOccurrence.rebuild(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
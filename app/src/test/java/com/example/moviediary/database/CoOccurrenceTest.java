@@ -0,0 +1,222 @@
+package com.example.moviediary.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.moviediary.model.MovieRow;
+import com.example.moviediary.model.User;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class CoOccurrenceTest {
+
+    // Sample movies (DatabaseHelper.insertSampleMovies)
+    private static final int INCEPTION = 1;
+    private static final int THE_DARK_KNIGHT = 2;
+    private static final int INTERSTELLAR = 3;
+
+    // Watched titles of the heavy user: far more than the window
+    private static final int HEAVY_DIARY = 2_000;
+
+    // Order-independent checksum of the whole pair table
+    private static final String PAIRS_FINGERPRINT =
+            "SELECT COUNT(*) || ':' || TOTAL(pair_count) || ':' || " +
+                    "TOTAL((movie_id * 31 + other_id * 17) * pair_count) FROM movie_cooccurrence";
+
+    private DatabaseManager manager;
+    private DatabaseHelper helper;
+    private SQLiteDatabase db;
+    private int alice;
+    private int bob;
+
+    @Before
+    public void setUp() {
+        manager = new DatabaseManager(ApplicationProvider.getApplicationContext());
+        manager.open();
+        assertTrue(manager.addUser(new User("alice", "alice@moviediary.test", "password")));
+        assertTrue(manager.addUser(new User("bob", "bob@moviediary.test", "password")));
+        alice = manager.getUser("alice@moviediary.test", "password").getId();
+        bob = manager.getUser("bob@moviediary.test", "password").getId();
+
+        helper = new DatabaseHelper(ApplicationProvider.getApplicationContext());
+        db = helper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        manager.close();
+    }
+
+    @Test
+    public void counts_followRowsEnteringAndLeavingWatched() {
+        manager.upsertDiary(alice, INCEPTION, DatabaseManager.STATUS_WATCHED, 5);
+        manager.upsertDiary(alice, THE_DARK_KNIGHT, DatabaseManager.STATUS_WATCHED, 4);
+        manager.upsertDiary(alice, INTERSTELLAR, DatabaseManager.STATUS_WATCHED, 0);
+        manager.upsertDiary(bob, INCEPTION, DatabaseManager.STATUS_WATCHED, 3);
+        manager.upsertDiary(bob, THE_DARK_KNIGHT, DatabaseManager.STATUS_WATCHED, 3);
+        manager.upsertDiary(bob, INTERSTELLAR, DatabaseManager.STATUS_WISHLIST, 0);
+
+        assertEquals(2, count(INCEPTION, THE_DARK_KNIGHT));
+        assertEquals(2, count(THE_DARK_KNIGHT, INCEPTION));
+        assertEquals(1, count(INCEPTION, INTERSTELLAR));
+        assertEquals(Arrays.asList(THE_DARK_KNIGHT, INTERSTELLAR), related(INCEPTION));
+
+        // Wishlist -> watched counts, a new rating does not
+        manager.upsertDiary(bob, INTERSTELLAR, DatabaseManager.STATUS_WATCHED, 5);
+        manager.upsertDiary(alice, INCEPTION, DatabaseManager.STATUS_WATCHED, 1);
+        assertEquals(2, count(INCEPTION, INTERSTELLAR));
+        assertEquals(2, count(INCEPTION, THE_DARK_KNIGHT));
+        // Tie: the higher id first
+        assertEquals(Arrays.asList(INTERSTELLAR, THE_DARK_KNIGHT), related(INCEPTION));
+
+        // Removed, or back to the wishlist: the pairs go, the last one with its row
+        manager.removeFromDiary(alice, THE_DARK_KNIGHT);
+        manager.upsertDiary(bob, THE_DARK_KNIGHT, DatabaseManager.STATUS_WISHLIST, 0);
+        assertEquals(0, DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM movie_cooccurrence WHERE ? IN (movie_id, other_id)",
+                new String[]{String.valueOf(THE_DARK_KNIGHT)}));
+        assertEquals(Collections.singletonList(INTERSTELLAR), related(INCEPTION));
+        assertEquals(Collections.emptyList(), related(THE_DARK_KNIGHT));
+    }
+
+    @Test
+    public void relatedMovies_areCachedUntilAWatchedSetChanges() {
+        manager.upsertDiary(alice, INCEPTION, DatabaseManager.STATUS_WATCHED, 5);
+        manager.upsertDiary(alice, INTERSTELLAR, DatabaseManager.STATUS_WATCHED, 5);
+
+        List<MovieRow> first = manager.getRelatedMovies(INCEPTION);
+        assertSame(first, manager.getRelatedMovies(INCEPTION));
+        // Re-rating and wishlisting leave the watched sets as they were
+        manager.upsertDiary(alice, INCEPTION, DatabaseManager.STATUS_WATCHED, 2);
+        manager.upsertDiary(bob, THE_DARK_KNIGHT, DatabaseManager.STATUS_WISHLIST, 0);
+        assertSame(first, manager.getRelatedMovies(INCEPTION));
+
+        manager.upsertDiary(alice, THE_DARK_KNIGHT, DatabaseManager.STATUS_WATCHED, 4);
+        assertEquals(Arrays.asList(INTERSTELLAR, THE_DARK_KNIGHT), related(INCEPTION));
+    }
+
+    @Test
+    public void incrementalUpdates_matchRecount() {
+        Random random = new Random(11);
+        int[] users = {alice, bob};
+        for (int i = 0; i < 400; i++) {
+            int userId = users[random.nextInt(users.length)];
+            int movieId = 1 + random.nextInt(8);
+            if (random.nextInt(4) == 0) {
+                manager.removeFromDiary(userId, movieId);
+            } else if (random.nextBoolean()) {
+                manager.upsertDiary(userId, movieId, DatabaseManager.STATUS_WATCHED, random.nextInt(6));
+            } else {
+                manager.upsertDiary(userId, movieId, DatabaseManager.STATUS_WISHLIST, 0);
+            }
+        }
+        List<String> incremental = pairRows();
+
+        recount();
+        assertEquals(incremental, pairRows());
+    }
+
+    @Test
+    public void heavyUser_writeTouchesOnlyTheWindow() {
+        // HEAVY_DIARY watched movies (ids after the samples), written around DatabaseManager
+        db.beginTransaction();
+        try {
+            SQLiteStatement movie = db.compileStatement("INSERT INTO movies (title) VALUES (?)");
+            SQLiteStatement diary = db.compileStatement(
+                    "INSERT INTO user_movies (user_id, movie_id, status, rating) VALUES (?, ?, 'WATCHED', 4)");
+            for (int i = 0; i < HEAVY_DIARY; i++) {
+                movie.bindString(1, "Heavy " + i);
+                long movieId = movie.executeInsert();
+                diary.bindLong(1, alice);
+                diary.bindLong(2, movieId);
+                diary.executeInsert();
+            }
+            movie.close();
+            diary.close();
+            CoOccurrence.rebuild(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        long total = totalCount();
+        assertEquals(2L * (HEAVY_DIARY * CoOccurrence.WINDOW - CoOccurrence.WINDOW * (CoOccurrence.WINDOW + 1) / 2), total);
+
+        // Newest watch: paired with the last WINDOW titles only, both ways
+        manager.upsertDiary(alice, INCEPTION, DatabaseManager.STATUS_WATCHED, 5);
+        assertEquals(CoOccurrence.WINDOW, DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM movie_cooccurrence WHERE movie_id = ?", new String[]{String.valueOf(INCEPTION)}));
+        assertEquals(total + 2L * CoOccurrence.WINDOW, totalCount());
+
+        manager.removeFromDiary(alice, INCEPTION);
+        assertEquals(total, totalCount());
+
+        // A title in the middle: WINDOW neighbours on each side
+        manager.removeFromDiary(alice, 8 + HEAVY_DIARY / 2);
+        assertEquals(total - 4L * CoOccurrence.WINDOW, totalCount());
+
+        String incremental = DatabaseUtils.stringForQuery(db, PAIRS_FINGERPRINT, null);
+        recount();
+        assertEquals(incremental, DatabaseUtils.stringForQuery(db, PAIRS_FINGERPRINT, null));
+    }
+
+    // =======================
+    // Helpers
+    // =======================
+
+    private List<Integer> related(int movieId) {
+        List<Integer> ids = new ArrayList<>();
+        for (MovieRow row : manager.getRelatedMovies(movieId)) ids.add(row.getId());
+        return ids;
+    }
+
+    private long count(int movieId, int otherId) {
+        return DatabaseUtils.longForQuery(db,
+                "SELECT COALESCE((SELECT pair_count FROM movie_cooccurrence WHERE movie_id = ? AND other_id = ?), 0)",
+                new String[]{String.valueOf(movieId), String.valueOf(otherId)});
+    }
+
+    private long totalCount() {
+        return DatabaseUtils.longForQuery(db, "SELECT TOTAL(pair_count) FROM movie_cooccurrence", null);
+    }
+
+    private void recount() {
+        db.beginTransaction();
+        try {
+            CoOccurrence.recount(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private List<String> pairRows() {
+        List<String> rows = new ArrayList<>();
+        try (Cursor c = db.rawQuery("SELECT movie_id, other_id, pair_count FROM movie_cooccurrence "
+                + "ORDER BY movie_id, other_id", null)) {
+            while (c.moveToNext()) rows.add(c.getInt(0) + "/" + c.getInt(1) + ": " + c.getInt(2));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.moviediary.database;
+
+import static org.junit.Assert.fail;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs EXPLAIN QUERY PLAN on every query of DatabaseManager and fails when one of them
+ * scans a whole table without an index or sorts with a temp B-tree where it did not before.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DatabaseManagerQueryPlanTest {
+
+    // "SCAN movies", "SCAN TABLE movies AS m", but not "SCAN m USING INDEX ..."
+    private static final Pattern FULL_SCAN = Pattern.compile("^SCAN (?:TABLE )?(\\w+)(?: AS (\\w+))?$");
+
+    // Tables of the schema and the aliases DatabaseManager gives them
+    private static final Set<String> TABLES = new HashSet<>(Arrays.asList(
+            DatabaseHelper.TABLE_USERS,
+            DatabaseHelper.TABLE_MOVIES, "m",
+            DatabaseHelper.TABLE_USER_MOVIES, "um",
+            DatabaseHelper.TABLE_GENRES, "g",
+            DatabaseHelper.TABLE_MOVIE_GENRES, "mg", "og",
+            DatabaseHelper.TABLE_USER_GENRE_AFFINITY, "a", "o", "oa",
+            DatabaseHelper.TABLE_WATCH_HISTORY,
+            DatabaseHelper.TABLE_MOVIE_COOCCURRENCE, "c"
+    ));
+
+    // What a query is allowed to do beyond indexed lookups
+    private enum Allow {
+        NOTHING,
+        SORT
+    }
+
+    private static final Allow NO_SORT = Allow.NOTHING;
+    private static final Allow SORT_ALLOWED = Allow.SORT;
+
+    private DatabaseHelper helper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        helper = new DatabaseHelper(ApplicationProvider.getApplicationContext());
+        db = helper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void userQueries_useIndexes() {
+        assertPlan(DatabaseManager.SQL_USER_BY_EMAIL, NO_SORT, "a@b.c");
+        assertPlan(DatabaseManager.SQL_EMAIL_EXISTS, NO_SORT, "a@b.c");
+        assertPlan(DatabaseManager.SQL_USERNAME_EXISTS, NO_SORT, "alice");
+        assertPlan(DatabaseManager.SQL_EMAIL_EXISTS_FOR_OTHER_USER, NO_SORT, "a@b.c", "1");
+        assertPlan(DatabaseManager.SQL_USERNAME_EXISTS_FOR_OTHER_USER, NO_SORT, "alice", "1");
+        assertPlan(DatabaseManager.SQL_USER_HASH_ITERATIONS, NO_SORT, "1");
+        assertPlan(DatabaseManager.SQL_USER_PREFERENCES, NO_SORT, "1");
+    }
+
+    @Test
+    public void catalogQueries_walkTitleIndex() {
+        assertPlan(DatabaseManager.SQL_ALL_MOVIES, NO_SORT);
+        assertPlan(DatabaseManager.SQL_MOVIE_BY_ID, NO_SORT, "1");
+        assertPlan(DatabaseManager.SQL_MOVIES_FOR_HOME, NO_SORT, "1");
+    }
+
+    @Test
+    public void filteredQueries_onlySortTheirMatches() {
+        // The filter drives the plan, then only the matching rows are sorted by title
+        assertPlan(DatabaseManager.SQL_MOVIES_BY_GENRE, SORT_ALLOWED, "Drama");
+        assertPlan(DatabaseManager.SQL_SEARCH_MOVIES, SORT_ALLOWED, "dark*");
+    }
+
+    @Test
+    public void personalizedHome_usesAffinityIndex() {
+        // The whole-list cursor: the ranked genres' movies, then the others, each in index order
+        assertPlan(DatabaseManager.SQL_MOVIES_FOR_HOME_RANKED, NO_SORT, "1");
+        assertPlan(DatabaseManager.SQL_MOVIES_FOR_HOME_UNRANKED, NO_SORT, "1", "1");
+        assertPlan(DatabaseManager.SQL_HAS_RANKED_GENRES, NO_SORT, "1");
+    }
+
+    @Test
+    public void genreAffinityWrites_onlyTouchOneUser() {
+        assertPlan(GenreAffinity.SQL_ADD_MOVIE_GENRES, NO_SORT, "1", "1");
+        assertPlan(GenreAffinity.SQL_APPLY_DIARY_ROW, NO_SORT, "-1", "1", "1", "1", "1");
+        assertPlan(GenreAffinity.SQL_RERANK_USER, NO_SORT, "1");
+        assertPlan(GenreAffinity.SQL_CLEAR_PREFERENCES, NO_SORT, "1");
+        assertPlan(GenreAffinity.SQL_SET_PREFERENCE, NO_SORT, "3", "1", "Drama");
+    }
+
+    @Test
+    public void relatedMovies_readCountIndexInOrder() {
+        assertPlan(DatabaseManager.SQL_RELATED_MOVIES, NO_SORT, "1");
+    }
+
+    @Test
+    public void coOccurrenceWrites_onlyTouchTheWindow() {
+        assertPlan(CoOccurrence.SQL_WATCH_SEQ, NO_SORT, "1", "1");
+        assertPlan(CoOccurrence.SQL_NEXT_SEQ, NO_SORT, "1");
+        assertPlan(CoOccurrence.SQL_REMOVE_WATCH, NO_SORT, "1", "1");
+        assertPlan(CoOccurrence.SQL_ADD_PAIRS, NO_SORT, "1", "1", "1", "100");
+        assertPlan(CoOccurrence.SQL_COUNT_PAIRS, NO_SORT, "1", "1", "1", "201", "1");
+        assertPlan(CoOccurrence.SQL_COUNT_REVERSE_PAIRS, NO_SORT, "1", "1", "1", "201", "1");
+        assertPlan(CoOccurrence.SQL_PRUNE_PAIRS, NO_SORT, "1", "1", "1", "201");
+        assertPlan(CoOccurrence.SQL_PRUNE_REVERSE_PAIRS, NO_SORT, "1", "1", "1", "201");
+    }
+
+    @Test
+    public void homePages_seekTitleIndex() {
+        // Movies only: the diary state comes from DiaryIndex
+        assertPlan(DatabaseManager.sqlHomePage(false, 24), NO_SORT);
+        assertPlan(DatabaseManager.sqlHomePage(true, 24), NO_SORT, "Matrix", "Matrix", "8");
+
+        // Personalized: the ranked genres' movies follow the rank and genre indexes, the others the title index
+        assertPlan(DatabaseManager.sqlHomeRankedPage(false, 24), NO_SORT, "1", "0");
+        assertPlan(DatabaseManager.sqlHomeRankedPage(true, 24), NO_SORT, "1", "1", "Matrix", "Matrix", "8");
+        assertPlan(DatabaseManager.sqlHomeUnrankedPage(false, 24), NO_SORT, "1");
+        assertPlan(DatabaseManager.sqlHomeUnrankedPage(true, 24), NO_SORT, "1", "Matrix", "Matrix", "8");
+
+        assertPlan(DatabaseManager.sqlSearchPage(false, 24), SORT_ALLOWED, "dark*");
+        assertPlan(DatabaseManager.sqlSearchPage(true, 24), SORT_ALLOWED, "dark*", "Matrix", "Matrix", "8");
+    }
+
+    @Test
+    public void diaryQueries_useUserStatusIndex() {
+        assertPlan(DatabaseManager.SQL_DIARY_ROW, NO_SORT, "1", "1");
+        assertPlan(DatabaseManager.SQL_DELETE_DIARY_ROW, NO_SORT, "1", "1");
+        assertPlan(DatabaseManager.SQL_DIARY_STATES, NO_SORT, "1");
+        assertPlan(DatabaseManager.SQL_DIARY_POSTER_URLS, NO_SORT, "1");
+
+        // Sorting by title is limited to the user's own diary rows
+        assertPlan(DatabaseManager.SQL_USER_MOVIES_BY_STATUS, SORT_ALLOWED, "1", DatabaseManager.STATUS_WATCHED);
+        assertPlan(DatabaseManager.SQL_USER_MOVIES_BY_STATUS_WITH_RATING, SORT_ALLOWED, "1", DatabaseManager.STATUS_WISHLIST);
+    }
+
+    // =======================
+    // Helpers
+    // =======================
+
+    private void assertPlan(String sql, Allow allow, String... args) {
+        List<String> plan = explain(sql, args);
+
+        for (String line : plan) {
+            Matcher m = FULL_SCAN.matcher(line.trim());
+            if (m.matches() && (TABLES.contains(m.group(1)) || TABLES.contains(m.group(2)))) {
+                fail("Full table scan\n" + sql + "\n" + plan);
+            }
+            if (allow == Allow.NOTHING && line.contains("USE TEMP B-TREE")) {
+                fail("Temp B-tree sort\n" + sql + "\n" + plan);
+            }
+        }
+    }
+
+    private List<String> explain(String sql, String... args) {
+        List<String> lines = new ArrayList<>();
+        Cursor c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        try {
+            int detail = c.getColumnIndexOrThrow("detail");
+            while (c.moveToNext()) {
+                lines.add(c.getString(detail));
+            }
+        } finally {
+            c.close();
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.moviediary.database;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Upgrades a seeded database from every historic version to the current one and checks
+ * that no row is lost, that the result has exactly the schema of a fresh install and
+ * that each step stays within its time budget.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DatabaseMigrationsTest {
+
+    private static final int MOVIES = 20_000;
+    private static final int USERS = 200;
+    private static final int DIARY_ROWS_PER_USER = 100;
+    private static final String[] GENRES = {"Drama", "Action", "Comedy", "Sci-Fi", "Horror", "Romance"};
+
+    private static final long STEP_BUDGET_MS = 20_000;
+
+    // Row count plus checksums over every column of the v3 tables
+    private static final String[] FINGERPRINTS = {
+            "SELECT COUNT(*) || ':' || TOTAL(id) || ':' || TOTAL(LENGTH(username) + LENGTH(email) + " +
+                    "LENGTH(password_hash) + LENGTH(salt) + LENGTH(preferences)) FROM users",
+            "SELECT COUNT(*) || ':' || TOTAL(id) || ':' || TOTAL(LENGTH(title) + LENGTH(poster_url) + " +
+                    "LENGTH(description) + release_year + LENGTH(genre)) FROM movies",
+            "SELECT COUNT(*) || ':' || TOTAL(id * 7 + user_id * 13 + movie_id * 17 + rating) || ':' || " +
+                    "TOTAL(LENGTH(status)) FROM user_movies"
+    };
+
+    // Schema of version 3, the oldest one with a migration path (frozen: never change it)
+    private static final String[] V3_SCHEMA = {
+            "CREATE TABLE users (id INTEGER PRIMARY KEY AUTOINCREMENT, username TEXT UNIQUE NOT NULL, " +
+                    "email TEXT UNIQUE NOT NULL, password_hash TEXT NOT NULL, salt TEXT NOT NULL, preferences TEXT)",
+            "CREATE TABLE movies (id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT NOT NULL, poster_url TEXT, " +
+                    "description TEXT, release_year INTEGER, genre TEXT)",
+            "CREATE TABLE user_movies (id INTEGER PRIMARY KEY AUTOINCREMENT, user_id INTEGER NOT NULL, " +
+                    "movie_id INTEGER NOT NULL, status TEXT NOT NULL DEFAULT 'WISHLIST', rating INTEGER DEFAULT 0, " +
+                    "UNIQUE(user_id, movie_id), FOREIGN KEY(user_id) REFERENCES users(id), " +
+                    "FOREIGN KEY(movie_id) REFERENCES movies(id))"
+    };
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @Test
+    public void everyHistoricVersion_upgradesWithoutLosingRows() {
+        Map<String, String> freshSchema = freshInstallSchema();
+
+        for (int version = DatabaseMigrations.OLDEST_VERSION; version < DatabaseMigrations.LATEST_VERSION; version++) {
+            SQLiteDatabase db = seededDatabase("seeded-v" + version + ".db", version);
+            try {
+                String[] before = fingerprints(db);
+
+                List<String> slowSteps = new ArrayList<>();
+                DatabaseMigrations.upgrade(db, version, DatabaseMigrations.LATEST_VERSION, (from, to, nanos) -> {
+                    long ms = nanos / 1_000_000;
+                    if (ms > STEP_BUDGET_MS) slowSteps.add("v" + from + " -> v" + to + " took " + ms + " ms");
+                });
+
+                String from = "from v" + version;
+                assertTrue(from + ": " + slowSteps, slowSteps.isEmpty());
+                assertArrayEquals(from, before, fingerprints(db));
+
+                // Derived data of the later versions is rebuilt from the preserved rows
+                assertEquals(from, DatabaseUtils.longForQuery(db,
+                        "SELECT COUNT(*) FROM movies WHERE genre LIKE '%Horror%'", null), DatabaseUtils.longForQuery(db,
+                        "SELECT COUNT(*) FROM movies_fts WHERE movies_fts MATCH ?", new String[]{"genre:horror"}));
+                assertEquals(from, 2L * MOVIES,
+                        DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_MOVIE_GENRES));
+                // v9: every user has a best genre (preference + diary)
+                assertEquals(from, (long) USERS, DatabaseUtils.longForQuery(db,
+                        "SELECT COUNT(*) FROM user_genre_affinity WHERE affinity_rank = 1", null));
+                // v10: every WATCHED row is in the watch history, its pairs are counted
+                assertEquals(from, DatabaseUtils.longForQuery(db,
+                        "SELECT COUNT(*) FROM user_movies WHERE status = 'WATCHED'", null),
+                        DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_WATCH_HISTORY));
+                assertEquals(from, 0L, DatabaseUtils.longForQuery(db,
+                        "SELECT COUNT(*) FROM movie_cooccurrence WHERE pair_count <= 0", null));
+                assertTrue(from, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_MOVIE_COOCCURRENCE) > 0);
+
+                assertEquals(from, freshSchema, schema(db));
+            } finally {
+                db.close();
+            }
+        }
+    }
+
+    @Test
+    public void onUpgrade_keepsDiaryAndCascadesDeletes() {
+        context.deleteDatabase(DatabaseHelper.DATABASE_NAME);
+        SQLiteDatabase seeded = seededDatabase(DatabaseHelper.DATABASE_NAME, DatabaseMigrations.OLDEST_VERSION);
+        seeded.setVersion(DatabaseMigrations.OLDEST_VERSION);
+        seeded.close();
+
+        DatabaseHelper helper = new DatabaseHelper(context);
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            assertEquals(DatabaseHelper.DATABASE_VERSION, db.getVersion());
+            assertEquals((long) USERS * DIARY_ROWS_PER_USER, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_USER_MOVIES));
+
+            // v7: removing a user removes their diary
+            db.delete(DatabaseHelper.TABLE_USERS, "id = 1", null);
+            assertEquals((long) (USERS - 1) * DIARY_ROWS_PER_USER, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_USER_MOVIES));
+        } finally {
+            helper.close();
+        }
+    }
+
+    // =======================
+    // Helpers
+    // =======================
+
+    /**
+     * A database at version, built like a real install of that version:
+     * v3 tables filled with data, then the historic steps up to version.
+     */
+    private SQLiteDatabase seededDatabase(String name, int version) {
+        File file = context.getDatabasePath(name);
+        file.getParentFile().mkdirs();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        db.setForeignKeyConstraintsEnabled(true);
+
+        db.beginTransaction();
+        try {
+            for (String sql : V3_SCHEMA) {
+                db.execSQL(sql);
+            }
+            seed(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        DatabaseMigrations.upgrade(db, DatabaseMigrations.OLDEST_VERSION, version, null);
+        return db;
+    }
+
+    private static void seed(SQLiteDatabase db) {
+        SQLiteStatement movie = db.compileStatement(
+                "INSERT INTO movies (title, poster_url, description, release_year, genre) VALUES (?, ?, ?, ?, ?)");
+        for (int i = 0; i < MOVIES; i++) {
+            movie.bindString(1, "Movie " + i);
+            movie.bindString(2, "https://posters.test/" + i + ".jpg");
+            movie.bindString(3, "Seeded plot number " + i);
+            movie.bindLong(4, 1950 + i % 70);
+            movie.bindString(5, GENRES[i % GENRES.length] + ", " + GENRES[(i + 1) % GENRES.length]);
+            movie.executeInsert();
+        }
+        movie.close();
+
+        SQLiteStatement user = db.compileStatement(
+                "INSERT INTO users (username, email, password_hash, salt, preferences) VALUES (?, ?, ?, ?, ?)");
+        SQLiteStatement diary = db.compileStatement(
+                "INSERT INTO user_movies (user_id, movie_id, status, rating) VALUES (?, ?, ?, ?)");
+        for (int u = 1; u <= USERS; u++) {
+            user.bindString(1, "user" + u);
+            user.bindString(2, "user" + u + "@moviediary.test");
+            user.bindString(3, "hash" + u);
+            user.bindString(4, "salt" + u);
+            user.bindString(5, GENRES[u % GENRES.length]);
+            user.executeInsert();
+
+            for (int d = 0; d < DIARY_ROWS_PER_USER; d++) {
+                diary.bindLong(1, u);
+                diary.bindLong(2, 1 + (u * 97L + d * 131L) % MOVIES);
+                boolean watched = d % 3 != 0;
+                diary.bindString(3, watched ? DatabaseHelper.STATUS_WATCHED : DatabaseHelper.STATUS_WISHLIST);
+                diary.bindLong(4, watched ? 1 + d % 5 : 0);
+                diary.executeInsert();
+            }
+        }
+        user.close();
+        diary.close();
+    }
+
+    private Map<String, String> freshInstallSchema() {
+        context.deleteDatabase(DatabaseHelper.DATABASE_NAME);
+        DatabaseHelper helper = new DatabaseHelper(context);
+        try {
+            return schema(helper.getReadableDatabase());
+        } finally {
+            helper.close();
+            context.deleteDatabase(DatabaseHelper.DATABASE_NAME);
+        }
+    }
+
+    // Every table, index and trigger with its normalized CREATE statement
+    private static Map<String, String> schema(SQLiteDatabase db) {
+        Map<String, String> schema = new TreeMap<>();
+        Cursor c = db.rawQuery("SELECT type, name, sql FROM sqlite_master " +
+                "WHERE name NOT LIKE 'sqlite_%' AND name != 'android_metadata'", null);
+        try {
+            while (c.moveToNext()) {
+                String sql = c.isNull(2) ? "" : c.getString(2).replace("\"", "").replaceAll("\\s+", " ");
+                schema.put(c.getString(0) + " " + c.getString(1), sql);
+            }
+        } finally {
+            c.close();
+        }
+        return schema;
+    }
+
+    private static String[] fingerprints(SQLiteDatabase db) {
+        String[] values = new String[FINGERPRINTS.length];
+        for (int i = 0; i < FINGERPRINTS.length; i++) {
+            values[i] = DatabaseUtils.stringForQuery(db, FINGERPRINTS[i], null);
+        }
+        return values;
+    }
+}
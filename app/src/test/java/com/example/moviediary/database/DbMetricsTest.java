@@ -0,0 +1,105 @@
+package com.example.moviediary.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.database.Cursor;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowTrace;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DbMetricsTest {
+
+    private final DbMetrics metrics = DbMetrics.getInstance();
+    private DatabaseManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new DatabaseManager(ApplicationProvider.getApplicationContext());
+        manager.open();
+        metrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        metrics.setEnabled(false);
+        metrics.reset();
+        manager.close();
+    }
+
+    @Test
+    public void off_recordsNothing() {
+        metrics.setEnabled(false);
+
+        manager.getMoviesForHomePage(-1, null, 5);
+        manager.getMovieById(1);
+
+        assertEquals(0, metrics.calls(DbMetrics.Op.HOME_PAGE));
+        assertEquals(0, metrics.calls(DbMetrics.Op.MOVIE_BY_ID));
+        assertFalse(metrics.report().contains("getMoviesForHomePage"));
+    }
+
+    @Test
+    public void off_stillTracesWhileATraceIsCaptured() {
+        metrics.setEnabled(false);
+        ShadowTrace.reset();
+        ShadowTrace.setEnabled(true);
+
+        manager.getMovieById(1);
+
+        assertEquals(0, metrics.calls(DbMetrics.Op.MOVIE_BY_ID));
+        assertTrue(ShadowTrace.getPreviousSections().contains("DB.getMovieById"));
+        assertTrue(ShadowTrace.getCurrentSections().isEmpty());
+    }
+
+    @Test
+    public void on_recordsCallsRowsAndCallingThread() throws InterruptedException {
+        metrics.setEnabled(true);
+
+        // Sample catalog: 8 movies
+        manager.getMoviesForHomePage(-1, null, 5);
+        manager.getMovieById(1);
+        manager.getMovieById(-7);
+        try (Cursor cursor = manager.getAllMovies()) {
+            assertEquals(8, cursor.getCount());
+        }
+        Thread background = new Thread(() -> manager.getMovieById(2));
+        background.start();
+        background.join();
+
+        assertEquals(1, metrics.calls(DbMetrics.Op.HOME_PAGE));
+        assertEquals(5, metrics.rows(DbMetrics.Op.HOME_PAGE));
+        assertEquals(3, metrics.calls(DbMetrics.Op.MOVIE_BY_ID));
+        assertEquals(2, metrics.mainThreadCalls(DbMetrics.Op.MOVIE_BY_ID));
+        assertEquals(2, metrics.rows(DbMetrics.Op.MOVIE_BY_ID));
+        assertEquals(8, metrics.rows(DbMetrics.Op.ALL_MOVIES));
+
+        double p50 = metrics.percentileMillis(DbMetrics.Op.MOVIE_BY_ID, 0.5);
+        assertTrue(metrics.maxMillis(DbMetrics.Op.MOVIE_BY_ID) > 0);
+        assertTrue(p50 <= metrics.maxMillis(DbMetrics.Op.MOVIE_BY_ID));
+        assertTrue(metrics.report().contains("getMoviesForHomePage"));
+
+        metrics.reset();
+        assertEquals(0, metrics.calls(DbMetrics.Op.HOME_PAGE));
+        assertEquals(0, metrics.percentileMillis(DbMetrics.Op.HOME_PAGE, 0.99), 0);
+    }
+
+    @Test
+    public void bucket_isLog2OfMicroseconds() {
+        assertEquals(0, DbMetrics.bucket(0));
+        assertEquals(0, DbMetrics.bucket(1_999));
+        assertEquals(1, DbMetrics.bucket(2_000));
+        assertEquals(10, DbMetrics.bucket(1_024_000));
+        assertEquals(DbMetrics.BUCKETS - 1, DbMetrics.bucket(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.moviediary.database;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.moviediary.model.MovieRow;
+import com.example.moviediary.model.User;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DiaryIndexTest {
+
+    @Test
+    public void randomPutsAndRemoves_matchHashMap() {
+        DiaryIndex index = new DiaryIndex(1, 0);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            int movieId = 1 + random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                index.remove(movieId);
+                expected.remove(movieId);
+            } else {
+                int rating = random.nextInt(6);
+                index.put(movieId, rating == 0 ? DiaryIndex.STATUS_WISHLIST : DiaryIndex.STATUS_WATCHED, rating);
+                expected.put(movieId, rating);
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        for (int movieId = 1; movieId <= 2_000; movieId++) {
+            Integer rating = expected.get(movieId);
+            if (rating == null) {
+                assertNull(index.getStatus(movieId));
+                assertEquals(0, index.getRating(movieId));
+            } else {
+                assertEquals(rating == 0 ? DiaryIndex.STATUS_WISHLIST : DiaryIndex.STATUS_WATCHED, index.getStatus(movieId));
+                assertEquals((int) rating, index.getRating(movieId));
+            }
+        }
+        assertArrayEquals(expected.keySet().stream().mapToInt(Integer::intValue).sorted().toArray(), index.movieIds());
+    }
+
+    @Test
+    public void homePage_takesBadgesFromIndex_writeThrough() {
+        DatabaseManager manager = new DatabaseManager(ApplicationProvider.getApplicationContext());
+        manager.open();
+        try {
+            assertTrue(manager.addUser(new User("alice", "alice@moviediary.test", "password")));
+            int userId = manager.getUser("alice@moviediary.test", "password").getId();
+            manager.upsertDiary(userId, 1, DatabaseManager.STATUS_WATCHED, 4);
+
+            // Loaded from user_movies on first use
+            DiaryIndex index = manager.getDiaryIndex(userId);
+            assertEquals(1, index.size());
+
+            // Written through, no reload
+            manager.upsertDiary(userId, 2, DatabaseManager.STATUS_WISHLIST, 0);
+            manager.upsertDiary(userId, 1, DatabaseManager.STATUS_WATCHED, 5);
+            manager.removeFromDiary(userId, 2);
+            manager.upsertDiary(userId, 3, DatabaseManager.STATUS_WISHLIST, 0);
+            assertEquals(index, manager.getDiaryIndex(userId));
+
+            for (MovieRow row : manager.getMoviesForHomePage(userId, null, 24).getRows()) {
+                String status = row.getId() == 1 ? DatabaseManager.STATUS_WATCHED
+                        : row.getId() == 3 ? DatabaseManager.STATUS_WISHLIST : null;
+                assertEquals(row.getTitle(), status, row.getUserStatus());
+                assertEquals(row.getTitle(), row.getId() == 1 ? 5 : 0, row.getUserRating());
+            }
+        } finally {
+            manager.close();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.moviediary.database;
+
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.moviediary.Benchmarks;
+import com.example.moviediary.model.User;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Per-operation latency of the hot diary writes and existence checks: the former
+ * ContentValues / rawQuery code ("before", copied below) against the cached
+ * SQLiteStatements of DatabaseManager ("after"), on the same database.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DiaryStatementBenchmark {
+
+    private static final int WARM_UP = 2_000;
+    private static final int ITERATIONS = 20_000;
+
+    private static final int USER_ID = 1;
+    private static final int SAMPLE_MOVIES = 8;
+    private static final String EMAIL = "bench@moviediary.test";
+
+    // Former SQL of the existence checks
+    private static final String LEGACY_EMAIL_EXISTS =
+            "SELECT " + DatabaseHelper.COLUMN_ID + " FROM " + DatabaseHelper.TABLE_USERS + " " +
+                    "WHERE " + DatabaseHelper.COLUMN_EMAIL + "=?";
+
+    private DatabaseManager manager;
+    private DatabaseHelper legacyHelper;
+    private SQLiteDatabase legacy;
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+
+        Context context = ApplicationProvider.getApplicationContext();
+        manager = new DatabaseManager(context);
+        manager.open();
+        assertTrue(manager.addUser(new User("bench", EMAIL, "password")));
+
+        legacyHelper = new DatabaseHelper(context);
+        legacy = legacyHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        if (legacyHelper != null) legacyHelper.close();
+        if (manager != null) manager.close();
+    }
+
+    @Test
+    public void upsertDiary() throws Exception {
+        Benchmarks.report("upsertDiary before (ContentValues)", Benchmarks.nanosPerOp(WARM_UP, ITERATIONS,
+                i -> legacyUpsert(USER_ID, movieId(i), DatabaseManager.STATUS_WATCHED, i % 6)));
+        Benchmarks.report("upsertDiary after (statement)", Benchmarks.nanosPerOp(WARM_UP, ITERATIONS,
+                i -> manager.upsertDiary(USER_ID, movieId(i), DatabaseManager.STATUS_WATCHED, i % 6)));
+    }
+
+    @Test
+    public void removeFromDiary() throws Exception {
+        // Re-insert before each delete so every delete removes a row; the insert is the same in both runs
+        Benchmarks.report("upsert+removeFromDiary before (delete())", Benchmarks.nanosPerOp(WARM_UP, ITERATIONS, i -> {
+            manager.upsertDiary(USER_ID, movieId(i), DatabaseManager.STATUS_WISHLIST, 0);
+            legacy.delete(DatabaseHelper.TABLE_USER_MOVIES, DatabaseManager.WHERE_DIARY_ROW,
+                    new String[]{String.valueOf(USER_ID), String.valueOf(movieId(i))});
+        }));
+        Benchmarks.report("upsert+removeFromDiary after (statement)", Benchmarks.nanosPerOp(WARM_UP, ITERATIONS, i -> {
+            manager.upsertDiary(USER_ID, movieId(i), DatabaseManager.STATUS_WISHLIST, 0);
+            manager.removeFromDiary(USER_ID, movieId(i));
+        }));
+    }
+
+    @Test
+    public void existenceChecks() throws Exception {
+        Benchmarks.report("isEmailExists before (rawQuery)", Benchmarks.nanosPerOp(WARM_UP, ITERATIONS,
+                i -> legacyExists(LEGACY_EMAIL_EXISTS, i % 2 == 0 ? EMAIL : "nobody@moviediary.test")));
+        Benchmarks.report("isEmailExists after (simpleQueryForLong)", Benchmarks.nanosPerOp(WARM_UP, ITERATIONS,
+                i -> manager.isEmailExists(i % 2 == 0 ? EMAIL : "nobody@moviediary.test")));
+        Benchmarks.report("isEmailExistsForOtherUser after", Benchmarks.nanosPerOp(WARM_UP, ITERATIONS,
+                i -> manager.isEmailExistsForOtherUser(EMAIL, USER_ID)));
+    }
+
+    // =======================
+    // Former implementations
+    // =======================
+
+    private void legacyUpsert(int userId, int movieId, String status, int rating) {
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.COLUMN_USER_ID, userId);
+        values.put(DatabaseHelper.COLUMN_MOVIE_ID, movieId);
+        values.put(DatabaseHelper.COLUMN_STATUS, status);
+        values.put(DatabaseHelper.COLUMN_RATING, rating);
+        legacy.insertWithOnConflict(DatabaseHelper.TABLE_USER_MOVIES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private boolean legacyExists(String sql, String... args) {
+        Cursor cursor = legacy.rawQuery(sql, args);
+        try {
+            return cursor.getCount() > 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static int movieId(int i) {
+        return 1 + i % SAMPLE_MOVIES;
+    }
+}
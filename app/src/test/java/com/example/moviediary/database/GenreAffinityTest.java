@@ -0,0 +1,213 @@
+package com.example.moviediary.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.moviediary.model.MoviePage;
+import com.example.moviediary.model.MovieRow;
+import com.example.moviediary.model.User;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class GenreAffinityTest {
+
+    // Sample movies (DatabaseHelper.insertSampleMovies)
+    private static final int INCEPTION = 1;
+    private static final int INTERSTELLAR = 3;
+    private static final int FORREST_GUMP = 7;
+    private static final int THE_MATRIX = 8;
+
+    private DatabaseManager manager;
+    private DatabaseHelper helper;
+    private SQLiteDatabase db;
+    private int userId;
+
+    @Before
+    public void setUp() {
+        manager = new DatabaseManager(ApplicationProvider.getApplicationContext());
+        manager.open();
+        User user = new User("alice", "alice@moviediary.test", "password");
+        user.setPreferences("Romance,Crime");
+        assertTrue(manager.addUser(user));
+        userId = manager.getUser("alice@moviediary.test", "password").getId();
+
+        helper = new DatabaseHelper(ApplicationProvider.getApplicationContext());
+        db = helper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        manager.close();
+    }
+
+    @Test
+    public void preferencesOnly_homeFollowsPreferenceOrder() {
+        // Romance: Forrest Gump; Crime: Pulp Fiction, The Dark Knight, The Godfather; then the rest by title
+        List<Integer> expected = Arrays.asList(7, 5, 2, 6, 1, 3, 8, 4);
+
+        assertEquals(expected, pagedHome(3));
+        assertEquals(expected, pagedHome(24));
+        assertEquals(expected, cursorHome());
+    }
+
+    @Test
+    public void ratings_moveGenresUpAndDown() {
+        assertEquals(1, rank("Romance"));
+        assertEquals(2, rank("Crime"));
+
+        // 1 star: Romance 3 - 2, Drama -2
+        manager.upsertDiary(userId, FORREST_GUMP, DatabaseManager.STATUS_WATCHED, 1);
+        assertEquals(1, rank("Crime"));
+        assertEquals(2, rank("Romance"));
+        assertEquals(GenreAffinity.UNRANKED, rank("Drama"));
+
+        // 5 stars: Sci-Fi and Action +2 each (tie: Sci-Fi, the older genre, first)
+        manager.upsertDiary(userId, THE_MATRIX, DatabaseManager.STATUS_WATCHED, 5);
+        assertEquals(1, rank("Sci-Fi"));
+        assertEquals(2, rank("Action"));
+        assertEquals(3, rank("Crime"));
+        assertEquals(4, rank("Romance"));
+        // Sci-Fi movies first now
+        assertEquals(Arrays.asList(INCEPTION, INTERSTELLAR, THE_MATRIX), pagedHome(24).subList(0, 3));
+
+        manager.removeFromDiary(userId, THE_MATRIX);
+        assertEquals(GenreAffinity.UNRANKED, rank("Sci-Fi"));
+        assertEquals(1, rank("Crime"));
+
+        // Re-rated: the old contribution goes, the new one counts
+        manager.upsertDiary(userId, FORREST_GUMP, DatabaseManager.STATUS_WATCHED, 5);
+        assertEquals(1, rank("Romance"));
+        assertEquals(2, rank("Drama"));
+        assertEquals(3, rank("Crime"));
+
+        // No preferences left: Romance and Drama both at 2 (tie: Drama, the older genre, first)
+        manager.updateUserProfile(userId, "alice", "alice@moviediary.test", "");
+        assertEquals(1, rank("Drama"));
+        assertEquals(2, rank("Romance"));
+        assertEquals(GenreAffinity.UNRANKED, rank("Crime"));
+    }
+
+    @Test
+    public void diaryWriteBetweenPages_reloadThenContinue_noDuplicatesOrGaps() {
+        // First page in the preference order: Forrest Gump, Pulp Fiction, The Dark Knight
+        MoviePage first = manager.getMoviesForHomePage(userId, null, 3);
+        assertEquals(Arrays.asList(7, 5, 2), ids(first));
+
+        // 5 stars re-rank Sci-Fi and Action above everything: the first page's key is stale
+        manager.upsertDiary(userId, THE_MATRIX, DatabaseManager.STATUS_WATCHED, 5);
+
+        // Continuing from the old key repeats Pulp Fiction and Forrest Gump and misses the Sci-Fi movies
+        List<Integer> stale = new ArrayList<>(ids(first));
+        stale.addAll(ids(manager.getMoviesForHomePage(userId, first.getNext(), 24)));
+        assertTrue(stale.size() != 8 || new HashSet<>(stale).size() != 8);
+
+        // What HomeActivity does: reload the rows already shown, continue from the new key
+        MoviePage reloaded = manager.getMoviesForHomePage(userId, null, first.getRows().size());
+        List<Integer> shown = new ArrayList<>(ids(reloaded));
+        MoviePage.Key after = reloaded.getNext();
+        while (after != null) {
+            MoviePage page = manager.getMoviesForHomePage(userId, after, 3);
+            shown.addAll(ids(page));
+            after = page.getNext();
+        }
+
+        assertEquals(pagedHome(24), shown);
+        assertEquals(8, new HashSet<>(shown).size());
+    }
+
+    @Test
+    public void incrementalUpdates_matchRebuild() {
+        Random random = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            int movieId = 1 + random.nextInt(8);
+            if (random.nextInt(4) == 0) {
+                manager.removeFromDiary(userId, movieId);
+            } else if (random.nextBoolean()) {
+                manager.upsertDiary(userId, movieId, DatabaseManager.STATUS_WATCHED, random.nextInt(6));
+            } else {
+                manager.upsertDiary(userId, movieId, DatabaseManager.STATUS_WISHLIST, 0);
+            }
+        }
+        manager.upsertDiary(userId, INCEPTION, DatabaseManager.STATUS_WATCHED, 4);
+        List<String> incremental = affinityRows();
+
+        db.beginTransaction();
+        try {
+            GenreAffinity.rebuild(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        assertEquals(incremental, affinityRows());
+    }
+
+    // =======================
+    // Helpers
+    // =======================
+
+    private List<Integer> pagedHome(int pageSize) {
+        List<Integer> ids = new ArrayList<>();
+        MoviePage.Key after = null;
+        do {
+            MoviePage page = manager.getMoviesForHomePage(userId, after, pageSize);
+            for (MovieRow row : page.getRows()) ids.add(row.getId());
+            after = page.getNext();
+        } while (after != null);
+        return ids;
+    }
+
+    private static List<Integer> ids(MoviePage page) {
+        List<Integer> ids = new ArrayList<>();
+        for (MovieRow row : page.getRows()) ids.add(row.getId());
+        return ids;
+    }
+
+    private List<Integer> cursorHome() {
+        List<Integer> ids = new ArrayList<>();
+        try (Cursor c = manager.getMoviesForHomePersonalized(userId)) {
+            while (c.moveToNext()) ids.add(c.getInt(c.getColumnIndexOrThrow(DatabaseHelper.COLUMN_ID)));
+        }
+        return ids;
+    }
+
+    private int rank(String genre) {
+        try (Cursor c = db.rawQuery("SELECT a.affinity_rank FROM user_genre_affinity a "
+                + "JOIN genres g ON g.id = a.genre_id WHERE a.user_id = ? AND g.name = ?",
+                new String[]{String.valueOf(userId), genre})) {
+            return c.moveToFirst() ? c.getInt(0) : GenreAffinity.UNRANKED;
+        }
+    }
+
+    // Rows with a score (rows left at 0 by removed diary rows are not recreated by a rebuild)
+    private List<String> affinityRows() {
+        List<String> rows = new ArrayList<>();
+        try (Cursor c = db.rawQuery("SELECT user_id, genre_id, preference, history, affinity_rank "
+                + "FROM user_genre_affinity WHERE preference != 0 OR history != 0 "
+                + "ORDER BY user_id, genre_id", null)) {
+            while (c.moveToNext()) {
+                rows.add(c.getInt(0) + "/" + c.getInt(1) + ": " + c.getDouble(2) + " + " + c.getDouble(3)
+                        + " -> " + c.getInt(4));
+            }
+        }
+        return rows;
+    }
+}
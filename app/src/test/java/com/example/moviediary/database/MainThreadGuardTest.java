@@ -0,0 +1,166 @@
+package com.example.moviediary.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+import android.view.View;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class MainThreadGuardTest {
+
+    private final MainThreadGuard guard = MainThreadGuard.getInstance();
+    private MainThreadGuard.Mode previousMode;
+    private DatabaseManager manager;
+
+    /**
+     * A screen that queries the database itself.
+     */
+    private static class MovieView extends View {
+        private final DatabaseManager manager;
+
+        MovieView(Context context, DatabaseManager manager) {
+            super(context);
+            this.manager = manager;
+        }
+
+        void bind(int movieId) {
+            manager.getMovieById(movieId);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        previousMode = guard.getMode();
+        guard.clear();
+        manager = new DatabaseManager(ApplicationProvider.getApplicationContext());
+        manager.open();
+    }
+
+    @After
+    public void tearDown() {
+        guard.setMode(previousMode);
+        guard.setAllowedScreens(MainThreadGuard.ALLOWED_SCREENS);
+        guard.clear();
+        manager.close();
+    }
+
+    @Test
+    public void testJvm_startsInThrowMode() {
+        assertEquals(MainThreadGuard.Mode.THROW, previousMode);
+    }
+
+    @Test
+    public void throwMode_failsScreenCalls_beforeTheyRun() {
+        guard.setMode(MainThreadGuard.Mode.THROW);
+        MovieView view = new MovieView(ApplicationProvider.getApplicationContext(), manager);
+
+        try {
+            view.bind(1);
+            fail("main-thread call from a view");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage().contains("getMovieById"));
+            assertTrue(expected.getMessage().contains(MainThreadGuardTest.class.getName()));
+        }
+
+        // The test itself, a background thread, an allowed screen: all fine
+        assertNotNull(manager.getMovieById(1));
+        guard.setAllowedScreens(Collections.singleton(MainThreadGuardTest.class.getName()));
+        view.bind(1);
+    }
+
+    @Test
+    public void throwMode_failsScreenOpeningTheDatabase() {
+        guard.setMode(MainThreadGuard.Mode.THROW);
+        Context context = ApplicationProvider.getApplicationContext();
+        View view = new View(context) {
+            @Override
+            public boolean performClick() {
+                DatabaseManager.getInstance(getContext());
+                return true;
+            }
+        };
+
+        try {
+            view.performClick();
+            fail("main-thread open from a view");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage().contains("DatabaseManager.open"));
+        }
+    }
+
+    @Test
+    public void appCalls_areViolationsWithoutAScreen() {
+        StackTraceElement[] app = {
+                new StackTraceElement(DatabaseManager.class.getName(), "getMovieById", null, 0),
+                new StackTraceElement("com.example.moviediary.repository.MovieRepository", "lambda$getMovie$0", null, 0),
+                new StackTraceElement("android.os.Looper", "loop", null, 0),
+                new StackTraceElement("android.app.ActivityThread", "main", null, 0)};
+        assertEquals("com.example.moviediary.repository.MovieRepository", guard.violatingCaller(app));
+
+        // The same call made by a test
+        StackTraceElement[] test = Arrays.copyOf(app, app.length + 1);
+        test[app.length] = new StackTraceElement("org.junit.runners.ParentRunner", "run", null, 0);
+        assertNull(guard.violatingCaller(test));
+    }
+
+    @Test
+    public void throwMode_leavesBackgroundThreadsAlone() throws InterruptedException {
+        guard.setMode(MainThreadGuard.Mode.THROW);
+        MovieView view = new MovieView(ApplicationProvider.getApplicationContext(), manager);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread background = new Thread(() -> {
+            try {
+                view.bind(2);
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        background.start();
+        background.join();
+
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void logMode_recordsCallSiteAndDuration() {
+        guard.setMode(MainThreadGuard.Mode.LOG);
+        MovieView view = new MovieView(ApplicationProvider.getApplicationContext(), manager);
+
+        view.bind(3);
+        manager.getMovieById(4);
+
+        assertEquals(1, guard.recent().size());
+        MainThreadGuard.Violation violation = guard.recent().get(0);
+        assertEquals(DbMetrics.Op.MOVIE_BY_ID, violation.getOp());
+        assertTrue(violation.getMillis() >= 0);
+        assertEquals("bind", callerOf(violation));
+        assertTrue(guard.report().contains("getMovieById"));
+    }
+
+    // Method of MovieView in the call site of violation
+    private static String callerOf(MainThreadGuard.Violation violation) {
+        for (StackTraceElement frame : violation.getCallSite().getStackTrace()) {
+            if (frame.getClassName().equals(MovieView.class.getName())) return frame.getMethodName();
+        }
+        return null;
+    }
+}
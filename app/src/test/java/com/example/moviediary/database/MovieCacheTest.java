@@ -0,0 +1,91 @@
+package com.example.moviediary.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.moviediary.model.Movie;
+import com.example.moviediary.model.MovieRow;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class MovieCacheTest {
+
+    private DatabaseManager manager;
+    private MovieCache cache;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        manager = new DatabaseManager(context);
+        manager.open();
+        cache = MovieCache.getInstance();
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void getMovieById_queriesOnceThenHits() {
+        int hits = cache.hitCount();
+        int misses = cache.missCount();
+
+        Movie first = manager.getMovieById(1);
+        assertSame(first, manager.getMovieById(1));
+
+        assertEquals(misses + 1, cache.missCount());
+        assertEquals(hits + 1, cache.hitCount());
+    }
+
+    @Test
+    public void warmedRow_isServedWithoutQuery() {
+        // Id that does not exist in the database: only the cache can answer
+        cache.warm(new MovieRow(9_999, "Warmed", "poster", "plot", "Drama", 2001, "WATCHED", 5));
+
+        Movie movie = manager.getMovieById(9_999);
+        assertEquals("Warmed", movie.getTitle());
+        assertEquals(2001, movie.getReleaseYear());
+    }
+
+    @Test
+    public void catalogImport_invalidates() throws IOException {
+        cache.warm(new MovieRow(9_999, "Warmed", "poster", "plot", "Drama", 2001, null, 0));
+
+        manager.importCatalog(new StringReader("title\nImported\n"), CatalogImporter.Format.CSV, null);
+
+        assertNull(manager.getMovieById(9_999));
+    }
+
+    @Test
+    public void leastRecentlyUsed_isEvicted() {
+        MovieCache small = new MovieCache(2);
+        small.warm(row(1));
+        small.warm(row(2));
+        small.get(1);
+        small.warm(row(3));
+
+        assertNull(small.get(2));
+        assertEquals("Movie 1", small.get(1).getTitle());
+        assertEquals("Movie 3", small.get(3).getTitle());
+    }
+
+    private static MovieRow row(int id) {
+        return new MovieRow(id, "Movie " + id, null, null, "Drama", 2000, null, 0);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.moviediary.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.moviediary.Benchmarks;
+import com.example.moviediary.model.MoviePage;
+import com.example.moviediary.model.User;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Throughput and latency percentiles of the DatabaseManager queries and writes the screens use,
+ * on an on-disk database holding 10k, 100k and 1M movies (Benchmarks.scales()), with
+ * SyntheticDataset users and diaries around the measured user.
+ *
+ * One run per catalog size: the catalog is imported once, then every operation is measured
+ * for at most ITERATIONS calls or BUDGET_MILLIS. Results go to app/build/benchmarks/results.jsonl.
+ * ./gradlew testDebugUnitTest -Pbenchmarks --tests '*QueryScaleBenchmark'
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(sdk = 34)
+public class QueryScaleBenchmark {
+
+    private static final String NAME = "QueryScaleBenchmark";
+
+    private static final int WARM_UP = 3;
+    private static final int ITERATIONS = 500;
+    private static final long BUDGET_MILLIS = 3_000;
+
+    // Same as HomeActivity
+    private static final int PAGE_SIZE = 24;
+    private static final int DIARY_ROWS = 200;
+    private static final long SEED = 42;
+    // Generated users and diary rows per movie of the catalog (1M movies: 50k users, 2M rows)
+    private static final int MOVIES_PER_USER = 20;
+    private static final int DIARY_ROWS_PER_MOVIE = 2;
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{0} movies")
+    public static List<Object[]> parameters() {
+        List<Object[]> parameters = new ArrayList<>();
+        for (int scale : Benchmarks.scales()) parameters.add(new Object[]{scale});
+        return parameters;
+    }
+
+    private final int movies;
+    private DatabaseManager manager;
+    private DatabaseHelper helper;
+    private int userId;
+
+    public QueryScaleBenchmark(int movies) {
+        this.movies = movies;
+    }
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+
+        manager = new DatabaseManager(ApplicationProvider.getApplicationContext());
+        manager.open();
+        assertTrue(manager.addUser(new User("bench", "bench@moviediary.test", "password")));
+        userId = 1;
+        assertTrue(manager.updateUserProfile(userId, "bench", "bench@moviediary.test", "Sci-Fi,Drama"));
+    }
+
+    @After
+    public void tearDown() {
+        if (helper != null) helper.close();
+        if (manager != null) manager.close();
+    }
+
+    @Test
+    public void queries() throws Exception {
+        SyntheticDataset dataset = new SyntheticDataset(SEED, movies, movies / MOVIES_PER_USER,
+                (long) movies * DIARY_ROWS_PER_MOVIE);
+        CatalogImporter.Progress[] imported = new CatalogImporter.Progress[1];
+        report("importCatalog", Benchmarks.measure(0, 1, 0,
+                i -> imported[0] = manager.importCatalog(dataset.catalogCsv(), CatalogImporter.Format.CSV, null)));
+        assertEquals(movies, imported[0].getImported());
+        // The 8 sample movies come with the schema
+        int total = movies + 8;
+
+        // Everyone else's diaries, written straight into the same file
+        helper = new DatabaseHelper(ApplicationProvider.getApplicationContext());
+        SQLiteDatabase db = helper.getWritableDatabase();
+        dataset.insertDiaries(db, dataset.insertUsers(db), 9);
+
+        Random random = new Random(SEED);
+        for (int i = 0; i < DIARY_ROWS; i++) {
+            manager.upsertDiary(userId, 1 + random.nextInt(total), DatabaseManager.STATUS_WATCHED, 1 + i % 5);
+        }
+
+        // Home grid
+        report("getMoviesForHomePage anonymous first", Benchmarks.measure(WARM_UP, ITERATIONS, BUDGET_MILLIS,
+                i -> manager.getMoviesForHomePage(-1, null, PAGE_SIZE)));
+        report("getMoviesForHomePage anonymous deep", Benchmarks.measure(WARM_UP, ITERATIONS, BUDGET_MILLIS,
+                i -> manager.getMoviesForHomePage(-1, new MoviePage.Key(0, "M", 0), PAGE_SIZE)));
+        report("getMoviesForHomePage personalized first", Benchmarks.measure(WARM_UP, ITERATIONS, BUDGET_MILLIS,
+                i -> manager.getMoviesForHomePage(userId, null, PAGE_SIZE)));
+        report("getMoviesForHomePage personalized deep", Benchmarks.measure(WARM_UP, ITERATIONS, BUDGET_MILLIS,
+                i -> manager.getMoviesForHomePage(userId, new MoviePage.Key(999, "M", 0), PAGE_SIZE)));
+        // Whole-list cursors, read to the end like their former adapters did
+        report("getMoviesForHomePersonalized", Benchmarks.measure(WARM_UP, ITERATIONS, BUDGET_MILLIS,
+                i -> count(manager.getMoviesForHomePersonalized(userId))));
+
+        // Search
+        report("searchMovies common", Benchmarks.measure(WARM_UP, ITERATIONS, BUDGET_MILLIS,
+                i -> count(manager.searchMovies("shad"))));
+        report("searchMoviesPage common", Benchmarks.measure(WARM_UP, ITERATIONS, BUDGET_MILLIS,
+                i -> manager.searchMoviesPage("shad", null, PAGE_SIZE)));
+        report("searchMoviesPage two words", Benchmarks.measure(WARM_UP, ITERATIONS, BUDGET_MILLIS,
+                i -> manager.searchMoviesPage("golden harb", null, PAGE_SIZE)));
+
+        // Details and diary
+        Random ids = new Random(SEED);
+        report("getMovieById", Benchmarks.measure(WARM_UP, ITERATIONS, BUDGET_MILLIS,
+                i -> manager.getMovieById(1 + ids.nextInt(total))));
+        report("getUserDiary", Benchmarks.measure(WARM_UP, ITERATIONS, BUDGET_MILLIS,
+                i -> manager.getUserDiary(userId, DatabaseManager.STATUS_WATCHED)));
+        report("upsertDiary", Benchmarks.measure(WARM_UP, ITERATIONS, BUDGET_MILLIS,
+                i -> manager.upsertDiary(userId, 1 + ids.nextInt(total), DatabaseManager.STATUS_WISHLIST, 0)));
+        report("upsertDiary+removeFromDiary", Benchmarks.measure(WARM_UP, ITERATIONS, BUDGET_MILLIS, i -> {
+            int movieId = 1 + ids.nextInt(total);
+            manager.upsertDiary(userId, movieId, DatabaseManager.STATUS_WATCHED, 3);
+            manager.removeFromDiary(userId, movieId);
+        }));
+    }
+
+    private void report(String name, Benchmarks.Latencies latencies) throws Exception {
+        Benchmarks.report(NAME, name, movies, latencies);
+    }
+
+    private static int count(Cursor cursor) {
+        try {
+            int n = 0;
+            while (cursor.moveToNext()) n++;
+            return n;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.moviediary.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.moviediary.security.PasswordUtils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Seeded fixture of any size for benchmarks and scale tests: movies, users and diary rows
+ * (for example 1M movies, 50k users, 20M diary rows). Same seed and sizes, same rows.
+ *
+ * - movies: titles of one to three words, one to three genres in the "Sci-Fi, Action" format
+ *   of the genre column (Drama and Comedy the most common), release years skewed to recent ones.
+ *   Imported through CatalogImporter, so genres and movies_fts are filled like in the app.
+ * - users: "user000001" ..., one to three preferred genres, all with PASSWORD (one hash,
+ *   computed once at the minimum cost, or 50k users would take hours).
+ * - diaries: diary sizes are heavy-tailed (a few users with thousands of movies, most with a
+ *   handful), movies are picked by Zipf popularity (a few titles in every diary),
+ *   70% WATCHED with J-shaped ratings (mostly 4 and 5), the rest WISHLIST.
+ *
+ * Rows are written in transactions of BATCH_ROWS with precompiled statements.
+ */
+public final class SyntheticDataset {
+
+    public static final String PASSWORD = "password";
+
+    static final int BATCH_ROWS = 10_000;
+
+    // Zipf exponent of movie popularity: the top 1% of 1M movies draws about two thirds of the picks
+    static final double ZIPF_EXPONENT = 1.0;
+    // Pareto shape of the diary sizes (heavier tail when smaller)
+    static final double DIARY_SIZE_SHAPE = 1.5;
+    static final double WATCHED_SHARE = 0.7;
+    // Share of WATCHED rows rated 0 (unrated), 1, 2, 3, 4, 5
+    static final double[] RATING_WEIGHTS = {0.05, 0.03, 0.06, 0.17, 0.36, 0.33};
+
+    static final String[] GENRES = {
+            "Drama", "Comedy", "Action", "Thriller", "Romance", "Crime", "Horror", "Adventure",
+            "Sci-Fi", "Animation", "Fantasy", "Documentary", "Mystery", "Family", "War", "Western"};
+    // Relative frequency of each genre above
+    private static final double[] GENRE_WEIGHTS = {
+            20, 15, 10, 8, 7, 6, 5, 5, 4, 4, 4, 3, 3, 3, 2, 1};
+
+    private static final String[] WORDS = {
+            "Shadow", "Winter", "Last", "Silent", "Red", "Dark", "Lost", "Golden", "Iron", "Broken",
+            "City", "River", "Night", "Empire", "Storm", "Garden", "Signal", "Harbor", "Echo", "Crown",
+            "Summer", "Glass", "Wild", "Hidden", "Paper", "Stone", "Ghost", "Blue", "Long", "Secret",
+            "House", "Road", "Star", "Heart", "Fire", "Ocean", "Machine", "Letter", "Island", "Dream"};
+
+    // Fixed salt: the same rows every run (never used outside tests)
+    private static final String SALT = "bW92aWVkaWFyeS1zYWx0";
+
+    private final long seed;
+    private final int movies;
+    private final int users;
+    private final long diaryRows;
+
+    /**
+     * Where populate() put the rows: the ids of the first generated movie and user.
+     */
+    public static final class Fixture {
+        private final int firstMovieId;
+        private final int firstUserId;
+        private final long diaryRows;
+
+        Fixture(int firstMovieId, int firstUserId, long diaryRows) {
+            this.firstMovieId = firstMovieId;
+            this.firstUserId = firstUserId;
+            this.diaryRows = diaryRows;
+        }
+
+        public int getFirstMovieId() {
+            return firstMovieId;
+        }
+
+        public int getFirstUserId() {
+            return firstUserId;
+        }
+
+        // Rows actually inserted
+        public long getDiaryRows() {
+            return diaryRows;
+        }
+    }
+
+    public SyntheticDataset(long seed, int movies, int users, long diaryRows) {
+        this.seed = seed;
+        this.movies = movies;
+        this.users = users;
+        this.diaryRows = diaryRows;
+    }
+
+    /**
+     * Movies, users and diaries into db (a DatabaseHelper database), after the rows already there.
+     */
+    public Fixture populate(SQLiteDatabase db) throws IOException {
+        int firstMovieId = nextId(db, DatabaseHelper.TABLE_MOVIES);
+        new CatalogImporter(db).run(catalogCsv(), CatalogImporter.Format.CSV, null);
+        int firstUserId = insertUsers(db);
+        long rows = insertDiaries(db, firstUserId, firstMovieId);
+        return new Fixture(firstMovieId, firstUserId, rows);
+    }
+
+    // =======================
+    // Movies
+    // =======================
+
+    /**
+     * The movies as CatalogImporter CSV, generated line by line (a million movies never sit in memory).
+     */
+    public Reader catalogCsv() {
+        return new CatalogReader();
+    }
+
+    /**
+     * The same CSV in a file, to import it elsewhere.
+     */
+    public void writeCatalog(File file) throws IOException {
+        char[] buffer = new char[8192];
+        try (Reader in = catalogCsv(); Writer out = new FileWriter(file)) {
+            int n;
+            while ((n = in.read(buffer, 0, buffer.length)) != -1) out.write(buffer, 0, n);
+        }
+    }
+
+    private final class CatalogReader extends Reader {
+        private final Random random = new Random(seed);
+        private final double[] genreCdf = cdf(GENRE_WEIGHTS);
+        private int next = -1;
+        private String line = "";
+        private int pos;
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (pos == line.length()) {
+                if (next == movies) return -1;
+                line = next == -1 ? "title,poster_url,description,release_year,genre\n" : row(next);
+                next++;
+                pos = 0;
+            }
+            int n = Math.min(length, line.length() - pos);
+            line.getChars(pos, pos + n, buffer, offset);
+            pos += n;
+            return n;
+        }
+
+        private String row(int i) {
+            StringBuilder title = new StringBuilder(word());
+            for (int w = random.nextInt(3); w > 0; w--) title.append(' ').append(word());
+            // Most recent years first, a long tail back to 1920
+            int year = Math.max(1920, 2025 - (int) (-Math.log(1 - random.nextDouble()) * 15));
+            return String.format(Locale.ROOT, "%s,https://image.tmdb.org/t/p/w500/%08x.jpg,"
+                            + "A %s story about the %s.,%d,\"%s\"\n",
+                    title, i, word().toLowerCase(Locale.ROOT), word().toLowerCase(Locale.ROOT), year,
+                    genres(random, genreCdf, ", "));
+        }
+
+        private String word() {
+            return WORDS[random.nextInt(WORDS.length)];
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    // =======================
+    // Users
+    // =======================
+
+    /**
+     * Inserts the users, returns the id of the first one.
+     */
+    public int insertUsers(SQLiteDatabase db) {
+        int firstUserId = nextId(db, DatabaseHelper.TABLE_USERS);
+        int iterations = PasswordUtils.MIN_ITERATIONS;
+        String hash = PasswordUtils.hashPassword(PASSWORD, SALT, iterations);
+        Random random = new Random(seed + 1);
+        double[] genreCdf = cdf(GENRE_WEIGHTS);
+
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + DatabaseHelper.TABLE_USERS + " ("
+                + DatabaseHelper.COLUMN_USERNAME + ", " + DatabaseHelper.COLUMN_EMAIL + ", "
+                + DatabaseHelper.COLUMN_PASSWORD_HASH + ", " + DatabaseHelper.COLUMN_SALT + ", "
+                + DatabaseHelper.COLUMN_HASH_ITERATIONS + ", " + DatabaseHelper.COLUMN_PREFERENCES
+                + ") VALUES (?, ?, ?, ?, ?, ?)");
+        try {
+            for (int start = 0; start < users; start += BATCH_ROWS) {
+                db.beginTransaction();
+                try {
+                    for (int u = start; u < Math.min(users, start + BATCH_ROWS); u++) {
+                        String name = String.format(Locale.ROOT, "user%06d", firstUserId + u);
+                        insert.bindString(1, name);
+                        insert.bindString(2, name + "@moviediary.test");
+                        insert.bindString(3, hash);
+                        insert.bindString(4, SALT);
+                        insert.bindLong(5, iterations);
+                        // Preferences are stored without spaces: "Drama,Sci-Fi"
+                        insert.bindString(6, genres(random, genreCdf, ","));
+                        insert.executeInsert();
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+        } finally {
+            insert.close();
+        }
+        return firstUserId;
+    }
+
+    // =======================
+    // Diaries
+    // =======================
+
+    /**
+     * Inserts about diaryRows diary rows for the users and movies starting at the given ids,
+     * returns the number inserted (a user never has more than half of the movies).
+     * The genre affinity of every user is then recomputed, as DatabaseManager would have kept it.
+     * Co-occurrence counts are not (hundreds of pairs per watched row at these sizes): call
+     * CoOccurrence.rebuild when a benchmark reads them.
+     */
+    public long insertDiaries(SQLiteDatabase db, int firstUserId, int firstMovieId) {
+        if (users == 0 || movies == 0) return 0;
+        Random random = new Random(seed + 2);
+        int[] sizes = diarySizes(random);
+        // Popularity rank -> movie: the popular movies are spread over the catalog, not its first ids
+        int[] byRank = shuffledIds(random, firstMovieId);
+        double[] popularity = zipfCdf(movies, ZIPF_EXPONENT);
+        double[] ratingCdf = cdf(RATING_WEIGHTS);
+
+        SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO " + DatabaseHelper.TABLE_USER_MOVIES
+                + " (" + DatabaseHelper.COLUMN_USER_ID + ", " + DatabaseHelper.COLUMN_MOVIE_ID + ", "
+                + DatabaseHelper.COLUMN_STATUS + ", " + DatabaseHelper.COLUMN_RATING + ") VALUES (?, ?, ?, ?)");
+        long inserted = 0;
+        int inBatch = 0;
+        Set<Integer> diary = new HashSet<>();
+        db.beginTransaction();
+        try {
+            for (int u = 0; u < users; u++) {
+                diary.clear();
+                // Popular movies come up again and again: give up on a user after enough repeats
+                for (int tries = 0; diary.size() < sizes[u] && tries < sizes[u] * 8; tries++) {
+                    int movieId = byRank[pick(random, popularity)];
+                    if (!diary.add(movieId)) continue;
+
+                    boolean watched = random.nextDouble() < WATCHED_SHARE;
+                    insert.bindLong(1, firstUserId + u);
+                    insert.bindLong(2, movieId);
+                    insert.bindString(3, watched ? DatabaseHelper.STATUS_WATCHED : DatabaseHelper.STATUS_WISHLIST);
+                    insert.bindLong(4, watched ? pick(random, ratingCdf) : 0);
+                    if (insert.executeInsert() != -1) inserted++;
+
+                    if (++inBatch == BATCH_ROWS) {
+                        db.setTransactionSuccessful();
+                        db.endTransaction();
+                        db.beginTransaction();
+                        inBatch = 0;
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+
+        db.beginTransaction();
+        try {
+            GenreAffinity.rebuild(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return inserted;
+    }
+
+    // Pareto-distributed diary sizes scaled to diaryRows in total, at least 1, at most movies / 2
+    private int[] diarySizes(Random random) {
+        double[] weights = new double[users];
+        double sum = 0;
+        for (int u = 0; u < users; u++) {
+            weights[u] = Math.pow(1 - random.nextDouble(), -1 / DIARY_SIZE_SHAPE);
+            sum += weights[u];
+        }
+        int cap = Math.max(1, movies / 2);
+        int[] sizes = new int[users];
+        for (int u = 0; u < users; u++) {
+            sizes[u] = (int) Math.max(1, Math.min(cap, Math.round(diaryRows * weights[u] / sum)));
+        }
+        return sizes;
+    }
+
+    private int[] shuffledIds(Random random, int firstMovieId) {
+        int[] ids = new int[movies];
+        for (int i = 0; i < movies; i++) ids[i] = firstMovieId + i;
+        for (int i = movies - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = ids[i];
+            ids[i] = ids[j];
+            ids[j] = t;
+        }
+        return ids;
+    }
+
+    // =======================
+    // Distributions
+    // =======================
+
+    // Cumulative distribution of P(rank k) ~ 1 / (k + 1)^exponent, k = 0 .. n-1
+    static double[] zipfCdf(int n, double exponent) {
+        double[] weights = new double[n];
+        for (int k = 0; k < n; k++) weights[k] = 1 / Math.pow(k + 1, exponent);
+        return cdf(weights);
+    }
+
+    static double[] cdf(double[] weights) {
+        double[] cdf = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < cdf.length; i++) cdf[i] /= sum;
+        return cdf;
+    }
+
+    // Index drawn from a cumulative distribution
+    static int pick(Random random, double[] cdf) {
+        int i = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(cdf.length - 1, i >= 0 ? i : -i - 1);
+    }
+
+    // One to three distinct genres, the common ones more often
+    private static String genres(Random random, double[] genreCdf, String separator) {
+        int count = 1 + random.nextInt(3);
+        Set<Integer> picked = new HashSet<>();
+        StringBuilder sb = new StringBuilder();
+        for (int tries = 0; picked.size() < count && tries < 10; tries++) {
+            int g = pick(random, genreCdf);
+            if (!picked.add(g)) continue;
+            if (sb.length() > 0) sb.append(separator);
+            sb.append(GENRES[g]);
+        }
+        return sb.toString();
+    }
+
+    // Next AUTOINCREMENT id of table (deleted rows keep their ids used)
+    private static int nextId(SQLiteDatabase db, String table) {
+        try (Cursor cursor = db.rawQuery("SELECT COALESCE((SELECT seq FROM sqlite_sequence WHERE name = ?), 0) + 1",
+                new String[]{table})) {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.moviediary.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.moviediary.model.User;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.Reader;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class SyntheticDatasetTest {
+
+    private static final int MOVIES = 2_000;
+    private static final int USERS = 200;
+    private static final long DIARY_ROWS = 20_000;
+
+    private DatabaseHelper helper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        helper = new DatabaseHelper(ApplicationProvider.getApplicationContext());
+        db = helper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void sameSeed_sameRows() throws IOException {
+        assertEquals(read(new SyntheticDataset(7, 500, 0, 0).catalogCsv()),
+                read(new SyntheticDataset(7, 500, 0, 0).catalogCsv()));
+        assertTrue(!read(new SyntheticDataset(7, 500, 0, 0).catalogCsv())
+                .equals(read(new SyntheticDataset(8, 500, 0, 0).catalogCsv())));
+    }
+
+    @Test
+    public void populate_fillsTheSchemaWithSkewedData() throws IOException {
+        SyntheticDataset.Fixture fixture = new SyntheticDataset(42, MOVIES, USERS, DIARY_ROWS).populate(db);
+
+        // After the 8 sample movies
+        assertEquals(9, fixture.getFirstMovieId());
+        assertEquals(1, fixture.getFirstUserId());
+        assertEquals(MOVIES + 8, count("SELECT COUNT(*) FROM movies"));
+        assertEquals(USERS, count("SELECT COUNT(*) FROM users"));
+        assertEquals(fixture.getDiaryRows(), count("SELECT COUNT(*) FROM user_movies"));
+        // Repeated popular picks may end a diary early, not by much
+        assertTrue(fixture.getDiaryRows() > DIARY_ROWS * 0.7);
+        // Every movie linked to its genres, searchable
+        assertEquals(0, count("SELECT COUNT(*) FROM movies m WHERE NOT EXISTS "
+                + "(SELECT 1 FROM movie_genres mg WHERE mg.movie_id = m.id)"));
+        assertEquals(MOVIES + 8, count("SELECT COUNT(*) FROM movies_fts"));
+
+        // Zipf: the 20 most popular movies (1%) are in far more than 1% of the diary rows
+        long top = count("SELECT SUM(n) FROM (SELECT COUNT(*) AS n FROM user_movies "
+                + "GROUP BY movie_id ORDER BY n DESC LIMIT 20)");
+        assertTrue("top 1% share " + top, top > fixture.getDiaryRows() / 10);
+        // Heavy-tailed diaries: the largest one is several times the mean
+        long largest = count("SELECT MAX(n) FROM (SELECT COUNT(*) AS n FROM user_movies GROUP BY user_id)");
+        assertTrue("largest diary " + largest, largest > 3 * DIARY_ROWS / USERS);
+        // J-shaped ratings: 4 and 5 are more than half of the watched rows
+        long watched = count("SELECT COUNT(*) FROM user_movies WHERE status = 'WATCHED'");
+        long high = count("SELECT COUNT(*) FROM user_movies WHERE status = 'WATCHED' AND rating >= 4");
+        assertTrue(high * 2 > watched);
+        assertEquals(0, count("SELECT COUNT(*) FROM user_movies WHERE status = 'WISHLIST' AND rating != 0"));
+    }
+
+    @Test
+    public void generatedUsers_canLogIn() throws IOException {
+        new SyntheticDataset(42, 100, 5, 50).populate(db);
+        DatabaseManager manager = new DatabaseManager(ApplicationProvider.getApplicationContext());
+        manager.open();
+        try {
+            User user = manager.getUser("user000003@moviediary.test", SyntheticDataset.PASSWORD);
+            assertNotNull(user);
+            assertTrue(!manager.getUserPreferences(user.getId()).isEmpty());
+        } finally {
+            manager.close();
+        }
+    }
+
+    private long count(String sql) {
+        try (Cursor cursor = db.rawQuery(sql, null)) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+
+    private static String read(Reader in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[4096];
+        int n;
+        while ((n = in.read(buffer, 0, buffer.length)) != -1) sb.append(buffer, 0, n);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.moviediary.poster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.moviediary.database.CatalogImporter;
+import com.example.moviediary.database.DatabaseManager;
+import com.example.moviediary.model.User;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PosterDownloader against a local HTTP stand-in for image.tmdb.org.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class PosterDownloaderTest {
+
+    private static final int POSTER_BYTES = 2_000;
+    private static final Posters.Size CARD = new Posters.Size(300, 400);
+    private static final Posters.Size THUMB = new Posters.Size(90, 120);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private String baseUrl;
+
+    private DatabaseManager manager;
+    private PosterStore store;
+    private PosterDownloader downloader;
+    private int userId;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            requests.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+            if (path.startsWith("/missing/")) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                exchange.sendResponseHeaders(200, POSTER_BYTES);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(new byte[POSTER_BYTES]);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        manager = new DatabaseManager(ApplicationProvider.getApplicationContext());
+        manager.open();
+        // Sorts before the sample catalog: the first rows of the home grid
+        StringBuilder csv = new StringBuilder("title,poster_url\n");
+        for (int i = 0; i < 6; i++) {
+            csv.append("0 Local ").append(i).append(',').append(baseUrl).append("/p/").append(i).append(".jpg\n");
+        }
+        csv.append("0 Local 6,").append(baseUrl).append("/missing/6.jpg\n");
+        manager.importCatalog(new StringReader(csv.toString()), CatalogImporter.Format.CSV, null);
+
+        manager.addUser(new User("alice", "alice@moviediary.test", "password"));
+        userId = 1;
+
+        store = new PosterStore(new File(folder.getRoot(), PosterStore.DIR), PosterStore.DEFAULT_BUDGET_BYTES);
+        // Runs every task on the calling thread
+        downloader = new PosterDownloader(() -> manager, store, Runnable::run, 3);
+    }
+
+    @After
+    public void tearDown() {
+        downloader.close();
+        manager.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void pass_storesDiaryThenHomeGridPosters_once() {
+        manager.upsertDiary(userId, movieId(4), DatabaseManager.STATUS_WATCHED, 5);
+        manager.upsertDiary(userId, movieId(5), DatabaseManager.STATUS_WISHLIST, 0);
+        requests.clear();
+
+        downloader.fill(userId, CARD, THUMB);
+
+        // Diary movies 4, 5, then the first three of the grid (0, 1, 2)
+        for (int i : new int[]{0, 1, 2, 4, 5}) assertTrue("poster " + i, store.contains(posterUrl(i)));
+        assertFalse(store.contains(posterUrl(3)));
+        assertEquals(5, store.size());
+        assertEquals(5L * POSTER_BYTES, store.getTotalBytes());
+        assertEquals(5, totalRequests());
+
+        // Same user, same catalog: nothing to do
+        downloader.fill(userId, CARD, THUMB);
+        assertEquals(5, totalRequests());
+    }
+
+    @Test
+    public void newDiaryMovie_isFetchedOnItsOwn() {
+        downloader.fill(userId, CARD, THUMB);
+        assertFalse(store.contains(posterUrl(3)));
+
+        manager.upsertDiary(userId, movieId(3), DatabaseManager.STATUS_WISHLIST, 0);
+
+        assertTrue(store.contains(posterUrl(3)));
+    }
+
+    @Test
+    public void catalogChange_runsANewPass_forMissingPostersOnly() throws IOException {
+        downloader.fill(userId, CARD, THUMB);
+        int before = totalRequests();
+
+        manager.importCatalog(new StringReader("title,poster_url\n0 !First," + baseUrl + "/p/new.jpg\n"),
+                CatalogImporter.Format.CSV, null);
+        downloader.fill(userId, CARD, THUMB);
+
+        assertTrue(store.contains(baseUrl + "/p/new.jpg"));
+        assertEquals(before + 1, totalRequests());
+    }
+
+    @Test
+    public void missingPoster_isSkipped_offline_stopsThePass() {
+        PosterDownloader wide = new PosterDownloader(() -> manager, store, Runnable::run, 7);
+        try {
+            wide.fill(-1, CARD, THUMB);
+            // The 404 did not stop the pass
+            assertEquals(6, store.size());
+            assertEquals(1, requests.get("/missing/6.jpg").get());
+
+            server.stop(0);
+            PosterStore empty = new PosterStore(new File(folder.getRoot(), "other"), PosterStore.DEFAULT_BUDGET_BYTES);
+            PosterDownloader offline = new PosterDownloader(() -> manager, empty, Runnable::run, 7);
+            try {
+                offline.fill(-1, CARD, THUMB);
+                assertFalse(offline.runPass(-1));
+                assertEquals(0, empty.size());
+            } finally {
+                offline.close();
+            }
+        } finally {
+            wide.close();
+        }
+    }
+
+    private String posterUrl(int i) {
+        return baseUrl + "/p/" + i + ".jpg";
+    }
+
+    // Imported after the 8 sample movies
+    private static int movieId(int i) {
+        return 9 + i;
+    }
+
+    private int totalRequests() {
+        int total = 0;
+        for (AtomicInteger n : requests.values()) total += n.get();
+        return total;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.moviediary.poster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.ModelLoader;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class PosterStoreTest {
+
+    private static final String CARD = "https://image.tmdb.org/t/p/w342/poster.jpg";
+    private static final String THUMB = "https://image.tmdb.org/t/p/w92/poster.jpg";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        dir = new File(folder.getRoot(), PosterStore.DIR);
+    }
+
+    @Test
+    public void eachSizeTier_isItsOwnFile() throws IOException {
+        PosterStore store = new PosterStore(dir, PosterStore.DEFAULT_BUDGET_BYTES);
+        store.put(CARD, bytes(300, 1));
+        store.put(THUMB, bytes(40, 2));
+
+        assertNotEquals(PosterStore.key(CARD), PosterStore.key(THUMB));
+        assertEquals(64, PosterStore.key(CARD).length());
+        assertTrue(store.contains(CARD));
+        assertEquals(2, store.size());
+        assertEquals(340, store.getTotalBytes());
+        assertArrayEquals(data(300, 1), Files.readAllBytes(store.get(CARD).toPath()));
+        assertNull(store.get("https://image.tmdb.org/t/p/w185/poster.jpg"));
+
+        // Replacing a poster replaces its bytes in the total
+        store.put(CARD, bytes(100, 3));
+        assertEquals(140, store.getTotalBytes());
+    }
+
+    @Test
+    public void overBudget_evictsLeastRecentlyUsed() throws IOException {
+        PosterStore store = new PosterStore(dir, 300);
+        store.put("u:a", bytes(100, 1));
+        store.put("u:b", bytes(100, 2));
+        store.put("u:c", bytes(100, 3));
+        store.get("u:a");
+
+        store.put("u:d", bytes(100, 4));
+
+        assertFalse(store.contains("u:b"));
+        assertTrue(store.contains("u:a"));
+        assertEquals(300, store.getTotalBytes());
+        assertEquals(Arrays.asList(PosterStore.key("u:c"), PosterStore.key("u:a"), PosterStore.key("u:d")), store.keys());
+        assertFalse(new File(dir, PosterStore.key("u:b")).exists());
+    }
+
+    @Test
+    public void reopening_keepsFilesInUseOrder_andDropsPartialDownloads() throws IOException {
+        PosterStore store = new PosterStore(dir, 1000);
+        store.put("u:a", bytes(100, 1));
+        store.put("u:b", bytes(100, 2));
+        new File(dir, PosterStore.key("u:a")).setLastModified(2_000_000_000_000L);
+        new File(dir, PosterStore.key("u:b")).setLastModified(1_000_000_000_000L);
+        File partial = new File(dir, "abc.tmp");
+        Files.write(partial.toPath(), data(10, 0));
+
+        PosterStore reopened = new PosterStore(dir, 1000);
+
+        assertEquals(Arrays.asList(PosterStore.key("u:b"), PosterStore.key("u:a")), reopened.keys());
+        assertEquals(200, reopened.getTotalBytes());
+        assertFalse(partial.exists());
+    }
+
+    @Test
+    public void failedDownload_leavesNothingBehind() {
+        PosterStore store = new PosterStore(dir, 1000);
+        InputStream broken = new InputStream() {
+            int n;
+
+            @Override
+            public int read() throws IOException {
+                if (n++ == 50) throw new IOException("connection reset");
+                return 7;
+            }
+        };
+
+        try {
+            store.put("u:a", broken);
+        } catch (IOException expected) {
+            // the stream broke
+        }
+
+        assertFalse(store.contains("u:a"));
+        assertEquals(0, store.getTotalBytes());
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void loader_servesStoredPostersLocally() throws Exception {
+        PosterStore store = new PosterStore(dir, 1000);
+        store.put(CARD, bytes(64, 5));
+        PosterStoreLoader loader = new PosterStoreLoader(store);
+
+        assertTrue(loader.handles(CARD));
+        assertFalse(loader.handles(THUMB));
+
+        ModelLoader.LoadData<InputStream> load = loader.buildLoadData(CARD, 100, 100, new Options());
+        assertEquals(DataSource.LOCAL, load.fetcher.getDataSource());
+        byte[][] read = new byte[1][];
+        load.fetcher.loadData(Priority.NORMAL, new DataFetcher.DataCallback<InputStream>() {
+            @Override
+            public void onDataReady(@Nullable InputStream data) {
+                try {
+                    read[0] = readAll(data);
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+
+            @Override
+            public void onLoadFailed(@NonNull Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        load.fetcher.cleanup();
+
+        assertArrayEquals(data(64, 5), read[0]);
+    }
+
+    private static InputStream bytes(int size, int value) {
+        return new ByteArrayInputStream(data(size, value));
+    }
+
+    private static byte[] data(int size, int value) {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) value);
+        return data;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        byte[] buffer = new byte[1024];
+        int n = 0;
+        int r;
+        while ((r = in.read(buffer, n, buffer.length - n)) > 0) n += r;
+        return Arrays.copyOf(buffer, n);
+    }
+}
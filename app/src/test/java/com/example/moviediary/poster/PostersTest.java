@@ -0,0 +1,93 @@
+package com.example.moviediary.poster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.bumptech.glide.load.DataSource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, qualifiers = "w411dp-h891dp-xxhdpi")
+public class PostersTest {
+
+    private static final String POSTER = "https://image.tmdb.org/t/p/w500/qJ2tW6WMUDux911r6m7hpfDYeqr.jpg";
+
+    @Test
+    public void sizedUrl_picksSmallestTmdbRenditionCoveringTheWidth() {
+        assertEquals("https://image.tmdb.org/t/p/w92/qJ2tW6WMUDux911r6m7hpfDYeqr.jpg", Posters.sizedUrl(POSTER, 60));
+        assertEquals("https://image.tmdb.org/t/p/w342/qJ2tW6WMUDux911r6m7hpfDYeqr.jpg", Posters.sizedUrl(POSTER, 186));
+        assertEquals("https://image.tmdb.org/t/p/w342/qJ2tW6WMUDux911r6m7hpfDYeqr.jpg", Posters.sizedUrl(POSTER, 342));
+        // Wider than every rendition: the largest
+        assertEquals("https://image.tmdb.org/t/p/w780/qJ2tW6WMUDux911r6m7hpfDYeqr.jpg", Posters.sizedUrl(POSTER, 2000));
+        assertEquals("https://image.tmdb.org/t/p/w185/x.jpg",
+                Posters.sizedUrl("https://image.tmdb.org/t/p/original/x.jpg", 185));
+    }
+
+    @Test
+    public void sizedUrl_leavesOtherUrlsAlone() {
+        assertEquals("https://example.com/w500/x.jpg", Posters.sizedUrl("https://example.com/w500/x.jpg", 92));
+        assertEquals(null, Posters.sizedUrl(null, 92));
+    }
+
+    @Test
+    public void cardSize_fitsTwoColumnsOfTheScreen() {
+        Context context = ApplicationProvider.getApplicationContext();
+        float density = context.getResources().getDisplayMetrics().density;
+        Posters.Size size = Posters.cardSize(context, 2);
+
+        // 411dp screen: (411 - 16) / 2 - 52 = ~145dp wide, 180dp high
+        assertEquals(145 * density, size.width, 2 * density);
+        assertEquals(Math.round(180 * density), size.height);
+    }
+
+    @Test
+    public void thumbSize_isTheDiaryRowPoster() {
+        Context context = ApplicationProvider.getApplicationContext();
+        Posters.Size size = Posters.thumbSize(context);
+
+        // 90 x 120dp at xxhdpi: the w342 rendition covers it, not w500
+        assertEquals(270, size.width);
+        assertEquals(360, size.height);
+        assertTrue(Posters.sizedUrl(POSTER, size.width).contains("/w342/"));
+    }
+
+    @Test
+    public void cacheSizes_followTheMemoryClass() {
+        long mb = MovieDiaryGlideModule.MB;
+        assertEquals(32 * mb, MovieDiaryGlideModule.memoryCacheBytes(256, false));
+        assertEquals(16 * mb, MovieDiaryGlideModule.memoryCacheBytes(256, true));
+        assertEquals(32 * mb, MovieDiaryGlideModule.diskCacheBytes(8));
+        assertEquals(192 * mb, MovieDiaryGlideModule.diskCacheBytes(96));
+        assertEquals(256 * mb, MovieDiaryGlideModule.diskCacheBytes(512));
+    }
+
+    @Test
+    public void stats_countHitsAndMeanTimesBySource() {
+        PosterStats stats = new PosterStats();
+        stats.record(DataSource.MEMORY_CACHE, 1_000_000);
+        stats.record(DataSource.MEMORY_CACHE, 3_000_000);
+        stats.record(DataSource.RESOURCE_DISK_CACHE, 8_000_000);
+        stats.record(DataSource.REMOTE, 120_000_000);
+        stats.record(null, 50_000_000);
+
+        assertEquals(5, stats.total());
+        assertEquals(1, stats.failures());
+        assertEquals(0.6, stats.hitRate(), 1e-9);
+        assertEquals(0.4, stats.memoryHitRate(), 1e-9);
+        assertEquals(2.0, stats.meanMillis(DataSource.MEMORY_CACHE), 1e-9);
+        assertEquals(120.0, stats.meanMillis(DataSource.REMOTE), 1e-9);
+        assertEquals(0.0, stats.meanMillis(DataSource.LOCAL), 1e-9);
+
+        stats.reset();
+        assertEquals(0, stats.total());
+        assertEquals(0.0, stats.hitRate(), 1e-9);
+    }
+}
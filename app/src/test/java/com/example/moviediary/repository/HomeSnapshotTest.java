@@ -0,0 +1,83 @@
+package com.example.moviediary.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.example.moviediary.database.DatabaseManager;
+import com.example.moviediary.model.MovieRow;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class HomeSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final List<MovieRow> ROWS = Arrays.asList(
+            new MovieRow(1, "Inception", "https://image.tmdb.org/t/p/w500/a.jpg", "Dream heists.", "Sci-Fi, Action",
+                    2010, DatabaseManager.STATUS_WATCHED, 5),
+            new MovieRow(2, "Amélie", null, "Paris, « le fabuleux destin ».", "Romance",
+                    2001, DatabaseManager.STATUS_WISHLIST, 0),
+            new MovieRow(3, "Heat", "https://image.tmdb.org/t/p/w500/c.jpg", null, null, 1995, null, 0));
+
+    @Test
+    public void roundTrip_keepsEveryShownField() throws IOException {
+        File file = snapshotFile();
+        HomeSnapshot.write(file, 7, ROWS);
+
+        // MovieRow.equals covers catalog fields and diary state
+        assertEquals(ROWS, HomeSnapshot.read(file, 7));
+        assertEquals(ROWS.subList(0, 0), HomeSnapshot.read(writeEmpty(), 7));
+    }
+
+    @Test
+    public void otherUser_missingOrDamagedFile_readsAsNoSnapshot() throws IOException {
+        File file = snapshotFile();
+        assertNull(HomeSnapshot.read(file, 7));
+
+        HomeSnapshot.write(file, 7, ROWS);
+        assertNull(HomeSnapshot.read(file, -1));
+
+        // Cut in the middle of a row
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+        assertNull(HomeSnapshot.read(file, 7));
+    }
+
+    @Test
+    public void longList_keepsTheFirstRowsOnly() throws IOException {
+        List<MovieRow> rows = new ArrayList<>();
+        for (int i = 0; i < HomeSnapshot.MAX_ROWS + 20; i++) {
+            rows.add(new MovieRow(i, "Movie " + i, null, "", "Drama", 2000, null, 0));
+        }
+        File file = snapshotFile();
+        HomeSnapshot.write(file, -1, rows);
+
+        assertEquals(rows.subList(0, HomeSnapshot.MAX_ROWS), HomeSnapshot.read(file, -1));
+    }
+
+    private File snapshotFile() {
+        return new File(folder.getRoot(), HomeSnapshot.FILE_NAME);
+    }
+
+    private File writeEmpty() throws IOException {
+        File file = new File(folder.getRoot(), "empty.snapshot");
+        HomeSnapshot.write(file, 7, new ArrayList<>());
+        return file;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.moviediary.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertSame;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.CancellationSignal;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A failing call still answers its callback, on the main thread, with null; so does a read
+ * dropped from a full queue. A cancelled read leaves the queue without running.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class MovieRepositoryTest {
+
+    private static final long TIMEOUT_MS = 5_000;
+
+    private MovieRepository repository;
+    private final List<Object> results = new ArrayList<>();
+    private final List<Looper> loopers = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        repository = new MovieRepository(ApplicationProvider.getApplicationContext());
+    }
+
+    @After
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    public void throwingRead_reachesCallbackWithNull() throws InterruptedException {
+        repository.read(() -> {
+            throw new IllegalStateException("database is gone");
+        }, this::record);
+
+        awaitResults(1);
+        assertNull(results.get(0));
+        assertSame(Looper.getMainLooper(), loopers.get(0));
+    }
+
+    @Test
+    public void throwingWrite_reachesCallbackWithNull_laterWritesStillRun() throws InterruptedException {
+        repository.write(() -> {
+            throw new IllegalStateException("disk full");
+        }, this::record);
+        repository.write(() -> "next", this::record);
+
+        awaitResults(2);
+        assertNull(results.get(0));
+        assertEquals("next", results.get(1));
+        assertSame(Looper.getMainLooper(), loopers.get(0));
+    }
+
+    @Test
+    public void cancelledRead_leavesTheQueueWithoutRunning() throws InterruptedException {
+        CountDownLatch release = blockReadThreads();
+        AtomicBoolean ran = new AtomicBoolean();
+        CancellationSignal signal = new CancellationSignal();
+        repository.read(() -> {
+            ran.set(true);
+            return "stale";
+        }, signal, this::record);
+        signal.cancel();
+
+        release.countDown();
+        repository.read(() -> "next", this::record);
+
+        awaitResults(3);
+        assertFalse(ran.get());
+        assertTrue(results.contains("next"));
+    }
+
+    @Test
+    public void fullQueue_answersTheOldestReadWithNull() throws InterruptedException {
+        CountDownLatch release = blockReadThreads();
+        for (int i = 0; i <= MovieRepository.READ_QUEUE; i++) {
+            int value = i;
+            repository.read(() -> value, this::record);
+        }
+        // Dropped while the threads are still busy: answered first
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(1, results.size());
+        assertNull(results.get(0));
+
+        release.countDown();
+        awaitResults(2 + MovieRepository.READ_QUEUE + 1);
+        assertFalse(results.contains(0));
+        assertTrue(results.contains(MovieRepository.READ_QUEUE));
+    }
+
+    // =======================
+    // Helpers
+    // =======================
+
+    private void record(Object result) {
+        results.add(result);
+        loopers.add(Looper.myLooper());
+    }
+
+    // Occupies both read threads until the returned latch is released (each then answers "blocked")
+    private CountDownLatch blockReadThreads() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            repository.read(() -> {
+                started.countDown();
+                release.await();
+                return "blocked";
+            }, this::record);
+        }
+        assertTrue(started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        return release;
+    }
+
+    // Runs the main looper until n callbacks arrived (they are posted from the executors)
+    private void awaitResults(int n) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT_MS * 1_000_000;
+        while (results.size() < n && System.nanoTime() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            Thread.sleep(10);
+        }
+        assertEquals(n, results.size());
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.moviediary.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.moviediary.database.DatabaseManager;
+import com.example.moviediary.model.MoviePage;
+import com.example.moviediary.model.MovieRow;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The in-memory narrowing must return what the FTS prefix query would: every query word is
+ * the prefix of a word of the title, genre or description, order kept.
+ * The pipeline runs against a repository whose searches the test answers by hand.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class SearchPipelineTest {
+
+    private static final MoviePage INTER = new MoviePage(Arrays.asList(
+            row(1, "Interstellar", "Sci-Fi, Drama", "Explorers travel through a wormhole in space."),
+            row(2, "Inception", "Sci-Fi, Action", "A thief who steals corporate secrets."),
+            row(3, "The Internship", "Comedy", "Two salesmen compete for an internship at Google.")
+    ), null);
+
+    private static final MoviePage AM = new MoviePage(Arrays.asList(
+            row(4, "Amélie", "Comedy, Romance", "A shy waitress in Montmartre."),
+            row(5, "Wall–E", "Animation", "A robot cleaning up the planet.")
+    ), null);
+
+    private static final long DEBOUNCE_MS = 300;
+
+    /**
+     * Records each search and answers it only when the test calls complete().
+     */
+    private static class FakeRepository extends MovieRepository {
+        final List<Search> searches = new ArrayList<>();
+
+        FakeRepository(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void searchPage(String query, MoviePage.Key after, int limit, CancellationSignal signal,
+                               Callback<MoviePage> callback) {
+            searches.add(new Search(query, signal, callback));
+        }
+    }
+
+    private static class Search {
+        final String query;
+        final CancellationSignal signal;
+        final MovieRepository.Callback<MoviePage> callback;
+
+        Search(String query, CancellationSignal signal, MovieRepository.Callback<MoviePage> callback) {
+            this.query = query;
+            this.signal = signal;
+            this.callback = callback;
+        }
+
+        void complete(MoviePage page) {
+            callback.onResult(page);
+        }
+    }
+
+    private FakeRepository repository;
+    private SearchPipeline pipeline;
+    private final List<String> delivered = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        repository = new FakeRepository(ApplicationProvider.getApplicationContext());
+        pipeline = new SearchPipeline(repository, 24, DEBOUNCE_MS,
+                (query, page, submitted) -> delivered.add(query));
+    }
+
+    @Test
+    public void typing_searchesOnceAfterThePause() {
+        pipeline.submit("in");
+        advance(DEBOUNCE_MS - 100);
+        pipeline.submit("Inter");
+        advance(DEBOUNCE_MS - 1);
+        assertTrue(repository.searches.isEmpty());
+
+        advance(1);
+        assertEquals(1, repository.searches.size());
+        assertEquals("inter", repository.searches.get(0).query);
+    }
+
+    @Test
+    public void newQuery_cancelsTheOneInFlight() {
+        pipeline.submitNow("dark");
+        pipeline.submitNow("matrix");
+
+        assertTrue(repository.searches.get(0).signal.isCanceled());
+        assertFalse(repository.searches.get(1).signal.isCanceled());
+
+        // A pending debounced query is dropped by cancel() too
+        pipeline.submit("heat");
+        pipeline.cancel();
+        advance(DEBOUNCE_MS);
+        assertTrue(repository.searches.get(1).signal.isCanceled());
+        assertEquals(2, repository.searches.size());
+    }
+
+    @Test
+    public void onlyTheLatestResult_isDelivered() {
+        pipeline.submitNow("dark");
+        pipeline.submitNow("matrix");
+
+        // Answered out of order: the superseded one is dropped even if it arrives last
+        repository.searches.get(1).complete(page(8));
+        repository.searches.get(0).complete(page(2));
+        assertEquals(Collections.singletonList("matrix"), delivered);
+    }
+
+    @Test
+    public void clearRecent_searchesTheDatabaseAgain() {
+        pipeline.submitNow("dark");
+        repository.searches.get(0).complete(page(2));
+        pipeline.submitNow("dark");
+        assertEquals(1, repository.searches.size()); // cached
+
+        pipeline.clearRecent();
+        pipeline.submitNow("dark");
+        assertEquals(2, repository.searches.size());
+
+        // A search running across clearRecent() is shown, not cached
+        pipeline.submitNow("heat");
+        pipeline.clearRecent();
+        repository.searches.get(2).complete(page(3));
+        pipeline.submitNow("heat");
+        assertEquals(4, repository.searches.size());
+        assertEquals(Arrays.asList("dark", "dark", "heat"), delivered);
+    }
+
+    @Test
+    public void extendedWord_keepsOnlyLongerPrefixMatches() {
+        assertIds(filter(INTER, "interst"), 1);
+        assertIds(filter(INTER, "intern"), 3);
+    }
+
+    @Test
+    public void extraWord_mustMatchAnyField() {
+        assertIds(filter(INTER, "in sci"), 1, 2);
+        assertIds(filter(INTER, "in WORM"), 1);
+        assertIds(filter(INTER, "in sci-fi, action"), 2);
+    }
+
+    @Test
+    public void nonAsciiTitle_isSplitLikeTheFtsTokenizer() {
+        // FTS4 "simple": "amélie" and "wall–e" are one word each, no word starts with "e"
+        assertIds(filter(AM, "am"), 4);
+        assertIds(filter(AM, "wall"), 5);
+        assertIds(filter(AM, "wall e"));
+    }
+
+    @Test
+    public void nonAsciiQuery_isNotNarrowedInMemory() {
+        pipeline.submitNow("am");
+        repository.searches.get(0).complete(AM);
+        pipeline.submitNow("amé");
+
+        // The database folds ASCII case only: it answers
+        assertEquals(2, repository.searches.size());
+        assertEquals("amé", repository.searches.get(1).query);
+    }
+
+    @Test
+    public void noMatch_isAnEmptyCompletePage() {
+        MoviePage page = filter(INTER, "inter horror");
+        assertEquals(0, page.getRows().size());
+        assertEquals(null, page.getNext());
+    }
+
+    // =======================
+    // Helpers
+    // =======================
+
+    private static MoviePage filter(MoviePage page, String query) {
+        return SearchPipeline.filter(page, DatabaseManager.searchTokens(query));
+    }
+
+    private static void advance(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+    }
+
+    // Complete page with one movie
+    private static MoviePage page(int id) {
+        return new MoviePage(Collections.singletonList(row(id, "Movie " + id, "Drama", "")), null);
+    }
+
+    private static MovieRow row(int id, String title, String genre, String description) {
+        return new MovieRow(id, title, null, description, genre, 2000, null, 0);
+    }
+
+    private static void assertIds(MoviePage page, Integer... expected) {
+        List<Integer> ids = new ArrayList<>();
+        for (MovieRow row : page.getRows()) ids.add(row.getId());
+        assertEquals(Arrays.asList(expected), ids);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.moviediary.security;
+
+import com.example.moviediary.Benchmarks;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Locale;
+
+/**
+ * Hash latency and throughput per PBKDF2 cost, plus the count calibrate() picks for a few
+ * latency budgets, to choose PasswordUtils.TARGET_MILLIS. Run it on the target hardware
+ * (JVM numbers only rank the settings).
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class PasswordHashBenchmark {
+
+    private static final int[] ITERATIONS = {10_000, 50_000, 100_000, 200_000, 400_000};
+    private static final long[] BUDGETS_MILLIS = {50, 100, 150, 250, 500};
+
+    private String salt;
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+        salt = PasswordUtils.generateSalt();
+    }
+
+    @Test
+    public void hashThroughputPerCost() throws Exception {
+        Benchmarks.report("legacy sha-256", Benchmarks.nanosPerOp(1_000, 10_000,
+                i -> PasswordUtils.hashPassword("password" + i, salt, PasswordUtils.LEGACY_ITERATIONS)));
+
+        for (int iterations : ITERATIONS) {
+            double nanos = Benchmarks.nanosPerOp(2, 10,
+                    i -> PasswordUtils.hashPassword("password" + i, salt, iterations));
+            Benchmarks.report(String.format(Locale.ROOT, "pbkdf2 %d iterations (%.1f hashes/s)",
+                    iterations, 1e9 / nanos), nanos);
+        }
+    }
+
+    @Test
+    public void calibratedCostPerBudget() {
+        for (long budget : BUDGETS_MILLIS) {
+            System.out.printf(Locale.ROOT, "BENCH calibrate(%d ms) = %d iterations%n",
+                    budget, PasswordUtils.calibrate(budget));
+        }
+    }
+}
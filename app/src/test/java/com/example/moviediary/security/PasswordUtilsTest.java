@@ -0,0 +1,131 @@
+package com.example.moviediary.security;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.moviediary.database.DatabaseHelper;
+import com.example.moviediary.database.DatabaseManager;
+import com.example.moviediary.model.User;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.nio.charset.StandardCharsets;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class PasswordUtilsTest {
+
+    @Test
+    public void pbkdf2_matchesKnownVectors() {
+        // PBKDF2-HMAC-SHA256, P = "password", S = "salt", dkLen = 32
+        assertArrayEquals(hex("120fb6cffcf8b32c43e7225256c4f837a86548c92ccc35480805987cb70be17b"),
+                PasswordUtils.pbkdf2(bytes("password"), bytes("salt"), 1));
+        assertArrayEquals(hex("c5e478d59288c841aa530db6845c4c8d962893a001ce4e11a4963873aa98134a"),
+                PasswordUtils.pbkdf2(bytes("password"), bytes("salt"), 4096));
+    }
+
+    @Test
+    public void verify_needsSameIterations() {
+        String salt = PasswordUtils.generateSalt();
+        String hash = PasswordUtils.hashPassword("secret", salt, PasswordUtils.MIN_ITERATIONS);
+
+        assertTrue(PasswordUtils.verifyPassword("secret", salt, hash, PasswordUtils.MIN_ITERATIONS));
+        assertFalse(PasswordUtils.verifyPassword("Secret", salt, hash, PasswordUtils.MIN_ITERATIONS));
+        assertFalse(PasswordUtils.verifyPassword("secret", salt, hash, PasswordUtils.MIN_ITERATIONS + 1));
+        assertFalse(PasswordUtils.verifyPassword("secret", salt, "not base64!", PasswordUtils.MIN_ITERATIONS));
+    }
+
+    @Test
+    public void calibration_staysWithinBounds() {
+        int iterations = PasswordUtils.calibratedIterations();
+        assertTrue(iterations >= PasswordUtils.MIN_ITERATIONS);
+        assertTrue(iterations <= PasswordUtils.MAX_ITERATIONS);
+        assertEquals(PasswordUtils.MIN_ITERATIONS, PasswordUtils.calibrate(0));
+    }
+
+    @Test
+    public void needsRehash_toleratesCalibrationNoise() {
+        int calibrated = PasswordUtils.calibratedIterations();
+
+        assertTrue(PasswordUtils.needsRehash(PasswordUtils.LEGACY_ITERATIONS));
+        assertTrue(PasswordUtils.needsRehash(calibrated / 2 - 1));
+        // A hash made on a run that measured a little slower is kept
+        assertFalse(PasswordUtils.needsRehash(calibrated / 2));
+        assertFalse(PasswordUtils.needsRehash(calibrated - 1));
+        assertFalse(PasswordUtils.needsRehash(calibrated));
+    }
+
+    @Test
+    public void login_upgradesLegacyHash() {
+        Context context = ApplicationProvider.getApplicationContext();
+        DatabaseManager manager = new DatabaseManager(context);
+        manager.open();
+        DatabaseHelper helper = new DatabaseHelper(context);
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+
+            // Account created before PBKDF2: single salted SHA-256, hash_iterations = 0
+            String salt = PasswordUtils.generateSalt();
+            ContentValues values = new ContentValues();
+            values.put(DatabaseHelper.COLUMN_USERNAME, "legacy");
+            values.put(DatabaseHelper.COLUMN_EMAIL, "legacy@moviediary.test");
+            values.put(DatabaseHelper.COLUMN_SALT, salt);
+            values.put(DatabaseHelper.COLUMN_PASSWORD_HASH,
+                    PasswordUtils.hashPassword("secret", salt, PasswordUtils.LEGACY_ITERATIONS));
+            db.insert(DatabaseHelper.TABLE_USERS, null, values);
+
+            assertEquals(null, manager.getUser("legacy@moviediary.test", "wrong"));
+            assertEquals(PasswordUtils.LEGACY_ITERATIONS, iterations(db));
+
+            // getUser only reads; the upgrade is the write MovieRepository.login queues after it
+            User user = manager.getUser("legacy@moviediary.test", "secret");
+            assertNotNull(user);
+            assertEquals(PasswordUtils.LEGACY_ITERATIONS, iterations(db));
+            assertTrue(manager.rehashPassword(user.getId(), "secret"));
+            assertEquals(PasswordUtils.calibratedIterations(), iterations(db));
+            assertFalse(manager.rehashPassword(user.getId(), "secret"));
+            assertFalse(salt.equals(DatabaseUtils.stringForQuery(db,
+                    "SELECT " + DatabaseHelper.COLUMN_SALT + " FROM " + DatabaseHelper.TABLE_USERS, null)));
+
+            // Same password still logs in against the new hash
+            assertNotNull(manager.getUser("legacy@moviediary.test", "secret"));
+        } finally {
+            helper.close();
+            manager.close();
+        }
+    }
+
+    // =======================
+    // Helpers
+    // =======================
+
+    private static long iterations(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db,
+                "SELECT " + DatabaseHelper.COLUMN_HASH_ITERATIONS + " FROM " + DatabaseHelper.TABLE_USERS, null);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] hex(String s) {
+        byte[] result = new byte[s.length() / 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) Integer.parseInt(s.substring(2 * i, 2 * i + 2), 16);
+        }
+        return result;
+    }
+}